@@ -30,7 +30,8 @@ import javax.tools.Diagnostic.Kind;
 @SupportedSourceVersion(SourceVersion.RELEASE_7)
 @SupportedAnnotationTypes({"dshell.annotation.Shared", "dshell.annotation.OpType",
 	"dshell.annotation.Wrapper", "dshell.annotation.OpHolder", "dshell.annotation.WrapperClass", 
-	"dshell.annotation.SharedClass", "dshell.annotation.TypeAlias", "dshell.annotation.PrimitiveArray"})
+	"dshell.annotation.SharedClass", "dshell.annotation.TypeAlias", "dshell.annotation.PrimitiveArray",
+	"dshell.annotation.PrimitiveMap"})
 public class AnnotationProcessor extends AbstractProcessor {
 	private final static boolean debugMode = false;
 
@@ -187,6 +188,9 @@ public class AnnotationProcessor extends AbstractProcessor {
 		if(typeElement.getAnnotation(PrimitiveArray.class) != null) {
 			return new PrimitiveArrayBuilder(className, internalName, superTypeName);
 		}
+		if(typeElement.getAnnotation(PrimitiveMap.class) != null) {
+			return new PrimitiveMapBuilder(className, internalName, superTypeName);
+		}
 		if(typeElement.getAnnotation(GenericClass.class) != null) {
 			GenericClass anno = typeElement.getAnnotation(GenericClass.class);
 			StringBuilder sBuilder = new StringBuilder();
@@ -568,6 +572,12 @@ public class AnnotationProcessor extends AbstractProcessor {
 		}
 	}
 
+	class PrimitiveMapBuilder extends TypeBuilder {
+		public PrimitiveMapBuilder(String className, String internalName, String superTypeName) {
+			super(4, className, internalName, superTypeName, false, null);
+		}
+	}
+
 	class GenericTypeBuilder extends TypeBuilder {
 		public GenericTypeBuilder(String className, String internalName, String superTypeName, String optionalArg) {
 			super(3, className, internalName, superTypeName, false, optionalArg);
@@ -1,9 +1,13 @@
 package dshell.internal.codegen;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.antlr.v4.runtime.Token;
 import org.objectweb.asm.ClassVisitor;
@@ -36,16 +40,34 @@ import dshell.lang.GenericPair;
 public class ClassBuilder extends ClassWriter implements Opcodes {
 	private final String internalClassName;
 
+	/**
+	 * used for global variable holder class.
+	 */
+	private final DShellClassLoader classLoader;
+
+	/**
+	 * key is regex of string literal, value is name of static final field holding compiled pattern.
+	 */
+	private final Map<String, String> patternFieldMap = new LinkedHashMap<>();
+
+	/**
+	 * if true, static initializer is already generated and cannot add pattern field.
+	 */
+	private boolean generatedStaticInitializer = false;
+
 	/**
 	 * create new class builder for class generation.
 	 * @param classType
 	 * - target class type.
 	 * @param sourceName
 	 * - class source code, may be null.
+	 * @param classLoader
+	 * - class loader for global variable holder class.
 	 */
-	public ClassBuilder(UserDefinedClassType classType, String sourceName) {
+	public ClassBuilder(UserDefinedClassType classType, String sourceName, DShellClassLoader classLoader) {
 		super(ClassWriter.COMPUTE_FRAMES);
 		this.internalClassName = classType.getInternalName();
+		this.classLoader = classLoader;
 		this.visit(V1_7, ACC_PUBLIC, this.internalClassName, null, classType.getSuperType().getInternalName(), null);
 		this.visitSource(sourceName, null);
 	}
@@ -55,10 +77,13 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 	 * @param internalToplevelClassName
 	 * unique and fully qualified class name
 	 * @param sourceName
+	 * @param classLoader
+	 * - class loader for global variable holder class.
 	 */
-	public ClassBuilder(String internalToplevelClassName, String sourceName) {
+	public ClassBuilder(String internalToplevelClassName, String sourceName, DShellClassLoader classLoader) {
 		super(ClassWriter.COMPUTE_FRAMES);
 		this.internalClassName = internalToplevelClassName;
+		this.classLoader = classLoader;
 		this.visit(V1_7, ACC_PUBLIC | ACC_FINAL, this.internalClassName, null, "java/lang/Object", null);
 		this.visitSource(sourceName, null);
 	}
@@ -69,10 +94,13 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 	 * - function holder type.
 	 * @param sourceName
 	 * function source code, may be null.
+	 * @param classLoader
+	 * - class loader for global variable holder class.
 	 */
-	public ClassBuilder(FuncHolderType holderType, String sourceName) {
+	public ClassBuilder(FuncHolderType holderType, String sourceName, DShellClassLoader classLoader) {
 		super(ClassWriter.COMPUTE_FRAMES);
 		this.internalClassName = holderType.getInternalName();
+		this.classLoader = classLoader;
 		FunctionType superType = (FunctionType) holderType.getFieldHandle().getFieldType();
 		this.visit(V1_7, ACC_PUBLIC | ACC_FINAL, this.internalClassName, null, "java/lang/Object", new String[]{superType.getInternalName()});
 		this.visitSource(sourceName, null);
@@ -87,12 +115,12 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 	public MethodBuilder createNewMethodBuilder(MethodHandle handle) {
 		if(handle == null) {
 			Method methodDesc = Method.getMethod("void invoke()");
-			return new MethodBuilder(ACC_PUBLIC | ACC_FINAL | ACC_STATIC, methodDesc, this);
+			return new MethodBuilder(ACC_PUBLIC | ACC_FINAL | ACC_STATIC, methodDesc, this, this.classLoader);
 		}
 		if(handle instanceof StaticFunctionHandle) {
-			return new MethodBuilder(ACC_PUBLIC | ACC_STATIC, handle.getMethodDesc(), this);
+			return new MethodBuilder(ACC_PUBLIC | ACC_STATIC, handle.getMethodDesc(), this, this.classLoader);
 		}
-		return new MethodBuilder(ACC_PUBLIC, handle.getMethodDesc(), this);
+		return new MethodBuilder(ACC_PUBLIC, handle.getMethodDesc(), this, this.classLoader);
 	}
 
 	/**
@@ -103,6 +131,11 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 	 * - generated class.
 	 */
 	public Class<?> generateClass(DShellClassLoader classLoader) {
+		if(!this.generatedStaticInitializer && !this.patternFieldMap.isEmpty()) {
+			GeneratorAdapter adapter = this.createStaticInitializer();
+			adapter.returnValue();
+			adapter.endMethod();
+		}
 		this.visitEnd();
 		return classLoader.definedAndLoadClass(this.internalClassName, this.toByteArray());
 	}
@@ -112,6 +145,64 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 		return this.internalClassName;
 	}
 
+	/**
+	 * get static final field holding precompiled pattern. if not created, create it.
+	 * @param regex
+	 * - must be valid regex.
+	 * @return
+	 * - field name.
+	 */
+	public String getPatternField(String regex) {
+		String fieldName = this.patternFieldMap.get(regex);
+		if(fieldName == null) {
+			if(this.generatedStaticInitializer) {
+				Utils.fatal(1, "static initializer is already generated: " + this.internalClassName);
+			}
+			fieldName = "$Pattern$" + this.patternFieldMap.size();
+			this.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, fieldName, Type.getDescriptor(Pattern.class), null, null);
+			this.patternFieldMap.put(regex, fieldName);
+		}
+		return fieldName;
+	}
+
+	/**
+	 * create static initializer. pattern fields are initialized at first.
+	 * must call it only once and after method generation.
+	 * @return
+	 * - caller must generate return and call endMethod.
+	 */
+	public GeneratorAdapter createStaticInitializer() {
+		this.generatedStaticInitializer = true;
+		Method cinitDesc = Method.getMethod("void <clinit> ()");
+		GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC | ACC_STATIC, cinitDesc, null, null, this);
+		Type ownerTypeDesc = Type.getObjectType(this.internalClassName);
+		Type patternTypeDesc = Type.getType(Pattern.class);
+		for(Map.Entry<String, String> entry : this.patternFieldMap.entrySet()) {
+			adapter.push(entry.getKey());
+			adapter.invokeStatic(patternTypeDesc, Method.getMethod("java.util.regex.Pattern compile (String)"));
+			adapter.putStatic(ownerTypeDesc, entry.getValue(), patternTypeDesc);
+		}
+		return adapter;
+	}
+
+	/**
+	 * generate holder class of global variable.
+	 * holder class has only one public static field (GlobalVariableTable#holderFieldName).
+	 * @param internalName
+	 * - holder class name.
+	 * @param fieldTypeDesc
+	 * - type of global variable.
+	 * @return
+	 * - byte code.
+	 */
+	public static byte[] generateGlobalVarHolder(String internalName, Type fieldTypeDesc) {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(V1_7, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, internalName, null, "java/lang/Object", null);
+		writer.visitField(ACC_PUBLIC | ACC_STATIC, GlobalVariableTable.holderFieldName, fieldTypeDesc.getDescriptor(), null, null);
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
 	/**
 	 * wrapper class of generator adapter
 	 * @author skgchxngsxyz-osx
@@ -134,22 +225,34 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 		 */
 		protected final VarScopes varScopes;
 
+		/**
+		 * contains global variables promoted to local variables by enterPromotionScope.
+		 */
+		protected final Deque<List<PromotedVar>> promotedVars;
+
 		/**
 		 * represent current line number.
 		 * used for stack trace.
 		 */
 		protected int currentLineNum = -1;
 
-		protected MethodBuilder(int access, Method method, ClassVisitor cv) {
+		/**
+		 * owner of this method.
+		 */
+		protected final ClassBuilder classBuilder;
+
+		protected MethodBuilder(int access, Method method, ClassBuilder cv, DShellClassLoader classLoader) {
 			super(Opcodes.ASM4, toMethodVisitor(access, method, cv),
 					access, method.getName(), method.getDescriptor());
+			this.classBuilder = cv;
 			this.loopLabels = new ArrayDeque<>();
 			this.tryLabels = new ArrayDeque<>();
+			this.promotedVars = new ArrayDeque<>();
 			int startIndex = 0;
 			if((access & ACC_STATIC) != ACC_STATIC) {
 				startIndex = 1;
 			}
-			this.varScopes = new VarScopes(startIndex);
+			this.varScopes = new VarScopes(startIndex, classLoader);
 		}
 
 		/**
@@ -261,14 +364,14 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 			if(!entry.isGlobaVar()) {
 				Utils.fatal(1, "must be global variable: " + varName + " : " + type);
 			}
-			GlobalVariableTable.objectVarTable[entry.getVarIndex()] = value;
+			GlobalVariableTable.setVar(varName, value);
 		}
 
 		public void createNewVarAndStoreValue(String varName, DSType type) {
 			VarEntry entry = this.varScopes.addVarEntry(varName, type);
 			// global variable
 			if(entry.isGlobaVar()) {
-				this.storeValueToGlobal(entry.getVarIndex(), type);
+				this.storeValueToGlobal(entry, type);
 				return;
 			}
 			// local variable
@@ -277,12 +380,24 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 			return;
 		}
 
+		/**
+		 * create new local variable which is not visible from script and store stack top value.
+		 * @param typeDesc
+		 * @return
+		 * - local variable index.
+		 */
+		public int createNewHiddenVarAndStoreValue(Type typeDesc) {
+			VarEntry entry = this.varScopes.addHiddenVarEntry(typeDesc.getSize());
+			this.visitVarInsn(typeDesc.getOpcode(ISTORE), entry.getVarIndex());
+			return entry.getVarIndex();
+		}
+
 		public void storeValueToVar(String varName, DSType type) {
 			VarEntry entry = this.varScopes.getVarEntry(varName);
 			assert entry != null : "undefined variable: " + varName;
 			// global variable
 			if(entry.isGlobaVar()) {
-				this.storeValueToGlobal(entry.getVarIndex(), type);
+				this.storeValueToGlobal(entry, type);
 				return;
 			}
 			// local variable
@@ -295,7 +410,7 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 			assert entry != null : "undefined variable: " + varName;
 			// global variable
 			if(entry.isGlobaVar()) {
-				this.loadValueFromGlobal(entry.getVarIndex(), type);
+				this.loadValueFromGlobal(entry, type);
 				return;
 			}
 			// local variable
@@ -303,71 +418,90 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 			this.visitVarInsn(typeDesc.getOpcode(ILOAD), entry.getVarIndex());
 		}
 
-		private void storeValueToGlobal(int index, DSType type) {
-			Type typeDesc = TypeUtils.toTypeDescriptor(type);
-			Type ownerTypeDesc = Type.getType(GlobalVariableTable.class);
-			switch(typeDesc.getSort()) {
-			case Type.LONG:
-				this.getStatic(ownerTypeDesc, "longVarTable", Type.getType(long[].class));
-				this.push(index);
-				this.dup2X2();
-				this.pop2();
-				this.arrayStore(typeDesc);
-				break;
-			case Type.DOUBLE:
-				this.getStatic(ownerTypeDesc, "doubleVarTable", Type.getType(double[].class));
-				this.push(index);
-				this.dup2X2();
-				this.pop2();
-				this.arrayStore(typeDesc);
-				break;
-			case Type.BOOLEAN:
-				this.getStatic(ownerTypeDesc, "booleanVarTable", Type.getType(boolean[].class));
-				this.swap();
-				this.push(index);
-				this.swap();
-				this.arrayStore(typeDesc);
-				break;
-			case Type.OBJECT:
-				this.getStatic(ownerTypeDesc, "objectVarTable", Type.getType(Object[].class));
-				this.swap();
-				this.push(index);
-				this.swap();
-				this.arrayStore(typeDesc);
-				break;
-			default:
-				throw new RuntimeException("illegal type: " + type);
+		private void storeValueToGlobal(VarEntry entry, DSType type) {
+			Type ownerTypeDesc = Type.getObjectType(entry.getHolderName());
+			this.putStatic(ownerTypeDesc, GlobalVariableTable.holderFieldName, TypeUtils.toTypeDescriptor(type));
+		}
+
+		private void loadValueFromGlobal(VarEntry entry, DSType type) {
+			Type ownerTypeDesc = Type.getObjectType(entry.getHolderName());
+			this.getStatic(ownerTypeDesc, GlobalVariableTable.holderFieldName, TypeUtils.toTypeDescriptor(type));
+		}
+
+		/**
+		 * enter new scope and cache global variables in local variables of it (register promotion).
+		 * while in this scope, access to promoted variable is local variable access.
+		 * if in try statement having finally block, not promote (break may run finally block before write back).
+		 * @param varList
+		 * - pair of variable name and type.
+		 * @return
+		 * - start label of promoted region. if no variable is promoted, return null and not enter scope.
+		 */
+		public Label enterPromotionScope(List<GenericPair<String, DSType>> varList) {
+			for(TryCatchLabel label : this.tryLabels) {
+				if(label.getFinallyLabel() != null) {
+					return null;
+				}
+			}
+			List<PromotedVar> promotedList = new ArrayList<>();
+			for(GenericPair<String, DSType> pair : varList) {
+				VarEntry entry = this.varScopes.getVarEntry(pair.getLeft());
+				if(entry.isGlobaVar()) {	// if already promoted or shadowed, not global
+					promotedList.add(new PromotedVar(pair.getLeft(), pair.getRight(), entry.getHolderName()));
+				}
+			}
+			if(promotedList.isEmpty()) {
+				return null;
+			}
+			this.enterScope();
+			for(PromotedVar var : promotedList) {
+				this.getStatic(Type.getObjectType(var.holderName), GlobalVariableTable.holderFieldName, var.typeDesc);
+				this.createNewVarAndStoreValue(var.varName, var.type);
 			}
+			this.promotedVars.push(promotedList);
+			Label startLabel = this.newLabel();
+			this.mark(startLabel);
+			return startLabel;
 		}
 
-		private void loadValueFromGlobal(int index, DSType type) {
-			Type typeDesc = TypeUtils.toTypeDescriptor(type);
-			Type ownerTypeDesc = Type.getType(GlobalVariableTable.class);
-			switch(typeDesc.getSort()) {
-			case Type.LONG:
-				this.getStatic(ownerTypeDesc, "longVarTable", Type.getType(long[].class));
-				this.push(index);
-				this.arrayLoad(typeDesc);
-				break;
-			case Type.DOUBLE:
-				this.getStatic(ownerTypeDesc, "doubleVarTable", Type.getType(double[].class));
-				this.push(index);
-				this.arrayLoad(typeDesc);
-				break;
-			case Type.BOOLEAN:
-				this.getStatic(ownerTypeDesc, "booleanVarTable", Type.getType(boolean[].class));
-				this.push(index);
-				this.arrayLoad(typeDesc);
-				break;
-			case Type.OBJECT:
-				this.getStatic(ownerTypeDesc, "objectVarTable", Type.getType(Object[].class));
-				this.push(index);
-				this.arrayLoad(Type.getType(Object.class));
-				this.visitTypeInsn(CHECKCAST, typeDesc.getInternalName());
-				break;
-			default:
-				throw new RuntimeException("illegal type: " + type);
+		/**
+		 * write back promoted variables to global variables and exit scope.
+		 * write back is generated at end of promoted region and exception handler of it.
+		 * @param startLabel
+		 * - return value of enterPromotionScope. if null, do nothing.
+		 */
+		public void exitPromotionScope(Label startLabel) {
+			if(startLabel == null) {
+				return;
 			}
+			Label endLabel = this.mark();
+			Label mergeLabel = this.newLabel();
+			List<PromotedVar> promotedList = this.promotedVars.pop();
+			this.writeBackPromotedVars(promotedList);
+			this.goTo(mergeLabel);
+			// exception edge
+			this.catchException(startLabel, endLabel, null);
+			this.writeBackPromotedVars(promotedList);
+			this.throwException();
+			this.mark(mergeLabel);
+			this.exitScope();
+		}
+
+		private void writeBackPromotedVars(List<PromotedVar> promotedList) {
+			for(PromotedVar var : promotedList) {
+				this.loadValueFromVar(var.varName, var.type);
+				this.putStatic(Type.getObjectType(var.holderName), GlobalVariableTable.holderFieldName, var.typeDesc);
+			}
+		}
+
+		/**
+		 * load precompiled pattern from static final field of owner class.
+		 * @param regex
+		 * - must be valid regex.
+		 */
+		public void loadPrecompiledPattern(String regex) {
+			String fieldName = this.classBuilder.getPatternField(regex);
+			this.getStatic(Type.getObjectType(this.classBuilder.internalClassName), fieldName, Type.getType(Pattern.class));
 		}
 
 		/**
@@ -385,6 +519,24 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 		}
 	}
 
+	private static class PromotedVar {
+		private final String varName;
+		private final DSType type;
+		private final Type typeDesc;
+
+		/**
+		 * holder class of global variable.
+		 */
+		private final String holderName;
+
+		private PromotedVar(String varName, DSType type, String holderName) {
+			this.varName = varName;
+			this.type = type;
+			this.typeDesc = TypeUtils.toTypeDescriptor(type);
+			this.holderName = holderName;
+		}
+	}
+
 	public static class TryCatchLabel {
 		private final Label startLabel;
 		private final Label endLabel;
@@ -425,6 +577,7 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 
 	private static class VarScopes {
 		private int retAddrNameSuffix = -1;
+		private int hiddenVarNameSuffix = -1;
 
 		/**
 		 * contains local variable scopes
@@ -438,9 +591,9 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 		 */
 		protected final int startVarIndex;
 
-		private VarScopes(int startIndex) {
+		private VarScopes(int startIndex, DShellClassLoader classLoader) {
 			this.scopes = new ArrayDeque<>();
-			this.scopes.push(new GlobalVarScope());
+			this.scopes.push(new GlobalVarScope(classLoader));
 			this.startVarIndex = startIndex;
 		}
 
@@ -463,6 +616,16 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 			return this.scopes.peek().addRetAddressEntry("$RetAddr$_" + ++this.retAddrNameSuffix);
 		}
 
+		/**
+		 * add local variable used by generated code.
+		 * @param valueSize
+		 * - size of variable, long, double is 2, otherwise 1
+		 * @return
+		 */
+		public VarEntry addHiddenVarEntry(int valueSize) {
+			return this.scopes.peek().addHiddenVarEntry("$Hidden$_" + ++this.hiddenVarNameSuffix, valueSize);
+		}
+
 		/**
 		 * get local variable index.
 		 * @param varName
@@ -521,6 +684,14 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 		 */
 		public VarEntry addRetAddressEntry(String varName);
 
+		/**
+		 * add local variable used by generated code.
+		 * @param varName
+		 * @param valueSize
+		 * @return
+		 */
+		public VarEntry addHiddenVarEntry(String varName, int valueSize);
+
 		/**
 		 * get local variable index.
 		 * @param varName
@@ -583,6 +754,11 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 			return this.addVarEntry(varName, 1);
 		}
 
+		@Override
+		public VarEntry addHiddenVarEntry(String varName, int valueSize) {
+			return this.addVarEntry(varName, valueSize);
+		}
+
 		/**
 		 * 
 		 * @param varName
@@ -626,35 +802,27 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 	 *
 	 */
 	private static class GlobalVarScope extends LocalVarScope {
-		private GlobalVarScope() {
+		private final DShellClassLoader classLoader;
+
+		private GlobalVarScope(DShellClassLoader classLoader) {
 			super(null, 0);
+			this.classLoader = classLoader;
 		}
 
+		/**
+		 * generate and load new holder class.
+		 */
 		@Override
 		public VarEntry addVarEntry(String varName, DSType type) {
-			int varIndex = -1;
-			switch(TypeUtils.toTypeDescriptor(type).getSort()) {
-			case Type.LONG:
-				varIndex = GlobalVariableTable.newLongVarEntry(varName);
-				break;
-			case Type.DOUBLE:
-				varIndex = GlobalVariableTable.newDoubleVarEntry(varName);
-				break;
-			case Type.BOOLEAN:
-				varIndex = GlobalVariableTable.newBooleanVarEntry(varName);
-				break;
-			case Type.OBJECT:
-				varIndex = GlobalVariableTable.newObjectVarEntry(varName);
-				break;
-			default:
-				throw new RuntimeException("illegal type: " + type);
-			}
-			return new VarEntry(varIndex, true);
+			String holderName = GlobalVariableTable.createHolderName(varName);
+			byte[] byteCode = generateGlobalVarHolder(holderName, TypeUtils.toTypeDescriptor(type));
+			GlobalVariableTable.addEntry(varName, this.classLoader.definedAndLoadClass(holderName, byteCode));
+			return new VarEntry(holderName);
 		}
 
 		@Override
 		public VarEntry getVarEntry(String varName) {
-			return new VarEntry(GlobalVariableTable.getVarIndex(varName), true);
+			return new VarEntry(Type.getInternalName(GlobalVariableTable.getHolderClass(varName)));
 		}
 	}
 
@@ -666,7 +834,7 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 	private static class VarEntry {
 		/**
 		 * In local variable, this index represents jvm local variable table' s index.
-		 * In global variable, represents global var table index.
+		 * In global variable, -1.
 		 */
 		private final int varIndex;
 
@@ -676,9 +844,26 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 		 */
 		private final boolean isGlobal;
 
+		/**
+		 * In global variable, internal name of holder class.
+		 * In local variable, null.
+		 */
+		private final String holderName;
+
 		private VarEntry(int varIndex, boolean isGlobal) {
 			this.varIndex = varIndex;
 			this.isGlobal = isGlobal;
+			this.holderName = null;
+		}
+
+		/**
+		 * create global var entry.
+		 * @param holderName
+		 */
+		private VarEntry(String holderName) {
+			this.varIndex = -1;
+			this.isGlobal = true;
+			this.holderName = holderName;
 		}
 
 		private int getVarIndex() {
@@ -688,5 +873,9 @@ public class ClassBuilder extends ClassWriter implements Opcodes {
 		private boolean isGlobaVar() {
 			return this.isGlobal;
 		}
+
+		private String getHolderName() {
+			return this.holderName;
+		}
  	}
 }
@@ -0,0 +1,105 @@
+package dshell.internal.codegen;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.Method;
+
+import dshell.internal.lib.DShellClassLoader;
+import dshell.internal.lib.Utils;
+
+/**
+ * call site of redefinable top level function (interactive mode).
+ * each function name has one MutableCallSite shared by all of invokedynamic instructions calling it.
+ * call site is bound to invokeDirect method of current function holder class,
+ * and rebound if function is redefined, so unchanged function is inlinable like static call.
+ * call sites are owned by class loader of engine, so engines in same jvm do not share them.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class FunctionCallSite {
+	/**
+	 * bootstrap method of invokedynamic instruction.
+	 */
+	public final static Handle bootstrapHandle = new Handle(Opcodes.H_INVOKESTATIC,
+			Type.getInternalName(FunctionCallSite.class), "bootstrap",
+			MethodType.methodType(CallSite.class, MethodHandles.Lookup.class, String.class, MethodType.class).toMethodDescriptorString());
+
+	/**
+	 * called from invokedynamic instruction.
+	 * @param lookup
+	 * - lookup of caller class. call site is searched from its class loader.
+	 * @param funcName
+	 * @param type
+	 * @return
+	 * @throws BootstrapMethodError
+	 * - if function has not been linked.
+	 */
+	public static CallSite bootstrap(MethodHandles.Lookup lookup, String funcName, MethodType type) {
+		ClassLoader loader = lookup.lookupClass().getClassLoader();
+		if(loader instanceof DShellClassLoader) {
+			Map<String, MutableCallSite> siteMap = ((DShellClassLoader) loader).getCallSiteMap();
+			synchronized(siteMap) {
+				MutableCallSite site = siteMap.get(funcName);
+				if(site != null && site.type().equals(type)) {
+					return site;
+				}
+			}
+		}
+		throw new BootstrapMethodError("unlinked function: " + funcName + type);
+	}
+
+	/**
+	 * bind function name to static method of holder class.
+	 * if function has already been bound, change target of call site and invalidate compiled callers.
+	 * @param funcName
+	 * @param holderClass
+	 * - generated function holder class. call site is registered to its class loader.
+	 * @param methodDesc
+	 * - static method of holder class (invokeDirect).
+	 */
+	public static void link(String funcName, Class<?> holderClass, Method methodDesc) {
+		MethodType type = MethodType.fromMethodDescriptorString(methodDesc.getDescriptor(), holderClass.getClassLoader());
+		java.lang.invoke.MethodHandle target;
+		try {
+			target = MethodHandles.publicLookup().findStatic(holderClass, methodDesc.getName(), type);
+		}
+		catch(NoSuchMethodException | IllegalAccessException e) {
+			e.printStackTrace();
+			Utils.fatal(1, "broken function holder: " + holderClass.getName());
+			return;
+		}
+		Map<String, MutableCallSite> siteMap = ((DShellClassLoader) holderClass.getClassLoader()).getCallSiteMap();
+		synchronized(siteMap) {
+			MutableCallSite site = siteMap.get(funcName);
+			if(site == null || !site.type().equals(type)) {
+				siteMap.put(funcName, new MutableCallSite(target));
+				return;
+			}
+			site.setTarget(target);
+			MutableCallSite.syncAll(new MutableCallSite[]{site});
+		}
+	}
+
+	/**
+	 * get names of linked function. used for completion.
+	 * @param classLoader
+	 * - class loader of engine.
+	 * @return
+	 * - sorted function names.
+	 */
+	public static Set<String> getFunctionNames(DShellClassLoader classLoader) {
+		Map<String, MutableCallSite> siteMap = classLoader.getCallSiteMap();
+		synchronized(siteMap) {
+			return new TreeSet<>(siteMap.keySet());
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package dshell.internal.codegen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+import dshell.internal.lib.Operator;
+import dshell.internal.parser.TypeUtils;
+import dshell.internal.type.CalleeHandle.OperatorHandle;
+import dshell.internal.type.DSType;
+
+/**
+ * primitive operator lowered to jvm instruction instead of invoking Operator method.
+ * division and modulo are not lowered, because of zero division check.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class IntrinsicOperator implements Opcodes {
+	private final static String operatorClassName = Type.getInternalName(Operator.class);
+
+	/**
+	 * key is method name of Operator.
+	 */
+	private final static Map<String, IntrinsicOperator> opMap = new HashMap<>();
+
+	static {
+		// unary op
+		opMap.put("plus", new IntrinsicOperator(OpKind.PLUS, 0));
+		opMap.put("minus", new IntrinsicOperator(OpKind.MATH, GeneratorAdapter.NEG));
+		opMap.put("not", new IntrinsicOperator(OpKind.NOT, 0));
+
+		// binary op
+		opMap.put("add", new IntrinsicOperator(OpKind.MATH, GeneratorAdapter.ADD));
+		opMap.put("sub", new IntrinsicOperator(OpKind.MATH, GeneratorAdapter.SUB));
+		opMap.put("mul", new IntrinsicOperator(OpKind.MATH, GeneratorAdapter.MUL));
+		opMap.put("and", new IntrinsicOperator(OpKind.MATH, GeneratorAdapter.AND));
+		opMap.put("or", new IntrinsicOperator(OpKind.MATH, GeneratorAdapter.OR));
+		opMap.put("xor", new IntrinsicOperator(OpKind.MATH, GeneratorAdapter.XOR));
+
+		opMap.put("lessThan", new IntrinsicOperator(OpKind.COMPARE, GeneratorAdapter.LT));
+		opMap.put("greaterThan", new IntrinsicOperator(OpKind.COMPARE, GeneratorAdapter.GT));
+		opMap.put("lessEqualsThan", new IntrinsicOperator(OpKind.COMPARE, GeneratorAdapter.LE));
+		opMap.put("greaterEqualsThan", new IntrinsicOperator(OpKind.COMPARE, GeneratorAdapter.GE));
+		opMap.put("equals", new IntrinsicOperator(OpKind.COMPARE, GeneratorAdapter.EQ));
+		opMap.put("notEquals", new IntrinsicOperator(OpKind.COMPARE, GeneratorAdapter.NE));
+	}
+
+	private static enum OpKind {
+		PLUS,
+		NOT,
+		MATH,
+		COMPARE,
+	}
+
+	private final OpKind kind;
+
+	/**
+	 * math op or compare mode of GeneratorAdapter.
+	 */
+	private final int op;
+
+	private IntrinsicOperator(OpKind kind, int op) {
+		this.kind = kind;
+		this.op = op;
+	}
+
+	/**
+	 * look up intrinsic operator.
+	 * @param handle
+	 * @return
+	 * - if handle is not primitive operator of Operator, return null.
+	 */
+	public static IntrinsicOperator lookup(OperatorHandle handle) {
+		if(!handle.getOwnerName().equals(operatorClassName)) {
+			return null;
+		}
+		for(DSType paramType : handle.getParamTypeList()) {
+			if(!(paramType instanceof DSType.PrimitiveType)) {
+				return null;
+			}
+		}
+		return opMap.get(handle.getCalleeName());
+	}
+
+	/**
+	 * get operand type. if operand types are different (int and float), return double type.
+	 * @param handle
+	 * @return
+	 */
+	public static Type getOperandType(OperatorHandle handle) {
+		Type operandType = null;
+		for(DSType paramType : handle.getParamTypeList()) {
+			Type typeDesc = TypeUtils.toTypeDescriptor(paramType);
+			if(operandType == null || typeDesc.equals(Type.DOUBLE_TYPE)) {
+				operandType = typeDesc;
+			}
+		}
+		return operandType;
+	}
+
+	/**
+	 *
+	 * @return
+	 * - if true, result is boolean and can be used as branch condition.
+	 */
+	public boolean isComparison() {
+		return this.kind == OpKind.COMPARE;
+	}
+
+	/**
+	 *
+	 * @param operandType
+	 * @return
+	 * - if true, operator is boolean not.
+	 */
+	public boolean isNot(Type operandType) {
+		return this.kind == OpKind.NOT && operandType.equals(Type.BOOLEAN_TYPE);
+	}
+
+	/**
+	 * generate operator. operands must be on stack and converted to operandType.
+	 * @param adapter
+	 * @param operandType
+	 */
+	public void generate(GeneratorAdapter adapter, Type operandType) {
+		switch(this.kind) {
+		case PLUS:
+			break;
+		case NOT:
+			if(operandType.equals(Type.BOOLEAN_TYPE)) {
+				adapter.push(true);
+				adapter.math(GeneratorAdapter.XOR, Type.INT_TYPE);
+			} else {
+				adapter.push(-1L);
+				adapter.math(GeneratorAdapter.XOR, operandType);
+			}
+			break;
+		case MATH:
+			adapter.math(this.op, operandType);
+			break;
+		case COMPARE:
+			Label trueLabel = adapter.newLabel();
+			Label mergeLabel = adapter.newLabel();
+			this.generateJump(adapter, operandType, true, trueLabel);
+			adapter.push(false);
+			adapter.goTo(mergeLabel);
+			adapter.mark(trueLabel);
+			adapter.push(true);
+			adapter.mark(mergeLabel);
+			break;
+		}
+	}
+
+	/**
+	 * generate compare and branch. operands must be on stack and converted to operandType.
+	 * @param adapter
+	 * @param operandType
+	 * @param jumpIfTrue
+	 * - if false, jump to label when result is false.
+	 * @param label
+	 */
+	public void generateJump(GeneratorAdapter adapter, Type operandType, boolean jumpIfTrue, Label label) {
+		assert this.kind == OpKind.COMPARE;
+		int mode = jumpIfTrue ? this.op : negate(this.op);
+		switch(operandType.getSort()) {
+		case Type.LONG:
+			adapter.visitInsn(LCMP);
+			adapter.ifZCmp(mode, label);
+			break;
+		case Type.DOUBLE:
+			// NaN is treated as false, like javac.
+			adapter.visitInsn(this.op == GeneratorAdapter.LT || this.op == GeneratorAdapter.LE ? DCMPG : DCMPL);
+			adapter.ifZCmp(mode, label);
+			break;
+		default:
+			adapter.ifICmp(mode, label);
+			break;
+		}
+	}
+
+	private static int negate(int mode) {
+		switch(mode) {
+		case GeneratorAdapter.EQ:
+			return GeneratorAdapter.NE;
+		case GeneratorAdapter.NE:
+			return GeneratorAdapter.EQ;
+		case GeneratorAdapter.LT:
+			return GeneratorAdapter.GE;
+		case GeneratorAdapter.GE:
+			return GeneratorAdapter.LT;
+		case GeneratorAdapter.GT:
+			return GeneratorAdapter.LE;
+		case GeneratorAdapter.LE:
+			return GeneratorAdapter.GT;
+		default:
+			throw new RuntimeException("unsupported compare mode: " + mode);
+		}
+	}
+}
@@ -2,9 +2,13 @@ package dshell.internal.codegen;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.antlr.v4.runtime.Token;
 import org.objectweb.asm.ClassWriter;
@@ -17,7 +21,7 @@ import org.objectweb.asm.commons.Method;
 import dshell.internal.codegen.ClassBuilder.MethodBuilder;
 import dshell.internal.codegen.ClassBuilder.TryCatchLabel;
 import dshell.internal.lib.DShellClassLoader;
-import dshell.internal.lib.StringContext;
+import dshell.internal.lib.Operator;
 import dshell.internal.lib.Utils;
 import dshell.internal.parser.Node.ArgumentNode;
 import dshell.internal.parser.Node.ArrayNode;
@@ -76,12 +80,17 @@ import dshell.internal.process.TaskContext;
 import dshell.internal.type.DSType;
 import dshell.internal.type.GenericType;
 import dshell.internal.type.CalleeHandle.MethodHandle;
+import dshell.internal.type.CalleeHandle.OperatorHandle;
 import dshell.internal.type.CalleeHandle.StaticFieldHandle;
 import dshell.internal.type.CalleeHandle.StaticFunctionHandle;
 import dshell.internal.type.DSType.FunctionType;
 import dshell.internal.type.DSType.PrimitiveType;
 import dshell.internal.type.DSType.VoidType;
+import dshell.lang.BooleanArray;
+import dshell.lang.FloatArray;
+import dshell.lang.GenericArray;
 import dshell.lang.GenericPair;
+import dshell.lang.IntArray;
 
 /**
  * generate java byte code from node.
@@ -89,6 +98,13 @@ import dshell.lang.GenericPair;
  *
  */
 public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
+	/**
+	 * internal name of array class having flat method. used for string interpolation.
+	 */
+	private final static Set<String> flatArrayTypes = new HashSet<>(Arrays.asList(
+			Type.getInternalName(GenericArray.class), Type.getInternalName(IntArray.class),
+			Type.getInternalName(FloatArray.class), Type.getInternalName(BooleanArray.class)));
+
 	protected final DShellClassLoader classLoader;
 	protected final Deque<MethodBuilder> methodBuilders;
 
@@ -121,6 +137,18 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		this.getCurrentMethodBuilder().exitScope();
 	}
 
+	/**
+	 * generate statement. nested block (left by optimizer) has its own scope.
+	 * @param node
+	 */
+	private void generateStatement(Node node) {
+		if(node instanceof BlockNode) {
+			this.generateBlockWithNewScope((BlockNode) node);
+		} else {
+			this.generateCode(node);
+		}
+	}
+
 	private void createPopInsIfExprNode(Node node) {
 		if(!(node instanceof ExprNode)) {
 			return;
@@ -153,10 +181,10 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 	public Class<?> generateTopLevelClass(RootNode node, boolean enableResultPrint) {
 		generateFuncTypeInterface(node.getGenTargetFuncTypeSet(), this.classLoader);
 
-		ClassBuilder classBuilder = new ClassBuilder(node.getToplevelName(), this.getSourceName(node.getToken()));
+		ClassBuilder classBuilder = new ClassBuilder(node.getToplevelName(), this.getSourceName(node.getToken()), this.classLoader);
 		this.methodBuilders.push(classBuilder.createNewMethodBuilder(null));
 		for(Node targetNode : node.getNodeList()) {
-			this.generateCode(targetNode);
+			this.generateStatement(targetNode);
 			if((targetNode instanceof ExprNode) && !(((ExprNode)targetNode).getType() instanceof VoidType)) {
 				MethodBuilder adapter = this.getCurrentMethodBuilder();
 				DSType type = ((ExprNode)targetNode).getType();
@@ -235,37 +263,70 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 	}
 
 	@Override
-	public Void visit(StringExprNode node) {	//FIXME
+	public Void visit(StringExprNode node) {
 		MethodBuilder mBuilder = this.getCurrentMethodBuilder();
-		switch(node.getElementList().size()) {
+		List<ExprNode> elementList = node.getElementList();
+		switch(elementList.size()) {
 		case 0:
 			mBuilder.push("");
 			return null;
 		case 1:
-			this.generateCode(node.getElementList().get(0));
+			this.generateCode(elementList.get(0));
 			return null;
 		}
 
-		Type ctxTypeDesc = Type.getType(StringContext.class);
-		Type stringTypeDesc = TypeUtils.toTypeDescriptor(node.getType());
-		Method methodDesc = new Method("newContext", ctxTypeDesc, new Type[]{});
-
-		// create new string context
-		mBuilder.invokeStatic(ctxTypeDesc, methodDesc);
+		// create presized string builder. capacity is length of literal and default size of other element.
+		int capacity = 0;
+		for(ExprNode exprNode : elementList) {
+			capacity += exprNode instanceof StringValueNode ? ((StringValueNode) exprNode).getValue().length() : 16;
+		}
+		Type builderTypeDesc = Type.getType(StringBuilder.class);
+		mBuilder.newInstance(builderTypeDesc);
+		mBuilder.dup();
+		mBuilder.push(capacity);
+		mBuilder.invokeConstructor(builderTypeDesc, new Method("<init>", Type.VOID_TYPE, new Type[]{Type.INT_TYPE}));
 
 		// append string element
-		methodDesc = new Method("append", ctxTypeDesc, new Type[]{stringTypeDesc});
-		for(ExprNode exprNode : node.getElementList()) {
-			this.generateCode(exprNode);
-			mBuilder.invokeVirtual(ctxTypeDesc, methodDesc);
+		for(ExprNode exprNode : elementList) {
+			Type elementTypeDesc = this.generateStringElement(exprNode);
+			mBuilder.invokeVirtual(builderTypeDesc, new Method("append", builderTypeDesc, new Type[]{elementTypeDesc}));
 		}
-
-		// string context to string
-		methodDesc = new Method("toString", stringTypeDesc, new Type[]{});
-		mBuilder.invokeVirtual(ctxTypeDesc, methodDesc);
+		mBuilder.invokeVirtual(builderTypeDesc, new Method("toString", Type.getType(String.class), new Type[]{}));
 		return null;
 	}
 
+	/**
+	 * generate element of string interpolation.
+	 * primitive value is directly appended to StringBuilder without converting to string,
+	 * and array is directly flattened.
+	 * @param exprNode
+	 * @return
+	 * - type of stack top value (primitive or string).
+	 */
+	private Type generateStringElement(ExprNode exprNode) {
+		MethodBuilder mBuilder = this.getCurrentMethodBuilder();
+		if(exprNode instanceof OperatorCallNode) {
+			OperatorCallNode opNode = (OperatorCallNode) exprNode;
+			OperatorHandle handle = opNode.getHandle();
+			if(handle.getCalleeName().equals("toStringOrFlat") && handle.getOwnerName().equals(Type.getInternalName(Operator.class))) {
+				ExprNode argNode = opNode.getNodeList().get(0);
+				Type argTypeDesc = TypeUtils.toTypeDescriptor(argNode.getType());
+				if(handle.getParamTypeList().get(0) instanceof PrimitiveType) {
+					this.generateCode(argNode);
+					return argTypeDesc;
+				}
+				if(flatArrayTypes.contains(argTypeDesc.getInternalName())) {
+					this.generateCode(argNode);
+					mBuilder.invokeVirtual(argTypeDesc, new Method("flat", Type.getType(String.class), new Type[]{}));
+					return Type.getType(String.class);
+				}
+			}
+		}
+		this.generateCode(exprNode);
+		return Type.getType(String.class);
+	}
+
+
 	@Override
 	public Void visit(ArrayNode node) {
 		int size = node.getNodeList().size();
@@ -292,9 +353,10 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 	@Override
 	public Void visit(MapNode node) {
 		int size = node.getKeyList().size();
+		DSType valueType = ((GenericType) node.getType()).getElementTypeList().get(0);
 		Type elementTypeDesc = TypeUtils.toTypeDescriptor(node.getValueList().get(0).getType());
 		Type keyTypeDesc = Type.getType(String.class);
-		Type valueTypeDesc = Type.getType(Object.class);
+		Type valueTypeDesc = valueType instanceof PrimitiveType ? elementTypeDesc : Type.getType(Object.class);
 		Type mapClassDesc = TypeUtils.toTypeDescriptor(node.getType());
 
 		GeneratorAdapter adapter = this.getCurrentMethodBuilder();
@@ -316,10 +378,12 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 			adapter.dup();
 			adapter.push(i);
 			this.generateCode(node.getValueList().get(i));
-			adapter.box(elementTypeDesc);
+			if(!(valueType instanceof PrimitiveType)) {
+				adapter.box(elementTypeDesc);
+			}
 			adapter.arrayStore(valueTypeDesc);
 		}
-		adapter.invokeConstructor(mapClassDesc, TypeUtils.toMapConstructorDescriptor());
+		adapter.invokeConstructor(mapClassDesc, TypeUtils.toMapConstructorDescriptor(valueType));
 		return null;
 	}
 
@@ -429,6 +493,14 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 
 	@Override
 	public Void visit(OperatorCallNode node) {
+		if(this.generateRegexMatchWithLiteral(node)) {
+			return null;
+		}
+		IntrinsicOperator intrinsicOp = IntrinsicOperator.lookup(node.getHandle());
+		if(intrinsicOp != null) {
+			intrinsicOp.generate(this.getCurrentMethodBuilder(), this.generateIntrinsicOperands(node));
+			return null;
+		}
 		for(Node paramNode : node.getNodeList()) {
 			this.generateCode(paramNode);
 		}
@@ -436,8 +508,102 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		return null;
 	}
 
+	/**
+	 * if regex operand of =~ or !~ is string literal, match with pattern precompiled in static field.
+	 * @param node
+	 * @return
+	 * - if not regex match or regex is not valid literal, return false.
+	 */
+	private boolean generateRegexMatchWithLiteral(OperatorCallNode node) {
+		OperatorHandle handle = node.getHandle();
+		String calleeName = handle.getCalleeName();
+		if(!handle.getOwnerName().equals(Type.getInternalName(Operator.class)) || 
+				!(calleeName.equals("matchRegex") || calleeName.equals("unmatchRegex"))) {
+			return false;
+		}
+		if(!(node.getNodeList().get(1) instanceof StringValueNode)) {
+			return false;
+		}
+		String regex = ((StringValueNode) node.getNodeList().get(1)).getValue();
+		try {
+			Pattern.compile(regex);
+		} catch(PatternSyntaxException e) {
+			return false;	// always unmatched at run time.
+		}
+		MethodBuilder mBuilder = this.getCurrentMethodBuilder();
+		this.generateCode(node.getNodeList().get(0));
+		mBuilder.loadPrecompiledPattern(regex);
+		Type booleanTypeDesc = Type.BOOLEAN_TYPE;
+		Type[] paramTypeDescs = new Type[]{Type.getType(String.class), Type.getType(Pattern.class)};
+		mBuilder.invokeStatic(Type.getType(Operator.class), new Method(calleeName, booleanTypeDesc, paramTypeDescs));
+		return true;
+	}
+
+	/**
+	 * generate operands of intrinsic operator.
+	 * @param node
+	 * @return
+	 * - operand type. each operand is converted to it.
+	 */
+	private Type generateIntrinsicOperands(OperatorCallNode node) {
+		GeneratorAdapter adapter = this.getCurrentMethodBuilder();
+		Type operandType = IntrinsicOperator.getOperandType(node.getHandle());
+		List<DSType> paramTypeList = node.getHandle().getParamTypeList();
+		int size = paramTypeList.size();
+		for(int i = 0; i < size; i++) {
+			this.generateCode(node.getNodeList().get(i));
+			Type paramTypeDesc = TypeUtils.toTypeDescriptor(paramTypeList.get(i));
+			if(!paramTypeDesc.equals(operandType)) {
+				adapter.cast(paramTypeDesc, operandType);
+			}
+		}
+		return operandType;
+	}
+
+	/**
+	 * generate boolean condition and branch.
+	 * primitive comparison, not and conditional op are directly lowered to branch instruction.
+	 * @param condNode
+	 * - boolean type.
+	 * @param jumpIfTrue
+	 * - if false, jump to label when condition is false.
+	 * @param label
+	 */
+	private void generateBranch(ExprNode condNode, boolean jumpIfTrue, Label label) {
+		GeneratorAdapter adapter = this.getCurrentMethodBuilder();
+		if(condNode instanceof OperatorCallNode) {
+			OperatorCallNode opNode = (OperatorCallNode) condNode;
+			IntrinsicOperator intrinsicOp = IntrinsicOperator.lookup(opNode.getHandle());
+			if(intrinsicOp != null && intrinsicOp.isComparison()) {
+				intrinsicOp.generateJump(adapter, this.generateIntrinsicOperands(opNode), jumpIfTrue, label);
+				return;
+			}
+			if(intrinsicOp != null && intrinsicOp.isNot(IntrinsicOperator.getOperandType(opNode.getHandle()))) {
+				this.generateBranch(opNode.getNodeList().get(0), !jumpIfTrue, label);
+				return;
+			}
+		}
+		if(condNode instanceof CondOpNode) {
+			CondOpNode opNode = (CondOpNode) condNode;
+			boolean isAnd = opNode.getConditionalOp().equals("&&");
+			if(isAnd != jumpIfTrue) {	// (a && b) is false or (a || b) is true
+				this.generateBranch(opNode.getLeftNode(), jumpIfTrue, label);
+				this.generateBranch(opNode.getRightNode(), jumpIfTrue, label);
+			} else {
+				Label skipLabel = adapter.newLabel();
+				this.generateBranch(opNode.getLeftNode(), !jumpIfTrue, skipLabel);
+				this.generateBranch(opNode.getRightNode(), jumpIfTrue, label);
+				adapter.mark(skipLabel);
+			}
+			return;
+		}
+		this.generateCode(condNode);
+		adapter.ifZCmp(jumpIfTrue ? GeneratorAdapter.NE : GeneratorAdapter.EQ, label);
+	}
+
 	protected void generateAsFuncCall(ApplyNode node) {
 		MethodHandle handle = node.getHandle();
+		// top level function is directly called. function object is only used for first-class function value.
 		if(!(handle instanceof StaticFunctionHandle)) {
 			this.generateCode(node.getRecvNode());
 		}
@@ -482,35 +648,14 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 	@Override
 	public Void visit(CondOpNode node) {
 		GeneratorAdapter adapter = this.getCurrentMethodBuilder();
-		// generate and.
-		if(node.getConditionalOp().equals("&&")) {
-			Label rightLabel = adapter.newLabel();
-			Label mergeLabel = adapter.newLabel();
-			// and left
-			this.generateCode(node.getLeftNode());
-			adapter.push(true);
-			adapter.ifCmp(Type.BOOLEAN_TYPE, GeneratorAdapter.EQ, rightLabel);
-			adapter.push(false);
-			adapter.goTo(mergeLabel);
-			// and right
-			adapter.mark(rightLabel);
-			this.generateCode(node.getRightNode());
-			adapter.mark(mergeLabel);
-		// generate or
-		} else {
-			Label rightLabel = adapter.newLabel();
-			Label mergeLabel = adapter.newLabel();
-			// or left
-			this.generateCode(node.getLeftNode());
-			adapter.push(true);
-			adapter.ifCmp(Type.BOOLEAN_TYPE, GeneratorAdapter.NE, rightLabel);
-			adapter.push(true);
-			adapter.goTo(mergeLabel);
-			// or right
-			adapter.mark(rightLabel);
-			this.generateCode(node.getRightNode());
-			adapter.mark(mergeLabel);
-		}
+		Label falseLabel = adapter.newLabel();
+		Label mergeLabel = adapter.newLabel();
+		this.generateBranch(node, false, falseLabel);
+		adapter.push(true);
+		adapter.goTo(mergeLabel);
+		adapter.mark(falseLabel);
+		adapter.push(false);
+		adapter.mark(mergeLabel);
 		return null;
 	}
 
@@ -693,7 +838,7 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 	@Override
 	public Void visit(BlockNode node) {
 		for(Node targetNode : node.getNodeList()) {
-			this.generateCode(targetNode);
+			this.generateStatement(targetNode);
 			this.createPopInsIfExprNode(targetNode);
 		}
 		return null;
@@ -738,6 +883,14 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 
 	@Override
 	public Void visit(ForNode node) {
+		MethodBuilder mBuilder = this.getCurrentMethodBuilder();
+		Label promotionLabel = mBuilder.enterPromotionScope(node.getPromotedVarList());
+		this.generateFor(node);
+		mBuilder.exitPromotionScope(promotionLabel);
+		return null;
+	}
+
+	private void generateFor(ForNode node) {
 		// init label
 		MethodBuilder mBuilder = this.getCurrentMethodBuilder();
 		Label continueLabel = mBuilder.newLabel();
@@ -750,9 +903,7 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		this.createPopInsIfExprNode(node.getInitNode());
 		// cond
 		mBuilder.mark(continueLabel);
-		mBuilder.push(true);
-		this.generateCode(node.getCondNode());
-		mBuilder.ifCmp(Type.BOOLEAN_TYPE, GeneratorAdapter.NE, breakLabel);
+		this.generateBranch(node.getCondNode(), false, breakLabel);
 		// block
 		this.generateBlockWithCurrentScope(node.getBlockNode());
 		// iter
@@ -764,51 +915,94 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		mBuilder.exitScope();
 		// remove label
 		mBuilder.getLoopLabels().pop();
-		return null;
 	}
 
 	@Override
 	public Void visit(ForInNode node) {
+		MethodBuilder mBuilder = this.getCurrentMethodBuilder();
+		Label promotionLabel = mBuilder.enterPromotionScope(node.getPromotedVarList());
+		this.generateForIn(node);
+		mBuilder.exitPromotionScope(promotionLabel);
+		return null;
+	}
+
+	/**
+	 * generate counted loop over array elements.
+	 * visit elements by index up to size at loop start, so elements added in loop are not visited.
+	 * current size and internal buffer are checked in each iteration,
+	 * so loop stops if elements are removed (like indexed loop), and always reads current value.
+	 * @param node
+	 */
+	private void generateForIn(ForInNode node) {
 		// init label
 		MethodBuilder mBuilder = this.getCurrentMethodBuilder();
+		Label condLabel = mBuilder.newLabel();
 		Label continueLabel = mBuilder.newLabel();
 		Label breakLabel = mBuilder.newLabel();
 		mBuilder.getLoopLabels().push(new GenericPair<Label, Label>(breakLabel, continueLabel));
 
 		mBuilder.enterScope();
 		// init
+		Type arrayTypeDesc = TypeUtils.toTypeDescriptor(node.getExprNode().getType());
+		DSType elementType = node.getElementType();
+		Type elementTypeDesc = TypeUtils.toTypeDescriptor(elementType);
+		Type valueTypeDesc = elementType instanceof PrimitiveType ? elementTypeDesc : Type.getType(Object.class);
+		Type valuesTypeDesc = Type.getType("[" + valueTypeDesc.getDescriptor());
+
+		Method sizeMethod = new Method("size", Type.LONG_TYPE, new Type[]{});
 		this.generateCode(node.getExprNode());
 		mBuilder.dup();
-		node.getResetHandle().call(mBuilder);
-		// cond
-		mBuilder.mark(continueLabel);
-		mBuilder.dup();
-		node.getHasNextHandle().call(mBuilder);
-		mBuilder.push(true);
-		mBuilder.ifCmp(Type.BOOLEAN_TYPE, GeneratorAdapter.NE, breakLabel);
-		// block
-		mBuilder.dup();
-		node.getNextHandle().call(mBuilder);
-		DSType varType = node.getNextHandle().getReturnType();
-		mBuilder.createNewVarAndStoreValue(node.getInitName(), varType);
+		mBuilder.invokeVirtual(arrayTypeDesc, sizeMethod);
+		mBuilder.cast(Type.LONG_TYPE, Type.INT_TYPE);
+		int sizeIndex = mBuilder.createNewHiddenVarAndStoreValue(Type.INT_TYPE);
+		int arrayIndex = mBuilder.createNewHiddenVarAndStoreValue(arrayTypeDesc);
+		mBuilder.push(0);
+		int indexIndex = mBuilder.createNewHiddenVarAndStoreValue(Type.INT_TYPE);
+		// cond (index < size at loop start && index < current size)
+		mBuilder.mark(condLabel);
+		mBuilder.visitVarInsn(ILOAD, indexIndex);
+		mBuilder.visitVarInsn(ILOAD, sizeIndex);
+		mBuilder.ifICmp(GeneratorAdapter.GE, breakLabel);
+		mBuilder.visitVarInsn(ILOAD, indexIndex);
+		mBuilder.visitVarInsn(ALOAD, arrayIndex);
+		mBuilder.invokeVirtual(arrayTypeDesc, sizeMethod);
+		mBuilder.cast(Type.LONG_TYPE, Type.INT_TYPE);
+		mBuilder.ifICmp(GeneratorAdapter.GE, breakLabel);
+		// block (buffer may be replaced by add, insert or clear)
+		mBuilder.visitVarInsn(ALOAD, arrayIndex);
+		mBuilder.invokeVirtual(arrayTypeDesc, new Method("getValues", valuesTypeDesc, new Type[]{}));
+		mBuilder.visitVarInsn(ILOAD, indexIndex);
+		mBuilder.arrayLoad(valueTypeDesc);
+		if(!valueTypeDesc.equals(elementTypeDesc)) {
+			mBuilder.checkCast(elementTypeDesc);
+		}
+		mBuilder.createNewVarAndStoreValue(node.getInitName(), elementType);
 		this.generateBlockWithCurrentScope(node.getBlockNode());
 		// iter
-		mBuilder.goTo(continueLabel);
+		mBuilder.mark(continueLabel);
+		mBuilder.visitIincInsn(indexIndex, 1);
+		mBuilder.goTo(condLabel);
 		mBuilder.mark(breakLabel);
 
 		mBuilder.exitScope();
-		mBuilder.pop();
 		// remove label
 		mBuilder.getLoopLabels().pop();
-		return null;
 	}
 
 	@Override
 	public Void visit(WhileNode node) {
+		MethodBuilder mBuilder = this.getCurrentMethodBuilder();
+		Label promotionLabel = mBuilder.enterPromotionScope(node.getPromotedVarList());
 		if(node.isAsDoWhile()) {
 			this.generateDoWhile(node);
-			return null;
+		} else {
+			this.generateWhile(node);
 		}
+		mBuilder.exitPromotionScope(promotionLabel);
+		return null;
+	}
+
+	private void generateWhile(WhileNode node) {
 		// init label
 		MethodBuilder mBuilder = this.getCurrentMethodBuilder();
 		Label continueLabel = mBuilder.newLabel();
@@ -816,16 +1010,13 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		mBuilder.getLoopLabels().push(new GenericPair<Label, Label>(breakLabel, continueLabel));
 
 		mBuilder.mark(continueLabel);
-		mBuilder.push(true);
-		this.generateCode(node.getCondNode());
-		mBuilder.ifCmp(Type.BOOLEAN_TYPE, GeneratorAdapter.NE, breakLabel);
+		this.generateBranch(node.getCondNode(), false, breakLabel);
 		this.generateBlockWithNewScope(node.getBlockNode());
 		mBuilder.goTo(continueLabel);
 		mBuilder.mark(breakLabel);
 
 		// remove label
 		mBuilder.getLoopLabels().pop();
-		return null;
 	}
 
 	private void generateDoWhile(WhileNode node) {
@@ -839,10 +1030,7 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		mBuilder.mark(enterLabel);
 		this.generateBlockWithNewScope(node.getBlockNode());
 		mBuilder.mark(continueLabel);
-		mBuilder.push(true);
-		this.generateCode(node.getCondNode());
-		mBuilder.ifCmp(Type.BOOLEAN_TYPE, GeneratorAdapter.NE, breakLabel);
-		mBuilder.goTo(enterLabel);
+		this.generateBranch(node.getCondNode(), true, enterLabel);
 		mBuilder.mark(breakLabel);
 
 		// remove label
@@ -855,9 +1043,7 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		Label elseLabel = adapter.newLabel();
 		Label mergeLabel = adapter.newLabel();
 		// if cond
-		this.generateCode(node.getCondNode());
-		adapter.push(true);
-		adapter.ifCmp(Type.BOOLEAN_TYPE, GeneratorAdapter.NE, elseLabel);
+		this.generateBranch(node.getCondNode(), false, elseLabel);
 		// then block
 		this.generateBlockWithNewScope(node.getThenBlockNode());
 		adapter.goTo(mergeLabel);
@@ -901,7 +1087,7 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		mBuilder.mark(labels.getEndLabel());
 
 		List<Node> nodeList = node.getTryBlockNode().getNodeList();
-		if(!(nodeList.get(nodeList.size() - 1) instanceof BlockEndNode)) {
+		if(nodeList.isEmpty() || !(nodeList.get(nodeList.size() - 1) instanceof BlockEndNode)) {	// block may be emptied by optimizer
 			mBuilder.jumpToFinally();
 		}
 		mBuilder.goTo(mergeLabel);
@@ -941,7 +1127,7 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 
 		// jump to finally
 		List<Node> nodeList = node.getCatchBlockNode().getNodeList();
-		if(!(nodeList.get(nodeList.size() - 1) instanceof BlockEndNode)) {
+		if(nodeList.isEmpty() || !(nodeList.get(nodeList.size() - 1) instanceof BlockEndNode)) {	// block may be emptied by optimizer
 			mBuilder.jumpToFinally();
 		}
 
@@ -1041,7 +1227,7 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 
 	@Override
 	public Void visit(FunctionNode node) {
-		ClassBuilder classBuilder = new ClassBuilder(node.getHolderType(), this.getSourceName(node.getToken()));
+		ClassBuilder classBuilder = new ClassBuilder(node.getHolderType(), this.getSourceName(node.getToken()), this.classLoader);
 		// create static field.
 		StaticFieldHandle fieldHandle = node.getHolderType().getFieldHandle();
 		Type fieldTypeDesc = TypeUtils.toTypeDescriptor(fieldHandle.getFieldType());
@@ -1062,11 +1248,11 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		mBuilder.exitScope();
 		this.methodBuilders.pop().endMethod();
 
-		// generate interface method
+		// generate interface method. always call own static method, even if function is redefinable.
 		MethodHandle handle = ((FunctionType)node.getHolderType().getFieldHandle().getFieldType()).getHandle();
 		mBuilder = classBuilder.createNewMethodBuilder(handle);
 		mBuilder.loadArgs();
-		node.getHolderType().getFuncHandle().call(mBuilder);
+		mBuilder.invokeStatic(TypeUtils.toTypeDescriptor(node.getHolderType()), node.getHolderType().getFuncHandle().getMethodDesc());
 		mBuilder.returnValue();
 		mBuilder.endMethod();
 
@@ -1079,8 +1265,7 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		adapter.endMethod();
 
 		// generate static initializer
-		Method cinitDesc = Method.getMethod("void <clinit> ()");
-		adapter = new GeneratorAdapter(ACC_PUBLIC | ACC_STATIC, cinitDesc, null, null, classBuilder);
+		adapter = classBuilder.createStaticInitializer();
 		Type ownerType = TypeUtils.toTypeDescriptor(fieldHandle.getOwnerType());
 		adapter.newInstance(ownerType);
 		adapter.dup();
@@ -1089,7 +1274,10 @@ public class JavaByteCodeGen implements NodeVisitor<Void>, Opcodes {
 		adapter.returnValue();
 		adapter.endMethod();
 
-		classBuilder.generateClass(this.classLoader);
+		Class<?> holderClass = classBuilder.generateClass(this.classLoader);
+		if(node.getHolderType().isRedefinable()) {
+			FunctionCallSite.link(node.getFuncName(), holderClass, node.getHolderType().getFuncHandle().getMethodDesc());
+		}
 		return null;
 	}
 
@@ -0,0 +1,148 @@
+package dshell.internal.codegen;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import dshell.internal.lib.ByteCodeRecorder.Record;
+import dshell.internal.lib.ByteCodeRecorder.RecordKind;
+import dshell.internal.lib.GlobalVariableTable;
+import dshell.internal.lib.Utils;
+import dshell.main.ScriptRunner;
+
+/**
+ * write compiled script to runnable jar.
+ * jar contains generated classes (including holder class of global variable), script index and Main class.
+ * Main class calls ScriptRunner, so jar requires only runtime of dshell (Class-Path of manifest).
+ * Class-Path is relative to jar, so dshell.jar must be placed in same directory as jar.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class ScriptJarWriter implements Opcodes {
+	public final static String mainClassName = "Main";
+
+	private final String scriptName;
+	private final List<Record> records;
+
+	/**
+	 *
+	 * @param scriptName
+	 * @param records
+	 * - result of ExecutionEngine#compile
+	 */
+	public ScriptJarWriter(String scriptName, List<Record> records) {
+		this.scriptName = scriptName;
+		this.records = records;
+	}
+
+	/**
+	 * write jar file.
+	 * @param outputName
+	 * - jar file name.
+	 * @throws IOException
+	 */
+	public void write(String outputName) throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.put(Attributes.Name.MAIN_CLASS, mainClassName);
+		String runtimeClassPath = getRuntimeClassPath();
+		if(runtimeClassPath != null) {
+			attributes.put(Attributes.Name.CLASS_PATH, runtimeClassPath);
+		}
+		try(JarOutputStream output = new JarOutputStream(new FileOutputStream(outputName), manifest)) {
+			StringBuilder index = new StringBuilder();
+			index.append("script ").append(this.scriptName).append('\n');
+			Set<String> classNames = new HashSet<>();
+			for(Record record : this.records) {
+				if(record.getKind() == RecordKind.globalVar) {
+					continue;
+				}
+				if(record.getKind() == RecordKind.toplevelClass) {
+					index.append("toplevel ").append(record.getName()).append('\n');
+				}
+				classNames.add(record.getName());
+				writeEntry(output, record.getName().replace('.', '/') + ".class", record.getByteCode());
+			}
+			// holder classes of global variables.
+			// holder classes created before compilation (STDIN, ARGV, etc.) are not recorded, so regenerate them.
+			for(Map.Entry<String, Class<?>> entry : GlobalVariableTable.getEntries().entrySet()) {
+				Class<?> holderClass = entry.getValue();
+				index.append("var ").append(entry.getKey()).append(' ').append(holderClass.getName()).append('\n');
+				if(!classNames.contains(holderClass.getName())) {
+					Type fieldTypeDesc;
+					try {
+						fieldTypeDesc = Type.getType(holderClass.getField(GlobalVariableTable.holderFieldName).getType());
+					}
+					catch(NoSuchFieldException e) {
+						throw new IOException("broken holder class: " + holderClass.getName());
+					}
+					String internalName = Type.getInternalName(holderClass);
+					writeEntry(output, internalName + ".class", ClassBuilder.generateGlobalVarHolder(internalName, fieldTypeDesc));
+				}
+			}
+			writeEntry(output, ScriptRunner.indexEntryName, index.toString().getBytes("UTF-8"));
+			writeEntry(output, mainClassName + ".class", generateMainClass());
+		}
+	}
+
+	/**
+	 * get Class-Path entry of runtime jar. it is relative url (file name of runtime jar),
+	 * so jar does not depend on directory layout of compilation host.
+	 * @return
+	 * - if runtime is not jar (class directory), return null.
+	 */
+	private static String getRuntimeClassPath() {
+		String runtimePath = Utils.getRuntimeLibraryPath();
+		if(runtimePath == null || !runtimePath.endsWith(".jar")) {
+			return null;
+		}
+		try {	// percent-encode file name
+			return new URI(null, new File(runtimePath).getName(), null).getRawPath();
+		}
+		catch(URISyntaxException e) {
+			return null;
+		}
+	}
+
+	private static void writeEntry(JarOutputStream output, String entryName, byte[] data) throws IOException {
+		output.putNextEntry(new JarEntry(entryName));
+		output.write(data);
+		output.closeEntry();
+	}
+
+	/**
+	 * generate Main class.
+	 * public static void main(String[] args) { ScriptRunner.run(Main.class, args); }
+	 * @return
+	 */
+	private static byte[] generateMainClass() {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		writer.visit(V1_7, ACC_PUBLIC | ACC_FINAL, mainClassName, null, "java/lang/Object", null);
+		GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC | ACC_STATIC,
+				Method.getMethod("void main(String[])"), null, null, writer);
+		adapter.push(Type.getObjectType(mainClassName));
+		adapter.loadArg(0);
+		adapter.invokeStatic(Type.getType(ScriptRunner.class), Method.getMethod("void run(Class, String[])"));
+		adapter.returnValue();
+		adapter.endMethod();
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+}
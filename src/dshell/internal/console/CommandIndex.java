@@ -0,0 +1,239 @@
+package dshell.internal.console;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dshell.internal.lib.Utils;
+import dshell.internal.process.BuiltinSymbol;
+
+/**
+ * prefix trie of command name for completion.
+ * PATH directories are indexed on background thread, and only modified directories are scanned again.
+ * completion is answered from already indexed commands, so it never waits for indexing.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class CommandIndex {
+	/**
+	 * interval of checking modified time of PATH directory. (ms)
+	 */
+	private final static long refreshInterval = 1000;
+
+	private final TrieNode root;
+
+	/**
+	 * key is PATH directory. only accessed from index thread.
+	 */
+	private final Map<String, DirEntry> dirEntryMap;
+
+	private final ExecutorService indexer;
+
+	/**
+	 * if true, refresh task is running or queued.
+	 */
+	private final AtomicBoolean refreshing;
+
+	private volatile long lastRefreshTime = 0;
+
+	public CommandIndex() {
+		this.root = new TrieNode();
+		this.dirEntryMap = new HashMap<>();
+		this.indexer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "dshell-command-index");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		this.refreshing = new AtomicBoolean(false);
+		// add builtin command
+		for(String symbol : BuiltinSymbol.getCommandSymbolList()) {
+			this.add(symbol);
+		}
+		this.requestRefresh();
+	}
+
+	/**
+	 * start refresh on background thread, if interval is elapsed from previous refresh.
+	 * does not block.
+	 */
+	public void requestRefresh() {
+		long currentTime = System.currentTimeMillis();
+		if(currentTime - this.lastRefreshTime < refreshInterval) {
+			return;
+		}
+		if(!this.refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		this.lastRefreshTime = currentTime;
+		this.indexer.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					refresh();
+				}
+				finally {
+					refreshing.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * collect command names starting with prefix.
+	 * @param prefix
+	 * @param candidates
+	 * - sorted command names are added.
+	 */
+	public synchronized void collectCandidates(String prefix, SortedSet<String> candidates) {
+		TrieNode node = this.root;
+		int size = prefix.length();
+		for(int i = 0; i < size && node != null; i++) {
+			node = node.getChild(prefix.charAt(i));
+		}
+		if(node != null) {
+			collect(node, new StringBuilder(prefix), candidates);
+		}
+	}
+
+	private static void collect(TrieNode node, StringBuilder sBuilder, SortedSet<String> candidates) {
+		if(node.refCount > 0) {
+			candidates.add(sBuilder.toString());
+		}
+		if(node.children == null) {
+			return;
+		}
+		for(Map.Entry<Character, TrieNode> entry : node.children.entrySet()) {
+			sBuilder.append(entry.getKey().charValue());
+			collect(entry.getValue(), sBuilder, candidates);
+			sBuilder.setLength(sBuilder.length() - 1);
+		}
+	}
+
+	private synchronized void add(String name) {
+		TrieNode node = this.root;
+		int size = name.length();
+		for(int i = 0; i < size; i++) {
+			node = node.getOrCreateChild(name.charAt(i));
+		}
+		node.refCount++;
+	}
+
+	private synchronized void remove(String name) {
+		TrieNode node = this.root;
+		int size = name.length();
+		for(int i = 0; i < size && node != null; i++) {
+			node = node.getChild(name.charAt(i));
+		}
+		if(node != null && node.refCount > 0) {
+			node.refCount--;
+		}
+	}
+
+	/**
+	 * called from index thread.
+	 */
+	private void refresh() {
+		Set<String> pathDirs = new LinkedHashSet<>();
+		for(String path : Utils.getEnv("PATH").split(":")) {
+			pathDirs.add(Utils.resolveHome(path));
+		}
+		// remove directory which is removed from PATH.
+		Iterator<Map.Entry<String, DirEntry>> iterator = this.dirEntryMap.entrySet().iterator();
+		while(iterator.hasNext()) {
+			Map.Entry<String, DirEntry> entry = iterator.next();
+			if(!pathDirs.contains(entry.getKey())) {
+				for(String name : entry.getValue().names) {
+					this.remove(name);
+				}
+				iterator.remove();
+			}
+		}
+		// scan new or modified directory.
+		for(String path : pathDirs) {
+			File dir = new File(path);
+			long modifiedTime = dir.lastModified();
+			DirEntry oldEntry = this.dirEntryMap.get(path);
+			if(oldEntry != null && oldEntry.modifiedTime == modifiedTime) {
+				continue;
+			}
+			DirEntry newEntry = new DirEntry(modifiedTime, scanDir(dir));
+			if(oldEntry != null) {
+				for(String name : oldEntry.names) {
+					this.remove(name);
+				}
+			}
+			for(String name : newEntry.names) {
+				this.add(name);
+			}
+			this.dirEntryMap.put(path, newEntry);
+		}
+	}
+
+	private static List<String> scanDir(File dir) {
+		List<String> names = new ArrayList<>();
+		File[] files = dir.listFiles();
+		if(files == null) {
+			return names;
+		}
+		for(File file : files) {
+			if(!file.isDirectory() && file.canExecute()) {
+				names.add(file.getName());
+			}
+		}
+		return names;
+	}
+
+	private static class TrieNode {
+		/**
+		 * key is next character. may be null.
+		 */
+		private TreeMap<Character, TrieNode> children;
+
+		/**
+		 * number of sources (builtin or PATH directory) which have this command.
+		 * if 0, this node is not command name.
+		 */
+		private int refCount = 0;
+
+		private TrieNode getChild(char ch) {
+			return this.children == null ? null : this.children.get(ch);
+		}
+
+		private TrieNode getOrCreateChild(char ch) {
+			if(this.children == null) {
+				this.children = new TreeMap<>();
+			}
+			TrieNode child = this.children.get(ch);
+			if(child == null) {
+				child = new TrieNode();
+				this.children.put(ch, child);
+			}
+			return child;
+		}
+	}
+
+	private static class DirEntry {
+		private final long modifiedTime;
+		private final List<String> names;
+
+		private DirEntry(long modifiedTime, List<String> names) {
+			this.modifiedTime = modifiedTime;
+			this.names = names;
+		}
+	}
+}
@@ -1,11 +1,11 @@
 package dshell.internal.console;
 
 import java.util.List;
+import java.util.SortedSet;
 import java.util.TreeSet;
 
+import dshell.internal.exe.ExecutionEngine;
 import dshell.internal.lib.RuntimeContext;
-import dshell.internal.lib.Utils;
-import dshell.internal.process.BuiltinSymbol;
 import jline.Completor;
 
 /**
@@ -14,16 +14,20 @@ import jline.Completor;
  *
  */
 public class DShellCompletor implements Completor {
-	private final jline.SimpleCompletor commandCompletor;
+	private final CommandCompletor commandCompletor;
 	private final jline.SimpleCompletor envCompletor;
 	private final jline.SimpleCompletor importCompletor;
 	private final DShellFileNameCompletor fileNameCompletor;
 	private final jline.NullCompletor nullCompletor;
 	private final jline.ArgumentCompletor.ArgumentDelimiter delimiter;
 
-	public DShellCompletor() {
-		this.commandCompletor = new jline.SimpleCompletor("dummy");
-		this.commandCompletor.setCandidates(getCommandSet());
+	/**
+	 * 
+	 * @param engine
+	 * - used for function name completion.
+	 */
+	public DShellCompletor(ExecutionEngine engine) {
+		this.commandCompletor = new CommandCompletor(new CommandIndex(), engine);
 		this.envCompletor = new jline.SimpleCompletor("dummy");
 		this.envCompletor.setCandidates(RuntimeContext.getInstance().getEnvSet());
 		this.importCompletor = new jline.SimpleCompletor(new String[]{"command", "env"});
@@ -49,16 +53,6 @@ public class DShellCompletor implements Completor {
 		return ret + argList.getBufferPosition() - argPos;
 	}
 
-	private static TreeSet<String> getCommandSet() {
-		TreeSet<String> commandSet = Utils.getCommandSetFromPath();
-		// add builtin command
-		List<String> symbolList = BuiltinSymbol.getCommandSymbolList();
-		for(String symbol : symbolList) {
-			commandSet.add(symbol);
-		}
-		return commandSet;
-	}
-
 	private jline.Completor selectCompletor(final int argIndex, final String[] args) {
 		if(argIndex == 0 && args.length == 0) {
 			return this.nullCompletor;
@@ -88,3 +82,43 @@ public class DShellCompletor implements Completor {
 		return this.fileNameCompletor;
 	}
 }
+
+/**
+ * complete command name (builtin and PATH) from command index,
+ * or top level function name defined in current session if starting with '$'.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+class CommandCompletor implements Completor {
+	private final CommandIndex commandIndex;
+	private final ExecutionEngine engine;
+
+	CommandCompletor(CommandIndex commandIndex, ExecutionEngine engine) {
+		this.commandIndex = commandIndex;
+		this.engine = engine;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public int complete(String buffer, int cursor, List candidates) {
+		String prefix = buffer == null ? "" : buffer;
+		SortedSet<String> matches = new TreeSet<>();
+		String suffix = " ";
+		if(prefix.startsWith("$")) {
+			for(String funcName : this.engine.getFunctionNames()) {
+				if(("$" + funcName).startsWith(prefix)) {
+					matches.add("$" + funcName);
+				}
+			}
+			suffix = "(";
+		} else {
+			this.commandIndex.requestRefresh();
+			this.commandIndex.collectCandidates(prefix, matches);
+		}
+		candidates.addAll(matches);
+		if(candidates.size() == 1) {
+			candidates.set(0, candidates.get(0) + suffix);
+		}
+		return candidates.isEmpty() ? -1 : 0;
+	}
+}
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ProcessBuilder.Redirect;
 
+import dshell.internal.exe.ExecutionEngine;
 import dshell.internal.lib.RuntimeContext;
 import dshell.internal.lib.Utils;
 import jline.Terminal;
@@ -18,13 +19,15 @@ public class DShellConsole extends AbstractConsole {
 
 	private final static String welcomeMessage = "Welcome to D-Shell <https://github.com/konoha-project/dshell>";
 
-	public DShellConsole() {
+	public DShellConsole(ExecutionEngine engine) {
 		try {
+			// save original tty config before jline changes it
+			byte[] originalTermios = TermiosConfigurator.saveTermios();
 			this.consoleReader = new jline.ConsoleReader();
-			this.consoleReader.addCompletor(new DShellCompletor());
+			this.consoleReader.addCompletor(new DShellCompletor(engine));
 			this.lineNumber = 1;
 			// save jline tty config
-			this.ttyConfig = TTYConfigurator.initConfigurator(this.consoleReader.getTerminal());
+			this.ttyConfig = TTYConfigurator.initConfigurator(this.consoleReader.getTerminal(), originalTermios);
 			System.out.println(welcomeMessage);
 		}
 		catch (IOException e) {
@@ -93,7 +96,8 @@ class ShutdownOp extends Thread {
 }
 
 /**
- * for tty configuration load/store
+ * for tty configuration load/store.
+ * use stty command. only used if native termios is not available.
  * @author skgchxngsxyz-opensuse
  *
  */
@@ -101,7 +105,7 @@ class TTYConfigurator {
 	private final String originalTTYConfig;
 	private final String jlineTTYConfig;
 
-	private TTYConfigurator(String originalTTYConfig, String jlineTTYConfig) {
+	protected TTYConfigurator(String originalTTYConfig, String jlineTTYConfig) {
 		this.originalTTYConfig = originalTTYConfig;
 		this.jlineTTYConfig = jlineTTYConfig;
 	}
@@ -148,12 +152,23 @@ class TTYConfigurator {
 		return Utils.removeNewLine(streamBuffer.toString());
 	}
 
-	public static TTYConfigurator initConfigurator(Terminal term) {
+	/**
+	 * 
+	 * @param term
+	 * @param originalTermios
+	 * - tty config saved before jline initialization. if null, use stty command.
+	 * @return
+	 */
+	public static TTYConfigurator initConfigurator(Terminal term, byte[] originalTermios) {
 		if(term instanceof UnixTerminal && System.console() != null) {
+			Runtime.getRuntime().addShutdownHook(new ShutdownOp());
+			byte[] jlineTermios = TermiosConfigurator.saveTermios();
+			if(originalTermios != null && jlineTermios != null) {
+				return new TermiosConfigurator(originalTermios, jlineTermios);
+			}
 			UnixTerminal unixTerm = (UnixTerminal)term;
 			String originalTTYConfig = (String) Utils.getValue(unixTerm, "ttyConfig");
 			String jlineTTYConfig = saveTTYConfig();
-			Runtime.getRuntime().addShutdownHook(new ShutdownOp());
 			return new TTYConfigurator(originalTTYConfig, jlineTTYConfig);
 		}
 		return new NullConfigurator();
@@ -171,3 +186,62 @@ class TTYConfigurator {
 		}
 	}
 }
+
+/**
+ * for tty configuration load/store.
+ * call tcgetattr/tcsetattr of stdin directly. does not fork stty command.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+class TermiosConfigurator extends TTYConfigurator {
+	private final static int STDIN_FILENO = 0;
+	private final static int TCSADRAIN = 1;
+
+	/**
+	 * larger than struct termios of Linux and BSD. contents are opaque.
+	 */
+	private final static int termiosSize = 256;
+
+	private final byte[] originalTermios;
+	private final byte[] jlineTermios;
+
+	TermiosConfigurator(byte[] originalTermios, byte[] jlineTermios) {
+		super(null, null);
+		this.originalTermios = originalTermios;
+		this.jlineTermios = jlineTermios;
+	}
+
+	@Override
+	public void loadOriginalConfig() {
+		TermiosLibraryWrapper.INSTANCE.tcsetattr(STDIN_FILENO, TCSADRAIN, this.originalTermios);
+	}
+
+	@Override
+	public void loadJlineConfig() {
+		TermiosLibraryWrapper.INSTANCE.tcsetattr(STDIN_FILENO, TCSADRAIN, this.jlineTermios);
+	}
+
+	/**
+	 * get current termios of stdin.
+	 * @return
+	 * - if stdin is not tty or native library is not available, return null.
+	 */
+	public static byte[] saveTermios() {
+		try {
+			byte[] termios = new byte[termiosSize];
+			if(TermiosLibraryWrapper.INSTANCE.tcgetattr(STDIN_FILENO, termios) == 0) {
+				return termios;
+			}
+		}
+		catch(LinkageError e) {	// native library is not available
+		}
+		return null;
+	}
+}
+
+interface TermiosLibraryWrapper extends com.sun.jna.Library {
+	TermiosLibraryWrapper INSTANCE = (TermiosLibraryWrapper) com.sun.jna.Native.loadLibrary("c", TermiosLibraryWrapper.class);
+
+	int tcgetattr(int fd, byte[] termios);
+	int tcsetattr(int fd, int optionalActions, byte[] termios);
+}
@@ -2,14 +2,22 @@ package dshell.internal.exe;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
 
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.TokenStream;
 
+import dshell.internal.codegen.FunctionCallSite;
 import dshell.internal.codegen.JavaByteCodeGen;
+import dshell.internal.lib.ByteCodeCache;
+import dshell.internal.lib.ByteCodeRecorder;
 import dshell.internal.lib.DShellClassLoader;
+import dshell.internal.lib.GlobalVariableTable;
 import dshell.internal.lib.RuntimeContext;
+import dshell.internal.lib.ShellExit;
 import dshell.internal.lib.Utils;
+import dshell.internal.opt.ASTOptimizer;
 import dshell.internal.parser.ASTDumper;
 import dshell.internal.parser.Node;
 import dshell.internal.parser.SourceStream;
@@ -23,6 +31,7 @@ import dshell.internal.parser.error.TypeCheckException;
 import dshell.internal.parser.error.ParserErrorListener;
 import dshell.internal.parser.error.ParserErrorListener.LexerException;
 import dshell.internal.parser.error.ParserErrorListener.ParserException;
+import dshell.internal.process.TaskContext;
 import dshell.internal.type.TypePool;
 import dshell.lang.GenericArray;
 import dshell.lang.InputStream;
@@ -40,9 +49,20 @@ public class DShellEngineFactory implements EngineFactory {
 		protected final DShellClassLoader classLoader;
 		protected final TypeChecker checker;
 		protected final JavaByteCodeGen codeGen;
+		protected final ASTOptimizer optimizer;
 		protected ErrorListener listener;
 		protected EngineConfig config;
 
+		/**
+		 * if not null, record generated byte code.
+		 */
+		protected ByteCodeRecorder recorder = null;
+
+		/**
+		 * if not null, store recorded byte code to byte code cache.
+		 */
+		protected ByteCodeCache.Key cacheKey = null;
+
 		protected DShellExecutionEngine() {
 			this.lexer = new dshellLexer(null);
 			this.lexer.removeErrorListeners();
@@ -55,6 +75,7 @@ public class DShellEngineFactory implements EngineFactory {
 			this.classLoader = new DShellClassLoader(TypePool.generatedPackage);
 			this.checker = new TypeChecker(pool);
 			this.codeGen = new JavaByteCodeGen(this.classLoader);
+			this.optimizer = new ASTOptimizer();
 			this.listener = new DShellErrorListener();
 			this.config = new EngineConfig();
 
@@ -79,6 +100,7 @@ public class DShellEngineFactory implements EngineFactory {
 			this.config = config;
 			DShellClassLoader.setDump(config.is(EngineConfigRule.bytecodeDump));
 			this.codeGen.setAssertion(!this.config.is(EngineConfigRule.skipAssertion));
+			TaskContext.setPosixSpawn(this.config.is(EngineConfigRule.posixSpawn));
 		}
 
 		@Override
@@ -109,7 +131,96 @@ public class DShellEngineFactory implements EngineFactory {
 
 		@Override
 		public boolean eval(String scriptName) {
-			return this.eval(new SourceStream(scriptName), 1, false);
+			SourceStream input = new SourceStream(scriptName);
+			if(!this.enableCache()) {
+				return this.eval(input, 1, false);
+			}
+			ByteCodeCache cache = ByteCodeCache.getInstance();
+			ByteCodeCache.Key key = cache.createKey(scriptName, input.toString(), !this.config.is(EngineConfigRule.skipAssertion),
+					!this.config.is(EngineConfigRule.disableOptimization));
+			if(key == null) {
+				return this.eval(input, 1, false);
+			}
+			List<ByteCodeRecorder.Record> records = cache.load(key);
+			if(records != null) {
+				return this.evalCachedByteCode(records);
+			}
+			this.startRecording();
+			this.cacheKey = key;
+			try {
+				return this.eval(input, 1, false);
+			}
+			finally {
+				this.stopRecording();
+				this.cacheKey = null;
+			}
+		}
+
+		@Override
+		public List<ByteCodeRecorder.Record> compile(String scriptName) {
+			this.startRecording();
+			try {
+				if(!this.eval(new SourceStream(scriptName), 1, false, false)) {
+					return null;
+				}
+				this.recorder.close();
+				return this.recorder.getRecords();
+			}
+			finally {
+				this.stopRecording();
+			}
+		}
+
+		protected void startRecording() {
+			this.recorder = new ByteCodeRecorder();
+			this.classLoader.setRecorder(this.recorder);
+		}
+
+		protected void stopRecording() {
+			this.classLoader.setRecorder(null);
+			this.recorder.close();
+			this.recorder = null;
+		}
+
+		/**
+		 * if true, use byte code cache for script file.
+		 * @return
+		 */
+		protected boolean enableCache() {
+			return !this.config.is(EngineConfigRule.disableCache) && !this.config.is(EngineConfigRule.parserTrace)
+					&& !this.config.is(EngineConfigRule.parserInspect) && !this.config.is(EngineConfigRule.astDump)
+					&& !this.config.is(EngineConfigRule.onlyParsing);
+		}
+
+		/**
+		 * load cached byte code and invoke top level classes instead of parsing script.
+		 * @param records
+		 * @return
+		 * - return true, if evaluation success.
+		 */
+		protected boolean evalCachedByteCode(List<ByteCodeRecorder.Record> records) {
+			for(ByteCodeRecorder.Record record : records) {
+				switch(record.getKind()) {
+				case globalVar:
+					try {
+						GlobalVariableTable.addEntry(record.getName(), this.classLoader.loadClass(record.getHolderClassName()));
+					}
+					catch(ClassNotFoundException e) {
+						Utils.fatal(1, "not found holder class: " + record.getHolderClassName());
+					}
+					break;
+				case classDef:
+					this.classLoader.definedAndLoadClass(record.getName(), record.getByteCode());
+					break;
+				case toplevelClass:
+					Class<?> entryClass = this.classLoader.createChild().definedAndLoadClass(record.getName(), record.getByteCode());
+					if(!startExecution(entryClass)) {
+						return false;
+					}
+					break;
+				}
+			}
+			return true;
 		}
 
 		@Override
@@ -119,11 +230,14 @@ public class DShellEngineFactory implements EngineFactory {
 
 		@Override
 		public boolean eval(String source, int lineNum) {
+			this.checker.setFuncRedefinable(true);
 			return this.eval(new SourceStream("(stdin)", source), lineNum, true);
 		}
 
 		@Override
 		public void loadDShellRC() {
+			// function defined in .dshellrc can be redefined in interactive mode.
+			this.checker.setFuncRedefinable(true);
 			String dshellrcPath = Utils.getEnv("HOME") + "/.dshellrc";
 			char[] buffer = Utils.load(dshellrcPath);
 			if(buffer != null) {
@@ -131,6 +245,11 @@ public class DShellEngineFactory implements EngineFactory {
 			}
 		}
 
+		@Override
+		public Set<String> getFunctionNames() {
+			return FunctionCallSite.getFunctionNames(this.classLoader);
+		}
+
 		/**
 		 * evaluate input.
 		 * @param input
@@ -141,6 +260,20 @@ public class DShellEngineFactory implements EngineFactory {
 		 * - return true, if evaluation success.
 		 */
 		protected boolean eval(SourceStream input, int lineNum, boolean enableResultPrint) {
+			return this.eval(input, lineNum, enableResultPrint, true);
+		}
+
+		/**
+		 * evaluate or compile input.
+		 * @param input
+		 * @param lineNum
+		 * @param enableResultPrint
+		 * @param enableExecution
+		 * - if false, only generate code.
+		 * @return
+		 * - return true, if evaluation (or compilation) success.
+		 */
+		protected boolean eval(SourceStream input, int lineNum, boolean enableResultPrint, boolean enableExecution) {
 			/**
 			 * set input stream.
 			 */
@@ -187,6 +320,13 @@ public class DShellEngineFactory implements EngineFactory {
 					return false;
 				}
 
+				/**
+				 * optimize ast. dumped ast is optimized one.
+				 */
+				if(!this.config.is(EngineConfigRule.disableOptimization)) {
+					checkedNode = this.optimizer.optimizeRootNode(checkedNode);
+				}
+
 				if(this.config.is(EngineConfigRule.astDump)) {
 					ASTDumper.getInstance().convertToJson(checkedNode);
 				}
@@ -199,6 +339,14 @@ public class DShellEngineFactory implements EngineFactory {
 				 * code generation
 				 */
 				Class<?> entryClass = this.codeGen.generateTopLevelClass(checkedNode, enableResultPrint);
+				if(this.cacheKey != null && tokenStream.LA(1) == TokenStream.EOF) {
+					// all of top level classes have been generated.
+					this.recorder.close();
+					ByteCodeCache.getInstance().store(this.cacheKey, this.recorder.getRecords());
+				}
+				if(!enableExecution) {
+					continue;
+				}
 				/**
 				 * invoke
 				 */
@@ -224,6 +372,9 @@ public class DShellEngineFactory implements EngineFactory {
 				staticMethod.invoke(null);
 				return true;
 			} catch(InvocationTargetException e) {
+				if(e.getCause() instanceof ShellExit) {
+					throw (ShellExit) e.getCause();
+				}
 				if(RuntimeContext.getInstance().isDebugMode()) {
 					e.getCause().printStackTrace();
 				} else {
@@ -1,7 +1,10 @@
 package dshell.internal.exe;
 
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
+import dshell.internal.lib.ByteCodeRecorder;
 import dshell.internal.parser.error.ErrorListener;
 
 /**
@@ -52,7 +55,8 @@ public interface ExecutionEngine {
 	public boolean eval(String scriptName, String source);
 
 	/**
-	 * evaluate one line script.
+	 * evaluate one line script. used for interactive mode.
+	 * top level function can be redefined with same function type.
 	 * @param source
 	 * - target source
 	 * @param lineNum
@@ -62,11 +66,27 @@ public interface ExecutionEngine {
 	 */
 	public boolean eval(String source, int lineNum);
 
+	/**
+	 * generate byte code of script without execution.
+	 * @param scriptName
+	 * - script file name.
+	 * @return
+	 * - generated byte code and global variable entries. if compilation failed, return null.
+	 */
+	public List<ByteCodeRecorder.Record> compile(String scriptName);
+
 	/**
 	 * load .dshellrc file.
 	 */
 	public void loadDShellRC();
 
+	/**
+	 * get names of redefinable top level function. used for completion.
+	 * @return
+	 * - sorted function names.
+	 */
+	public Set<String> getFunctionNames();
+
 	public static class EngineConfig {
 		private EnumSet<EngineConfigRule> ruleSet;
 
@@ -98,6 +118,18 @@ public interface ExecutionEngine {
 			this.ruleSet.add(EngineConfigRule.skipAssertion);
 		}
 
+		public void disableCache() {
+			this.ruleSet.add(EngineConfigRule.disableCache);
+		}
+
+		public void disableOptimization() {
+			this.ruleSet.add(EngineConfigRule.disableOptimization);
+		}
+
+		public void enablePosixSpawn() {
+			this.ruleSet.add(EngineConfigRule.posixSpawn);
+		}
+
 		public boolean is(EngineConfigRule rule) {
 			return this.ruleSet.contains(rule);
 		}
@@ -110,6 +142,9 @@ public interface ExecutionEngine {
 		bytecodeDump,
 		onlyParsing,
 		skipAssertion,
+		posixSpawn,
+		disableCache,
+		disableOptimization,
 		;
 	}
 }
@@ -0,0 +1,237 @@
+package dshell.internal.lib;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import dshell.internal.lib.ByteCodeRecorder.Record;
+import dshell.internal.lib.ByteCodeRecorder.RecordKind;
+import dshell.main.DShell;
+
+/**
+ * on-disk cache of generated byte code for script file.
+ * cache file (<cache dir>/<hash of script path>.dsc) contains cache key, byte code and
+ * global variable entries in order of creation while compiling script.
+ * cache key is computed from source, script name, dshell version, runtime library (dshell.jar),
+ * assertion flag, optimization flag and global variable table state before compilation.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class ByteCodeCache {
+	private final static int magicNumber = 0x44534332;	// DSC2
+	private final static String cacheFileSuffix = ".dsc";
+	private final static Charset charset = Charset.forName("UTF-8");
+
+	/**
+	 * if null, cache is not available.
+	 */
+	private final File cacheDir;
+
+	/**
+	 * identify dshell version and runtime library, which generated code refers to.
+	 */
+	private final String runtimeId;
+
+	private ByteCodeCache() {
+		String dirName = Utils.getEnv("DSHELL_CACHE_DIR");
+		if(dirName.equals("")) {
+			String home = Utils.getEnv("HOME");
+			dirName = home.equals("") ? null : home + "/.cache/dshell";
+		}
+		this.cacheDir = dirName == null ? null : new File(dirName);
+		this.runtimeId = DShell.version + "@" + getRuntimeLibraryId();
+	}
+
+	private static class Holder {
+		private final static ByteCodeCache INSTANCE = new ByteCodeCache();
+	}
+
+	public static ByteCodeCache getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * get path and modified time of jar file (or class directory) containing dshell runtime.
+	 * @return
+	 */
+	private static String getRuntimeLibraryId() {
+		String path = Utils.getRuntimeLibraryPath();
+		if(path == null) {
+			return "unknown";
+		}
+		File file = new File(path);
+		return path + ":" + file.length() + ":" + file.lastModified();
+	}
+
+	/**
+	 * create cache key of script.
+	 * @param scriptName
+	 * @param source
+	 * - script source.
+	 * @param enableAssertion
+	 * @param enableOptimization
+	 * @return
+	 * - if cache is not available, return null.
+	 */
+	public Key createKey(String scriptName, String source, boolean enableAssertion, boolean enableOptimization) {
+		if(this.cacheDir == null) {
+			return null;
+		}
+		MessageDigest digest = newDigest();
+		update(digest, this.runtimeId);
+		update(digest, scriptName);
+		update(digest, Boolean.toString(enableAssertion));
+		update(digest, Boolean.toString(enableOptimization));
+		update(digest, GlobalVariableTable.getEntryState());
+		update(digest, source);
+		String fileName = toHexString(newDigest().digest(new File(scriptName).getAbsolutePath().getBytes(charset)));
+		return new Key(scriptName, new File(this.cacheDir, fileName + cacheFileSuffix), digest.digest());
+	}
+
+	/**
+	 * load cached records.
+	 * @param key
+	 * @return
+	 * - if cache miss, return null.
+	 */
+	public List<Record> load(Key key) {
+		List<Record> records = null;
+		String reason = "not found";
+		if(key.cacheFile.isFile()) {
+			try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(key.cacheFile)))) {
+				records = readRecords(input, key);
+				reason = "outdated";
+			}
+			catch(IOException e) {
+				reason = "broken (" + e + ")";
+			}
+		}
+		if(RuntimeContext.getInstance().isDebugMode()) {
+			System.err.println("@@@@ ByteCode Cache " + (records != null ? "Hit" : "Miss, " + reason)
+					+ ": " + key.scriptName + " -> " + key.cacheFile + " @@@@");
+		}
+		return records;
+	}
+
+	private static List<Record> readRecords(DataInputStream input, Key key) throws IOException {
+		if(input.readInt() != magicNumber) {
+			throw new IOException("invalid magic number");
+		}
+		byte[] digest = new byte[key.digest.length];
+		input.readFully(digest);
+		if(!Arrays.equals(digest, key.digest)) {
+			return null;
+		}
+		int size = input.readInt();
+		List<Record> records = new ArrayList<>(size);
+		for(int i = 0; i < size; i++) {
+			int ordinal = input.readByte();
+			if(ordinal < 0 || ordinal >= RecordKind.values().length) {
+				throw new IOException("illegal record kind: " + ordinal);
+			}
+			RecordKind kind = RecordKind.values()[ordinal];
+			String name = input.readUTF();
+			if(kind == RecordKind.globalVar) {
+				records.add(new Record(kind, name, null, input.readUTF()));
+			}
+			else {
+				byte[] byteCode = new byte[input.readInt()];
+				input.readFully(byteCode);
+				records.add(new Record(kind, name, byteCode, null));
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * write records to cache file.
+	 * @param key
+	 * @param records
+	 * - must contain all of top level classes of script.
+	 */
+	public void store(Key key, List<Record> records) {
+		File tempFile = null;
+		try {
+			if(!this.cacheDir.isDirectory() && !this.cacheDir.mkdirs()) {
+				throw new IOException("cannot create directory: " + this.cacheDir);
+			}
+			// write to temporary file and rename it, for concurrent execution of same script.
+			tempFile = File.createTempFile("dsc", ".tmp", this.cacheDir);
+			try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				output.writeInt(magicNumber);
+				output.write(key.digest);
+				output.writeInt(records.size());
+				for(Record record : records) {
+					output.writeByte(record.getKind().ordinal());
+					output.writeUTF(record.getName());
+					if(record.getKind() == RecordKind.globalVar) {
+						output.writeUTF(record.getHolderClassName());
+					}
+					else {
+						output.writeInt(record.getByteCode().length);
+						output.write(record.getByteCode());
+					}
+				}
+			}
+			if(!tempFile.renameTo(key.cacheFile)) {
+				throw new IOException("cannot rename: " + tempFile);
+			}
+			if(RuntimeContext.getInstance().isDebugMode()) {
+				System.err.println("@@@@ ByteCode Cache Stored: " + key.scriptName + " -> " + key.cacheFile + " @@@@");
+			}
+		}
+		catch(IOException e) {
+			if(tempFile != null) {
+				tempFile.delete();
+			}
+			if(RuntimeContext.getInstance().isDebugMode()) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(charset));
+		digest.update((byte) 0);
+	}
+
+	private static String toHexString(byte[] bytes) {
+		StringBuilder sBuilder = new StringBuilder();
+		for(byte b : bytes) {
+			sBuilder.append(String.format("%02x", b & 0xff));
+		}
+		return sBuilder.toString();
+	}
+
+	public static class Key {
+		private final String scriptName;
+		private final File cacheFile;
+		private final byte[] digest;
+
+		private Key(String scriptName, File cacheFile, byte[] digest) {
+			this.scriptName = scriptName;
+			this.cacheFile = cacheFile;
+			this.digest = digest;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package dshell.internal.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dshell.lang.GenericPair;
+
+/**
+ * record byte code passed to class loader and entry of global variable table, in order of creation.
+ * used for byte code cache and ahead-of-time compilation.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class ByteCodeRecorder {
+	public static enum RecordKind {
+		globalVar,
+		classDef,
+		toplevelClass,
+	}
+
+	private final List<Record> records;
+	private final List<GenericPair<String, String>> entryLog;
+	private boolean closed = false;
+
+	/**
+	 * start recording. must call #close after compilation.
+	 */
+	public ByteCodeRecorder() {
+		this.records = new ArrayList<>();
+		this.entryLog = new ArrayList<>();
+		GlobalVariableTable.setEntryLog(this.entryLog);
+	}
+
+	/**
+	 * called from class loader.
+	 * @param className
+	 * @param byteCode
+	 * @param toplevel
+	 * - if true, class is top level class (loaded by child class loader).
+	 */
+	public void recordByteCode(String className, byte[] byteCode, boolean toplevel) {
+		if(this.closed) {
+			return;
+		}
+		this.flushEntryLog();
+		this.records.add(new Record(toplevel ? RecordKind.toplevelClass : RecordKind.classDef, className, byteCode, null));
+	}
+
+	private void flushEntryLog() {
+		for(GenericPair<String, String> entry : this.entryLog) {
+			this.records.add(new Record(RecordKind.globalVar, entry.getLeft(), null, entry.getRight()));
+		}
+		this.entryLog.clear();
+	}
+
+	/**
+	 * stop recording.
+	 */
+	public void close() {
+		if(!this.closed) {
+			this.flushEntryLog();
+			this.closed = true;
+			GlobalVariableTable.setEntryLog(null);
+		}
+	}
+
+	/**
+	 * get records. call it after #close.
+	 * @return
+	 */
+	public List<Record> getRecords() {
+		return this.records;
+	}
+
+	/**
+	 * contains class byte code or global variable entry.
+	 * @author skgchxngsxyz-opensuse
+	 *
+	 */
+	public static class Record {
+		private final RecordKind kind;
+		private final String name;
+		private final byte[] byteCode;
+		private final String holderClassName;
+
+		public Record(RecordKind kind, String name, byte[] byteCode, String holderClassName) {
+			this.kind = kind;
+			this.name = name;
+			this.byteCode = byteCode;
+			this.holderClassName = holderClassName;
+		}
+
+		public RecordKind getKind() {
+			return this.kind;
+		}
+
+		/**
+		 * get class name or var name.
+		 * @return
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 *
+		 * @return
+		 * - if global var record, return null.
+		 */
+		public byte[] getByteCode() {
+			return this.byteCode;
+		}
+
+		/**
+		 * get holder class name of global variable.
+		 * @return
+		 * - if class record, return null.
+		 */
+		public String getHolderClassName() {
+			return this.holderClassName;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package dshell.internal.lib;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * cache of resolved command path (like bash hash table).
+ * invalidated when PATH or modified time of PATH directory is changed.
+ * PATH is always updated through RuntimeContext#setenv, which clears this cache.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class CommandPathCache {
+	/**
+	 * interval of checking modified time of PATH directory. (ms)
+	 */
+	private final static long validateInterval = 1000;
+
+	/**
+	 * key is command name. value is resolved entry.
+	 */
+	private final Map<String, Entry> entryMap;
+
+	/**
+	 * value of PATH at last reset. if null, not initialized or cleared.
+	 */
+	private String pathEnv = null;
+
+	private String[] pathDirs;
+	private long[] dirModifiedTimes;
+	private long lastValidateTime;
+
+	private CommandPathCache() {
+		this.entryMap = new LinkedHashMap<>();
+	}
+
+	private static class Holder {
+		private final static CommandPathCache INSTANCE = new CommandPathCache();
+	}
+
+	public static CommandPathCache getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * get full path of command. if not cached, search PATH and cache it.
+	 * @param cmd
+	 * - not empty string
+	 * @param throwable
+	 * @return
+	 * - return null, if has no executable command and throwable is false.
+	 */
+	public synchronized String lookup(String cmd, boolean throwable) {
+		this.validate();
+		Entry entry = this.entryMap.get(cmd);
+		if(entry != null) {
+			entry.hits++;
+			return entry.path;
+		}
+		String fullPath = Utils.searchCommandFromDirs(cmd, this.pathDirs, throwable);
+		if(fullPath != null) {
+			entry = new Entry(fullPath);
+			entry.hits++;
+			this.entryMap.put(cmd, entry);
+		}
+		return fullPath;
+	}
+
+	/**
+	 * search PATH and cache command path without counting hits.
+	 * @param cmd
+	 * @return
+	 * - if not found, return false.
+	 */
+	public synchronized boolean remember(String cmd) {
+		this.validate();
+		Entry entry = this.entryMap.get(cmd);
+		if(entry != null) {
+			entry.hits = 0;
+			return true;
+		}
+		String fullPath = Utils.searchCommandFromDirs(cmd, this.pathDirs, false);
+		if(fullPath == null) {
+			return false;
+		}
+		this.entryMap.put(cmd, new Entry(fullPath));
+		return true;
+	}
+
+	/**
+	 * remove all of cached entries.
+	 */
+	public synchronized void clear() {
+		this.entryMap.clear();
+		this.pathEnv = null;
+	}
+
+	/**
+	 * get snapshot of cached entries.
+	 * @return
+	 * - key is command name, value is [hits, full path].
+	 */
+	public synchronized Map<String, Object[]> getEntries() {
+		Map<String, Object[]> entries = new LinkedHashMap<>();
+		for(Map.Entry<String, Entry> e : this.entryMap.entrySet()) {
+			entries.put(e.getKey(), new Object[]{e.getValue().hits, e.getValue().path});
+		}
+		return entries;
+	}
+
+	private void validate() {
+		if(this.pathEnv == null) {
+			this.reset(Utils.getEnv("PATH"));
+			return;
+		}
+		long currentTime = System.currentTimeMillis();
+		if(currentTime - this.lastValidateTime < validateInterval) {
+			return;
+		}
+		this.lastValidateTime = currentTime;
+		for(int i = 0; i < this.pathDirs.length; i++) {
+			if(new File(this.pathDirs[i]).lastModified() != this.dirModifiedTimes[i]) {
+				this.reset(this.pathEnv);
+				return;
+			}
+		}
+	}
+
+	private void reset(String env) {
+		this.entryMap.clear();
+		this.pathEnv = env;
+		this.pathDirs = env.split(":");
+		this.dirModifiedTimes = new long[this.pathDirs.length];
+		for(int i = 0; i < this.pathDirs.length; i++) {
+			this.pathDirs[i] = Utils.resolveHome(this.pathDirs[i]);
+			this.dirModifiedTimes[i] = new File(this.pathDirs[i]).lastModified();
+		}
+		this.lastValidateTime = System.currentTimeMillis();
+	}
+
+	private static class Entry {
+		private final String path;
+		private int hits = 0;
+
+		private Entry(String path) {
+			this.path = path;
+		}
+	}
+}
@@ -1,13 +1,53 @@
 package dshell.internal.lib;
 
+import static dshell.internal.process.TaskConfig.Behavior.background;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
 import dshell.internal.process.AbstractProcessContext;
+import dshell.internal.process.PipeStreamHandler.FdInputStream;
+import dshell.internal.process.PipeStreamHandler.FdOutputStream;
+import dshell.internal.process.ProcessReaper;
 import dshell.internal.process.TaskConfig;
 
+/**
+ * process context of builtin command.
+ * standard streams are inherited, redirected to file, or connected to other process by os pipe.
+ * single stage foreground command runs on caller thread. otherwise, runs on own thread.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
 public class CommandRunner extends AbstractProcessContext {
 	private final ExecutableAsCommand executor;
 	private CommandContext context;
 	private Thread runner;
-	private boolean isTerminated;
+	private volatile boolean isTerminated;
+
+	/**
+	 * if true, builtin command is executed in waitTermination() on caller thread.
+	 */
+	private boolean runInline = false;
+
+	/**
+	 * if true, wake up ProcessReaper when finished. (background task)
+	 */
+	private boolean notifyReaper = false;
+
+	// stream behavior
+	private boolean inheritStdin = false;
+	private boolean inheritStdout = false;
+	private boolean inheritStderr = true;
+	private boolean mergeErrorToOut = false;
+
+	/**
+	 * redirect target file name. index is file descriptor. may be null.
+	 */
+	private final String[] redirFileNames = new String[3];
+	private final boolean[] appendFlags = new boolean[3];
 
 	public CommandRunner(String commandName, ExecutableAsCommand executor) {
 		super(commandName);
@@ -17,37 +57,205 @@ public class CommandRunner extends AbstractProcessContext {
 
 	@Override
 	protected AbstractProcessContext mergeErrorToOut() {
+		this.mergeErrorToOut = true;
+		this.stderrIsDirty = true;
 		return this;
 	}
 
 	@Override
 	protected AbstractProcessContext setInputRedirect(String readFileName) {
+		this.stdinIsDirty = true;
+		this.redirFileNames[0] = readFileName;
 		return this;
 	}
 
 	@Override
 	protected AbstractProcessContext setOutputRedirect(int fd, String writeFileName, boolean append) {
+		if(fd == STDOUT_FILENO) {
+			this.stdoutIsDirty = true;
+		} else if(fd == STDERR_FILENO) {
+			this.stderrIsDirty = true;
+		} else {
+			return this;
+		}
+		this.redirFileNames[fd] = writeFileName;
+		this.appendFlags[fd] = append;
 		return this;
 	}
 
 	@Override
 	public AbstractProcessContext start() {
-		this.context = new CommandContext(dshell.lang.InputStream.createStdin(), dshell.lang.OutputStream.createStdout(), dshell.lang.OutputStream.createStderr());
+		java.io.InputStream input = null;
+		java.io.OutputStream output = null;
+		java.io.OutputStream errorOutput = null;
+		try {
+			input = this.openInput();
+			output = this.openOutput();
+			errorOutput = this.mergeErrorToOut ? output : this.openErrorOutput();
+		}
+		catch(IOException e) {
+			this.printOpenError(e);
+			closeQuietly(input, System.in);
+			closeQuietly(output, System.out);
+			closeQuietly(this.stdin, null);
+			closeQuietly(this.stdout, null);
+			this.stdin = null;
+			this.stdout = null;
+			return this;
+		}
+		this.context = new CommandContext(
+				input == System.in ? InheritedStreams.getStdin() :
+					dshell.lang.InputStream.createInputStream(input, "standard input", true),
+				wrapOutput(output, "standard output"), wrapOutput(errorOutput, "standard error"));
+		if(this.runInline) {	// executed when waiting termination
+			return this;
+		}
 		this.runner = new Thread() {
 			@Override public void run() {
-				executor.execute(context, argList);
+				execute();
+				exitStatus = context.getExitStatus();
+				isTerminated = true;
+				if(notifyReaper) {
+					ProcessReaper.getInstance().wakeUp();
+				}
 			}
 		};
 		this.runner.start();
 		return this;
 	}
 
+	private void execute() {
+		try {
+			this.executor.execute(this.context, this.argList);
+		}
+		finally {	// notify end of stream to connected process
+			this.context.getStdout().close();
+			this.context.getStderr().close();
+			this.context.getStdin().close();
+		}
+	}
+
+	private java.io.InputStream openInput() throws IOException {
+		if(this.redirFileNames[0] != null) {
+			return new FileInputStream(resolvePath(this.redirFileNames[0]));
+		}
+		if(this.inheritStdin) {
+			return System.in;
+		}
+		int[] fds = openPipe();
+		this.stdin = new FdOutputStream(fds[1]);
+		return new FdInputStream(fds[0]);
+	}
+
+	private java.io.OutputStream openOutput() throws IOException {
+		if(this.redirFileNames[STDOUT_FILENO] != null) {
+			return new FileOutputStream(resolvePath(this.redirFileNames[STDOUT_FILENO]), this.appendFlags[STDOUT_FILENO]);
+		}
+		if(this.inheritStdout) {
+			return System.out;
+		}
+		int[] fds = openPipe();
+		this.stdout = new FdInputStream(fds[0]);
+		return new FdOutputStream(fds[1]);
+	}
+
+	private java.io.OutputStream openErrorOutput() throws IOException {
+		if(this.redirFileNames[STDERR_FILENO] != null) {
+			return new FileOutputStream(resolvePath(this.redirFileNames[STDERR_FILENO]), this.appendFlags[STDERR_FILENO]);
+		}
+		if(this.inheritStderr) {
+			return System.err;
+		}
+		int[] fds = openPipe();
+		this.stderr = new FdInputStream(fds[0]);
+		return new FdOutputStream(fds[1]);
+	}
+
+	/**
+	 * os pipe is pumped by shared pump thread without blocking.
+	 * @return
+	 * @throws IOException
+	 */
+	private static int[] openPipe() throws IOException {
+		int[] fds = createPipe();
+		if(fds == null) {
+			throw new IOException("cannot create pipe");
+		}
+		return fds;
+	}
+
+	/**
+	 * inherited stream is wrapped by shared wrapper, which is never closed.
+	 * @param output
+	 * @param name
+	 * @return
+	 */
+	private static dshell.lang.OutputStream wrapOutput(java.io.OutputStream output, String name) {
+		if(output == System.out) {
+			return InheritedStreams.getStdout();
+		}
+		if(output == System.err) {
+			return InheritedStreams.getStderr();
+		}
+		return dshell.lang.OutputStream.createOutputStream(output, name, true);
+	}
+
+	private static void closeQuietly(java.io.Closeable stream, java.io.Closeable inherited) {
+		if(stream == null || stream == inherited) {
+			return;
+		}
+		try {
+			stream.close();
+		}
+		catch(IOException e) {
+		}
+	}
+
+	/**
+	 * relative path is resolved from current working directory of shell, not from user.dir.
+	 * @param fileName
+	 * @return
+	 */
+	private static File resolvePath(String fileName) {
+		File file = new File(fileName);
+		if(file.isAbsolute()) {
+			return file;
+		}
+		return new File(RuntimeContext.getInstance().getWorkingDirectory(), fileName);
+	}
+
+	/**
+	 * if redirect target cannot be opened, builtin command is not executed.
+	 * @param e
+	 */
+	private void printOpenError(IOException e) {
+		String message = e.getMessage();
+		if(e instanceof FileNotFoundException && message.endsWith(")")) {	// "path (reason)"
+			int index = message.lastIndexOf(" (");
+			message = message.substring(0, index) + ": " + message.substring(index + 2, message.length() - 1);
+		}
+		System.err.println("-dshell: " + message);
+		this.exitStatus = 1;
+		this.isTerminated = true;
+	}
+
 	@Override
 	public void kill() {	// do nothing
 	}
 
 	@Override
 	public void waitTermination() {
+		if(this.runInline) {
+			if(this.context != null && !this.isTerminated) {
+				this.execute();
+				this.exitStatus = this.context.getExitStatus();
+				this.isTerminated = true;
+			}
+			return;
+		}
+		if(this.runner == null) {
+			return;
+		}
 		try {
 			this.runner.join();
 			this.exitStatus = this.context.getExitStatus();
@@ -64,7 +272,54 @@ public class CommandRunner extends AbstractProcessContext {
 	}
 
 	@Override
-	public AbstractProcessContext setStreamBehavior(TaskConfig option) {
+	public boolean notifiesTermination() {
+		return this.notifyReaper;
+	}
+
+	@Override
+	public AbstractProcessContext setStreamBehavior(TaskConfig config) {
+		// stream handlers of task are started before waiting termination, so pipe to them never blocks.
+		this.runInline = this.isFirstProc && this.isLastProc && !config.is(background);
+		this.notifyReaper = config.is(background);
+		if(this.isFirstProc && this.redirFileNames[0] == null) {
+			this.inheritStdin = true;
+			this.stdinIsDirty = true;
+		}
+		if(this.isLastProc && this.redirFileNames[STDOUT_FILENO] == null && !config.supportStdoutHandler()) {
+			this.inheritStdout = true;
+			this.stdoutIsDirty = true;
+		}
+		if(!this.mergeErrorToOut && this.redirFileNames[STDERR_FILENO] == null) {
+			this.inheritStderr = !config.supportStderrHandler();
+			this.stderrIsDirty = this.inheritStderr;
+		}
 		return this;
 	}
+
+	/**
+	 * wrappers of inherited standard streams, shared by all of builtin commands.
+	 * standard input is replaced by daemon at each request, so its wrapper is recreated.
+	 */
+	private static class InheritedStreams {
+		private static java.io.InputStream stdinSource;
+		private static dshell.lang.InputStream stdin;
+		private static final dshell.lang.OutputStream stdout = dshell.lang.OutputStream.createStdout();
+		private static final dshell.lang.OutputStream stderr = dshell.lang.OutputStream.createStderr();
+
+		private static synchronized dshell.lang.InputStream getStdin() {
+			if(stdinSource != System.in) {
+				stdinSource = System.in;
+				stdin = dshell.lang.InputStream.createStdin();
+			}
+			return stdin;
+		}
+
+		private static dshell.lang.OutputStream getStdout() {
+			return stdout;
+		}
+
+		private static dshell.lang.OutputStream getStderr() {
+			return stderr;
+		}
+	}
 }
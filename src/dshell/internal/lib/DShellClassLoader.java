@@ -2,6 +2,7 @@ package dshell.internal.lib;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.invoke.MutableCallSite;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,6 +28,17 @@ public class DShellClassLoader extends ClassLoader {
 	 */
 	private final Map<String, byte[]> byteCodeMap;
 
+	/**
+	 * if not null, receive all of byte code. child class loader inherits it.
+	 */
+	private ByteCodeRecorder recorder = null;
+
+	/**
+	 * call site of redefinable function. key is function name.
+	 * created by root class loader (per engine), and shared with child class loader.
+	 */
+	private final Map<String, MutableCallSite> callSiteMap;
+
 	/**
 	 * 
 	 * @param packageName
@@ -36,6 +48,7 @@ public class DShellClassLoader extends ClassLoader {
 		super();
 		this.allowedPackageName = toBinaryName(packageName);
 		this.byteCodeMap = new HashMap<>();
+		this.callSiteMap = new HashMap<>();
 	}
 
 	/**
@@ -46,6 +59,8 @@ public class DShellClassLoader extends ClassLoader {
 		super(classLoader);
 		this.allowedPackageName = classLoader.allowedPackageName;
 		this.byteCodeMap = new HashMap<>();
+		this.recorder = classLoader.recorder;
+		this.callSiteMap = classLoader.callSiteMap;
 	}
 
 	@Override protected Class<?> findClass(String name) throws ClassNotFoundException {
@@ -89,9 +104,21 @@ public class DShellClassLoader extends ClassLoader {
 		if(this.byteCodeMap.put(binaryName, byteCode) != null) {
 			Utils.fatal(1, "already defined class: " + className);
 		}
+		if(this.recorder != null) {
+			this.recorder.recordByteCode(binaryName, byteCode, this.getParent() instanceof DShellClassLoader);
+		}
 		dump(binaryName, byteCode);
 	}
 
+	/**
+	 * set byte code recorder for byte code cache.
+	 * @param recorder
+	 * - if null, stop recording.
+	 */
+	public void setRecorder(ByteCodeRecorder recorder) {
+		this.recorder = recorder;
+	}
+
 	/**
 	 * 
 	 * @param className
@@ -112,6 +139,15 @@ public class DShellClassLoader extends ClassLoader {
 		return null;
 	}
 
+	/**
+	 * get call site table of redefinable function. must synchronize on it when accessing.
+	 * used by FunctionCallSite.
+	 * @return
+	 */
+	public Map<String, MutableCallSite> getCallSiteMap() {
+		return this.callSiteMap;
+	}
+
 	/**
 	 * create child class loader.
 	 * @return
@@ -1,223 +1,193 @@
 package dshell.internal.lib;
 
-import java.util.ArrayDeque;
-import java.util.Arrays;
-import java.util.Deque;
+import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import dshell.lang.GenericPair;
 
 /**
  * contain global variable.
+ * each global variable is stored in static field of its own holder class (generated by code generator),
+ * so generated code accesses global variable by getstatic/putstatic.
+ * this class maps variable name to holder class for name based lookup.
  * @author skgchxngsxyz-osx
  *
  */
 public class GlobalVariableTable {
-	private final static int MAX_INDEX = Integer.MAX_VALUE;
-	private final static int defaultTableSize = 16;
-
 	/**
-	 * global variable table for long value.
+	 * package of holder class.
 	 */
-	public static long[]    longVarTable;
+	public final static String holderPackage = "dshell/generated/global/";
 
 	/**
-	 * global variable table for double value.
+	 * field name of holder class.
 	 */
-	public static double[]  doubleVarTable;
+	public final static String holderFieldName = "value";
 
 	/**
-	 * global variable table for boolean value.
+	 * key is variable name, value is holder class.
 	 */
-	public static boolean[] booleanVarTable;
+	private static Map<String, Class<?>> holderMap = new HashMap<>();
 
 	/**
-	 * global variable table for object value.
+	 * used for unique holder class name.
 	 */
-	public static Object[]  objectVarTable;
-
-	private static int longVarIndexCount    = 0;
-	private static int doubleVarIndexCount  = 0;
-	private static int booleanVarIndexCount = 0;
-	private static int objectVarIndexCount  = 0;
-
-	private static Map<String, GenericPair<Integer, Class<?>>> indexMap = new HashMap<>();
-
-	private static Deque<Integer> unusedLongIndexStack    = new ArrayDeque<>();
-	private static Deque<Integer> unusedDoubleIndexStack  = new ArrayDeque<>();
-	private static Deque<Integer> unusedBooleanIndexStack = new ArrayDeque<>();
-	private static Deque<Integer> unusedObjectIndexStack  = new ArrayDeque<>();
+	private static int holderCount = 0;
 
-	static {
-		longVarTable = new long[defaultTableSize];
-		doubleVarTable = new double[defaultTableSize];
-		booleanVarTable = new boolean[defaultTableSize];
-		objectVarTable = new Object[defaultTableSize];
-	}
-
-	// create new global variable entry
-	public static int newLongVarEntry(String varName) {
-		checkDuplicatedEntry(varName);
-		if(!unusedLongIndexStack.isEmpty()) {
-			return unusedLongIndexStack.pop();
-		}
+	/**
+	 * if not null, record name of new entry and its holder class name. used for byte code cache.
+	 */
+	private static List<GenericPair<String, String>> entryLog = null;
 
-		final int size = longVarTable.length;
-		if(longVarIndexCount == size) {
-			checkIndexRange(size);
-			longVarTable = Arrays.copyOf(longVarTable, size * 2);
-		}
-		final int varIndex = longVarIndexCount++;
-		indexMap.put(varName, new GenericPair<Integer, Class<?>>(varIndex, long.class));
-		return varIndex;
+	/**
+	 * remove all of global variables. used for isolating each request in daemon mode.
+	 * must not call it while script is running.
+	 */
+	public static void reset() {
+		holderMap.clear();
+		holderCount = 0;
 	}
 
-	public static int newDoubleVarEntry(String varName) {
-		checkDuplicatedEntry(varName);
-		if(!unusedDoubleIndexStack.isEmpty()) {
-			return unusedDoubleIndexStack.pop();
-		}
-
-		final int size = doubleVarTable.length;
-		if(doubleVarIndexCount == size) {
-			checkIndexRange(size);
-			doubleVarTable = Arrays.copyOf(doubleVarTable, size * 2);
-		}
-		final int varIndex = doubleVarIndexCount++;
-		indexMap.put(varName, new GenericPair<Integer, Class<?>>(varIndex, double.class));
-		return varIndex;
+	/**
+	 * create unique holder class name.
+	 * @param varName
+	 * @return
+	 * - internal class name.
+	 */
+	public static String createHolderName(String varName) {
+		return holderPackage + varName.replaceAll("[^A-Za-z0-9_$]", "_") + "_" + holderCount++;
 	}
 
-	public static int newBooleanVarEntry(String varName) {
-		checkDuplicatedEntry(varName);
-		if(!unusedBooleanIndexStack.isEmpty()) {
-			return unusedBooleanIndexStack.pop();
-		}
-
-		final int size = booleanVarTable.length;
-		if(booleanVarIndexCount == size) {
-			checkIndexRange(size);
-			booleanVarTable = Arrays.copyOf(booleanVarTable, size * 2);
+	/**
+	 * add new global variable entry. if already defined, overwrite it.
+	 * @param varName
+	 * @param holderClass
+	 * - must have static field named holderFieldName.
+	 */
+	public static void addEntry(String varName, Class<?> holderClass) {
+		holderMap.put(varName, holderClass);
+		if(entryLog != null) {
+			entryLog.add(new GenericPair<String, String>(varName, holderClass.getName()));
 		}
-		final int varIndex = booleanVarIndexCount++;
-		indexMap.put(varName, new GenericPair<Integer, Class<?>>(varIndex, boolean.class));
-		return varIndex;
 	}
 
-	public static int newObjectVarEntry(String varName) {
-		checkDuplicatedEntry(varName);
-		if(!unusedObjectIndexStack.isEmpty()) {
-			return unusedObjectIndexStack.pop();
-		}
-
-		final int size = objectVarTable.length;
-		if(objectVarIndexCount == size) {
-			checkIndexRange(size);
-			objectVarTable = Arrays.copyOf(objectVarTable, size * 2);
-		}
-		final int varIndex = objectVarIndexCount++;
-		indexMap.put(varName, new GenericPair<Integer, Class<?>>(varIndex, Object.class));
-		return varIndex;
+	/**
+	 * start or stop recording of new entry.
+	 * @param log
+	 * - if null, stop recording.
+	 */
+	public static void setEntryLog(List<GenericPair<String, String>> log) {
+		entryLog = log;
 	}
 
-	private static void checkDuplicatedEntry(String varName) {
-		GenericPair<Integer, Class<?>> pair = indexMap.get(varName);
-		if(pair != null) {
-			// find duplicated entry and push to unused index stack
-			int index = pair.getLeft();
-			Class<?> clazz = pair.getRight();
-			if(clazz == long.class) {
-				unusedLongIndexStack.push(index);
-			} else if(clazz == double.class) {
-				unusedDoubleIndexStack.push(index);
-			} else if(clazz == boolean.class) {
-				unusedBooleanIndexStack.push(index);
-			} else if(clazz == Object.class) {
-				unusedObjectIndexStack.push(index);
-			} else {
-				Utils.fatal(1, "illegal class: " + clazz);
-			}
+	/**
+	 * get string representation of current entries.
+	 * if state is equivalent, new entry has same holder class name.
+	 * @return
+	 */
+	public static String getEntryState() {
+		StringBuilder sBuilder = new StringBuilder();
+		for(Map.Entry<String, Class<?>> entry : new TreeMap<>(holderMap).entrySet()) {
+			sBuilder.append(entry.getKey()).append(':').append(entry.getValue().getName()).append(';');
 		}
+		sBuilder.append(holderCount);
+		return sBuilder.toString();
 	}
 
 	/**
-	 * force terminate if index out of max integer
-	 * @param size
+	 * get snapshot of current entries.
+	 * @return
+	 * - key is variable name, value is holder class.
 	 */
-	private static void checkIndexRange(int size) {
-		if(size >= MAX_INDEX) {
-			Utils.fatal(1, "too many global variable");
-		}
+	public static Map<String, Class<?>> getEntries() {
+		return new TreeMap<>(holderMap);
 	}
 
-	private static GenericPair<Integer, Class<?>> getIndexPair(String varName) {
-		GenericPair<Integer, Class<?>> indexPair = indexMap.get(varName);
-		if(indexPair == null) {
-			Utils.fatal(1, "undefined global variable: " + varName);
-		}
-		return indexPair;
-	}
 	/**
-	 * get var index
+	 * get holder class.
 	 * @param varName
 	 * @return
 	 * - force terminate if has no var entry
 	 */
-	public static int getVarIndex(String varName) {
-		return getIndexPair(varName).getLeft();
+	public static Class<?> getHolderClass(String varName) {
+		Class<?> holderClass = holderMap.get(varName);
+		if(holderClass == null) {
+			Utils.fatal(1, "undefined global variable: " + varName);
+		}
+		return holderClass;
 	}
 
-	private static void checkVarClass(GenericPair<Integer, Class<?>> indexPair, Class<?> targetClass) {
-		if(!indexPair.getRight().equals(targetClass)) {
-			Utils.fatal(1, "require " + targetClass + ", but is " + indexPair.getRight());
+	private static Field getField(String varName, Class<?> targetClass) {
+		try {
+			Field field = getHolderClass(varName).getField(holderFieldName);
+			if(!targetClass.isAssignableFrom(field.getType())) {
+				Utils.fatal(1, "require " + targetClass + ", but is " + field.getType());
+			}
+			return field;
 		}
+		catch(NoSuchFieldException e) {
+			Utils.fatal(1, "broken holder class: " + varName);
+		}
+		return null;
 	}
 
 	// get global variable
 	public static long getLongVar(String varName) {
-		GenericPair<Integer, Class<?>> indexPair = getIndexPair(varName);
-		checkVarClass(indexPair, long.class);
-		return longVarTable[indexPair.getLeft()];
+		try {
+			return getField(varName, long.class).getLong(null);
+		}
+		catch(IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	public static double getDoubleVar(String varName) {
-		GenericPair<Integer, Class<?>> indexPair = getIndexPair(varName);
-		checkVarClass(indexPair, double.class);
-		return doubleVarTable[indexPair.getLeft()];
+		try {
+			return getField(varName, double.class).getDouble(null);
+		}
+		catch(IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
 	}
-	
+
 	public static boolean getBooleanVar(String varName) {
-		GenericPair<Integer, Class<?>> indexPair = getIndexPair(varName);
-		checkVarClass(indexPair, boolean.class);
-		return booleanVarTable[indexPair.getLeft()];
+		try {
+			return getField(varName, boolean.class).getBoolean(null);
+		}
+		catch(IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	@SuppressWarnings("unchecked")
 	public static <T> T getObjectVar(String varName, Class<T> clazz) {
-		GenericPair<Integer, Class<?>> indexPair = getIndexPair(varName);
-		checkVarClass(indexPair, Object.class);
-		return (T) objectVarTable[indexPair.getLeft()];
-	}
-
-	// add new global variable
-	public static void addNewLongVar(String varName, long value) {
-		longVarTable[newLongVarEntry(varName)] = value;
-	}
-
-	public static void addNewDoubleVar(String varName, double value) {
-		doubleVarTable[newDoubleVarEntry(varName)] = value;
-	}
-
-	public static void addNewBooleanVar(String varName, boolean value) {
-		booleanVarTable[newBooleanVarEntry(varName)] = value;
+		try {
+			return (T) getField(varName, Object.class).get(null);
+		}
+		catch(IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
-	public static void addNewObjectVar(String varName, Object value) {
-		objectVarTable[newObjectVarEntry(varName)] = value;
+	/**
+	 * set value to global variable.
+	 * @param varName
+	 * @param value
+	 * - if variable is primitive type, boxed value.
+	 */
+	public static void setVar(String varName, Object value) {
+		try {
+			getHolderClass(varName).getField(holderFieldName).set(null, value);
+		}
+		catch(NoSuchFieldException | IllegalAccessException | IllegalArgumentException e) {
+			Utils.fatal(1, "cannot set global variable: " + varName + ", " + e);
+		}
 	}
 
 	public static boolean checkVarExistence(String varName) {
-		return indexMap.containsKey(varName);
+		return holderMap.containsKey(varName);
 	}
 }
@@ -149,8 +149,7 @@ public class Operator {
 	// regex match
 	@Shared @OpType(OpName.REGEX_MATCH) public static boolean matchRegex(String target, String regex) {
 		try {
-			Pattern pattern = Pattern.compile(regex);
-			return pattern.matcher(target).find();
+			return matchRegex(target, PatternCache.getInstance().getPattern(regex));
 		}
 		catch (PatternSyntaxException e) {
 		}
@@ -161,13 +160,25 @@ public class Operator {
 		return !matchRegex(target, regex);
 	}
 
+	/**
+	 * called from generated code, if regex is string literal.
+	 * pattern is precompiled and stored in static field of generated class.
+	 */
+	public static boolean matchRegex(String target, Pattern pattern) {
+		return pattern.matcher(target).find();
+	}
+
+	public static boolean unmatchRegex(String target, Pattern pattern) {
+		return !pattern.matcher(target).find();
+	}
+
 
 	// additional operator
 	// ASSERT
 	@Shared @OpType(OpName.ASSERT) public static void assertDShell(boolean result) {
 		if(!result) {
 			new AssertionError("").printStackTrace();
-			System.exit(1);
+			RuntimeContext.getInstance().abort(1);
 		}
 	}
 
@@ -0,0 +1,58 @@
+package dshell.internal.lib;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * bounded LRU cache of compiled regular expression.
+ * shared by regex operator and string methods (replace, split).
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class PatternCache {
+	/**
+	 * max number of cached pattern.
+	 */
+	private final static int maxCacheSize = 128;
+
+	/**
+	 * key is regex. access ordered, so eldest entry is least recently used.
+	 */
+	private final Map<String, Pattern> patternMap;
+
+	private PatternCache() {
+		this.patternMap = new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+			private static final long serialVersionUID = -2389178430561281623L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+				return this.size() > maxCacheSize;
+			}
+		};
+	}
+
+	private static class Holder {
+		private final static PatternCache INSTANCE = new PatternCache();
+	}
+
+	public static PatternCache getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * get compiled pattern. if not cached, compile and cache it.
+	 * @param regex
+	 * @return
+	 * @throws java.util.regex.PatternSyntaxException
+	 * - if regex is invalid. invalid regex is not cached.
+	 */
+	public synchronized Pattern getPattern(String regex) {
+		Pattern pattern = this.patternMap.get(regex);
+		if(pattern == null) {
+			pattern = Pattern.compile(regex);
+			this.patternMap.put(regex, pattern);
+		}
+		return pattern;
+	}
+}
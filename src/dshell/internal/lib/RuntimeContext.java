@@ -48,6 +48,11 @@ public class RuntimeContext implements Serializable {
 	// builtin command holder
 	transient private final BuiltinCommandHolder commandHolder;
 
+	// if true, exit request does not terminate jvm (used in daemon mode)
+	transient private boolean deferExit = false;
+	transient private boolean exitRequested = false;
+	transient private int requestedExitStatus = 0;
+
 	private RuntimeContext(){
 		if(System.getProperty("os.name").startsWith("Windows")) {
 			Utils.fatal(1, "Windows is Not Supported");
@@ -171,6 +176,9 @@ public class RuntimeContext implements Serializable {
 		int ret = CLibraryWrapper.INSTANCE.setenv(key, env, override ? 0 : 1);
 		if(ret == 0) {
 			this.envSet.add(key);
+			if(key.equals("PATH")) {
+				CommandPathCache.getInstance().clear();
+			}
 		}
 		return ret;
 	}
@@ -179,6 +187,61 @@ public class RuntimeContext implements Serializable {
 		return CLibraryWrapper.INSTANCE.getenv(key);
 	}
 
+	/**
+	 * replace all of environmental variables.
+	 * @param envMap
+	 */
+	public void resetEnv(Map<String, String> envMap) {
+		CLibraryWrapper.INSTANCE.clearenv();
+		this.envSet.clear();
+		for(Map.Entry<String, String> entry : envMap.entrySet()) {
+			if(CLibraryWrapper.INSTANCE.setenv(entry.getKey(), entry.getValue(), 1) == 0) {
+				this.envSet.add(entry.getKey());
+			}
+		}
+		CommandPathCache.getInstance().clear();
+	}
+
+	/**
+	 * terminate shell. if exit is deferred, only record exit status.
+	 * @param status
+	 */
+	public void exit(int status) {
+		if(!this.deferExit) {
+			System.exit(status);
+		}
+		this.requestedExitStatus = status;
+		this.exitRequested = true;
+	}
+
+	/**
+	 * terminate shell immediately (fatal error or assertion failure).
+	 * if exit is deferred, throw ShellExit instead of terminating jvm.
+	 * exit request is also recorded, so it is reported even if called from other thread.
+	 * @param status
+	 * @throws ShellExit
+	 */
+	public void abort(int status) {
+		this.exit(status);
+		throw new ShellExit(status);
+	}
+
+	public void setDeferExit(boolean deferExit) {
+		this.deferExit = deferExit;
+		this.exitRequested = false;
+	}
+
+	/**
+	 * if exit has been requested, throw ShellExit.
+	 * @throws ShellExit
+	 */
+	public void checkExitRequest() {
+		if(this.exitRequested) {
+			this.exitRequested = false;
+			throw new ShellExit(this.requestedExitStatus);
+		}
+	}
+
 	/**
 	 * check terminal
 	 * @param fileDescriptor
@@ -194,6 +257,16 @@ public class RuntimeContext implements Serializable {
 		return this.commandHolder.getCommand(commandName);
 	}
 
+	/**
+	 * disable builtin implementation of external command.
+	 * @param commandName
+	 * @return
+	 * - if false, command cannot be disabled.
+	 */
+	public boolean disableBuiltinCommand(String commandName) {
+		return this.commandHolder.disableCommand(commandName);
+	}
+
 	private static class ContextHolder {
 		private static final RuntimeContext INSTANCE = new RuntimeContext();
 	}
@@ -216,5 +289,6 @@ interface CLibraryWrapper extends com.sun.jna.Library {
 	void perror(String s);
 	int setenv(String key, String env, int override);
 	String getenv(String key);
+	int clearenv();
 	int isatty(int fd);
 }
@@ -0,0 +1,22 @@
+package dshell.internal.lib;
+
+/**
+ * thrown when exit is requested and exit is deferred (in daemon mode).
+ * propagate to top level without being caught by script.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class ShellExit extends Error {
+	private static final long serialVersionUID = -4227651390823451236L;
+
+	private final int status;
+
+	public ShellExit(int status) {
+		super("exit " + status);
+		this.status = status;
+	}
+
+	public int getStatus() {
+		return this.status;
+	}
+}
@@ -6,6 +6,9 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.TreeSet;
@@ -42,12 +45,24 @@ public class Utils {
 			Utils.fatal(1, "empty command name");
 			return null;
 		}
-		String[] paths = getEnv("PATH").split(":");
-		for(String path : paths) {
-			String fullPath = resolveHome(path + "/" + cmd);
+		return CommandPathCache.getInstance().lookup(cmd, throwable);
+	}
+
+	/**
+	 * search command from directories without cache.
+	 * @param cmd
+	 * @param dirs
+	 * - resolved directory path
+	 * @param throwable
+	 * @return
+	 * if throwable true and command not found or not executable, throw exception.
+	 */
+	public final static String searchCommandFromDirs(String cmd, String[] dirs, boolean throwable) {
+		for(String dir : dirs) {
+			String fullPath = dir + "/" + cmd;
 			File file = new File(fullPath);
 			if(file.isFile()) {
-				if(new File(fullPath).canExecute()) {
+				if(file.canExecute()) {
 					return fullPath;
 				} else if(throwable){
 					throw new Errno.NotPermittedException(fullPath);
@@ -88,6 +103,7 @@ public class Utils {
 
 	/**
 	 * print message and stack trace before exit.
+	 * if exit is deferred (daemon mode), throw ShellExit instead of terminating jvm.
 	 * @param status
 	 * - if 0, exit success, otherwise exit failed.
 	 * @param message
@@ -100,7 +116,11 @@ public class Utils {
 			StackTraceElement element = elements[i];
 			System.err.println("\tat " + element);
 		}
-		System.exit(status);
+		RuntimeContext context = RuntimeContext.getInstance();
+		if(context == null) {	// called while initializing RuntimeContext
+			System.exit(status);
+		}
+		context.abort(status);
 	}
 
 	public final static void log(String value) {
@@ -184,6 +204,30 @@ public class Utils {
 		return getEnv("USER");
 	}
 
+	/**
+	 * get path of jar file (or class directory) containing dshell runtime.
+	 * @return
+	 * - if not found, return null.
+	 */
+	public final static String getRuntimeLibraryPath() {
+		String className = Utils.class.getName().replace('.', '/') + ".class";
+		URL url = Utils.class.getResource("/" + className);
+		if(url == null) {
+			return null;
+		}
+		try {	// url is percent-encoded, so convert it to file path via URI.
+			if(url.getProtocol().equals("jar")) {	// jar:file:/path/to/dshell.jar!/dshell/internal/lib/Utils.class
+				String path = url.getPath();
+				return new File(new URI(path.substring(0, path.indexOf("!/")))).getPath();
+			}
+			String path = new File(url.toURI()).getPath();
+			return path.substring(0, path.length() - className.length());
+		}
+		catch(URISyntaxException | IllegalArgumentException e) {	// not file url
+			return null;
+		}
+	}
+
 	/**
 	 * print dshell style stack trace message
 	 * @param e
@@ -204,6 +248,28 @@ public class Utils {
 		}
 	}
 
+	/**
+	 * compare map or array values. overloaded for primitive values to avoid boxing.
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	public final static boolean equalsValue(Object left, Object right) {
+		return left == null ? right == null : left.equals(right);
+	}
+
+	public final static boolean equalsValue(long left, long right) {
+		return left == right;
+	}
+
+	public final static boolean equalsValue(double left, double right) {
+		return left == right;
+	}
+
+	public final static boolean equalsValue(boolean left, boolean right) {
+		return left == right;
+	}
+
 	public static char[] loadAndExitIfNotRead(String fileName) {
 		char[] buffer = load(fileName);
 		if(buffer == null) {
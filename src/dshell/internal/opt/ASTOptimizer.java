@@ -0,0 +1,698 @@
+package dshell.internal.opt;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import dshell.internal.lib.Operator;
+import dshell.internal.parser.Node;
+import dshell.internal.parser.NodeVisitor;
+import dshell.internal.parser.Node.AccessNode;
+import dshell.internal.parser.Node.ApplyNode;
+import dshell.internal.parser.Node.ArgumentNode;
+import dshell.internal.parser.Node.ArrayNode;
+import dshell.internal.parser.Node.AssertNode;
+import dshell.internal.parser.Node.AssignNode;
+import dshell.internal.parser.Node.BlockEndNode;
+import dshell.internal.parser.Node.BlockNode;
+import dshell.internal.parser.Node.BooleanValueNode;
+import dshell.internal.parser.Node.BreakNode;
+import dshell.internal.parser.Node.CastNode;
+import dshell.internal.parser.Node.CatchNode;
+import dshell.internal.parser.Node.ClassNode;
+import dshell.internal.parser.Node.CondOpNode;
+import dshell.internal.parser.Node.ConstructorCallNode;
+import dshell.internal.parser.Node.ConstructorNode;
+import dshell.internal.parser.Node.ContinueNode;
+import dshell.internal.parser.Node.EmptyBlockNode;
+import dshell.internal.parser.Node.EmptyNode;
+import dshell.internal.parser.Node.ExportEnvNode;
+import dshell.internal.parser.Node.ExprNode;
+import dshell.internal.parser.Node.FinallyNode;
+import dshell.internal.parser.Node.FloatValueNode;
+import dshell.internal.parser.Node.ForInNode;
+import dshell.internal.parser.Node.ForNode;
+import dshell.internal.parser.Node.FunctionNode;
+import dshell.internal.parser.Node.GlobalVarNode;
+import dshell.internal.parser.Node.IfNode;
+import dshell.internal.parser.Node.ImportEnvNode;
+import dshell.internal.parser.Node.IndexNode;
+import dshell.internal.parser.Node.InnerTaskNode;
+import dshell.internal.parser.Node.InstanceofNode;
+import dshell.internal.parser.Node.IntValueNode;
+import dshell.internal.parser.Node.LoopNode;
+import dshell.internal.parser.Node.MapNode;
+import dshell.internal.parser.Node.OperatorCallNode;
+import dshell.internal.parser.Node.PairNode;
+import dshell.internal.parser.Node.ProcessNode;
+import dshell.internal.parser.Node.ReturnNode;
+import dshell.internal.parser.Node.RootNode;
+import dshell.internal.parser.Node.SpecialCharNode;
+import dshell.internal.parser.Node.StringExprNode;
+import dshell.internal.parser.Node.StringValueNode;
+import dshell.internal.parser.Node.SymbolNode;
+import dshell.internal.parser.Node.TaskNode;
+import dshell.internal.parser.Node.ThrowNode;
+import dshell.internal.parser.Node.TryNode;
+import dshell.internal.parser.Node.VarDeclNode;
+import dshell.internal.parser.Node.WhileNode;
+import dshell.internal.type.CalleeHandle.OperatorHandle;
+import dshell.internal.type.DSType;
+
+/**
+ * optimize typed ast before code generation.
+ * - constant folding of operator call and string interpolation.
+ * - dead branch elimination of if and while statement.
+ * - removal of unused pure expression statement.
+ * - register promotion of global variables used in loop (see LoopNode#getPromotedVarList).
+ * each visit method returns replacement of node. if statement is removed, return null.
+ * command expression is not optimized.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class ASTOptimizer implements NodeVisitor<Node> {
+	private final static String operatorClassName = Operator.class.getName().replace('.', '/');
+
+	/**
+	 * method name of Operator which has no side effect and never throws exception.
+	 */
+	private final static Set<String> pureOpNames = new HashSet<>(Arrays.asList(
+			"plus", "minus", "not", "add", "sub", "mul", "and", "or", "xor",
+			"lessThan", "greaterThan", "lessEqualsThan", "greaterEqualsThan", "equals", "notEquals",
+			"matchRegex", "unmatchRegex", "toStringOrFlat"));
+
+	/**
+	 * method name of Operator which can be evaluated at compile time.
+	 * if it throws exception (zero division), not evaluated.
+	 */
+	private final static Set<String> foldableOpNames = new HashSet<>(pureOpNames);
+
+	static {
+		foldableOpNames.add("div");
+		foldableOpNames.add("mod");
+	}
+
+	/**
+	 * used for register promotion. if not in loop, null.
+	 */
+	private LoopContext loopContext = null;
+
+	/**
+	 * optimize top level statements.
+	 * top level expression is not removed, because its value may be printed in interactive mode.
+	 * @param node
+	 * - typed root node.
+	 * @return
+	 * - node
+	 */
+	public RootNode optimizeRootNode(RootNode node) {
+		this.optimizeStatementList(node, node.getNodeList(), false);
+		return node;
+	}
+
+	/**
+	 * optimize each statement of list.
+	 * @param parentNode
+	 * - owner of nodeList
+	 * @param nodeList
+	 * @param removeUnusedExpr
+	 * - if true, remove pure expression statement.
+	 */
+	private void optimizeStatementList(Node parentNode, List<Node> nodeList, boolean removeUnusedExpr) {
+		for(int i = 0; i < nodeList.size(); i++) {
+			Node node = nodeList.get(i);
+			Node optimizedNode = node.accept(this);
+			if(optimizedNode == null || (removeUnusedExpr && isPure(optimizedNode))) {
+				nodeList.remove(i--);
+				continue;
+			}
+			if(optimizedNode != node) {
+				nodeList.set(i, parentNode.setNodeAsChild(optimizedNode));
+			}
+			if(endsWithBlockEnd(optimizedNode)) {	// remove unreachable statements after eliminated branch
+				nodeList.subList(i + 1, nodeList.size()).clear();
+			}
+		}
+	}
+
+	private static boolean endsWithBlockEnd(Node node) {
+		if(node instanceof BlockEndNode) {
+			return true;
+		}
+		if(node instanceof BlockNode) {
+			List<Node> nodeList = ((BlockNode) node).getNodeList();
+			return !nodeList.isEmpty() && endsWithBlockEnd(nodeList.get(nodeList.size() - 1));
+		}
+		return false;
+	}
+
+	private ExprNode optimize(ExprNode node) {
+		return (ExprNode) node.accept(this);
+	}
+
+	private void optimizeExprList(Node parentNode, List<ExprNode> nodeList) {
+		int size = nodeList.size();
+		for(int i = 0; i < size; i++) {
+			ExprNode node = nodeList.get(i);
+			ExprNode optimizedNode = this.optimize(node);
+			if(optimizedNode != node) {
+				nodeList.set(i, parentNode.setExprNodeAsChild(optimizedNode));
+			}
+		}
+	}
+
+	/**
+	 * check expression has no side effect.
+	 * @param node
+	 * @return
+	 */
+	private static boolean isPure(Node node) {
+		if(node instanceof IntValueNode || node instanceof FloatValueNode || node instanceof BooleanValueNode
+				|| node instanceof StringValueNode || node instanceof SymbolNode) {
+			return true;
+		}
+		if(node instanceof StringExprNode) {
+			return isPureList(((StringExprNode) node).getElementList());
+		}
+		if(node instanceof OperatorCallNode) {
+			OperatorCallNode opNode = (OperatorCallNode) node;
+			return lookupOperator(opNode.getHandle(), pureOpNames) != null && isPureList(opNode.getNodeList());
+		}
+		if(node instanceof CondOpNode) {
+			return isPure(((CondOpNode) node).getLeftNode()) && isPure(((CondOpNode) node).getRightNode());
+		}
+		if(node instanceof CastNode) {
+			int castOp = ((CastNode) node).getCastOp();
+			return (castOp == CastNode.NOP || castOp == CastNode.BOX || castOp == CastNode.INT_2_FLOAT
+					|| castOp == CastNode.FLOAT_2_INT) && isPure(((CastNode) node).getExprNode());
+		}
+		return false;
+	}
+
+	private static boolean isPureList(List<ExprNode> nodeList) {
+		for(ExprNode node : nodeList) {
+			if(!isPure(node)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * look up method of Operator.
+	 * @param handle
+	 * @param opNames
+	 * - acceptable method names.
+	 * @return
+	 * - if not found or parameter type is not primitive or string, return null.
+	 */
+	private static Method lookupOperator(OperatorHandle handle, Set<String> opNames) {
+		if(!handle.getOwnerName().equals(operatorClassName) || !opNames.contains(handle.getCalleeName())) {
+			return null;
+		}
+		List<DSType> paramTypeList = handle.getParamTypeList();
+		Class<?>[] paramClasses = new Class<?>[paramTypeList.size()];
+		for(int i = 0; i < paramClasses.length; i++) {
+			paramClasses[i] = toJavaClass(paramTypeList.get(i));
+			if(paramClasses[i] == null) {
+				return null;
+			}
+		}
+		try {
+			return Operator.class.getMethod(handle.getCalleeName(), paramClasses);
+		}
+		catch(NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static Class<?> toJavaClass(DSType type) {
+		switch(type.getInternalName()) {
+		case "long":
+			return long.class;
+		case "double":
+			return double.class;
+		case "boolean":
+			return boolean.class;
+		case "java/lang/String":
+			return String.class;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * get constant value of literal node.
+	 * @param node
+	 * @return
+	 * - if not literal, return null.
+	 */
+	private static Object getConstValue(ExprNode node) {
+		if(node instanceof IntValueNode) {
+			return ((IntValueNode) node).getValue();
+		}
+		if(node instanceof FloatValueNode) {
+			return ((FloatValueNode) node).getValue();
+		}
+		if(node instanceof BooleanValueNode) {
+			return ((BooleanValueNode) node).getValue();
+		}
+		if(node instanceof StringValueNode) {
+			return ((StringValueNode) node).getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * create literal node.
+	 * @param originalNode
+	 * - replaced node.
+	 * @param value
+	 * @return
+	 * - if value is not primitive or string, return originalNode.
+	 */
+	private static ExprNode createConstNode(ExprNode originalNode, Object value) {
+		ExprNode constNode;
+		if(value instanceof Long) {
+			constNode = new IntValueNode(originalNode.getToken(), (Long) value);
+		} else if(value instanceof Double) {
+			constNode = new FloatValueNode(originalNode.getToken(), (Double) value);
+		} else if(value instanceof Boolean) {
+			constNode = new BooleanValueNode(originalNode.getToken(), (Boolean) value);
+		} else if(value instanceof String) {
+			constNode = new StringValueNode(originalNode.getToken(), (String) value);
+		} else {
+			return originalNode;
+		}
+		constNode.setType(originalNode.getType());
+		return constNode;
+	}
+
+	private void enterLoop() {
+		this.loopContext = new LoopContext(this.loopContext);
+	}
+
+	/**
+	 * if loop has no escaping operation, global variables used in loop are promoted to local variables.
+	 * @param node
+	 */
+	private void exitLoop(LoopNode node) {
+		LoopContext context = this.loopContext;
+		this.loopContext = context.outerContext;
+		if(!context.escape) {
+			for(Map.Entry<String, DSType> entry : context.globalVarMap.entrySet()) {
+				node.addPromotedVar(entry.getKey(), entry.getValue());
+			}
+		}
+		if(this.loopContext != null) {
+			this.loopContext.globalVarMap.putAll(context.globalVarMap);
+			this.loopContext.escape |= context.escape;
+		}
+	}
+
+	/**
+	 * found operation which may access global variables or leave loop without passing loop exit
+	 * (function call, command, return).
+	 */
+	private void markEscape() {
+		if(this.loopContext != null) {
+			this.loopContext.escape = true;
+		}
+	}
+
+	/**
+	 * contains global variables used in loop.
+	 */
+	private static class LoopContext {
+		private final LoopContext outerContext;
+
+		/**
+		 * key is variable name.
+		 */
+		private final Map<String, DSType> globalVarMap;
+		private boolean escape;
+
+		private LoopContext(LoopContext outerContext) {
+			this.outerContext = outerContext;
+			this.globalVarMap = new LinkedHashMap<>();
+			this.escape = false;
+		}
+	}
+
+	// expression
+	@Override
+	public Node visit(IntValueNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(FloatValueNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(BooleanValueNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(StringValueNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(StringExprNode node) {
+		List<ExprNode> elementList = node.getElementList();
+		this.optimizeExprList(node, elementList);
+		// merge adjacent string literal
+		for(int i = 0; i < elementList.size() - 1; i++) {
+			if(elementList.get(i) instanceof StringValueNode && elementList.get(i + 1) instanceof StringValueNode) {
+				String value = ((StringValueNode) elementList.get(i)).getValue() + ((StringValueNode) elementList.get(i + 1)).getValue();
+				elementList.set(i, node.setExprNodeAsChild(createConstNode(elementList.get(i), value)));
+				elementList.remove(i-- + 1);
+			}
+		}
+		if(elementList.size() == 1 && elementList.get(0) instanceof StringValueNode) {
+			return elementList.get(0);
+		}
+		return node;
+	}
+
+	@Override
+	public Node visit(ArrayNode node) {
+		this.optimizeExprList(node, node.getNodeList());
+		return node;
+	}
+
+	@Override
+	public Node visit(MapNode node) {
+		this.optimizeExprList(node, node.getKeyList());
+		this.optimizeExprList(node, node.getValueList());
+		return node;
+	}
+
+	@Override
+	public Node visit(PairNode node) {
+		node.getLeftNode().accept(this);
+		node.getRightNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(SymbolNode node) {
+		if(this.loopContext != null && node.isGlobal() && node.getHandle() == null) {
+			this.loopContext.globalVarMap.put(node.getSymbolName(), node.getType());
+		}
+		return node;
+	}
+
+	@Override
+	public Node visit(IndexNode node) {
+		node.getRecvNode().accept(this);
+		node.getIndexNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(AccessNode node) {
+		node.getRecvNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(CastNode node) {
+		node.setExprNode(this.optimize(node.getExprNode()));
+		ExprNode exprNode = node.getExprNode();
+		if(node.getCastOp() == CastNode.INT_2_FLOAT && exprNode instanceof IntValueNode) {
+			return createConstNode(node, (double) ((IntValueNode) exprNode).getValue());
+		}
+		if(node.getCastOp() == CastNode.FLOAT_2_INT && exprNode instanceof FloatValueNode) {
+			return createConstNode(node, (long) ((FloatValueNode) exprNode).getValue());
+		}
+		return node;
+	}
+
+	@Override
+	public Node visit(InstanceofNode node) {
+		node.getExprNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(OperatorCallNode node) {
+		this.optimizeExprList(node, node.getNodeList());
+		Method method = lookupOperator(node.getHandle(), foldableOpNames);
+		if(method == null) {
+			return node;
+		}
+		List<ExprNode> argList = node.getNodeList();
+		Object[] args = new Object[argList.size()];
+		for(int i = 0; i < args.length; i++) {
+			args[i] = getConstValue(argList.get(i));
+			if(args[i] == null) {
+				return node;
+			}
+		}
+		try {
+			return createConstNode(node, method.invoke(null, args));
+		}
+		catch(InvocationTargetException e) {	// zero division. raise exception at runtime.
+			return node;
+		}
+		catch(IllegalAccessException | IllegalArgumentException e) {
+			return node;
+		}
+	}
+
+	@Override
+	public Node visit(ApplyNode node) {
+		if(node.isFuncCall()) {
+			this.markEscape();
+		}
+		node.getRecvNode().accept(this);
+		this.optimizeExprList(node, node.getArgList());
+		return node;
+	}
+
+	@Override
+	public Node visit(ConstructorCallNode node) {
+		this.optimizeExprList(node, node.getNodeList());
+		return node;
+	}
+
+	@Override
+	public Node visit(CondOpNode node) {
+		node.setLeftNode(this.optimize(node.getLeftNode()));
+		node.setRightNode(this.optimize(node.getRightNode()));
+		if(node.getLeftNode() instanceof BooleanValueNode) {
+			boolean leftValue = ((BooleanValueNode) node.getLeftNode()).getValue();
+			boolean isAnd = node.getConditionalOp().equals("&&");
+			// (true && right) or (false || right) is right, otherwise left.
+			return leftValue == isAnd ? node.getRightNode() : node.getLeftNode();
+		}
+		return node;
+	}
+
+	@Override
+	public Node visit(ProcessNode node) {
+		this.markEscape();
+		return node;
+	}
+
+	@Override
+	public Node visit(ArgumentNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(SpecialCharNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(TaskNode node) {
+		this.markEscape();
+		return node;
+	}
+
+	@Override
+	public Node visit(InnerTaskNode node) {
+		this.markEscape();
+		return node;
+	}
+
+	@Override
+	public Node visit(EmptyNode node) {
+		return node;
+	}
+
+	// statement
+	@Override
+	public Node visit(AssertNode node) {
+		node.setExprNode(this.optimize((ExprNode) node.getExprNode()));
+		if(node.getExprNode() instanceof BooleanValueNode && ((BooleanValueNode) node.getExprNode()).getValue()) {
+			return null;
+		}
+		return node;
+	}
+
+	@Override
+	public Node visit(BlockNode node) {
+		this.optimizeStatementList(node, node.getNodeList(), true);
+		return node;
+	}
+
+	@Override
+	public Node visit(BreakNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(ContinueNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(ExportEnvNode node) {
+		this.markEscape();
+		node.getExprNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(ImportEnvNode node) {
+		this.markEscape();
+		return node;
+	}
+
+	@Override
+	public Node visit(ForNode node) {
+		node.getInitNode().accept(this);
+		this.enterLoop();
+		node.setCondNode(this.optimize(node.getCondNode()));
+		node.getIterNode().accept(this);
+		node.getBlockNode().accept(this);
+		this.exitLoop(node);
+		return node;
+	}
+
+	@Override
+	public Node visit(ForInNode node) {
+		node.getExprNode().accept(this);
+		this.enterLoop();
+		node.getBlockNode().accept(this);
+		this.exitLoop(node);
+		return node;
+	}
+
+	@Override
+	public Node visit(WhileNode node) {
+		this.enterLoop();
+		node.setCondNode(this.optimize(node.getCondNode()));
+		node.getBlockNode().accept(this);
+		this.exitLoop(node);
+		if(!node.isAsDoWhile() && node.getCondNode() instanceof BooleanValueNode
+				&& !((BooleanValueNode) node.getCondNode()).getValue()) {
+			return null;
+		}
+		return node;
+	}
+
+	/**
+	 * if condition is constant, replace with then block or else block.
+	 */
+	@Override
+	public Node visit(IfNode node) {
+		node.setCondNode(this.optimize(node.getCondNode()));
+		node.getThenBlockNode().accept(this);
+		node.getElseBlockNode().accept(this);
+		if(!(node.getCondNode() instanceof BooleanValueNode)) {
+			return node;
+		}
+		BlockNode blockNode = ((BooleanValueNode) node.getCondNode()).getValue() ?
+				node.getThenBlockNode() : node.getElseBlockNode();
+		if(blockNode.getNodeList().isEmpty()) {
+			return null;
+		}
+		return blockNode;
+	}
+
+	@Override
+	public Node visit(ReturnNode node) {
+		this.markEscape();
+		node.setExprNode(this.optimize(node.getExprNode()));
+		return node;
+	}
+
+	@Override
+	public Node visit(ThrowNode node) {
+		node.getExprNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(TryNode node) {
+		node.getTryBlockNode().accept(this);
+		for(CatchNode catchNode : node.getCatchNodeList()) {
+			catchNode.accept(this);
+		}
+		node.getFinallyNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(CatchNode node) {
+		node.getCatchBlockNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(FinallyNode node) {
+		node.getBlockNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(VarDeclNode node) {
+		node.setInitValueNode(this.optimize(node.getInitValueNode()));
+		return node;
+	}
+
+	@Override
+	public Node visit(AssignNode node) {
+		node.getLeftNode().accept(this);
+		node.setRightNode(node.setExprNodeAsChild(this.optimize(node.getRightNode())));
+		return node;
+	}
+
+	@Override
+	public Node visit(FunctionNode node) {
+		node.getBlockNode().accept(this);
+		return node;
+	}
+
+	@Override
+	public Node visit(ClassNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(ConstructorNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(GlobalVarNode node) {
+		return node;
+	}
+
+	@Override
+	public Node visit(EmptyBlockNode node) {
+		return node;
+	}
+}
@@ -174,7 +174,17 @@ public abstract class Node {
 		 * @param value
 		 */
 		private IntValueNode(long value) {
-			super(null);
+			this(null, value);
+		}
+
+		/**
+		 * used for optimizer.
+		 * @param token
+		 * - may be null.
+		 * @param value
+		 */
+		public IntValueNode(Token token, long value) {
+			super(token);
 			this.value = value;
 		}
 
@@ -201,6 +211,17 @@ public abstract class Node {
 			this.value = Double.parseDouble(token.getText());
 		}
 
+		/**
+		 * used for optimizer.
+		 * @param token
+		 * - may be null.
+		 * @param value
+		 */
+		public FloatValueNode(Token token, double value) {
+			super(token);
+			this.value = value;
+		}
+
 		public double getValue() {
 			return this.value;
 		}
@@ -229,7 +250,17 @@ public abstract class Node {
 		 * @param value
 		 */
 		public BooleanValueNode(boolean value) {
-			super(null);
+			this(null, value);
+		}
+
+		/**
+		 * used for optimizer.
+		 * @param token
+		 * - may be null.
+		 * @param value
+		 */
+		public BooleanValueNode(Token token, boolean value) {
+			super(token);
 			this.value = value;
 		}
 
@@ -264,7 +295,17 @@ public abstract class Node {
 		 * @param value
 		 */
 		public StringValueNode(String value) {
-			super(null);
+			this(null, value);
+		}
+
+		/**
+		 * used for optimizer.
+		 * @param token
+		 * - may be null.
+		 * @param value
+		 */
+		public StringValueNode(Token token, String value) {
+			super(token);
 			this.value = value;
 		}
 
@@ -452,6 +493,8 @@ public abstract class Node {
 		 */
 		private StaticFieldHandle handle;
 
+		private boolean isGlobal;
+
 		public SymbolNode(Token token) {
 			super(token);
 			this.symbolName = resolveName(token);
@@ -463,6 +506,7 @@ public abstract class Node {
 
 		public void setSymbolEntry(SymbolEntry entry) {
 			this.isReadOnly = entry.isReadOnly();
+			this.isGlobal = entry.isGlobal();
 			DSType type = entry.getType();
 			if(type instanceof FuncHolderType) {	// function field
 				StaticFieldHandle handle = ((FuncHolderType)type).getFieldHandle();
@@ -476,6 +520,15 @@ public abstract class Node {
 			return this.handle;
 		}
 
+		/**
+		 * 
+		 * @return
+		 * - if true, symbol is global variable or function.
+		 */
+		public boolean isGlobal() {
+			return this.isGlobal;
+		}
+
 		@Override
 		public <T> T accept(NodeVisitor<T> visitor) {
 			return visitor.visit(this);
@@ -594,7 +647,11 @@ public abstract class Node {
 
 		private final TypeToken targetTypeSymbol;
 		private String targetTypeName;	// used for string cast
-		private final ExprNode exprNode;
+
+		/**
+		 * may be replaced by optimizer.
+		 */
+		private ExprNode exprNode;
 		private int castOp = NOP;
 
 		/**
@@ -626,6 +683,10 @@ public abstract class Node {
 			return this.exprNode;
 		}
 
+		public void setExprNode(ExprNode exprNode) {
+			this.exprNode = this.setExprNodeAsChild(exprNode);
+		}
+
 		public void resolveCastOp(int castOp) {
 			this.castOp = castOp;
 		}
@@ -905,8 +966,16 @@ public abstract class Node {
 	 */
 	public static class CondOpNode extends ExprNode {
 		private final String condOp;
-		private final ExprNode leftNode;
-		private final ExprNode rightNode;
+
+		/**
+		 * may be replaced by optimizer.
+		 */
+		private ExprNode leftNode;
+
+		/**
+		 * may be replaced by optimizer.
+		 */
+		private ExprNode rightNode;
 
 		public CondOpNode(ExprNode leftNode, Token token, ExprNode rightNode) {
 			super(token);
@@ -923,10 +992,18 @@ public abstract class Node {
 			return this.leftNode;
 		}
 
+		public void setLeftNode(ExprNode leftNode) {
+			this.leftNode = this.setExprNodeAsChild(leftNode);
+		}
+
 		public ExprNode getRightNode() {
 			return this.rightNode;
 		}
 
+		public void setRightNode(ExprNode rightNode) {
+			this.rightNode = this.setExprNodeAsChild(rightNode);
+		}
+
 		@Override
 		public <T> T accept(NodeVisitor<T> visitor) {
 			return visitor.visit(this);
@@ -1203,7 +1280,11 @@ public abstract class Node {
 	 */
 	public static class AssertNode extends Node {
 		public final static String opName = "assert";
-		private final ExprNode exprNode;
+
+		/**
+		 * may be replaced by optimizer.
+		 */
+		private ExprNode exprNode;
 		private OperatorHandle handle;
 
 		public AssertNode(Token token, ExprNode exprNode) {
@@ -1215,6 +1296,10 @@ public abstract class Node {
 			return this.exprNode;
 		}
 
+		public void setExprNode(ExprNode exprNode) {
+			this.exprNode = this.setExprNodeAsChild(exprNode);
+		}
+
 		public void setHandle(OperatorHandle handle) {
 			this.handle = handle;
 		}
@@ -1375,8 +1460,23 @@ public abstract class Node {
 	 *
 	 */
 	public static abstract class LoopNode extends Node {
+		/**
+		 * global variables cached in local variables while running loop.
+		 * set by optimizer.
+		 */
+		private final List<GenericPair<String, DSType>> promotedVarList;
+
 		protected LoopNode(Token token) {
 			super(token);
+			this.promotedVarList = new ArrayList<>();
+		}
+
+		public void addPromotedVar(String varName, DSType type) {
+			this.promotedVarList.add(new GenericPair<String, DSType>(varName, type));
+		}
+
+		public List<GenericPair<String, DSType>> getPromotedVarList() {
+			return this.promotedVarList;
 		}
 	}
 
@@ -1392,9 +1492,9 @@ public abstract class Node {
 		private final Node initNode;
 
 		/**
-		 * May be EmptyNode
+		 * May be EmptyNode. may be replaced by optimizer.
 		 */
-		private final ExprNode condNode;
+		private ExprNode condNode;
 
 		/**
 		 * May be EmptyNode
@@ -1418,6 +1518,10 @@ public abstract class Node {
 			return this.condNode;
 		}
 
+		public void setCondNode(ExprNode condNode) {
+			this.condNode = this.setExprNodeAsChild(condNode);
+		}
+
 		public Node getIterNode() {
 			return this.iterNode;
 		}
@@ -1442,10 +1546,10 @@ public abstract class Node {
 		private final ExprNode exprNode;
 		private final BlockNode blockNode;
 
-		// for iterator op.
-		private MethodHandle resetHandle;
-		private MethodHandle nextHandle;
-		private MethodHandle hasNextHandle;
+		/**
+		 * element type of array.
+		 */
+		private DSType elementType;
 
 		public ForInNode(Token token, Token nameToken, ExprNode exprNode, Node blockNode) {
 			super(token);
@@ -1466,22 +1570,12 @@ public abstract class Node {
 			return this.blockNode;
 		}
 
-		public void setIteratorHandles(MethodHandle reset, MethodHandle next, MethodHandle hasNext) {
-			this.resetHandle = reset;
-			this.nextHandle = next;
-			this.hasNextHandle = hasNext;
-		}
-
-		public MethodHandle getResetHandle() {
-			return this.resetHandle;
+		public void setElementType(DSType elementType) {
+			this.elementType = elementType;
 		}
 
-		public MethodHandle getNextHandle() {
-			return this.nextHandle;
-		}
-
-		public MethodHandle getHasNextHandle() {
-			return this.hasNextHandle;
+		public DSType getElementType() {
+			return this.elementType;
 		}
 
 		@Override
@@ -1496,7 +1590,10 @@ public abstract class Node {
 	 *
 	 */
 	public static class WhileNode extends LoopNode {
-		private final ExprNode condNode;
+		/**
+		 * may be replaced by optimizer.
+		 */
+		private ExprNode condNode;
 		private final BlockNode blockNode;
 
 		private final boolean asDoWhile;
@@ -1516,6 +1613,10 @@ public abstract class Node {
 			return this.condNode;
 		}
 
+		public void setCondNode(ExprNode condNode) {
+			this.condNode = this.setExprNodeAsChild(condNode);
+		}
+
 		public BlockNode getBlockNode() {
 			return this.blockNode;
 		}
@@ -1536,7 +1637,10 @@ public abstract class Node {
 	 *
 	 */
 	public static class IfNode extends Node {
-		private final ExprNode condNode;
+		/**
+		 * may be replaced by optimizer.
+		 */
+		private ExprNode condNode;
 		private final BlockNode thenBlockNode;
 
 		/**
@@ -1555,6 +1659,10 @@ public abstract class Node {
 			return this.condNode;
 		}
 
+		public void setCondNode(ExprNode condNode) {
+			this.condNode = this.setExprNodeAsChild(condNode);
+		}
+
 		public BlockNode getThenBlockNode() {
 			return this.thenBlockNode;
 		}
@@ -1576,9 +1684,9 @@ public abstract class Node {
 	 */
 	public static class ReturnNode extends BlockEndNode {
 		/**
-		 * May be EmptyNode.
+		 * May be EmptyNode. may be replaced by optimizer.
 		 */
-		private final ExprNode exprNode;
+		private ExprNode exprNode;
 
 		public ReturnNode(Token token) {
 			this(token, new EmptyNode());
@@ -1594,6 +1702,10 @@ public abstract class Node {
 			return this.exprNode;
 		}
 
+		public void setExprNode(ExprNode exprNode) {
+			this.exprNode = this.setExprNodeAsChild(exprNode);
+		}
+
 		@Override
 		public <T> T accept(NodeVisitor<T> visitor) {
 			return visitor.visit(this);
@@ -1748,7 +1860,11 @@ public abstract class Node {
 		private final boolean isReadOnly;
 		private boolean isGlobal;
 		private final String varName;
-		private final ExprNode initValueNode;
+
+		/**
+		 * may be replaced by optimizer.
+		 */
+		private ExprNode initValueNode;
 
 		public VarDeclNode(Token token, Token nameToken, ExprNode initValueNode) {
 			super(token);
@@ -1766,6 +1882,10 @@ public abstract class Node {
 			return this.initValueNode;
 		}
 
+		public void setInitValueNode(ExprNode initValueNode) {
+			this.initValueNode = this.setExprNodeAsChild(initValueNode);
+		}
+
 		public void setGlobal(boolean isGlobal) {
 			this.isGlobal = isGlobal;
 		}
@@ -93,6 +93,18 @@ public class SymbolTable implements SymbolTableOp {
 		}
 	}
 
+	/**
+	 * overwrite entry of global symbol table. used for function redefinition.
+	 * if #removeCachedEntries is called, previous entry is restored.
+	 * @param symbolName
+	 * @param type
+	 * @param isReadOnly
+	 */
+	public void overwriteGlobalEntry(String symbolName, DSType type, boolean isReadOnly) {
+		assert this.tableStack.size() == 1;
+		((RootTable) this.tableStack.peek()).overwriteEntry(symbolName, type, isReadOnly);
+	}
+
 	public void clearEntryCache() {
 		assert this.tableStack.size() == 1;
 		((RootTable) this.tableStack.peek()).clearEntryCache();
@@ -158,9 +170,15 @@ public class SymbolTable implements SymbolTableOp {
 
 		private final List<String> entryCache;
 
+		/**
+		 * contains previous entry of overwritten symbol.
+		 */
+		private final Map<String, SymbolEntry> overwrittenEntryMap;
+
 		private RootTable() {
 			this.entryMap = new HashMap<>();
 			this.entryCache = new LinkedList<>();
+			this.overwrittenEntryMap = new HashMap<>();
 		}
 
 		@Override
@@ -179,14 +197,25 @@ public class SymbolTable implements SymbolTableOp {
 			return true;
 		}
 
+		public void overwriteEntry(String symbolName, DSType type, boolean isReadOnly) {
+			SymbolEntry prevEntry = this.entryMap.put(symbolName, new SymbolEntry(type, isReadOnly, true));
+			if(prevEntry != null && !this.overwrittenEntryMap.containsKey(symbolName)) {
+				this.overwrittenEntryMap.put(symbolName, prevEntry);
+			}
+			this.entryCache.add(symbolName);
+		}
+
 		public void clearEntryCache() {
 			this.entryCache.clear();
+			this.overwrittenEntryMap.clear();
 		}
 
 		public void removeCachedEntries() {
 			for(String entryName : this.entryCache) {
 				this.entryMap.remove(entryName);
 			}
+			this.entryMap.putAll(this.overwrittenEntryMap);
+			this.overwrittenEntryMap.clear();
 		}
 	}
 
@@ -95,6 +95,11 @@ public class TypeChecker implements NodeVisitor<Node> {
 	 */
 	private final Deque<Boolean> finallyContextStack;
 
+	/**
+	 * if true, top level function can be redefined with same function type (interactive mode).
+	 */
+	private boolean funcRedefinable = false;
+
 	public TypeChecker(TypePool typePool) {
 		this.typePool = typePool;
 		this.symbolTable = new SymbolTable();
@@ -104,6 +109,15 @@ public class TypeChecker implements NodeVisitor<Node> {
 		this.finallyContextStack = new ArrayDeque<>();
 	}
 
+	/**
+	 * enable or disable function redefinition.
+	 * function defined while enabled is called by invokedynamic.
+	 * @param funcRedefinable
+	 */
+	public void setFuncRedefinable(boolean funcRedefinable) {
+		this.funcRedefinable = funcRedefinable;
+	}
+
 	/**
 	 * check type.
 	 * @param targetNode
@@ -580,6 +594,14 @@ public class TypeChecker implements NodeVisitor<Node> {
 		return node;
 	}
 
+	/**
+	 * look up function handle.
+	 * if recvNode is name of top level function, return its StaticFunctionHandle
+	 * (called by invokestatic without loading function object).
+	 * otherwise, recvNode is function value and return FunctionHandle (called by invokeinterface).
+	 * @param recvNode
+	 * @return
+	 */
 	protected MethodHandle lookupFuncHandle(ExprNode recvNode) {
 		// look up static function
 		if(recvNode instanceof SymbolNode) {
@@ -864,22 +886,20 @@ public class TypeChecker implements NodeVisitor<Node> {
 
 	@Override
 	public Node visit(ForInNode node) {
-		// look up iterator op.
+		// look up element type.
 		DSType exprType = ((ExprNode)this.checkType(node.getExprNode())).getType();
 		if(!exprType.getTypeName().startsWith("Array<")) {
 			throw new TypeCheckException(node.getExprNode(), TypeErrorKind_TwoArg.Required, "Array type", exprType);
 		}
-		MethodHandle reset = exprType.lookupMethodHandle("$iter$Reset");
-		MethodHandle next = exprType.lookupMethodHandle("$iter$Next");
-		MethodHandle hasNext = exprType.lookupMethodHandle("$iter$HasNext");
-		if(reset == null || next == null || hasNext == null) {
-			Utils.fatal(1, "iterator op is not found.");
+		MethodHandle getter = exprType.lookupMethodHandle("get");
+		if(getter == null) {
+			Utils.fatal(1, "illegal method: get");
 		}
-		node.setIteratorHandles(reset, next, hasNext);
+		node.setElementType(getter.getReturnType());
 
 		// add symbol entry
 		this.symbolTable.enterScope();
-		this.addEntryAndThrowIfDefined(node, node.getInitName(), next.getReturnType(), false);
+		this.addEntryAndThrowIfDefined(node, node.getInitName(), getter.getReturnType(), false);
 		this.checkTypeWithCurrentBlockScope(node.getBlockNode());
 		this.symbolTable.exitScope();
 		return node;
@@ -1094,8 +1114,12 @@ public class TypeChecker implements NodeVisitor<Node> {
 		String funcName = node.getFuncName();
 		DSType returnType = node.getReturnTypeSymbol().toType(this.typePool);
 		FunctionType funcType = this.typePool.createAndGetFuncTypeIfUndefined(returnType, paramTypeList);
-		FuncHolderType holderType = this.typePool.createFuncHolderType(funcType, funcName);
-		this.addEntryAndThrowIfDefined(node, funcName, holderType, true);
+		FuncHolderType holderType = this.typePool.createFuncHolderType(funcType, funcName, this.funcRedefinable);
+		if(this.isRedefinableFunc(funcName, funcType)) {
+			this.symbolTable.overwriteGlobalEntry(funcName, holderType, true);
+		} else {
+			this.addEntryAndThrowIfDefined(node, funcName, holderType, true);
+		}
 
 		// check type func body
 		this.pushReturnType(returnType);
@@ -1114,6 +1138,25 @@ public class TypeChecker implements NodeVisitor<Node> {
 		return null;
 	}
 
+	/**
+	 * 
+	 * @param funcName
+	 * @param funcType
+	 * @return
+	 * - return true, if funcName is redefinable function and has same function type.
+	 */
+	private boolean isRedefinableFunc(String funcName, FunctionType funcType) {
+		if(!this.funcRedefinable) {
+			return false;
+		}
+		SymbolEntry entry = this.symbolTable.getEntry(funcName);
+		if(entry == null || !(entry.getType() instanceof FuncHolderType)) {
+			return false;
+		}
+		FuncHolderType prevType = (FuncHolderType) entry.getType();
+		return prevType.isRedefinable() && prevType.getFieldHandle().getFieldType().equals(funcType);
+	}
+
 	private void visitParamDecl(SymbolNode paramDeclNode, DSType paramType) {
 		this.addEntryAndThrowIfDefined(paramDeclNode, paramDeclNode.getSymbolName(), paramType, true);
 	}
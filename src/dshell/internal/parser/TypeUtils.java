@@ -90,10 +90,14 @@ public class TypeUtils {
 		return new Method("<init>", returnTypeDesc, paramtypeDecs);
 	}
 
-	public static Method toMapConstructorDescriptor() {
+	public static Method toMapConstructorDescriptor(DSType valueType) {
 		Type returnTypeDesc = Type.VOID_TYPE;
 		Type keysTypeDesc = Type.getType(String[].class);
-		Type valuesTypeDesc = Type.getType(Object[].class);
+		Type valueTypeDesc = toTypeDescriptor(valueType);
+		if(!(valueType instanceof PrimitiveType)) {
+			valueTypeDesc = Type.getType(Object.class);
+		}
+		Type valuesTypeDesc = Type.getType("[" + valueTypeDesc.getDescriptor());
 		Type[] paramTypeDescs = new Type[] {keysTypeDesc, valuesTypeDesc};
 		return new Method("<init>", returnTypeDesc, paramTypeDescs);
 	}
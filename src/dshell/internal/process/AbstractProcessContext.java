@@ -17,6 +17,15 @@ public abstract class AbstractProcessContext {
 	public static final int STDOUT_FILENO = 1;
 	public static final int STDERR_FILENO = 2;
 
+	private static final int O_CLOEXEC = 02000000;	// linux
+	private static final int F_SETFD = 2;
+	private static final int FD_CLOEXEC = 1;
+
+	/**
+	 * if false, pipe2 is not available.
+	 */
+	private static boolean supportPipe2 = true;
+
 	/**
 	 * reference of standard input of created process.
 	 */
@@ -67,6 +76,11 @@ public abstract class AbstractProcessContext {
 	 */
 	protected int exitStatus = 0;
 
+	/**
+	 * process group which created process joins. if null, created process stays in group of shell.
+	 */
+	protected ProcessGroup procGroup = null;
+
 	/**
 	 * for represent string
 	 */
@@ -181,13 +195,75 @@ public abstract class AbstractProcessContext {
 	 */
 	public abstract AbstractProcessContext start();
 
+	/**
+	 * set process group of task. must call it before starting.
+	 * @param procGroup
+	 */
+	public void setProcessGroup(ProcessGroup procGroup) {
+		this.procGroup = procGroup;
+	}
+
+	/**
+	 * 
+	 * @return
+	 * - pid of created process. if not available, return -1.
+	 */
+	public int getPid() {
+		return -1;
+	}
+
+	/**
+	 * 
+	 * @return
+	 * - process group id of created process. if it stays in group of shell, return -1.
+	 */
+	public int getProcessGroupId() {
+		return -1;
+	}
+
+	/**
+	 * send signal to created process only.
+	 * @param signal
+	 * @return
+	 * - if false, process has already terminated or pid is not available.
+	 */
+	public boolean sendSignal(int signal) {
+		int pid = this.getPid();
+		if(pid <= 0 || this.checkTermination()) {
+			return false;
+		}
+		return PosixLibraryWrapper.INSTANCE.kill(pid, signal) == 0;
+	}
+
 	/**
 	 * kill created prcoess.
 	 */
-	public abstract void kill();
+	public void kill() {
+		this.sendSignal(ProcessGroup.SIGKILL);
+	}
 
 	public abstract void waitTermination();
 
+	/**
+	 * used by ProcessReaper. must call it after starting.
+	 * @return
+	 * - file descriptor which becomes readable when created process has terminated.
+	 * if not available, return -1.
+	 */
+	public int openPidfd() {
+		return -1;
+	}
+
+	/**
+	 * 
+	 * @return
+	 * - if true, ProcessReaper is woken up when this context has terminated.
+	 * otherwise, context which has no pidfd is checked at fixed interval.
+	 */
+	public boolean notifiesTermination() {
+		return false;
+	}
+
 	/**
 	 * 
 	 * @return
@@ -195,6 +271,49 @@ public abstract class AbstractProcessContext {
 	 */
 	public abstract boolean checkTermination();
 
+	/**
+	 * connect srcContext's standard output to this context's standard input by os pipe.
+	 * data does not pass through jvm. must call it before starting both of contexts.
+	 * @param srcContext
+	 * @return
+	 * - if false, cannot connect by os pipe. in this case, use pipe() after starting.
+	 */
+	public boolean connectByKernelPipe(AbstractProcessContext srcContext) {
+		return false;
+	}
+
+	/**
+	 * close os pipe created by connectByKernelPipe, if this context has not started yet.
+	 * called when task failed to start, because pipe is closed only when starting.
+	 */
+	public void closeKernelPipe() {
+	}
+
+	/**
+	 * create os pipe.
+	 * @return
+	 * - pipe fds. both of them are close-on-exec. if failed, return null.
+	 */
+	protected static int[] createPipe() {
+		int[] fds = new int[2];
+		PosixLibraryWrapper lib = PosixLibraryWrapper.INSTANCE;
+		if(supportPipe2) {
+			try {
+				// set close-on-exec atomically. otherwise, process launched by other thread may inherit pipe.
+				return lib.pipe2(fds, O_CLOEXEC) == -1 ? null : fds;
+			}
+			catch(UnsatisfiedLinkError e) {
+				supportPipe2 = false;
+			}
+		}
+		if(lib.pipe(fds) == -1) {
+			return null;
+		}
+		lib.fcntl(fds[0], F_SETFD, FD_CLOEXEC);
+		lib.fcntl(fds[1], F_SETFD, FD_CLOEXEC);
+		return fds;
+	}
+
 	/**
 	 * redirect srcContex's standard output to this context's standard input.
 	 * @param srcConext
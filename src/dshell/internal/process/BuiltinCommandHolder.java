@@ -1,10 +1,18 @@
 package dshell.internal.process;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import dshell.internal.lib.CommandContext;
+import dshell.internal.lib.CommandPathCache;
 import dshell.internal.lib.CommandRunner;
 import dshell.internal.lib.ExecutableAsCommand;
 import dshell.internal.lib.RuntimeContext;
@@ -15,14 +23,42 @@ import dshell.internal.lib.RuntimeContext;
  *
  */
 public class BuiltinCommandHolder {
+	/**
+	 * buffer size for reading file (cat, wc).
+	 */
+	private final static int fileBufferSize = 8192;
+
 	private final Map<String, ExecutableAsCommand> builtinCommandMap;
 
 	public BuiltinCommandHolder() {
 		this.builtinCommandMap = new HashMap<>();
-		this.builtinCommandMap.put(BuiltinSymbol.cd.name(), new Command_cd());
-		this.builtinCommandMap.put(BuiltinSymbol.exit.name(), new Command_exit());
-		this.builtinCommandMap.put(BuiltinSymbol.help.name(), new Command_help());
-		this.builtinCommandMap.put(BuiltinSymbol.log.name(), new Command_log());
+		this.builtinCommandMap.put(BuiltinSymbol.cat.getCommandName(), new Command_cat());
+		this.builtinCommandMap.put(BuiltinSymbol.cd.getCommandName(), new Command_cd());
+		this.builtinCommandMap.put(BuiltinSymbol.echo.getCommandName(), new Command_echo());
+		this.builtinCommandMap.put(BuiltinSymbol.exit.getCommandName(), new Command_exit());
+		this.builtinCommandMap.put(BuiltinSymbol.false_.getCommandName(), new Command_false());
+		this.builtinCommandMap.put(BuiltinSymbol.hash.getCommandName(), new Command_hash());
+		this.builtinCommandMap.put(BuiltinSymbol.help.getCommandName(), new Command_help());
+		this.builtinCommandMap.put(BuiltinSymbol.printf.getCommandName(), new Command_printf());
+		this.builtinCommandMap.put(BuiltinSymbol.test.getCommandName(), new Command_test());
+		this.builtinCommandMap.put(BuiltinSymbol.true_.getCommandName(), new Command_true());
+		this.builtinCommandMap.put(BuiltinSymbol.wc.getCommandName(), new Command_wc());
+		this.builtinCommandMap.put(BuiltinSymbol.log.getCommandName(), new Command_log());
+	}
+
+	/**
+	 * disable builtin command. after that, external command is used.
+	 * @param commandName
+	 * @return
+	 * - if false, command is not builtin or cannot be disabled (no external command).
+	 */
+	public boolean disableCommand(String commandName) {
+		BuiltinSymbol symbol = BuiltinSymbol.lookup(commandName);
+		if(symbol == null || !symbol.hasExternalCommand()) {
+			return false;
+		}
+		this.builtinCommandMap.remove(commandName);
+		return true;
 	}
 
 	/**
@@ -42,12 +78,162 @@ public class BuiltinCommandHolder {
 
 	public static void printArgumentErrorAndSetStatus(BuiltinSymbol symbol, CommandContext context) {
 		dshell.lang.OutputStream output = context.getStderr();
-		output.writeLine("-dshell: " + symbol.name() + ": invalid argument");
-		output.writeLine(symbol.name() + ": " + symbol.getUsage());
+		output.writeLine("-dshell: " + symbol.getCommandName() + ": invalid argument");
+		output.writeLine(symbol.getCommandName() + ": " + symbol.getUsage());
 		context.setExistStatus(1);
 	}
 
 	// builtin command implementation.
+	/**
+	 * same as cat of coreutils (C locale). line number and state of line are continued across files.
+	 */
+	public static class Command_cat implements ExecutableAsCommand {
+		private final static String[][] longOptions = {
+			{"show-all", "A"}, {"number-nonblank", "b"}, {"show-ends", "E"}, {"number", "n"},
+			{"squeeze-blank", "s"}, {"show-tabs", "T"}, {"show-nonprinting", "v"},
+		};
+
+		@Override
+		public void execute(CommandContext context, List<String> argList) {
+			StringBuilder options = new StringBuilder();
+			List<String> operands = new ArrayList<>();
+			if(!parseOptions(argList, "AbeEnstTuv", longOptions, options, operands)) {
+				printArgumentErrorAndSetStatus(BuiltinSymbol.cat, context);
+				return;
+			}
+			if(operands.isEmpty()) {
+				operands.add("-");
+			}
+			LineFormatter formatter = options.length() == 0 ? null : new LineFormatter(options.toString());
+			byte[] buffer = new byte[fileBufferSize];
+			int status = 0;
+			for(String operand : operands) {
+				FileInputStream input = null;
+				try {
+					input = openOperand(operand);
+					int size;
+					while((size = readOperand(input, context, buffer)) > 0) {
+						byte[] data = formatter == null ? Arrays.copyOf(buffer, size) : formatter.format(buffer, size);
+						if(!context.getStdout().write(data)) {	// broken pipe
+							context.setExistStatus(1);
+							return;
+						}
+					}
+				}
+				catch(IOException e) {
+					context.getStderr().writeLine("-dshell: cat: " + operand + ": " + e.getMessage());
+					status = 1;
+				}
+				finally {
+					closeOperand(input);
+				}
+			}
+			context.setExistStatus(status);
+		}
+
+		/**
+		 * format output of cat with options (except for -u).
+		 */
+		private static class LineFormatter {
+			private final boolean numberAll;
+			private final boolean numberNonBlank;
+			private final boolean showEnds;
+			private final boolean squeezeBlank;
+			private final boolean showTabs;
+			private final boolean showNonPrinting;
+
+			private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			private boolean atLineStart = true;
+			private boolean prevBlank = false;
+			private int lineNumber = 0;
+
+			private LineFormatter(String options) {
+				this.numberNonBlank = options.indexOf('b') != -1;
+				this.numberAll = !this.numberNonBlank && options.indexOf('n') != -1;
+				this.showEnds = hasOption(options, "AeE");
+				this.squeezeBlank = options.indexOf('s') != -1;
+				this.showTabs = hasOption(options, "AtT");
+				this.showNonPrinting = hasOption(options, "Aetv");
+			}
+
+			private static boolean hasOption(String options, String candidates) {
+				for(int i = 0; i < candidates.length(); i++) {
+					if(options.indexOf(candidates.charAt(i)) != -1) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+			private byte[] format(byte[] buffer, int size) {
+				this.output.reset();
+				for(int i = 0; i < size; i++) {
+					int ch = buffer[i] & 0xff;
+					if(ch == '\n') {
+						if(this.atLineStart) {	// empty line
+							if(this.squeezeBlank && this.prevBlank) {
+								continue;
+							}
+							this.prevBlank = true;
+							if(this.numberAll) {
+								this.writeLineNumber();
+							}
+						}
+						if(this.showEnds) {
+							this.output.write('$');
+						}
+						this.output.write('\n');
+						this.atLineStart = true;
+						continue;
+					}
+					if(this.atLineStart) {
+						this.atLineStart = false;
+						this.prevBlank = false;
+						if(this.numberAll || this.numberNonBlank) {
+							this.writeLineNumber();
+						}
+					}
+					this.writeChar(ch);
+				}
+				return this.output.toByteArray();
+			}
+
+			private void writeLineNumber() {
+				writeString(this.output, String.format("%6d\t", ++this.lineNumber));
+			}
+
+			private void writeChar(int ch) {
+				if(ch == '\t') {
+					if(this.showTabs) {
+						this.output.write('^');
+						this.output.write('I');
+					} else {
+						this.output.write(ch);
+					}
+					return;
+				}
+				if(!this.showNonPrinting) {
+					this.output.write(ch);
+					return;
+				}
+				if(ch >= 128) {
+					this.output.write('M');
+					this.output.write('-');
+					ch -= 128;
+				}
+				if(ch < 32) {
+					this.output.write('^');
+					this.output.write(ch + 64);
+				} else if(ch == 127) {
+					this.output.write('^');
+					this.output.write('?');
+				} else {
+					this.output.write(ch);
+				}
+			}
+		}
+	}
+
 	public static class Command_cd implements ExecutableAsCommand {
 		@Override
 		public void execute(CommandContext context, List<String> argList) {
@@ -60,6 +246,136 @@ public class BuiltinCommandHolder {
 		}
 	}
 
+	/**
+	 * same as echo of coreutils. options are recognized only if all of characters are n, e or E.
+	 */
+	public static class Command_echo implements ExecutableAsCommand {
+		@Override
+		public void execute(CommandContext context, List<String> argList) {
+			boolean newLine = true;
+			boolean escape = false;
+			int size = argList.size();
+			int index = 1;
+			for(; index < size; index++) {
+				String arg = argList.get(index);
+				if(!isOption(arg)) {
+					break;
+				}
+				for(int i = 1; i < arg.length(); i++) {
+					switch(arg.charAt(i)) {
+					case 'n':
+						newLine = false;
+						break;
+					case 'e':
+						escape = true;
+						break;
+					case 'E':
+						escape = false;
+						break;
+					}
+				}
+			}
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			for(int i = index; i < size; i++) {
+				if(i > index) {
+					output.write(' ');
+				}
+				String arg = argList.get(i);
+				if(!escape) {
+					writeString(output, arg);
+				} else if(!unescape(output, arg)) {	// found \c
+					newLine = false;
+					break;
+				}
+			}
+			if(newLine) {
+				output.write('\n');
+			}
+			context.getStdout().write(output.toByteArray());
+			context.setExistStatus(0);
+		}
+
+		private static boolean isOption(String arg) {
+			int size = arg.length();
+			if(size < 2 || arg.charAt(0) != '-') {
+				return false;
+			}
+			for(int i = 1; i < size; i++) {
+				char ch = arg.charAt(i);
+				if(ch != 'n' && ch != 'e' && ch != 'E') {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * interpret backslash escapes.
+		 * @param output
+		 * @param arg
+		 * @return
+		 * - if false, found \c. remaining output is suppressed.
+		 */
+		private static boolean unescape(ByteArrayOutputStream output, String arg) {
+			int size = arg.length();
+			int start = 0;
+			for(int i = 0; i < size; i++) {
+				if(arg.charAt(i) != '\\' || i + 1 == size) {
+					continue;
+				}
+				writeString(output, arg.substring(start, i));
+				char ch = arg.charAt(++i);
+				switch(ch) {
+				case 'a': output.write(0x07); break;
+				case 'b': output.write('\b'); break;
+				case 'c': return false;
+				case 'e': output.write(0x1b); break;
+				case 'f': output.write('\f'); break;
+				case 'n': output.write('\n'); break;
+				case 'r': output.write('\r'); break;
+				case 't': output.write('\t'); break;
+				case 'v': output.write(0x0b); break;
+				case '\\': output.write('\\'); break;
+				case 'x': {
+					int value = 0;
+					int count = 0;
+					for(; count < 2 && i + 1 < size && hexValue(arg.charAt(i + 1)) != -1; count++) {
+						value = value * 16 + hexValue(arg.charAt(++i));
+					}
+					if(count == 0) {	// not escape
+						output.write('\\');
+						output.write('x');
+					} else {
+						output.write(value);
+					}
+					break;
+				}
+				case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': {
+					// \0NNN or \NNN
+					int value = 0;
+					int maxDigits = 3;
+					if(ch != '0') {
+						value = ch - '0';
+						maxDigits = 2;
+					}
+					for(int count = 0; count < maxDigits && i + 1 < size && isOctal(arg.charAt(i + 1)); count++) {
+						value = value * 8 + (arg.charAt(++i) - '0');
+					}
+					output.write(value);
+					break;
+				}
+				default:	// not escape
+					output.write('\\');
+					writeString(output, String.valueOf(ch));
+					break;
+				}
+				start = i + 1;
+			}
+			writeString(output, arg.substring(start));
+			return true;
+		}
+	}
+
 	public static class Command_exit implements ExecutableAsCommand {
 		@Override
 		public void execute(CommandContext context, List<String> argList) {
@@ -81,7 +397,56 @@ public class BuiltinCommandHolder {
 				printArgumentErrorAndSetStatus(BuiltinSymbol.exit, context);
 				return;
 			}
-			System.exit(status);
+			RuntimeContext.getInstance().exit(status);
+			context.setExistStatus(status);
+		}
+	}
+
+	public static class Command_false implements ExecutableAsCommand {
+		@Override
+		public void execute(CommandContext context, List<String> argList) {
+			context.setExistStatus(1);
+		}
+	}
+
+	public static class Command_hash implements ExecutableAsCommand {
+		@Override
+		public void execute(CommandContext context, List<String> argList) {
+			CommandPathCache cache = CommandPathCache.getInstance();
+			int size = argList.size();
+			if(size == 1) {
+				this.printEntries(cache, context.getStdout());
+				context.setExistStatus(0);
+				return;
+			}
+			int status = 0;
+			for(int i = 1; i < size; i++) {
+				String arg = argList.get(i);
+				if(arg.equals("-r")) {
+					cache.clear();
+				}
+				else if(arg.startsWith("-")) {
+					printArgumentErrorAndSetStatus(BuiltinSymbol.hash, context);
+					return;
+				}
+				else if(!cache.remember(arg)) {
+					context.getStderr().writeLine("-dshell: hash: " + arg + ": not found");
+					status = 1;
+				}
+			}
+			context.setExistStatus(status);
+		}
+
+		private void printEntries(CommandPathCache cache, dshell.lang.OutputStream stdout) {
+			Map<String, Object[]> entries = cache.getEntries();
+			if(entries.isEmpty()) {
+				stdout.writeLine("hash: hash table empty");
+				return;
+			}
+			stdout.writeLine("hits\tcommand");
+			for(Entry<String, Object[]> entry : entries.entrySet()) {
+				stdout.writeLine(String.format("%4d\t%s", entry.getValue()[0], entry.getValue()[1]));
+			}
 		}
 	}
 
@@ -107,9 +472,9 @@ public class BuiltinCommandHolder {
 					isShortHelp = true;
 				}
 				else {
-					if(BuiltinSymbol.match(arg)) {
+					BuiltinSymbol symbol = BuiltinSymbol.lookup(arg);
+					if(symbol != null) {
 						foundValidCommand = true;
-						BuiltinSymbol symbol = BuiltinSymbol.valueOf(arg);
 						stdout.writeLine(arg + ": " + symbol.getUsage());
 						if(!isShortHelp) {
 							stdout.writeLine(symbol.getDetail());
@@ -135,6 +500,240 @@ public class BuiltinCommandHolder {
 		}
 	}
 
+	public static class Command_printf implements ExecutableAsCommand {
+		@Override
+		public void execute(CommandContext context, List<String> argList) {
+			// skip leading "--" like coreutils.
+			int formatIndex = argList.size() > 1 && argList.get(1).equals("--") ? 2 : 1;
+			if(formatIndex == argList.size()) {
+				context.getStderr().writeLine("-dshell: printf: missing operand");
+				context.getStderr().writeLine("Try `help printf' for more information.");
+				context.setExistStatus(1);
+				return;
+			}
+			PrintfFormatter formatter = new PrintfFormatter(argList.get(formatIndex), argList.subList(formatIndex + 1, argList.size()));
+			boolean success = formatter.format();
+			context.getStdout().write(formatter.getOutput());
+			for(String message : formatter.getErrorMessages()) {
+				context.getStderr().writeLine("-dshell: printf: " + message);
+			}
+			context.setExistStatus(success ? 0 : 1);
+		}
+	}
+
+	public static class Command_test implements ExecutableAsCommand {
+		@Override
+		public void execute(CommandContext context, List<String> argList) {
+			try {
+				boolean result = new TestExpression(argList.subList(1, argList.size())).evaluate();
+				context.setExistStatus(result ? 0 : 1);
+			}
+			catch(IllegalArgumentException e) {	// syntax error
+				context.getStderr().writeLine("-dshell: test: " + e.getMessage());
+				context.setExistStatus(2);
+			}
+		}
+	}
+
+	public static class Command_true implements ExecutableAsCommand {
+		@Override
+		public void execute(CommandContext context, List<String> argList) {
+			context.setExistStatus(0);
+		}
+	}
+
+	/**
+	 * same as wc of coreutils (C locale). character is counted as byte.
+	 * width of counts is decided from size of input files like coreutils.
+	 */
+	public static class Command_wc implements ExecutableAsCommand {
+		private final static String[][] longOptions = {
+			{"bytes", "c"}, {"chars", "m"}, {"lines", "l"}, {"words", "w"}, {"max-line-length", "L"},
+		};
+
+		/**
+		 * order of counts in output.
+		 */
+		private final static String countOrder = "lwmcL";
+
+		@Override
+		public void execute(CommandContext context, List<String> argList) {
+			StringBuilder options = new StringBuilder();
+			List<String> operands = new ArrayList<>();
+			if(!parseOptions(argList, "clmwL", longOptions, options, operands)) {
+				printArgumentErrorAndSetStatus(BuiltinSymbol.wc, context);
+				return;
+			}
+			String printedCounts = "";
+			for(int i = 0; i < countOrder.length(); i++) {
+				if(options.indexOf(String.valueOf(countOrder.charAt(i))) != -1) {
+					printedCounts += countOrder.charAt(i);
+				}
+			}
+			if(printedCounts.isEmpty()) {
+				printedCounts = "lwc";
+			}
+			boolean readStdin = operands.isEmpty();
+			if(readStdin) {
+				operands.add("-");
+			}
+			int width = computeWidth(context, operands, printedCounts.length());
+			Counter total = new Counter();
+			byte[] buffer = new byte[fileBufferSize];
+			int status = 0;
+			for(String operand : operands) {
+				Counter counter = new Counter();
+				FileInputStream input = null;
+				try {
+					input = openOperand(operand);
+					int size;
+					while((size = readOperand(input, context, buffer)) > 0) {
+						counter.count(buffer, size);
+					}
+				}
+				catch(IOException e) {
+					context.getStderr().writeLine("-dshell: wc: " + operand + ": " + e.getMessage());
+					status = 1;
+					if(!new File(operand).isDirectory()) {	// coreutils prints counts of directory
+						continue;
+					}
+				}
+				finally {
+					closeOperand(input);
+				}
+				counter.finish();
+				total.add(counter);
+				context.getStdout().writeLine(counter.toString(printedCounts, width, readStdin ? null : operand));
+			}
+			if(operands.size() > 1) {
+				context.getStdout().writeLine(total.toString(printedCounts, width, "total"));
+			}
+			context.setExistStatus(status);
+		}
+
+		/**
+		 * same as coreutils. if one count of one file is printed, width is 1.
+		 * otherwise, width is number of digits of total size of regular files (at least 7 if input is not regular file).
+		 * @param context
+		 * @param operands
+		 * @param countSize
+		 * @return
+		 */
+		private static int computeWidth(CommandContext context, List<String> operands, int countSize) {
+			if(operands.size() == 1 && countSize == 1) {
+				return 1;
+			}
+			int minWidth = 1;
+			long totalSize = 0;
+			for(String operand : operands) {
+				long size;
+				if(operand.equals("-")) {
+					size = context.getStdin().getRegularFileSize();
+				} else {
+					File file = resolveFile(operand);
+					if(!file.exists()) {
+						continue;
+					}
+					size = file.isFile() ? file.length() : -1;
+				}
+				if(size == -1) {
+					minWidth = 7;
+				} else {
+					totalSize += size;
+				}
+			}
+			return Math.max(minWidth, String.valueOf(totalSize).length());
+		}
+
+		private static class Counter {
+			private long lines = 0;
+			private long words = 0;
+			private long bytes = 0;
+			private long maxLineLength = 0;
+			private long linePos = 0;
+			private boolean inWord = false;
+
+			private void count(byte[] buffer, int size) {
+				this.bytes += size;
+				for(int i = 0; i < size; i++) {
+					int ch = buffer[i] & 0xff;
+					switch(ch) {
+					case '\n':
+						this.lines++;
+					case '\r':
+					case '\f':
+						this.maxLineLength = Math.max(this.maxLineLength, this.linePos);
+						this.linePos = 0;
+						this.endWord();
+						break;
+					case '\t':
+						this.linePos += 8 - (this.linePos % 8);
+						this.endWord();
+						break;
+					case ' ':
+						this.linePos++;
+						this.endWord();
+						break;
+					case 0x0b:	// \v
+						this.endWord();
+						break;
+					default:
+						if(ch > 32 && ch < 127) {	// printable character. non printable character is ignored.
+							this.linePos++;
+							this.inWord = true;
+						}
+						break;
+					}
+				}
+			}
+
+			private void endWord() {
+				if(this.inWord) {
+					this.words++;
+					this.inWord = false;
+				}
+			}
+
+			private void finish() {
+				this.maxLineLength = Math.max(this.maxLineLength, this.linePos);
+				this.endWord();
+			}
+
+			private void add(Counter counter) {
+				this.lines += counter.lines;
+				this.words += counter.words;
+				this.bytes += counter.bytes;
+				this.maxLineLength = Math.max(this.maxLineLength, counter.maxLineLength);
+			}
+
+			private String toString(String printedCounts, int width, String name) {
+				StringBuilder sBuilder = new StringBuilder();
+				for(int i = 0; i < printedCounts.length(); i++) {
+					long value = 0;
+					switch(printedCounts.charAt(i)) {
+					case 'l': value = this.lines; break;
+					case 'w': value = this.words; break;
+					case 'm':
+					case 'c': value = this.bytes; break;
+					case 'L': value = this.maxLineLength; break;
+					}
+					if(i > 0) {
+						sBuilder.append(' ');
+					}
+					String count = String.valueOf(value);
+					for(int j = count.length(); j < width; j++) {
+						sBuilder.append(' ');
+					}
+					sBuilder.append(count);
+				}
+				if(name != null) {
+					sBuilder.append(' ').append(name);
+				}
+				return sBuilder.toString();
+			}
+		}
+	}
+
 	public static class Command_log implements ExecutableAsCommand {
 		@Override
 		public void execute(CommandContext context, List<String> argList) {
@@ -157,4 +756,160 @@ public class BuiltinCommandHolder {
 			RuntimeContext.getInstance().getLogger().warn(value);
 		}
 	}
+
+	static boolean isOctal(char ch) {
+		return ch >= '0' && ch <= '7';
+	}
+
+	/**
+	 * 
+	 * @param ch
+	 * @return
+	 * - if ch is not ascii hex digit, return -1.
+	 */
+	static int hexValue(char ch) {
+		if(ch >= '0' && ch <= '9') {
+			return ch - '0';
+		}
+		if(ch >= 'a' && ch <= 'f') {
+			return ch - 'a' + 10;
+		}
+		if(ch >= 'A' && ch <= 'F') {
+			return ch - 'A' + 10;
+		}
+		return -1;
+	}
+
+	/**
+	 * encode string by default charset.
+	 * @param output
+	 * @param value
+	 */
+	static void writeString(ByteArrayOutputStream output, String value) {
+		byte[] bytes = value.getBytes();
+		output.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * parse options like getopt_long of coreutils. options may be placed after operands.
+	 * @param argList
+	 * - first element is command name.
+	 * @param shortOptions
+	 * @param longOptions
+	 * - pair of long option name and short option.
+	 * @param options
+	 * - receive found short options.
+	 * @param operands
+	 * - receive operands. "-" is operand (standard input).
+	 * @return
+	 * - if found invalid option, return false.
+	 */
+	static boolean parseOptions(List<String> argList, String shortOptions, String[][] longOptions,
+			StringBuilder options, List<String> operands) {
+		int size = argList.size();
+		boolean endOfOptions = false;
+		for(int i = 1; i < size; i++) {
+			String arg = argList.get(i);
+			if(endOfOptions || arg.length() < 2 || arg.charAt(0) != '-') {
+				operands.add(arg);
+			}
+			else if(arg.equals("--")) {
+				endOfOptions = true;
+			}
+			else if(arg.startsWith("--")) {
+				String name = arg.substring(2);
+				String found = null;
+				for(String[] longOption : longOptions) {
+					if(longOption[0].startsWith(name)) {	// accept unambiguous abbreviation
+						if(found != null && !longOption[0].equals(name)) {
+							return false;
+						}
+						found = longOption[1];
+						if(longOption[0].equals(name)) {
+							break;
+						}
+					}
+				}
+				if(found == null) {
+					return false;
+				}
+				options.append(found);
+			}
+			else {
+				for(int j = 1; j < arg.length(); j++) {
+					if(shortOptions.indexOf(arg.charAt(j)) == -1) {
+						return false;
+					}
+					options.append(arg.charAt(j));
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * relative path is resolved from current working directory of shell.
+	 * @param fileName
+	 * @return
+	 */
+	static File resolveFile(String fileName) {
+		File file = new File(fileName);
+		if(file.isAbsolute()) {
+			return file;
+		}
+		return new File(RuntimeContext.getInstance().getWorkingDirectory(), fileName);
+	}
+
+	/**
+	 * open file operand of cat or wc.
+	 * @param operand
+	 * @return
+	 * - if operand is "-", return null (standard input).
+	 * @throws IOException
+	 * - if cannot open. message is same as coreutils.
+	 */
+	static FileInputStream openOperand(String operand) throws IOException {
+		if(operand.equals("-")) {
+			return null;
+		}
+		File file = resolveFile(operand);
+		if(!file.exists()) {
+			throw new IOException("No such file or directory");
+		}
+		if(file.isDirectory()) {
+			throw new IOException("Is a directory");
+		}
+		if(!file.canRead()) {
+			throw new IOException("Permission denied");
+		}
+		return new FileInputStream(file);
+	}
+
+	/**
+	 * 
+	 * @param input
+	 * - if null, read from standard input.
+	 * @param context
+	 * @param buffer
+	 * @return
+	 * - read size. if end of input, return -1.
+	 * @throws IOException
+	 */
+	static int readOperand(FileInputStream input, CommandContext context, byte[] buffer) throws IOException {
+		if(input == null) {
+			return context.getStdin().read(buffer);
+		}
+		return input.read(buffer);
+	}
+
+	static void closeOperand(FileInputStream input) {
+		if(input == null) {
+			return;
+		}
+		try {
+			input.close();
+		}
+		catch(IOException e) {
+		}
+	}
 }
@@ -4,6 +4,25 @@ import java.util.ArrayList;
 import java.util.List;
 
 public enum BuiltinSymbol {
+	cat {
+		@Override
+		public String getUsage() {
+			return "cat [-AbeEnstTuv] [file ...]";
+		}
+		@Override
+		public String getDetail() {
+			return "    Concatenate FILEs to the standard output.  If FILE is - or " + "\n" +
+			       "    omitted, read the standard input.  -n numbers all lines, -b " + "\n" +
+			       "    numbers nonempty lines, -s squeezes repeated empty lines, -E " + "\n" +
+			       "    displays $ at end of line, -T displays TAB as ^I and -v uses " + "\n" +
+			       "    ^ and M- notation for nonprinting characters.  -A is -vET, -e " + "\n" +
+			       "    is -vE and -t is -vT.";
+		}
+		@Override
+		public boolean hasExternalCommand() {
+			return true;
+		}
+	},
 	cd {
 		@Override
 		public String getUsage() {
@@ -16,6 +35,23 @@ public enum BuiltinSymbol {
 			       "    the current directory.";
 		}
 	},
+	echo {
+		@Override
+		public String getUsage() {
+			return "echo [-neE] [arg ...]";
+		}
+		@Override
+		public String getDetail() {
+			return "    Write arguments to the standard output.  Arguments are separated" + "\n" +
+			       "    by a single space and followed by a newline.  If -n is given, " + "\n" +
+			       "    the trailing newline is suppressed.  If -e is given, backslash " + "\n" +
+			       "    escapes are interpreted.  -E disables interpretation of escapes.";
+		}
+		@Override
+		public boolean hasExternalCommand() {
+			return true;
+		}
+	},
 	exit {
 		@Override
 		public String getUsage() {
@@ -27,6 +63,34 @@ public enum BuiltinSymbol {
 			       "    status is 0.";
 		}
 	},
+	false_("false") {
+		@Override
+		public String getUsage() {
+			return "false";
+		}
+		@Override
+		public String getDetail() {
+			return "    Return an unsuccessful result.";
+		}
+		@Override
+		public boolean hasExternalCommand() {
+			return true;
+		}
+	},
+	hash {
+		@Override
+		public String getUsage() {
+			return "hash [-r] [name ...]";
+		}
+		@Override
+		public String getDetail() {
+			return "    Remember or display command path.  For each NAME, search the " + "\n" +
+			       "    full path of command and remember it.  If no arguments are " + "\n" +
+			       "    given, display remembered commands.  If -r is given, forget" + "\n" +
+			       "    all of remembered commands.  Remembered commands are also " + "\n" +
+			       "    forgotten when PATH or directory in PATH is changed.";
+		}
+	},
 	help {
 		@Override
 		public String getUsage() {
@@ -37,6 +101,71 @@ public enum BuiltinSymbol {
 			return "    Display helpful information about builtin commands.";
 		}
 	},
+	printf {
+		@Override
+		public String getUsage() {
+			return "printf format [arguments]";
+		}
+		@Override
+		public String getDetail() {
+			return "    Write the formatted arguments to the standard output.  FORMAT " + "\n" +
+			       "    contains plain characters, escape sequences and conversion " + "\n" +
+			       "    specifications (%b %q %c %s %d %i %o %u %x %X %e %E %f %F %g %G).  " + "\n" +
+			       "    FORMAT is reused as necessary to consume all of ARGUMENTS.";
+		}
+		@Override
+		public boolean hasExternalCommand() {
+			return true;
+		}
+	},
+	test {
+		@Override
+		public String getUsage() {
+			return "test [expr]";
+		}
+		@Override
+		public String getDetail() {
+			return "    Evaluate conditional expression.  Exit with a status of 0 (true) " + "\n" +
+			       "    or 1 (false) depending on the evaluation of EXPR.  If EXPR is " + "\n" +
+			       "    invalid, exit with a status of 2.";
+		}
+		@Override
+		public boolean hasExternalCommand() {
+			return true;
+		}
+	},
+	true_("true") {
+		@Override
+		public String getUsage() {
+			return "true";
+		}
+		@Override
+		public String getDetail() {
+			return "    Return a successful result.";
+		}
+		@Override
+		public boolean hasExternalCommand() {
+			return true;
+		}
+	},
+	wc {
+		@Override
+		public String getUsage() {
+			return "wc [-clmwL] [file ...]";
+		}
+		@Override
+		public String getDetail() {
+			return "    Print newline, word, and byte counts for each FILE, and a total" + "\n" +
+			       "    line if more than one FILE is specified.  If FILE is - or " + "\n" +
+			       "    omitted, read the standard input.  -l, -w, -m, -c and -L select" + "\n" +
+			       "    newline, word, character, byte counts and maximum line length." + "\n" +
+			       "    Characters are counted as bytes.";
+		}
+		@Override
+		public boolean hasExternalCommand() {
+			return true;
+		}
+	},
 	log {	// not builtin command
 		@Override
 		public String getUsage() {
@@ -51,6 +180,27 @@ public enum BuiltinSymbol {
 		}
 	};
 
+	/**
+	 * if null, command name is same as enum name.
+	 */
+	private final String commandName;
+
+	private BuiltinSymbol() {
+		this.commandName = null;
+	}
+
+	/**
+	 * for command name which is java keyword (true, false).
+	 * @param commandName
+	 */
+	private BuiltinSymbol(String commandName) {
+		this.commandName = commandName;
+	}
+
+	public String getCommandName() {
+		return this.commandName != null ? this.commandName : this.name();
+	}
+
 	public String getUsage() {
 		return "currently not defined";
 	}
@@ -63,20 +213,39 @@ public enum BuiltinSymbol {
 		return true;
 	}
 
+	/**
+	 * 
+	 * @return
+	 * - if true, same command exists as external command, so builtin command can be disabled.
+	 */
+	public boolean hasExternalCommand() {
+		return false;
+	}
+
 	public static boolean match(String symbol) {
-		try {
-			BuiltinSymbol.valueOf(symbol);
-			return true;
-		} catch(IllegalArgumentException e) {
+		return lookup(symbol) != null;
+	}
+
+	/**
+	 * 
+	 * @param commandName
+	 * @return
+	 * - if not found, return null.
+	 */
+	public static BuiltinSymbol lookup(String commandName) {
+		for(BuiltinSymbol symbol : BuiltinSymbol.values()) {
+			if(symbol.getCommandName().equals(commandName)) {
+				return symbol;
+			}
 		}
-		return false;
+		return null;
 	}
 
 	public static List<String> getCommandSymbolList() {
 		List<String> symbolList = new ArrayList<String>();
 		for(BuiltinSymbol symbol : BuiltinSymbol.values()) {
 			if(symbol.isCommandSymbol()) {
-				symbolList.add(symbol.name());
+				symbolList.add(symbol.getCommandName());
 			}
 		}
 		return symbolList;
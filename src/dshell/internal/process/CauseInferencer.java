@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import dshell.internal.lib.RuntimeContext;
 import dshell.internal.lib.Utils;
 import dshell.lang.Errno;
 
@@ -72,11 +73,11 @@ class CauseInferencer_ltrace implements CauseInferencer {
 		}
 		catch (FileNotFoundException e) {
 			e.printStackTrace();
-			System.exit(1);
+			RuntimeContext.getInstance().abort(1);
 		}
 		catch (IOException e) {
 			e.printStackTrace();
-			System.exit(1);
+			RuntimeContext.getInstance().abort(1);
 		}
 		FunctionContext topLevelContext = createTopLevelFuncContext(lineList);
 		proc.exitStatus = Integer.parseInt(topLevelContext.getRetValue());
@@ -4,20 +4,41 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+
+import com.sun.jna.Native;
 
 import dshell.internal.lib.RuntimeContext;
 import dshell.internal.lib.Utils;
 
-public class PipeStreamHandler extends Thread {
+/**
+ * copy input stream to output streams.
+ * if input is os pipe (FdInputStream), pumped by the shared pump thread without blocking.
+ * otherwise, pumped by own thread with blocking read.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class PipeStreamHandler implements Runnable {
 	public final static int defaultBufferSize = 512;
 	private final InputStream input;
 	private final OutputStream[] outputs;
 	private final boolean closeableInput;
 	private final boolean[] closeableOutputs;
 
+	private final CountDownLatch finished = new CountDownLatch(1);
+	private volatile Throwable error = null;
+
 	public PipeStreamHandler(InputStream input, OutputStream output, boolean closeableStream) {
 		this(input, new OutputStream[] {output}, closeableStream, new boolean[]{closeableStream});
 	}
@@ -32,8 +53,67 @@ public class PipeStreamHandler extends Thread {
 		}
 	}
 
+	/**
+	 * start pumping. must call it only once.
+	 */
+	public void start() {
+		if(this.input instanceof NullInputStream) {	// no data. only close
+			this.closeInput();
+			this.closeOutputs();
+			this.finished.countDown();
+			return;
+		}
+		PumpLoop.liveTaskCount.incrementAndGet();
+		if(PumpLoop.isSupported() && this.input instanceof FdInputStream) {
+			PumpLoop.getInstance().add(this);
+			return;
+		}
+		try {
+			Thread thread = new Thread(this, "dshell-pump-blocking");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		catch(Throwable t) {	// not started
+			PumpLoop.liveTaskCount.decrementAndGet();
+			throw t;
+		}
+	}
+
+	/**
+	 * wait for termination of this handler.
+	 * @throws InterruptedException
+	 */
+	public void join() throws InterruptedException {
+		this.finished.await();
+		if(this.error != null) {
+			throw new RuntimeException(this.error);
+		}
+	}
+
+	/**
+	 * blocking pump. used if input is not os pipe.
+	 */
 	@Override
 	public void run() {
+		PumpLoop.blockingThreadCount.incrementAndGet();
+		try {
+			this.pump();
+		}
+		catch(Throwable t) {
+			this.error = t;
+		}
+		finally {
+			PumpLoop.blockingThreadCount.decrementAndGet();
+			this.finish();
+		}
+	}
+
+	private void finish() {
+		PumpLoop.liveTaskCount.decrementAndGet();
+		this.finished.countDown();
+	}
+
+	private void pump() {
 		ArrayList<OutputStream> targetOutputList = new ArrayList<OutputStream>();
 		targetOutputList.addAll(Arrays.asList(this.outputs));
 		byte[] buffer = new byte[defaultBufferSize];
@@ -106,6 +186,351 @@ public class PipeStreamHandler extends Thread {
 		}
 	}
 
+	/**
+	 * get number of pump tasks which are started and not finished.
+	 * @return
+	 */
+	public static int getLiveTaskCount() {
+		return PumpLoop.liveTaskCount.get();
+	}
+
+	/**
+	 * state of handler pumped by PumpLoop. accessed only by pump thread.
+	 * output which is os pipe is written without blocking. if it is full, remaining data is kept,
+	 * and input is not read until all of them have been written.
+	 * other output (console or buffer) is written directly.
+	 */
+	private static class LoopedPump {
+		private final PipeStreamHandler handler;
+		private final int inputFd;
+		private final List<OutputStream> outputs;
+
+		/**
+		 * data not written to os pipe output yet. index is same as outputs.
+		 */
+		private final List<byte[]> pendingData;
+		private boolean endOfInput = false;
+
+		private LoopedPump(PipeStreamHandler handler) {
+			this.handler = handler;
+			this.inputFd = ((FdInputStream) handler.input).getFd();
+			PumpLoop.setNonBlocking(this.inputFd);
+			this.outputs = new ArrayList<>(Arrays.asList(handler.outputs));
+			this.pendingData = new ArrayList<>();
+			for(OutputStream output : this.outputs) {
+				if(output instanceof FdOutputStream) {
+					PumpLoop.setNonBlocking(((FdOutputStream) output).getFd());
+				}
+				this.pendingData.add(null);
+			}
+		}
+
+		private boolean hasPendingData() {
+			for(byte[] data : this.pendingData) {
+				if(data != null) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * 
+		 * @return
+		 * - if true, all data has been pumped.
+		 */
+		private boolean isDone() {
+			return (this.endOfInput || this.outputs.isEmpty()) && !this.hasPendingData();
+		}
+
+		/**
+		 * called when input is readable.
+		 * @param buffer
+		 */
+		private void readInput(byte[] buffer) {
+			for(int i = 0; i < PumpLoop.maxReadCount && !this.hasPendingData(); i++) {
+				int size = PosixLibraryWrapper.INSTANCE.read(this.inputFd, buffer, buffer.length);
+				if(size == -1 && Native.getLastError() == PumpLoop.EAGAIN) {
+					return;
+				}
+				if(size <= 0) {
+					if(size == -1 && RuntimeContext.getInstance().isDebugMode()) {
+						System.err.println("input problem: fd " + this.inputFd);
+					}
+					this.endOfInput = true;
+					return;
+				}
+				if(this.outputs.isEmpty()) {
+					this.endOfInput = true;
+					return;
+				}
+				byte[] data = Arrays.copyOf(buffer, size);	// may be kept as pending data, so do not share buffer
+				for(int j = 0; j < this.outputs.size(); j++) {
+					this.write(j, data);
+				}
+				this.removeBrokenOutputs();
+			}
+		}
+
+		/**
+		 * write data to output. if output is os pipe and full, keep remaining data.
+		 * @param index
+		 * @param data
+		 */
+		private void write(int index, byte[] data) {
+			OutputStream output = this.outputs.get(index);
+			if(!(output instanceof FdOutputStream)) {
+				try {
+					output.write(data, 0, data.length);
+				}
+				catch(IOException e) {
+					this.setBroken(index, e);
+				}
+				return;
+			}
+			int fd = ((FdOutputStream) output).getFd();
+			int size = PosixLibraryWrapper.INSTANCE.write(fd, data, data.length);
+			if(size == -1) {
+				if(Native.getLastError() == PumpLoop.EAGAIN) {
+					this.pendingData.set(index, data);
+				}
+				else {	// reader has closed pipe
+					this.setBroken(index, new IOException("write failed: fd " + fd));
+				}
+				return;
+			}
+			this.pendingData.set(index, size == data.length ? null : Arrays.copyOfRange(data, size, data.length));
+		}
+
+		/**
+		 * called when output which has pending data is writable.
+		 * @param index
+		 */
+		private void flushPendingData(int index) {
+			byte[] data = this.pendingData.get(index);
+			if(data != null) {
+				this.pendingData.set(index, null);
+				this.write(index, data);
+				this.removeBrokenOutputs();
+			}
+		}
+
+		private void setBroken(int index, IOException e) {
+			this.outputs.set(index, null);
+			this.pendingData.set(index, null);
+			if(RuntimeContext.getInstance().isDebugMode()) {
+				System.err.println("output problem");
+				e.printStackTrace();
+			}
+		}
+
+		private void removeBrokenOutputs() {
+			for(int i = this.outputs.size() - 1; i > -1; i--) {
+				if(this.outputs.get(i) == null) {
+					this.outputs.remove(i);
+					this.pendingData.remove(i);
+				}
+			}
+		}
+
+		private void finish(Throwable error) {
+			this.handler.error = error;
+			this.handler.closeInput();
+			this.handler.closeOutputs();
+			this.handler.finish();
+		}
+	}
+
+	/**
+	 * single thread which pumps all of os pipe inputs by poll(2).
+	 * thread count does not grow with number of tasks and pipeline stages.
+	 * writing to console may block this thread, like blocking pump.
+	 * available on linux only (constants of O_NONBLOCK and EAGAIN).
+	 */
+	private static class PumpLoop {
+		private final static int F_GETFL = 3;
+		private final static int F_SETFL = 4;
+		private final static int O_NONBLOCK = 04000;
+		private final static int O_CLOEXEC = 02000000;
+		private final static int EAGAIN = 11;
+		private final static short POLLIN = 0x001;
+		private final static short POLLOUT = 0x004;
+		private final static int pollfdSize = 8;	// struct pollfd {int fd; short events; short revents;}
+		private final static int loopBufferSize = 8192;
+
+		/**
+		 * max count of read from one input at once. other inputs are not starved.
+		 */
+		private final static int maxReadCount = 16;
+
+		private final static AtomicInteger liveTaskCount = new AtomicInteger(0);
+		private final static AtomicInteger blockingThreadCount = new AtomicInteger(0);
+
+		private final ConcurrentLinkedQueue<PipeStreamHandler> pendingHandlers = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * os pipe for waking up pump thread from poll. [read end, write end]
+		 */
+		private final int[] wakeUpFds = new int[2];
+
+		private PumpLoop() {
+			if(PosixLibraryWrapper.INSTANCE.pipe2(this.wakeUpFds, O_NONBLOCK | O_CLOEXEC) == -1) {
+				throw new RuntimeException("cannot create pipe for pump thread");
+			}
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					loop();
+				}
+			}, "dshell-pump");
+			thread.setDaemon(true);
+			thread.start();
+			// publish task count to jmx (dshell:type=PumpStatus)
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new PumpStatus(), 
+						new ObjectName("dshell:type=PumpStatus"));
+			}
+			catch(Exception e) {
+				if(RuntimeContext.getInstance().isDebugMode()) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		private static class Holder {
+			private final static PumpLoop INSTANCE = new PumpLoop();
+		}
+
+		private static PumpLoop getInstance() {
+			return Holder.INSTANCE;
+		}
+
+		private static boolean isSupported() {
+			return SpawnProcessContext.isSupported();
+		}
+
+		private static void setNonBlocking(int fd) {
+			PosixLibraryWrapper lib = PosixLibraryWrapper.INSTANCE;
+			lib.fcntl(fd, F_SETFL, lib.fcntl(fd, F_GETFL, 0) | O_NONBLOCK);
+		}
+
+		private void add(PipeStreamHandler handler) {
+			this.pendingHandlers.add(handler);
+			PosixLibraryWrapper.INSTANCE.write(this.wakeUpFds[1], new byte[]{0}, 1);
+		}
+
+		private void loop() {
+			List<LoopedPump> pumps = new ArrayList<>();
+			List<LoopedPump> polledPumps = new ArrayList<>();
+			List<Integer> polledOutputs = new ArrayList<>();	// -1 means input
+			byte[] buffer = new byte[loopBufferSize];
+			while(true) {
+				PipeStreamHandler handler;
+				while((handler = this.pendingHandlers.poll()) != null) {
+					try {
+						pumps.add(new LoopedPump(handler));
+					}
+					catch(Throwable t) {
+						handler.error = t;
+						handler.finish();
+					}
+				}
+
+				// wait input if no pending data, otherwise wait outputs which have pending data
+				polledPumps.clear();
+				polledOutputs.clear();
+				for(LoopedPump pump : pumps) {
+					if(!pump.hasPendingData()) {
+						polledPumps.add(pump);
+						polledOutputs.add(-1);
+						continue;
+					}
+					for(int i = 0; i < pump.pendingData.size(); i++) {
+						if(pump.pendingData.get(i) != null) {
+							polledPumps.add(pump);
+							polledOutputs.add(i);
+						}
+					}
+				}
+				int nfds = polledPumps.size() + 1;
+				ByteBuffer pollfds = ByteBuffer.allocate(pollfdSize * nfds).order(ByteOrder.nativeOrder());
+				putPollfd(pollfds, 0, this.wakeUpFds[0], POLLIN);
+				for(int i = 1; i < nfds; i++) {
+					LoopedPump pump = polledPumps.get(i - 1);
+					int outputIndex = polledOutputs.get(i - 1);
+					if(outputIndex == -1) {
+						putPollfd(pollfds, i, pump.inputFd, POLLIN);
+					} else {
+						putPollfd(pollfds, i, ((FdOutputStream) pump.outputs.get(outputIndex)).getFd(), POLLOUT);
+					}
+				}
+				byte[] pollfdArray = pollfds.array();
+				if(PosixLibraryWrapper.INSTANCE.poll(pollfdArray, nfds, -1) <= 0) {
+					continue;	// interrupted
+				}
+				pollfds = ByteBuffer.wrap(pollfdArray).order(ByteOrder.nativeOrder());
+				if(pollfds.getShort(6) != 0) {
+					while(PosixLibraryWrapper.INSTANCE.read(this.wakeUpFds[0], buffer, buffer.length) > 0);
+				}
+				for(int i = 1; i < nfds; i++) {
+					if(pollfds.getShort(i * pollfdSize + 6) == 0) {
+						continue;
+					}
+					LoopedPump pump = polledPumps.get(i - 1);
+					try {
+						int outputIndex = polledOutputs.get(i - 1);
+						if(outputIndex == -1) {
+							pump.readInput(buffer);
+						} else {
+							pump.flushPendingData(outputIndex);
+						}
+					}
+					catch(Throwable t) {
+						pump.handler.error = t;
+						pump.endOfInput = true;
+						pump.pendingData.clear();
+						pump.outputs.clear();
+					}
+				}
+
+				// finish pumps which have pumped all data
+				for(Iterator<LoopedPump> iterator = pumps.iterator(); iterator.hasNext(); ) {
+					LoopedPump pump = iterator.next();
+					if(pump.isDone()) {
+						iterator.remove();
+						pump.finish(pump.handler.error);
+					}
+				}
+			}
+		}
+
+		private static void putPollfd(ByteBuffer pollfds, int index, int fd, short events) {
+			pollfds.putInt(index * pollfdSize, fd);
+			pollfds.putShort(index * pollfdSize + 4, events);
+			pollfds.putShort(index * pollfdSize + 6, (short) 0);
+		}
+	}
+
+	public static interface PumpStatusMBean {
+		public int getLiveTaskCount();
+		public int getPoolSize();
+	}
+
+	public static class PumpStatus implements PumpStatusMBean {
+		@Override
+		public int getLiveTaskCount() {
+			return PipeStreamHandler.getLiveTaskCount();
+		}
+
+		/**
+		 * number of pump threads. shared pump thread and blocking pump threads.
+		 */
+		@Override
+		public int getPoolSize() {
+			return 1 + PumpLoop.blockingThreadCount.get();
+		}
+	}
+
 	public static class NullInputStream extends InputStream {
 		@Override
 		public int read() throws IOException {
@@ -125,6 +550,100 @@ public class PipeStreamHandler extends Thread {
 		}
 	}
 
+	/**
+	 * input stream of os pipe. accessed by file descriptor.
+	 */
+	public static class FdInputStream extends InputStream {
+		private final int fd;
+		private boolean closed = false;
+
+		public FdInputStream(int fd) {
+			this.fd = fd;
+		}
+
+		public int getFd() {
+			return this.fd;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] buf = new byte[1];
+			return this.read(buf, 0, 1) == -1 ? -1 : buf[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) {
+				return 0;
+			}
+			byte[] buf = off == 0 ? b : new byte[len];
+			int size = PosixLibraryWrapper.INSTANCE.read(this.fd, buf, len);
+			if(size == -1) {
+				throw new IOException("read failed: fd " + this.fd);
+			}
+			if(size == 0) {
+				return -1;
+			}
+			if(buf != b) {
+				System.arraycopy(buf, 0, b, off, size);
+			}
+			return size;
+		}
+
+		@Override
+		public synchronized void close() {
+			if(!this.closed) {
+				this.closed = true;
+				PosixLibraryWrapper.INSTANCE.close(this.fd);
+			}
+		}
+	}
+
+	/**
+	 * output stream of os pipe. accessed by file descriptor.
+	 */
+	public static class FdOutputStream extends OutputStream {
+		private final int fd;
+		private boolean closed = false;
+
+		public FdOutputStream(int fd) {
+			this.fd = fd;
+		}
+
+		public int getFd() {
+			return this.fd;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			byte[] buf = off == 0 ? b : Arrays.copyOfRange(b, off, off + len);
+			int remain = len;
+			while(remain > 0) {
+				int size = PosixLibraryWrapper.INSTANCE.write(this.fd, buf, remain);
+				if(size == -1) {
+					throw new IOException("write failed: fd " + this.fd);
+				}
+				remain -= size;
+				if(remain > 0) {	// partial write
+					buf = Arrays.copyOfRange(buf, size, size + remain);
+				}
+			}
+		}
+
+		@Override
+		public synchronized void close() {
+			if(!this.closed) {
+				this.closed = true;
+				PosixLibraryWrapper.INSTANCE.close(this.fd);
+			}
+		}
+	}
+
 	public static interface OutputStreamHandler {
 		public void startHandler();
 		public String waitTermination();
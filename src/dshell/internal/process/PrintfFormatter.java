@@ -0,0 +1,1013 @@
+package dshell.internal.process;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import dshell.internal.lib.PatternCache;
+
+/**
+ * formatter of printf command. output is same as printf of coreutils on x86_64 linux.
+ * floating point argument is rounded to long double (64 bit significand) like strtold,
+ * and printed from exact decimal value with round-half-even like glibc.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class PrintfFormatter {
+	private final static BigInteger uintmaxLimit = BigInteger.ONE.shiftLeft(64);
+	private final static BigInteger intmaxMax = BigInteger.valueOf(Long.MAX_VALUE);
+	private final static BigInteger intmaxMin = BigInteger.valueOf(Long.MIN_VALUE);
+
+	/**
+	 * significand bits of long double (x87 extended precision).
+	 */
+	private final static int longDoubleDigits = 64;
+
+	/**
+	 * exponent range of long double. value is significand * 2^exponent.
+	 * min is exponent of subnormal, max is exponent of LDBL_MAX.
+	 */
+	private final static int longDoubleMinExponent = -16445;
+	private final static int longDoubleMaxExponent = 16320;
+	private final static BigDecimal longDoubleMinNormal = scaleByPowerOfTwo(BigDecimal.ONE, -16382);
+
+	private final static String integerPattern = "^[ \t\n\u000b\f\r]*([-+]?)(0[xX][0-9a-fA-F]+|0[0-7]*|[1-9][0-9]*)";
+	private final static String floatPattern =
+			"^[ \t\n\u000b\f\r]*([-+]?)(0[xX](?:[0-9a-fA-F]+\\.?[0-9a-fA-F]*|\\.[0-9a-fA-F]+)(?:[pP][-+]?[0-9]+)?" +
+			"|(?:[0-9]+\\.?[0-9]*|\\.[0-9]+)(?:[eE][-+]?[0-9]+)?|[iI][nN][fF](?:[iI][nN][iI][tT][yY])?|[nN][aA][nN])";
+
+	private final String format;
+	private final List<String> args;
+	private int argIndex = 0;
+	private final ByteArrayOutputStream output;
+	private final List<String> errorMessages;
+	private boolean success = true;
+
+	/**
+	 * if true, \c has been found. remaining output is suppressed.
+	 */
+	private boolean stopped = false;
+
+	public PrintfFormatter(String format, List<String> args) {
+		this.format = format;
+		this.args = args;
+		this.output = new ByteArrayOutputStream();
+		this.errorMessages = new ArrayList<>();
+	}
+
+	/**
+	 * format arguments. format is reused until all arguments are consumed.
+	 * @return
+	 * - if false, error has happened.
+	 */
+	public boolean format() {
+		try {
+			int argSize = this.args.size();
+			while(true) {
+				int prevIndex = this.argIndex;
+				this.formatOnce();
+				if(this.stopped) {
+					return true;	// \c terminates printf successfully.
+				}
+				if(this.argIndex == prevIndex || this.argIndex >= argSize) {
+					break;
+				}
+			}
+			if(this.argIndex < argSize) {
+				this.errorMessages.add("warning: ignoring excess arguments, starting with '" + this.args.get(this.argIndex) + "'");
+			}
+		}
+		catch(IllegalArgumentException e) {	// fatal error
+			this.errorMessages.add(e.getMessage());
+			this.success = false;
+		}
+		return this.success;
+	}
+
+	public byte[] getOutput() {
+		return this.output.toByteArray();
+	}
+
+	public List<String> getErrorMessages() {
+		return this.errorMessages;
+	}
+
+	private String nextArg() {
+		if(this.argIndex < this.args.size()) {
+			return this.args.get(this.argIndex++);
+		}
+		return "";
+	}
+
+	private void formatOnce() {
+		String format = this.format;
+		int size = format.length();
+		int start = 0;
+		for(int i = 0; i < size && !this.stopped; i++) {
+			char ch = format.charAt(i);
+			if(ch != '%' && ch != '\\') {
+				continue;
+			}
+			BuiltinCommandHolder.writeString(this.output, format.substring(start, i));
+			if(ch == '\\') {
+				i = this.unescape(format, i, false);
+			} else {
+				i = this.formatDirective(format, i);
+			}
+			start = i + 1;
+		}
+		if(!this.stopped) {
+			BuiltinCommandHolder.writeString(this.output, format.substring(start));
+		}
+	}
+
+	/**
+	 *
+	 * @param str
+	 * @param index
+	 * - index of backslash.
+	 * @param isArg
+	 * - if true, interpret escape of %b argument (\0NNN).
+	 * @return
+	 * - index of last character of escape sequence.
+	 */
+	private int unescape(String str, int index, boolean isArg) {
+		int size = str.length();
+		if(index + 1 == size) {
+			this.output.write('\\');
+			return index;
+		}
+		int i = index + 1;
+		char ch = str.charAt(i);
+		switch(ch) {
+		case '"': this.output.write('"'); break;
+		case '\\': this.output.write('\\'); break;
+		case 'a': this.output.write(0x07); break;
+		case 'b': this.output.write('\b'); break;
+		case 'c': this.stopped = true; break;
+		case 'e': this.output.write(0x1b); break;
+		case 'f': this.output.write('\f'); break;
+		case 'n': this.output.write('\n'); break;
+		case 'r': this.output.write('\r'); break;
+		case 't': this.output.write('\t'); break;
+		case 'v': this.output.write(0x0b); break;
+		case 'x': {
+			int value = 0;
+			int count = 0;
+			for(; count < 2 && i + 1 < size && BuiltinCommandHolder.hexValue(str.charAt(i + 1)) != -1; count++) {
+				value = value * 16 + BuiltinCommandHolder.hexValue(str.charAt(++i));
+			}
+			if(count == 0) {
+				throw new IllegalArgumentException("missing hexadecimal number in escape");
+			}
+			this.output.write(value);
+			break;
+		}
+		case 'u':
+		case 'U': {
+			int digits = ch == 'u' ? 4 : 8;
+			long value = 0;
+			for(int count = 0; count < digits; count++) {
+				if(i + 1 == size || BuiltinCommandHolder.hexValue(str.charAt(i + 1)) == -1) {
+					throw new IllegalArgumentException("missing hexadecimal number in escape");
+				}
+				value = value * 16 + BuiltinCommandHolder.hexValue(str.charAt(++i));
+			}
+			if((value < 0xa0 && value != '$' && value != '@' && value != '`')
+					|| (value >= 0xd800 && value <= 0xdfff)) {
+				throw new IllegalArgumentException("invalid universal character name \\" + ch
+						+ String.format(ch == 'u' ? "%04x" : "%08x", value));
+			}
+			// character which is not representable in locale charset is printed as escape sequence.
+			if(value > 0x10ffff || !Charset.defaultCharset().newEncoder().canEncode(new String(Character.toChars((int) value)))) {
+				BuiltinCommandHolder.writeString(this.output, "\\" + ch + String.format(ch == 'u' ? "%04X" : "%08X", value));
+			} else {
+				BuiltinCommandHolder.writeString(this.output, new String(Character.toChars((int) value)));
+			}
+			break;
+		}
+		default:
+			if(BuiltinCommandHolder.isOctal(ch)) {	// \NNN or \0NNN (%b)
+				if(isArg && ch == '0') {
+					i++;
+				}
+				int value = 0;
+				for(int count = 0; count < 3 && i < size && BuiltinCommandHolder.isOctal(str.charAt(i)); count++) {
+					value = value * 8 + (str.charAt(i++) - '0');
+				}
+				this.output.write(value);
+				return i - 1;
+			}
+			// not escape
+			this.output.write('\\');
+			BuiltinCommandHolder.writeString(this.output, String.valueOf(ch));
+			break;
+		}
+		return i;
+	}
+
+	/**
+	 *
+	 * @param format
+	 * @param index
+	 * - index of '%'.
+	 * @return
+	 * - index of conversion character.
+	 */
+	private int formatDirective(String format, int index) {
+		int size = format.length();
+		int i = index + 1;
+		if(i < size && format.charAt(i) == '%') {
+			this.output.write('%');
+			return i;
+		}
+		if(i < size && format.charAt(i) == 'b') {
+			String arg = this.nextArg();
+			int argSize = arg.length();
+			int start = 0;
+			for(int j = 0; j < argSize && !this.stopped; j++) {
+				if(arg.charAt(j) == '\\') {
+					BuiltinCommandHolder.writeString(this.output, arg.substring(start, j));
+					j = this.unescape(arg, j, true);
+					start = j + 1;
+				}
+			}
+			if(!this.stopped) {
+				BuiltinCommandHolder.writeString(this.output, arg.substring(start));
+			}
+			return i;
+		}
+		if(i < size && format.charAt(i) == 'q') {
+			if(this.argIndex < this.args.size()) {
+				BuiltinCommandHolder.writeString(this.output, quoteShell(this.nextArg()));
+			}
+			return i;
+		}
+		Directive directive = new Directive();
+		// flags
+		for(; i < size; i++) {
+			char ch = format.charAt(i);
+			if(ch == '-') {
+				directive.leftJustify = true;
+			} else if(ch == '+') {
+				directive.plusSign = true;
+			} else if(ch == ' ') {
+				directive.spaceSign = true;
+			} else if(ch == '#') {
+				directive.alternate = true;
+			} else if(ch == '0') {
+				directive.zeroPad = true;
+			} else if(ch != '\'' && ch != 'I') {
+				break;
+			}
+		}
+		// field width
+		if(i < size && format.charAt(i) == '*') {
+			i++;
+			if(this.argIndex < this.args.size()) {
+				String arg = this.nextArg();
+				long width = this.toSignedInteger(arg);
+				if(width < Integer.MIN_VALUE || width > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException("invalid field width: '" + arg + "'");
+				}
+				directive.setWidth((int) width);
+			}
+		} else {
+			int start = i;
+			while(i < size && Character.isDigit(format.charAt(i)) && format.charAt(i) < 0x80) {
+				i++;
+			}
+			if(i > start) {
+				directive.setWidth(parseSize(format.substring(start, i)));
+			}
+		}
+		// precision
+		boolean hasPrecision = false;
+		if(i < size && format.charAt(i) == '.') {
+			i++;
+			hasPrecision = true;
+			if(i < size && format.charAt(i) == '*') {
+				i++;
+				if(this.argIndex < this.args.size()) {
+					String arg = this.nextArg();
+					long precision = this.toSignedInteger(arg);
+					if(precision < Integer.MIN_VALUE || precision > Integer.MAX_VALUE) {
+						throw new IllegalArgumentException("invalid precision: '" + arg + "'");
+					}
+					directive.precision = precision < 0 ? -1 : (int) precision;
+				} else {
+					directive.precision = 0;
+				}
+			} else {
+				int start = i;
+				while(i < size && format.charAt(i) >= '0' && format.charAt(i) <= '9') {
+					i++;
+				}
+				directive.precision = parseSize(format.substring(start, i));
+			}
+		}
+		// length modifier
+		while(i < size && "lLhjtz".indexOf(format.charAt(i)) != -1) {
+			i++;
+		}
+		char conversion = i < size ? format.charAt(i) : '\0';
+		if(!isValidConversion(conversion, directive, hasPrecision)) {
+			throw new IllegalArgumentException(format.substring(index, Math.min(i + 1, size)) + ": invalid conversion specification");
+		}
+		directive.conversion = conversion;
+		this.printDirective(directive, this.nextArg());
+		return i;
+	}
+
+	/**
+	 * quote argument of %q like shell-escape quoting style of coreutils.
+	 * argument is quoted only if it contains shell special or non printable characters.
+	 * non printable characters are printed as $'...' escape sequence.
+	 * @param arg
+	 * @return
+	 */
+	private static String quoteShell(String arg) {
+		CharsetEncoder encoder = Charset.defaultCharset().newEncoder();
+		int size = arg.length();
+		boolean needQuote = size == 0;
+		boolean hasSingleQuote = false;
+		boolean doubleQuotable = true;
+		for(int i = 0; i < size; i += Character.charCount(arg.codePointAt(i))) {
+			int ch = arg.codePointAt(i);
+			if(ch == '\'' || ch == ' ') {
+				hasSingleQuote |= ch == '\'';
+				needQuote = true;
+			} else if(!isPrintable(ch, encoder)) {
+				needQuote = true;
+				doubleQuotable = false;
+			} else if(ch < 0x80 && !Character.isLetterOrDigit(ch) && "%+,-./:@]_".indexOf(ch) == -1) {
+				// '#' and '~' are special only at beginning, '{' and '}' are special only if isolated.
+				// otherwise, they are quoted only by single quote.
+				if(ch == '#' || ch == '~' || ch == '{' || ch == '}') {
+					boolean special = ch == '#' || ch == '~' ? i == 0 : size == 1;
+					needQuote |= special;
+					doubleQuotable &= special;
+				} else {
+					needQuote = true;
+					doubleQuotable = false;
+				}
+			}
+		}
+		if(!needQuote) {
+			return arg;
+		}
+		if(hasSingleQuote && doubleQuotable) {
+			return "\"" + arg + "\"";
+		}
+		StringBuilder sBuilder = new StringBuilder();
+		sBuilder.append('\'');
+		boolean inEscape = false;
+		for(int i = 0; i < size; i += Character.charCount(arg.codePointAt(i))) {
+			int ch = arg.codePointAt(i);
+			if(ch == '\'') {
+				sBuilder.append("'\\''");
+				inEscape = false;
+			} else if(isPrintable(ch, encoder)) {
+				if(inEscape) {
+					sBuilder.append("''");
+					inEscape = false;
+				}
+				sBuilder.appendCodePoint(ch);
+			} else {
+				if(!inEscape) {
+					sBuilder.append("'$'");
+					inEscape = true;
+				}
+				appendEscape(sBuilder, ch);
+			}
+		}
+		sBuilder.append('\'');
+		return sBuilder.toString();
+	}
+
+	private static boolean isPrintable(int ch, CharsetEncoder encoder) {
+		if(ch < 0x80) {
+			return ch >= 0x20 && ch < 0x7f;
+		}
+		switch(Character.getType(ch)) {
+		case Character.CONTROL:
+		case Character.UNASSIGNED:
+		case Character.SURROGATE:
+		case Character.LINE_SEPARATOR:
+		case Character.PARAGRAPH_SEPARATOR:
+			return false;
+		default:
+			return encoder.canEncode(new String(Character.toChars(ch)));
+		}
+	}
+
+	/**
+	 * append escape sequence of $'...'. multibyte character is escaped as octal utf-8 bytes.
+	 * @param sBuilder
+	 * @param ch
+	 */
+	private static void appendEscape(StringBuilder sBuilder, int ch) {
+		switch(ch) {
+		case 0x07: sBuilder.append("\\a"); return;
+		case '\b': sBuilder.append("\\b"); return;
+		case '\f': sBuilder.append("\\f"); return;
+		case '\n': sBuilder.append("\\n"); return;
+		case '\r': sBuilder.append("\\r"); return;
+		case '\t': sBuilder.append("\\t"); return;
+		case 0x0b: sBuilder.append("\\v"); return;
+		default:
+			for(byte b : new String(Character.toChars(ch)).getBytes(StandardCharsets.UTF_8)) {
+				sBuilder.append(String.format("\\%03o", b & 0xff));
+			}
+		}
+	}
+
+	private static int parseSize(String digits) {
+		if(digits.isEmpty()) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(digits);
+		}
+		catch(NumberFormatException e) {
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	private static boolean isValidConversion(char conversion, Directive directive, boolean hasPrecision) {
+		switch(conversion) {
+		case 'a': case 'A': case 'e': case 'E': case 'f': case 'F': case 'g': case 'G':
+		case 'o': case 'x': case 'X':
+			return true;
+		case 'd': case 'i': case 'u':
+			return !directive.alternate;
+		case 's':
+			return !directive.alternate && !directive.zeroPad;
+		case 'c':
+			return !directive.alternate && !directive.zeroPad && !hasPrecision;
+		default:
+			return false;
+		}
+	}
+
+	private void printDirective(Directive directive, String arg) {
+		switch(directive.conversion) {
+		case 'd':
+		case 'i':
+			this.writePadded(directive, formatInteger(directive, BigInteger.valueOf(this.toSignedInteger(arg))), true);
+			break;
+		case 'o':
+		case 'u':
+		case 'x':
+		case 'X':
+			this.writePadded(directive, formatInteger(directive, this.toUnsignedInteger(arg)), true);
+			break;
+		case 'c': {
+			byte[] bytes = arg.getBytes();
+			this.writePadded(directive, new byte[]{bytes.length == 0 ? 0 : bytes[0]}, false);
+			break;
+		}
+		case 's': {
+			byte[] bytes = arg.getBytes();
+			if(directive.precision >= 0 && directive.precision < bytes.length) {
+				byte[] truncated = new byte[directive.precision];
+				System.arraycopy(bytes, 0, truncated, 0, directive.precision);
+				bytes = truncated;
+			}
+			this.writePadded(directive, bytes, false);
+			break;
+		}
+		default: {	// floating point
+			FloatValue value = this.toFloat(arg);
+			boolean finite = value.value != null;
+			this.writePadded(directive, formatFloat(directive, value).getBytes(), finite);
+			break;
+		}
+		}
+	}
+
+	/**
+	 * pad formatted value to field width.
+	 * @param directive
+	 * @param value
+	 * @param numeric
+	 * - if true, zero padding is inserted after sign and prefix.
+	 */
+	private void writePadded(Directive directive, byte[] value, boolean numeric) {
+		int padSize = directive.width - value.length;
+		if(padSize <= 0) {
+			this.output.write(value, 0, value.length);
+			return;
+		}
+		if(directive.leftJustify) {
+			this.output.write(value, 0, value.length);
+			writeRepeat(this.output, ' ', padSize);
+			return;
+		}
+		if(numeric && directive.zeroPad && !(isIntegerConversion(directive.conversion) && directive.precision >= 0)) {
+			int prefixSize = 0;
+			if(value.length > 0 && (value[0] == '-' || value[0] == '+' || value[0] == ' ')) {
+				prefixSize = 1;
+			}
+			if(value.length > prefixSize + 1 && value[prefixSize] == '0'
+					&& (value[prefixSize + 1] == 'x' || value[prefixSize + 1] == 'X')) {
+				prefixSize += 2;
+			}
+			this.output.write(value, 0, prefixSize);
+			writeRepeat(this.output, '0', padSize);
+			this.output.write(value, prefixSize, value.length - prefixSize);
+			return;
+		}
+		writeRepeat(this.output, ' ', padSize);
+		this.output.write(value, 0, value.length);
+	}
+
+	private static void writeRepeat(ByteArrayOutputStream output, char ch, int count) {
+		for(int i = 0; i < count; i++) {
+			output.write(ch);
+		}
+	}
+
+	private static boolean isIntegerConversion(char conversion) {
+		return "diouxX".indexOf(conversion) != -1;
+	}
+
+	private static byte[] formatInteger(Directive directive, BigInteger value) {
+		char conversion = directive.conversion;
+		int radix = conversion == 'o' ? 8 : (conversion == 'x' || conversion == 'X') ? 16 : 10;
+		String digits = value.abs().toString(radix);
+		if(conversion == 'X') {
+			digits = digits.toUpperCase();
+		}
+		if(directive.precision == 0 && value.signum() == 0) {
+			digits = "";
+		}
+		StringBuilder sBuilder = new StringBuilder();
+		if(value.signum() < 0) {
+			sBuilder.append('-');
+		} else if(conversion == 'd' || conversion == 'i') {
+			if(directive.plusSign) {
+				sBuilder.append('+');
+			} else if(directive.spaceSign) {
+				sBuilder.append(' ');
+			}
+		}
+		if(directive.alternate && value.signum() != 0 && radix == 16) {
+			sBuilder.append(conversion == 'X' ? "0X" : "0x");
+		}
+		int zeroSize = directive.precision - digits.length();
+		if(directive.alternate && radix == 8 && zeroSize <= 0 && !digits.startsWith("0")) {
+			zeroSize = 1;
+		}
+		for(int i = 0; i < zeroSize; i++) {
+			sBuilder.append('0');
+		}
+		sBuilder.append(digits);
+		return sBuilder.toString().getBytes();
+	}
+
+	// argument conversion
+
+	private void reportNumericError(String arg, int endIndex) {
+		if(endIndex == 0) {
+			this.errorMessages.add("'" + arg + "': expected a numeric value");
+		} else {
+			this.errorMessages.add("'" + arg + "': value not completely converted");
+		}
+		this.success = false;
+	}
+
+	/**
+	 * parse character constant ('c or "c).
+	 * @param arg
+	 * @return
+	 * - if arg is not character constant, return null.
+	 */
+	private BigInteger toCharConstant(String arg) {
+		if(arg.length() < 2 || (arg.charAt(0) != '\'' && arg.charAt(0) != '"')) {
+			return null;
+		}
+		int codePoint = arg.codePointAt(1);
+		int next = 1 + Character.charCount(codePoint);
+		if(next < arg.length()) {
+			this.errorMessages.add("warning: " + arg.substring(next) + ": character(s) following character constant have been ignored");
+		}
+		return BigInteger.valueOf(codePoint);
+	}
+
+	/**
+	 * same as strtoimax.
+	 * @param arg
+	 * @return
+	 * - if not integer, return BigInteger which is parsed from prefix of arg.
+	 */
+	private BigInteger parseInteger(String arg) {
+		BigInteger value = this.toCharConstant(arg);
+		if(value != null) {
+			return value;
+		}
+		Matcher matcher = PatternCache.getInstance().getPattern(integerPattern).matcher(arg);
+		if(!matcher.find()) {
+			if(!arg.isEmpty()) {
+				this.reportNumericError(arg, 0);
+			}
+			return BigInteger.ZERO;
+		}
+		String digits = matcher.group(2);
+		if(digits.length() > 2 && (digits.charAt(1) == 'x' || digits.charAt(1) == 'X')) {
+			value = new BigInteger(digits.substring(2), 16);
+		} else if(digits.length() > 1 && digits.charAt(0) == '0') {
+			value = new BigInteger(digits.substring(1), 8);
+		} else {
+			value = new BigInteger(digits);
+		}
+		if(matcher.group(1).equals("-")) {
+			value = value.negate();
+		}
+		if(matcher.end() != arg.length()) {
+			this.reportNumericError(arg, matcher.end());
+		}
+		return value;
+	}
+
+	private long toSignedInteger(String arg) {
+		BigInteger value = this.parseInteger(arg);
+		if(value.compareTo(intmaxMax) > 0 || value.compareTo(intmaxMin) < 0) {
+			this.errorMessages.add("'" + arg + "': Numerical result out of range");
+			this.success = false;
+			return value.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+		}
+		return value.longValue();
+	}
+
+	/**
+	 * same as strtoumax. negative value is wrapped around.
+	 * @param arg
+	 * @return
+	 */
+	private BigInteger toUnsignedInteger(String arg) {
+		BigInteger value = this.parseInteger(arg);
+		if(value.abs().compareTo(uintmaxLimit) >= 0) {
+			this.errorMessages.add("'" + arg + "': Numerical result out of range");
+			this.success = false;
+			return uintmaxLimit.subtract(BigInteger.ONE);
+		}
+		return value.signum() < 0 ? value.add(uintmaxLimit) : value;
+	}
+
+	/**
+	 * same as strtold.
+	 * @param arg
+	 * @return
+	 */
+	private FloatValue toFloat(String arg) {
+		BigInteger charValue = this.toCharConstant(arg);
+		if(charValue != null) {
+			return new FloatValue(false, new BigDecimal(charValue));
+		}
+		Pattern pattern = PatternCache.getInstance().getPattern(floatPattern);
+		Matcher matcher = pattern.matcher(arg);
+		if(!matcher.find()) {
+			if(!arg.isEmpty()) {
+				this.reportNumericError(arg, 0);
+			}
+			return new FloatValue(false, BigDecimal.ZERO);
+		}
+		if(matcher.end() != arg.length()) {
+			this.reportNumericError(arg, matcher.end());
+		}
+		boolean negative = matcher.group(1).equals("-");
+		String number = matcher.group(2).toLowerCase();
+		if(number.startsWith("inf")) {
+			return new FloatValue(negative, null);
+		}
+		if(number.equals("nan")) {
+			FloatValue value = new FloatValue(negative, null);
+			value.isNaN = true;
+			return value;
+		}
+		BigDecimal value = number.startsWith("0x") ? parseHexFloat(number) : new BigDecimal(number);
+		BigDecimal result = toLongDouble(value);
+		if(result == null || (result.compareTo(longDoubleMinNormal) < 0 && result.compareTo(value) != 0)) {
+			// overflow, or underflow to subnormal or zero
+			this.errorMessages.add("'" + arg + "': Numerical result out of range");
+			this.success = false;
+		}
+		return new FloatValue(negative, result);
+	}
+
+	/**
+	 * parse hexadecimal floating point without rounding.
+	 * @param number
+	 * - lower case. starts with "0x".
+	 * @return
+	 * - if exponent is too large or too small, it is clamped out of long double range.
+	 */
+	private static BigDecimal parseHexFloat(String number) {
+		int index = number.indexOf('p');
+		String mantissa = number.substring(2, index == -1 ? number.length() : index);
+		BigInteger exponent = index == -1 ? BigInteger.ZERO : new BigInteger(number.substring(index + 1).replace("+", ""));
+		int point = mantissa.indexOf('.');
+		if(point != -1) {
+			exponent = exponent.subtract(BigInteger.valueOf(4 * (mantissa.length() - point - 1)));
+			mantissa = mantissa.substring(0, point) + mantissa.substring(point + 1);
+		}
+		BigInteger significand = mantissa.isEmpty() ? BigInteger.ZERO : new BigInteger(mantissa, 16);
+		if(significand.signum() == 0) {
+			return BigDecimal.ZERO;
+		}
+		int bitLength = significand.bitLength();
+		int maxExponent = longDoubleMaxExponent + longDoubleDigits + 1 - bitLength;
+		int minExponent = longDoubleMinExponent - 2 - bitLength;
+		exponent = exponent.min(BigInteger.valueOf(maxExponent)).max(BigInteger.valueOf(minExponent));
+		return scaleByPowerOfTwo(new BigDecimal(significand), exponent.intValue());
+	}
+
+	/**
+	 * round decimal value to nearest long double.
+	 * @param value
+	 * - must not be negative.
+	 * @return
+	 * - exact decimal representation of long double. if overflow, return null.
+	 * if underflow, return subnormal value or zero.
+	 */
+	private static BigDecimal toLongDouble(BigDecimal value) {
+		if(value.signum() == 0) {
+			return BigDecimal.ZERO;
+		}
+		double approx = value.doubleValue();
+		int exponent;
+		if(approx == 0 || Double.isInfinite(approx)) {
+			exponent = (int) ((value.precision() - value.scale()) * 3.321928) - longDoubleDigits;
+		} else {
+			exponent = Math.getExponent(approx) - longDoubleDigits + 1;
+		}
+		while(true) {
+			exponent = Math.max(exponent, longDoubleMinExponent);
+			BigDecimal scaled = scaleByPowerOfTwo(value, -exponent);
+			int bitLength = scaled.toBigInteger().bitLength();
+			if(bitLength > longDoubleDigits || (bitLength < longDoubleDigits && exponent > longDoubleMinExponent)) {
+				exponent += bitLength - longDoubleDigits;
+				continue;
+			}
+			BigInteger significand = scaled.setScale(0, RoundingMode.HALF_EVEN).toBigInteger();
+			if(significand.bitLength() > longDoubleDigits) {	// carry by rounding up
+				significand = significand.shiftRight(1);
+				exponent++;
+			}
+			if(exponent > longDoubleMaxExponent) {
+				return null;
+			}
+			return scaleByPowerOfTwo(new BigDecimal(significand), exponent);
+		}
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @param exponent
+	 * @return
+	 * - value * 2^exponent. always exact.
+	 */
+	private static BigDecimal scaleByPowerOfTwo(BigDecimal value, int exponent) {
+		if(exponent >= 0) {
+			return value.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(exponent)));
+		}
+		return value.divide(new BigDecimal(BigInteger.ONE.shiftLeft(-exponent)));
+	}
+
+	// floating point formatting
+
+	private static String formatFloat(Directive directive, FloatValue value) {
+		char conversion = directive.conversion;
+		boolean upperCase = Character.isUpperCase(conversion);
+		String body;
+		if(value.value == null) {
+			body = value.isNaN ? "nan" : "inf";
+		} else {
+			int precision = directive.precision;
+			switch(Character.toLowerCase(conversion)) {
+			case 'f':
+				body = formatFixed(value.value, precision < 0 ? 6 : precision, directive.alternate);
+				break;
+			case 'e':
+				body = formatExponent(value.value, precision < 0 ? 6 : precision, directive.alternate);
+				break;
+			case 'g':
+				body = formatGeneral(value.value, precision < 0 ? 6 : precision, directive.alternate);
+				break;
+			default:	// 'a'
+				body = formatHex(value.value, precision, directive.alternate);
+				break;
+			}
+		}
+		String sign = "";
+		if(value.negative) {
+			sign = "-";
+		} else if(directive.plusSign) {
+			sign = "+";
+		} else if(directive.spaceSign) {
+			sign = " ";
+		}
+		String result = sign + body;
+		return upperCase ? result.toUpperCase() : result;
+	}
+
+	private static String formatFixed(BigDecimal value, int precision, boolean alternate) {
+		String result = value.setScale(precision, RoundingMode.HALF_EVEN).toPlainString();
+		if(precision == 0 && alternate) {
+			result += ".";
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @param precision
+	 * @return
+	 * - rounded value which has precision + 1 significant digits.
+	 */
+	private static BigDecimal roundSignificand(BigDecimal value, int precision) {
+		return value.round(new MathContext(precision + 1, RoundingMode.HALF_EVEN));
+	}
+
+	private static int decimalExponent(BigDecimal value) {
+		return value.signum() == 0 ? 0 : value.precision() - value.scale() - 1;
+	}
+
+	private static String formatExponent(BigDecimal value, int precision, boolean alternate) {
+		BigDecimal rounded = roundSignificand(value, precision);
+		int exponent = decimalExponent(rounded);
+		BigDecimal significand = rounded.movePointLeft(exponent).setScale(precision, RoundingMode.HALF_EVEN);
+		StringBuilder sBuilder = new StringBuilder();
+		sBuilder.append(significand.toPlainString());
+		if(precision == 0 && alternate) {
+			sBuilder.append('.');
+		}
+		sBuilder.append(exponent < 0 ? "e-" : "e+");
+		int absExponent = Math.abs(exponent);
+		if(absExponent < 10) {
+			sBuilder.append('0');
+		}
+		sBuilder.append(absExponent);
+		return sBuilder.toString();
+	}
+
+	private static String formatGeneral(BigDecimal value, int precision, boolean alternate) {
+		int p = precision == 0 ? 1 : precision;
+		int exponent = decimalExponent(roundSignificand(value, p - 1));
+		String result;
+		if(p > exponent && exponent >= -4) {
+			result = formatFixed(value, p - 1 - exponent, alternate);
+		} else {
+			result = formatExponent(value, p - 1, alternate);
+		}
+		if(alternate) {
+			return result;
+		}
+		// remove trailing zeros of fraction
+		int exponentIndex = result.indexOf('e');
+		String fraction = exponentIndex == -1 ? result : result.substring(0, exponentIndex);
+		String exponentPart = exponentIndex == -1 ? "" : result.substring(exponentIndex);
+		if(fraction.indexOf('.') != -1) {
+			fraction = fraction.replaceAll("0+$", "");
+			if(fraction.endsWith(".")) {
+				fraction = fraction.substring(0, fraction.length() - 1);
+			}
+		}
+		return fraction + exponentPart;
+	}
+
+	/**
+	 * same as glibc for long double. leading hex digit contains 4 bits of significand.
+	 * @param value
+	 * @param precision
+	 * - if negative, print all of significant digits.
+	 * @param alternate
+	 * @return
+	 */
+	private static String formatHex(BigDecimal value, int precision, boolean alternate) {
+		if(value.signum() == 0) {
+			StringBuilder sBuilder = new StringBuilder("0x0");
+			if(precision > 0 || alternate) {
+				sBuilder.append('.');
+			}
+			for(int i = 0; i < precision; i++) {
+				sBuilder.append('0');
+			}
+			return sBuilder.append("p+0").toString();
+		}
+		// value = significand * 2^(exponent - 60), significand has 64 bits.
+		int exponent = 0;
+		BigInteger significand;
+		if(value.compareTo(longDoubleMinNormal) < 0) {	// subnormal has fixed exponent and leading zero digits.
+			significand = scaleByPowerOfTwo(value, -longDoubleMinExponent).toBigInteger();
+			exponent = longDoubleMinExponent + longDoubleDigits - 4;
+		} else {
+			BigDecimal scaled = value;
+			while(scaled.compareTo(BigDecimal.ONE) < 0 || scaled.compareTo(new BigDecimal(16)) >= 0) {
+				if(scaled.compareTo(BigDecimal.ONE) < 0) {
+					scaled = scaled.multiply(new BigDecimal(16));
+					exponent -= 4;
+				} else {
+					scaled = scaled.divide(new BigDecimal(16));
+					exponent += 4;
+				}
+			}
+			while(scaled.compareTo(new BigDecimal(8)) < 0) {
+				scaled = scaled.multiply(new BigDecimal(2));
+				exponent--;
+			}
+			significand = scaled.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(longDoubleDigits - 4))).toBigInteger();
+		}
+		String digits = zeroPad(significand.toString(16), longDoubleDigits / 4);
+		if(precision >= 0 && precision < digits.length() - 1) {
+			int droppedBits = (digits.length() - 1 - precision) * 4;
+			BigInteger rounded = new BigDecimal(significand).divide(new BigDecimal(BigInteger.ONE.shiftLeft(droppedBits)))
+					.setScale(0, RoundingMode.HALF_EVEN).toBigInteger();
+			digits = zeroPad(rounded.toString(16), precision + 1);
+			if(digits.length() > precision + 1) {	// carry to new hex digit
+				digits = digits.substring(0, precision + 1);
+				exponent += 4;
+			}
+		} else {
+			digits = digits.replaceAll("0+$", "");
+			if(digits.isEmpty()) {
+				digits = "0";
+			}
+			for(int i = digits.length() - 1; i < precision; i++) {
+				digits += "0";
+			}
+		}
+		StringBuilder sBuilder = new StringBuilder("0x");
+		sBuilder.append(digits.charAt(0));
+		if(digits.length() > 1 || alternate) {
+			sBuilder.append('.');
+		}
+		sBuilder.append(digits.substring(1));
+		sBuilder.append(exponent < 0 ? "p" : "p+");
+		sBuilder.append(exponent);
+		return sBuilder.toString();
+	}
+
+	private static String zeroPad(String digits, int length) {
+		StringBuilder sBuilder = new StringBuilder();
+		for(int i = digits.length(); i < length; i++) {
+			sBuilder.append('0');
+		}
+		return sBuilder.append(digits).toString();
+	}
+
+	private static class Directive {
+		private boolean leftJustify = false;
+		private boolean plusSign = false;
+		private boolean spaceSign = false;
+		private boolean alternate = false;
+		private boolean zeroPad = false;
+		private int width = 0;
+
+		/**
+		 * if negative, precision is not specified.
+		 */
+		private int precision = -1;
+		private char conversion;
+
+		/**
+		 * negative width represents left justification.
+		 * @param width
+		 */
+		private void setWidth(int width) {
+			if(width < 0) {
+				this.leftJustify = true;
+				this.width = width == Integer.MIN_VALUE ? Integer.MAX_VALUE : -width;
+			} else {
+				this.width = width;
+			}
+		}
+	}
+
+	private static class FloatValue {
+		private final boolean negative;
+
+		/**
+		 * absolute value. if null, infinity or nan.
+		 */
+		private final BigDecimal value;
+		private boolean isNaN = false;
+
+		private FloatValue(boolean negative, BigDecimal value) {
+			this.negative = negative;
+			this.value = value;
+		}
+	}
+}
@@ -15,12 +15,24 @@ public class ProcessContext extends AbstractProcessContext {
 	private final static String logDirPath = "/tmp/dshell-trace-log";
 	private static int logId = 0;
 
+	/**
+	 * used for opening os pipe as file.
+	 */
+	private final static String fdDirPath = "/dev/fd";
+
 	private final ProcessBuilder procBuilder;
 	private Process proc;
+	private int pid = -1;
 	public boolean isKilled = false;
 	private boolean enableTrace = false;
 	public String logFilePath = null;
 
+	/**
+	 * file descriptors of os pipe connected to standard input.
+	 * closed after process creation. may be null.
+	 */
+	private int[] inputPipeFds = null;
+
 	private static String createLogNameHeader() {
 		Calendar cal = Calendar.getInstance();
 		StringBuilder logNameHeader = new StringBuilder();
@@ -76,21 +88,111 @@ public class ProcessContext extends AbstractProcessContext {
 
 	@Override
 	public AbstractProcessContext start() {
+		int[][] streamPipeFds = this.redirectPipeToOsPipe();
 		try {
 			this.proc = this.procBuilder.start();
-			this.stdin = this.proc.getOutputStream();
-			this.stdout = this.proc.getInputStream();
-			this.stderr = this.proc.getErrorStream();
+			this.stdin = streamPipeFds[0] != null ? 
+					new PipeStreamHandler.FdOutputStream(streamPipeFds[0][1]) : this.proc.getOutputStream();
+			this.stdout = streamPipeFds[1] != null ? 
+					new PipeStreamHandler.FdInputStream(streamPipeFds[1][0]) : this.proc.getInputStream();
+			this.stderr = streamPipeFds[2] != null ? 
+					new PipeStreamHandler.FdInputStream(streamPipeFds[2][0]) : this.proc.getErrorStream();
+			closeChildSideFds(streamPipeFds);
 		}
 		catch(IOException e) {
+			for(int[] fds : streamPipeFds) {
+				if(fds != null) {
+					PosixLibraryWrapper.INSTANCE.close(fds[0]);
+					PosixLibraryWrapper.INSTANCE.close(fds[1]);
+				}
+			}
 			String errnoString = e.getMessage().split(":")[1].trim().split(", ")[0].split("=")[1];
 			String errnoName = Errno.toErrno(Integer.parseInt(errnoString)).name();
 			String cmdName = this.procBuilder.command().get(0);
 			throw ShellExceptionBuilder.createException(cmdName, new String[]{"", "", errnoName});
 		}
+		finally {
+			this.closeKernelPipe();
+		}
 		return this;
 	}
 
+	/**
+	 * replace pipe redirect of standard streams with os pipe created by jvm.
+	 * jvm side of os pipe is pumped by shared pump thread without blocking.
+	 * if os pipe is not available, pipe redirect is not changed.
+	 * @return
+	 * - pipe fds of stdin, stdout, stderr. if not replaced, element is null.
+	 */
+	private int[][] redirectPipeToOsPipe() {
+		int[][] streamPipeFds = new int[3][];
+		if(!SpawnProcessContext.isSupported() || !new File(fdDirPath).isDirectory()) {
+			return streamPipeFds;
+		}
+		if(this.procBuilder.redirectInput() == Redirect.PIPE && (streamPipeFds[0] = createPipe()) != null) {
+			this.procBuilder.redirectInput(new File(fdDirPath + "/" + streamPipeFds[0][0]));
+		}
+		if(this.procBuilder.redirectOutput() == Redirect.PIPE && (streamPipeFds[1] = createPipe()) != null) {
+			this.procBuilder.redirectOutput(Redirect.to(new File(fdDirPath + "/" + streamPipeFds[1][1])));
+		}
+		if(!this.procBuilder.redirectErrorStream() && this.procBuilder.redirectError() == Redirect.PIPE 
+				&& (streamPipeFds[2] = createPipe()) != null) {
+			this.procBuilder.redirectError(Redirect.to(new File(fdDirPath + "/" + streamPipeFds[2][1])));
+		}
+		return streamPipeFds;
+	}
+
+	/**
+	 * close child side of os pipe. after that, only child process has it.
+	 * @param streamPipeFds
+	 */
+	private static void closeChildSideFds(int[][] streamPipeFds) {
+		if(streamPipeFds[0] != null) {
+			PosixLibraryWrapper.INSTANCE.close(streamPipeFds[0][0]);
+		}
+		for(int i = 1; i < 3; i++) {
+			if(streamPipeFds[i] != null) {
+				PosixLibraryWrapper.INSTANCE.close(streamPipeFds[i][1]);
+			}
+		}
+	}
+
+	/**
+	 * create os pipe and set it to redirect target of both processes.
+	 * must call it before starting both of processes.
+	 */
+	@Override
+	public boolean connectByKernelPipe(AbstractProcessContext srcContext) {
+		if(!(srcContext instanceof ProcessContext) || srcContext.stdoutIsDirty || this.stdinIsDirty) {
+			return false;
+		}
+		if(!new File(fdDirPath).isDirectory()) {
+			return false;
+		}
+		int[] fds = createPipe();
+		if(fds == null) {
+			return false;
+		}
+		((ProcessContext) srcContext).procBuilder.redirectOutput(Redirect.to(new File(fdDirPath + "/" + fds[1])));
+		srcContext.stdoutIsDirty = true;
+		this.procBuilder.redirectInput(new File(fdDirPath + "/" + fds[0]));
+		this.stdinIsDirty = true;
+		this.inputPipeFds = fds;
+		return true;
+	}
+
+	/**
+	 * close jvm side of os pipe. after that, only child processes have pipe.
+	 */
+	@Override
+	public void closeKernelPipe() {
+		if(this.inputPipeFds != null) {
+			PosixLibraryWrapper.INSTANCE.close(this.inputPipeFds[0]);
+			PosixLibraryWrapper.INSTANCE.close(this.inputPipeFds[1]);
+			this.inputPipeFds = null;
+		}
+	}
+
 	@Override
 	public AbstractProcessContext setStreamBehavior(TaskConfig config) {
 		if(this.isFirstProc) {
@@ -152,22 +254,85 @@ public class ProcessContext extends AbstractProcessContext {
 		}
 	}
 
+	/**
+	 * process launched by ProcessBuilder has already exec'd when start() returns,
+	 * so it cannot join process group (setpgid fails with EACCES).
+	 * task requiring process group is launched by posix_spawn instead. see toSpawnContext().
+	 * if posix_spawn backend is not supported, process stays in group of shell,
+	 * and signal does not reach its grandchildren.
+	 */
+	@Override
+	public int getPid() {
+		if(this.proc == null) {
+			return -1;
+		}
+		if(this.pid == -1) {
+			this.pid = getPid(this.proc);
+		}
+		return this.pid;
+	}
+
+	/**
+	 * Process#pid is available since java 9. on older jvm, read private field of UNIXProcess.
+	 * @param proc
+	 * @return
+	 */
+	private static int getPid(Process proc) {
+		try {
+			return ((Long) Process.class.getMethod("pid").invoke(proc)).intValue();
+		}
+		catch(NoSuchMethodException e) {
+			return (Integer) Utils.getValue(proc, "pid");
+		}
+		catch(Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * create posix_spawn context which has same arguments and redirections.
+	 * used for process which must join process group before exec.
+	 * must call it before setStreamBehavior().
+	 * @return
+	 * - if trace is enabled, return null. ltrace cannot be launched by posix_spawn backend.
+	 * if posix_spawn backend is not supported on running os, also return null.
+	 */
+	SpawnProcessContext toSpawnContext() {
+		if(this.enableTrace || !SpawnProcessContext.isSupported()) {
+			return null;
+		}
+		SpawnProcessContext context = new SpawnProcessContext(this.argList.get(0));
+		context.argList.addAll(this.argList.subList(1, this.argList.size()));
+		context.cmdBuilder.setLength(0);
+		context.cmdBuilder.append(this.cmdBuilder);
+		Redirect input = this.procBuilder.redirectInput();
+		if(input.type() == Redirect.Type.READ) {
+			context.setInputRedirect(input.file().getPath());
+		}
+		copyOutputRedirect(context, STDOUT_FILENO, this.procBuilder.redirectOutput());
+		copyOutputRedirect(context, STDERR_FILENO, this.procBuilder.redirectError());
+		if(this.procBuilder.redirectErrorStream()) {
+			context.mergeErrorToOut();
+		}
+		context.setAsFirstProc(this.isFirstProc);
+		context.setAsLastProc(this.isLastProc);
+		return context;
+	}
+
+	private static void copyOutputRedirect(SpawnProcessContext context, int fd, Redirect redirect) {
+		if(redirect.type() == Redirect.Type.WRITE || redirect.type() == Redirect.Type.APPEND) {
+			context.setOutputRedirect(fd, redirect.file().getPath(), redirect.type() == Redirect.Type.APPEND);
+		}
+	}
+
 	@Override
 	public void kill() {
 		if(System.getProperty("os.name").startsWith("Windows")) {
 			this.proc.destroy();
 			return;
 		}
-		try {
-			int pid = (Integer) Utils.getValue(this.proc, "pid");
-			String[] cmds = {"kill", "-9", Integer.toString(pid)};
-			Process procKiller = new ProcessBuilder(cmds).start();
-			procKiller.waitFor();
-			this.isKilled = true;
-		} catch(Exception e) {
-			e.printStackTrace();
-			Utils.fatal(1, "killing process problem");
-		}
+		super.kill();
+		this.isKilled = true;
 	}
 
 	public boolean checkTermination() {
@@ -193,4 +358,37 @@ public class ProcessContext extends AbstractProcessContext {
 	public boolean hasTraced() {
 		return this.enableTrace;
 	}
-}
\ No newline at end of file
+}
+
+interface PosixLibraryWrapper extends com.sun.jna.Library {
+	PosixLibraryWrapper INSTANCE = (PosixLibraryWrapper) com.sun.jna.Native.loadLibrary("c", PosixLibraryWrapper.class);
+
+	int pipe(int[] fds);
+	int pipe2(int[] fds, int flags);
+	int close(int fd);
+	int fcntl(int fd, int cmd, int arg);
+	int read(int fd, byte[] buf, int count);
+	int write(int fd, byte[] buf, int count);
+
+	// for posix_spawn backend
+	int posix_spawn(int[] pid, String path, com.sun.jna.Pointer fileActions, com.sun.jna.Pointer attr, String[] argv, com.sun.jna.Pointer envp);
+	int posix_spawn_file_actions_init(com.sun.jna.Pointer fileActions);
+	int posix_spawn_file_actions_destroy(com.sun.jna.Pointer fileActions);
+	int posix_spawn_file_actions_addopen(com.sun.jna.Pointer fileActions, int fd, String path, int oflag, int mode);
+	int posix_spawn_file_actions_adddup2(com.sun.jna.Pointer fileActions, int fd, int newfd);
+	int posix_spawn_file_actions_addclosefrom_np(com.sun.jna.Pointer fileActions, int from);	// glibc 2.34 or later
+	int posix_spawnattr_init(com.sun.jna.Pointer attr);
+	int posix_spawnattr_destroy(com.sun.jna.Pointer attr);
+	int posix_spawnattr_setflags(com.sun.jna.Pointer attr, short flags);
+	int posix_spawnattr_setsigmask(com.sun.jna.Pointer attr, com.sun.jna.Pointer sigmask);
+	int posix_spawnattr_setpgroup(com.sun.jna.Pointer attr, int pgroup);
+	int sigemptyset(com.sun.jna.Pointer set);
+	int waitpid(int pid, int[] status, int options);
+	int waitid(int idtype, int id, byte[] infop, int options);
+	int poll(byte[] fds, int nfds, int timeout);
+	int syscall(com.sun.jna.NativeLong number, Object... args);
+	int kill(int pid, int sig);
+	int isatty(int fd);
+	int geteuid();
+	int getegid();
+}
@@ -0,0 +1,216 @@
+package dshell.internal.process;
+
+import static dshell.internal.process.TaskConfig.Behavior.background;
+import static dshell.internal.process.TaskConfig.Behavior.timeout;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * process group of task pipeline.
+ * first launched external process becomes group leader, and following processes join its group.
+ * signal sent to process group also reaches grandchildren of task.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class ProcessGroup {
+	public final static int SIGKILL = 9;
+	public final static int SIGTERM = 15;
+
+	private final static int STDIN_FILENO = 0;
+
+	/**
+	 * grace period from SIGTERM to SIGKILL. (ms)
+	 */
+	private final static long gracePeriod = 2000;
+
+	/**
+	 * if 0, group leader has not launched yet.
+	 */
+	private int pgid = 0;
+
+	/**
+	 * process whose pid is pgid.
+	 */
+	private SpawnProcessContext leader = null;
+
+	/**
+	 * if true, pgid may be reused by other process group. never send signal to group after that.
+	 */
+	private boolean leaderReaped = false;
+
+	/**
+	 * number of running SIGTERM to SIGKILL escalations.
+	 * while escalating, group leader is not reaped, so pgid is never reused.
+	 */
+	private int escalationCount = 0;
+
+	/**
+	 * if true, group leader has exited during escalation and waits reaping.
+	 */
+	private boolean leaderWaitsReaping = false;
+
+	/**
+	 * get process group id which next process should join.
+	 * @return
+	 * - if 0, next process becomes group leader.
+	 */
+	public synchronized int getPgid() {
+		return this.pgid;
+	}
+
+	/**
+	 * called after process has joined this group.
+	 * @param proc
+	 * - launched process.
+	 * @return
+	 * - process group id.
+	 */
+	synchronized int notifyJoined(SpawnProcessContext proc) {
+		if(this.pgid == 0) {
+			this.pgid = proc.getPid();
+			this.leader = proc;
+		}
+		return this.pgid;
+	}
+
+	/**
+	 * called when group leader has exited.
+	 * @return
+	 * - if true, leader can be reaped now. if false, leader must be reaped after escalation.
+	 */
+	synchronized boolean tryReleaseLeader() {
+		if(this.escalationCount > 0) {
+			this.leaderWaitsReaping = true;
+			return false;
+		}
+		this.leaderReaped = true;
+		return true;
+	}
+
+	/**
+	 * called when group leader was reaped after escalation.
+	 */
+	synchronized void notifyLeaderReaped() {
+		this.leaderReaped = true;
+		this.leaderWaitsReaping = false;
+	}
+
+	private synchronized boolean beginEscalation() {
+		if(this.pgid == 0 || this.leaderReaped) {
+			return false;
+		}
+		this.escalationCount++;
+		return true;
+	}
+
+	private void endEscalation() {
+		SpawnProcessContext leader;
+		synchronized(this) {
+			if(--this.escalationCount > 0 || !this.leaderWaitsReaping) {
+				return;
+			}
+			leader = this.leader;
+		}
+		// call it outside of lock. leader locks itself before this group.
+		leader.reapAsLeader();
+	}
+
+	/**
+	 * send signal to all of processes in this group, including grandchildren of task.
+	 * @param signal
+	 */
+	private synchronized void sendSignalToGroup(int signal) {
+		if(!this.leaderReaped) {
+			PosixLibraryWrapper.INSTANCE.kill(-this.pgid, signal);
+		}
+	}
+
+	/**
+	 * create new process group and set it to each process.
+	 * process launched by ProcessBuilder cannot join group before exec, so it is replaced by posix_spawn context.
+	 * if posix_spawn backend is not supported on running os, it is kept as is and stays in group of shell.
+	 * must call it before setStreamBehavior().
+	 * @param procContexts
+	 */
+	public static void assign(List<AbstractProcessContext> procContexts) {
+		ProcessGroup procGroup = new ProcessGroup();
+		int size = procContexts.size();
+		for(int i = 0; i < size; i++) {
+			AbstractProcessContext proc = procContexts.get(i);
+			if(proc instanceof ProcessContext) {
+				SpawnProcessContext spawnContext = ((ProcessContext) proc).toSpawnContext();
+				if(spawnContext != null) {
+					proc = spawnContext;
+					procContexts.set(i, proc);
+				}
+			}
+			proc.setProcessGroup(procGroup);
+		}
+	}
+
+	/**
+	 * background task and task with timeout run in own process group.
+	 * foreground task stays in group of shell if standard input is terminal,
+	 * because process in other process group is stopped when reading terminal.
+	 * @param config
+	 * @return
+	 */
+	public static boolean isRequired(TaskConfig config) {
+		if(config.is(background)) {
+			return true;
+		}
+		return config.is(timeout) && PosixLibraryWrapper.INSTANCE.isatty(STDIN_FILENO) != 1;
+	}
+
+	/**
+	 * send SIGTERM to processes and send SIGKILL after grace period.
+	 * group leader is not reaped until SIGKILL is sent, so signal never reaches other process group.
+	 * does not wait termination, so can call it from timer thread.
+	 * @param procContexts
+	 * - must be already started.
+	 */
+	public static void terminate(final List<AbstractProcessContext> procContexts) {
+		final ProcessGroup procGroup = findGroup(procContexts);
+		final boolean escalating = procGroup != null && procGroup.beginEscalation();
+		sendSignal(procContexts, SIGTERM);
+		TaskTimer.getInstance().schedule(new Runnable() {
+			@Override
+			public void run() {
+				sendSignal(procContexts, SIGKILL);
+				if(escalating) {
+					procGroup.endEscalation();
+				}
+			}
+		}, gracePeriod);
+	}
+
+	/**
+	 * send signal to process group of each process.
+	 * if process does not belong to own process group, send signal to process itself.
+	 * @param procContexts
+	 * @param signal
+	 */
+	public static void sendSignal(List<AbstractProcessContext> procContexts, int signal) {
+		Set<ProcessGroup> signaledGroups = new HashSet<>();
+		for(AbstractProcessContext proc : procContexts) {
+			if(proc.getProcessGroupId() <= 0) {
+				proc.sendSignal(signal);
+			}
+			else if(signaledGroups.add(proc.procGroup)) {
+				// group remains while grandchildren are alive, even if all of task processes have terminated.
+				proc.procGroup.sendSignalToGroup(signal);
+			}
+		}
+	}
+
+	private static ProcessGroup findGroup(List<AbstractProcessContext> procContexts) {
+		for(AbstractProcessContext proc : procContexts) {
+			if(proc.getProcessGroupId() > 0) {
+				return proc.procGroup;
+			}
+		}
+		return null;
+	}
+}
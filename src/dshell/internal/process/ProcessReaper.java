@@ -0,0 +1,326 @@
+package dshell.internal.process;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+
+/**
+ * process-wide reaper of background tasks.
+ * single reaper thread waits for termination of all watched processes and notifies it by callback.
+ * posix_spawn child is watched by pidfd, and builtin command wakes up reaper when finished.
+ * process which has no pidfd (launched by ProcessBuilder, or kernel older than linux 5.3)
+ * is checked without blocking at fixed interval in same thread.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class ProcessReaper {
+	private final static int SYS_pidfd_open = 434;
+	private final static int ENOSYS = 38;
+	private final static int O_NONBLOCK = 04000;
+	private final static int O_CLOEXEC = 02000000;
+	private final static short POLLIN = 0x001;
+	private final static int pollfdSize = 8;	// struct pollfd {int fd; short events; short revents;}
+
+	/**
+	 * check interval of process which has no pidfd. (ms)
+	 */
+	private final static int fallbackCheckInterval = 50;
+
+	/**
+	 * reaper thread only blocks in poll, so does not require large stack.
+	 */
+	private final static long reaperStackSize = 64 * 1024;
+
+	/**
+	 * if false, pidfd_open is not available.
+	 */
+	private static volatile boolean supportPidfd = SpawnProcessContext.isSupported();
+
+	/**
+	 * watch added after last wake up. consumed by reaper thread.
+	 */
+	private final ConcurrentLinkedQueue<Watch> pendingWatches = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger watchingCount = new AtomicInteger(0);
+
+	/**
+	 * os pipe for waking up reaper thread from poll. [read end, write end]
+	 */
+	private final int[] wakeUpFds = new int[2];
+
+	private ProcessReaper() {
+		if(PosixLibraryWrapper.INSTANCE.pipe2(this.wakeUpFds, O_NONBLOCK | O_CLOEXEC) == -1) {
+			throw new RuntimeException("cannot create pipe for process reaper");
+		}
+		Thread thread = new Thread(null, new Runnable() {
+			@Override
+			public void run() {
+				reap();
+			}
+		}, "dshell-reaper", reaperStackSize);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static class Holder {
+		private final static ProcessReaper INSTANCE = new ProcessReaper();
+	}
+
+	public static ProcessReaper getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * start watching processes.
+	 * @param procContexts
+	 * - must be already started.
+	 * @param terminationHandler
+	 * - called once, just after all of processes have terminated. may be null.
+	 * @return
+	 * - represents termination of all processes.
+	 */
+	public Watch watch(List<AbstractProcessContext> procContexts, Runnable terminationHandler) {
+		Watch watch = new Watch(procContexts, terminationHandler);
+		this.watchingCount.incrementAndGet();
+		this.pendingWatches.add(watch);
+		this.wakeUp();
+		return watch;
+	}
+
+	/**
+	 * wake up reaper thread, and check termination of watched processes.
+	 * called when process which has no pidfd (builtin command) has terminated.
+	 */
+	public void wakeUp() {
+		PosixLibraryWrapper.INSTANCE.write(this.wakeUpFds[1], new byte[]{0}, 1);
+	}
+
+	/**
+	 * get number of task under watching.
+	 * @return
+	 */
+	public int getWatchingCount() {
+		return this.watchingCount.get();
+	}
+
+	/**
+	 * main loop of reaper thread.
+	 */
+	private void reap() {
+		List<Watch> watches = new ArrayList<>();
+		List<WatchedProc> polledProcs = new ArrayList<>();
+		byte[] drainBuf = new byte[64];
+		while(true) {
+			Watch newWatch;
+			while((newWatch = this.pendingWatches.poll()) != null) {
+				newWatch.openPidfds();
+				watches.add(newWatch);
+			}
+
+			// check termination and finish watch
+			boolean hasUnpolledProc = false;
+			Iterator<Watch> iterator = watches.iterator();
+			while(iterator.hasNext()) {
+				Watch watch = iterator.next();
+				if(watch.checkTermination()) {
+					iterator.remove();
+					this.watchingCount.decrementAndGet();
+					watch.finish();
+				}
+				else {
+					hasUnpolledProc |= watch.hasUnpolledProc();
+				}
+			}
+
+			// wait next event
+			polledProcs.clear();
+			for(Watch watch : watches) {
+				watch.collectPolledProcs(polledProcs);
+			}
+			int nfds = polledProcs.size() + 1;
+			ByteBuffer pollfds = ByteBuffer.allocate(pollfdSize * nfds).order(ByteOrder.nativeOrder());
+			putPollfd(pollfds, 0, this.wakeUpFds[0]);
+			for(int i = 1; i < nfds; i++) {
+				putPollfd(pollfds, i, polledProcs.get(i - 1).pidfd);
+			}
+			byte[] pollfdArray = pollfds.array();
+			if(PosixLibraryWrapper.INSTANCE.poll(pollfdArray, nfds, hasUnpolledProc ? fallbackCheckInterval : -1) <= 0) {
+				continue;	// timeout or interrupted
+			}
+			pollfds = ByteBuffer.wrap(pollfdArray).order(ByteOrder.nativeOrder());
+			if(pollfds.getShort(6) != 0) {
+				while(PosixLibraryWrapper.INSTANCE.read(this.wakeUpFds[0], drainBuf, drainBuf.length) > 0);
+			}
+			for(int i = 1; i < nfds; i++) {
+				if(pollfds.getShort(i * pollfdSize + 6) != 0) {
+					polledProcs.get(i - 1).readable = true;
+				}
+			}
+		}
+	}
+
+	private static void putPollfd(ByteBuffer pollfds, int index, int fd) {
+		pollfds.putInt(index * pollfdSize, fd);
+		pollfds.putShort(index * pollfdSize + 4, POLLIN);
+		pollfds.putShort(index * pollfdSize + 6, (short) 0);
+	}
+
+	/**
+	 * open pidfd, which becomes readable when process has terminated.
+	 * @param pid
+	 * @return
+	 * - if not available, return -1.
+	 */
+	static int pidfdOpen(int pid) {
+		if(!supportPidfd) {
+			return -1;
+		}
+		int fd = PosixLibraryWrapper.INSTANCE.syscall(new NativeLong(SYS_pidfd_open), pid, 0);
+		if(fd == -1 && Native.getLastError() == ENOSYS) {	// linux 5.2 or older
+			supportPidfd = false;
+		}
+		return fd;
+	}
+
+	private static class WatchedProc {
+		private final AbstractProcessContext proc;
+
+		/**
+		 * if -1, termination is checked when reaper wakes up.
+		 */
+		private int pidfd = -1;
+
+		/**
+		 * if true, pidfd has become readable.
+		 */
+		private boolean readable = false;
+
+		private boolean terminated = false;
+
+		private WatchedProc(AbstractProcessContext proc) {
+			this.proc = proc;
+		}
+	}
+
+	public static class Watch {
+		private final List<WatchedProc> procs;
+		private final Runnable terminationHandler;
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile Throwable handlerError = null;
+
+		private Watch(List<AbstractProcessContext> procContexts, Runnable terminationHandler) {
+			this.procs = new ArrayList<>(procContexts.size());
+			for(AbstractProcessContext proc : procContexts) {
+				this.procs.add(new WatchedProc(proc));
+			}
+			this.terminationHandler = terminationHandler;
+		}
+
+		/**
+		 * called from reaper thread.
+		 */
+		private void openPidfds() {
+			for(WatchedProc watched : this.procs) {
+				watched.pidfd = watched.proc.openPidfd();
+			}
+		}
+
+		/**
+		 * called from reaper thread.
+		 * @return
+		 * - if true, all processes have terminated.
+		 */
+		private boolean checkTermination() {
+			boolean allTerminated = true;
+			for(WatchedProc watched : this.procs) {
+				if(!watched.terminated && (watched.pidfd == -1 || watched.readable)) {
+					watched.terminated = watched.proc.checkTermination();
+					watched.readable = false;
+				}
+				allTerminated &= watched.terminated;
+			}
+			return allTerminated;
+		}
+
+		private boolean hasUnpolledProc() {
+			for(WatchedProc watched : this.procs) {
+				if(!watched.terminated && watched.pidfd == -1 && !watched.proc.notifiesTermination()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void collectPolledProcs(List<WatchedProc> polledProcs) {
+			for(WatchedProc watched : this.procs) {
+				if(!watched.terminated && watched.pidfd != -1) {
+					polledProcs.add(watched);
+				}
+			}
+		}
+
+		/**
+		 * called from reaper thread after all processes have terminated.
+		 */
+		private void finish() {
+			try {
+				for(WatchedProc watched : this.procs) {
+					if(watched.pidfd != -1) {
+						PosixLibraryWrapper.INSTANCE.close(watched.pidfd);
+					}
+					watched.proc.waitTermination();	// already terminated. only set exit status.
+				}
+				if(this.terminationHandler != null) {
+					this.terminationHandler.run();
+				}
+			}
+			catch(Throwable t) {
+				this.handlerError = t;
+			}
+			finally {
+				this.latch.countDown();
+			}
+		}
+
+		/**
+		 * does not block.
+		 * @return
+		 * - if true, all processes have terminated and termination handler has finished.
+		 */
+		public boolean isFinished() {
+			return this.latch.getCount() == 0;
+		}
+
+		/**
+		 * block current thread until all processes have terminated and termination handler has finished.
+		 */
+		public void await() {
+			try {
+				this.latch.await();
+			}
+			catch(InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			if(this.handlerError != null) {
+				throw new RuntimeException(this.handlerError);
+			}
+		}
+
+		/**
+		 *
+		 * @return
+		 * - if true, all processes have already terminated.
+		 */
+		public boolean isDone() {
+			return this.latch.getCount() == 0;
+		}
+	}
+}
@@ -0,0 +1,384 @@
+package dshell.internal.process;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+
+import dshell.lang.Errno;
+
+/**
+ * process context launching process by posix_spawn.
+ * unlike ProcessBuilder, redirection is performed by file actions in child process.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class SpawnProcessContext extends AbstractProcessContext {
+	// open flags
+	private final static int O_RDONLY = 0;
+	private final static int O_WRONLY = 01;
+	private final static int O_CREAT  = 0100;
+	private final static int O_TRUNC  = 01000;
+	private final static int O_APPEND = 02000;
+	private final static int defaultFileMode = 0666;
+
+	// wait options
+	private final static int WNOHANG = 1;
+	private final static int WEXITED = 4;
+	private final static int WNOWAIT = 0x01000000;
+	private final static int P_PID = 1;
+
+	// siginfo_t of SIGCHLD (linux)
+	private final static int CLD_EXITED = 1;
+	private final static int siginfoCodeOffset = 8;
+	private final static int siginfoPidOffset = Native.POINTER_SIZE == 8 ? 16 : 12;
+	private final static int siginfoStatusOffset = siginfoPidOffset + 8;
+
+	private final static short POSIX_SPAWN_SETPGROUP = 0x02;
+	private final static short POSIX_SPAWN_SETSIGMASK = 0x08;
+
+	/**
+	 * larger than sizeof(posix_spawn_file_actions_t), sizeof(posix_spawnattr_t), sizeof(sigset_t)
+	 * and sizeof(siginfo_t).
+	 */
+	private final static int nativeStructSize = 512;
+
+	/**
+	 * open flags, wait options, spawn flags and layout of siginfo_t above are values of linux.
+	 * on other os, this backend is not available.
+	 */
+	private final static boolean supported = System.getProperty("os.name").equals("Linux");
+
+	/**
+	 * if false, posix_spawn_file_actions_addclosefrom_np is not available.
+	 */
+	private static boolean supportCloseFrom = true;
+
+	// redirect target kind
+	private final static int INHERIT = 0;
+	private final static int PIPE    = 1;
+	private final static int FILE    = 2;
+	private final static int FD      = 3;
+
+	/**
+	 * redirect target of standard input, output and error. index is file descriptor.
+	 */
+	private final int[] targetKinds = {PIPE, PIPE, INHERIT};
+	private final String[] targetFileNames = new String[3];
+	private final int[] targetFlags = new int[3];
+	private final int[] targetFds = {-1, -1, -1};
+	private boolean mergeErrorToOut = false;
+
+	/**
+	 * file descriptors of os pipe connected to standard input.
+	 * closed after process creation. may be null.
+	 */
+	private int[] inputPipeFds = null;
+
+	private int pid = -1;
+	private int pgid = -1;
+	private boolean terminated = false;
+
+	public SpawnProcessContext(String commandPath) {
+		super(commandPath);
+	}
+
+	/**
+	 * 
+	 * @return
+	 * - if false, running os is not supported by this backend. use ProcessBuilder instead.
+	 */
+	public static boolean isSupported() {
+		return supported;
+	}
+
+	@Override
+	public AbstractProcessContext enableTrace() {
+		System.err.println("Systemcall Trace is Not Supported in posix_spawn backend");
+		return this;
+	}
+
+	@Override
+	public AbstractProcessContext setStreamBehavior(TaskConfig config) {
+		if(this.isFirstProc && this.targetKinds[0] == PIPE) {
+			this.targetKinds[0] = INHERIT;
+			this.stdinIsDirty = true;
+		}
+		if(this.isLastProc && this.targetKinds[1] == PIPE && !config.supportStdoutHandler()) {
+			this.targetKinds[1] = INHERIT;
+			this.stdoutIsDirty = true;
+		}
+		if(this.targetKinds[2] == INHERIT && config.supportStderrHandler()) {
+			this.targetKinds[2] = PIPE;
+			this.stderrIsDirty = false;
+		}
+		return this;
+	}
+
+	@Override
+	protected AbstractProcessContext setInputRedirect(String readFileName) {
+		this.stdinIsDirty = true;
+		this.setTargetFile(0, readFileName, O_RDONLY);
+		return this;
+	}
+
+	@Override
+	protected AbstractProcessContext setOutputRedirect(int fd, String writeFileName, boolean append) {
+		int flags = O_WRONLY | O_CREAT | (append ? O_APPEND : O_TRUNC);
+		if(fd == STDOUT_FILENO) {
+			this.stdoutIsDirty = true;
+			this.setTargetFile(fd, writeFileName, flags);
+		} else if(fd == STDERR_FILENO) {
+			this.stderrIsDirty = true;
+			this.setTargetFile(fd, writeFileName, flags);
+		}
+		return this;
+	}
+
+	@Override
+	protected AbstractProcessContext mergeErrorToOut() {
+		this.mergeErrorToOut = true;
+		this.stderrIsDirty = true;
+		return this;
+	}
+
+	private void setTargetFile(int fd, String fileName, int flags) {
+		this.targetKinds[fd] = FILE;
+		this.targetFileNames[fd] = fileName;
+		this.targetFlags[fd] = flags;
+	}
+
+	@Override
+	public boolean connectByKernelPipe(AbstractProcessContext srcContext) {
+		if(!(srcContext instanceof SpawnProcessContext) || srcContext.stdoutIsDirty || this.stdinIsDirty) {
+			return false;
+		}
+		int[] fds = createPipe();
+		if(fds == null) {
+			return false;
+		}
+		SpawnProcessContext src = (SpawnProcessContext) srcContext;
+		src.targetKinds[1] = FD;
+		src.targetFds[1] = fds[1];
+		srcContext.stdoutIsDirty = true;
+		this.targetKinds[0] = FD;
+		this.targetFds[0] = fds[0];
+		this.stdinIsDirty = true;
+		this.inputPipeFds = fds;
+		return true;
+	}
+
+	@Override
+	public AbstractProcessContext start() {
+		PosixLibraryWrapper lib = PosixLibraryWrapper.INSTANCE;
+		Memory fileActions = new Memory(nativeStructSize);
+		Memory attr = new Memory(nativeStructSize);
+		Memory sigmask = new Memory(nativeStructSize);
+		int[] parentFds = {-1, -1, -1};
+		int[] childFds = {-1, -1, -1};
+		lib.posix_spawn_file_actions_init(fileActions);
+		lib.posix_spawnattr_init(attr);
+		try {
+			for(int fd = 0; fd < 3; fd++) {
+				if(fd == STDERR_FILENO && this.mergeErrorToOut) {
+					lib.posix_spawn_file_actions_adddup2(fileActions, STDOUT_FILENO, STDERR_FILENO);
+					continue;
+				}
+				switch(this.targetKinds[fd]) {
+				case PIPE:
+					int[] fds = createPipe();
+					if(fds == null) {
+						throw ShellExceptionBuilder.createException(this.argList.get(0), new String[]{"", "", Errno.EMFILE.name()});
+					}
+					parentFds[fd] = (fd == 0) ? fds[1] : fds[0];
+					childFds[fd] = (fd == 0) ? fds[0] : fds[1];
+					lib.posix_spawn_file_actions_adddup2(fileActions, childFds[fd], fd);
+					break;
+				case FILE:
+					lib.posix_spawn_file_actions_addopen(fileActions, fd, this.targetFileNames[fd], this.targetFlags[fd], defaultFileMode);
+					break;
+				case FD:
+					lib.posix_spawn_file_actions_adddup2(fileActions, this.targetFds[fd], fd);
+					break;
+				}
+			}
+			addCloseFrom(fileActions);
+			// child process does not inherit signal mask of jvm thread.
+			lib.sigemptyset(sigmask);
+			lib.posix_spawnattr_setsigmask(attr, sigmask);
+			short flags = POSIX_SPAWN_SETSIGMASK;
+			if(this.procGroup != null) {	// setpgid is performed in child process before exec, so never races.
+				lib.posix_spawnattr_setpgroup(attr, this.procGroup.getPgid());
+				flags |= POSIX_SPAWN_SETPGROUP;
+			}
+			lib.posix_spawnattr_setflags(attr, flags);
+
+			int[] pidRef = new int[1];
+			String[] argv = this.argList.toArray(new String[this.argList.size()]);
+			int ret = lib.posix_spawn(pidRef, argv[0], fileActions, attr, argv, getEnviron());
+			if(ret != 0) {
+				closeFds(parentFds);
+				throw ShellExceptionBuilder.createException(argv[0], new String[]{"", "", Errno.toErrno(ret).name()});
+			}
+			this.pid = pidRef[0];
+			if(this.procGroup != null) {
+				this.pgid = this.procGroup.notifyJoined(this);
+			}
+			this.stdin = parentFds[0] != -1 ? new PipeStreamHandler.FdOutputStream(parentFds[0]) : new PipeStreamHandler.NullOutputStream();
+			this.stdout = parentFds[1] != -1 ? new PipeStreamHandler.FdInputStream(parentFds[1]) : new PipeStreamHandler.NullInputStream();
+			this.stderr = parentFds[2] != -1 ? new PipeStreamHandler.FdInputStream(parentFds[2]) : new PipeStreamHandler.NullInputStream();
+		}
+		finally {
+			lib.posix_spawn_file_actions_destroy(fileActions);
+			lib.posix_spawnattr_destroy(attr);
+			closeFds(childFds);
+			this.closeKernelPipe();
+		}
+		return this;
+	}
+
+	/**
+	 * close jvm side of os pipe. after that, only child processes have pipe.
+	 */
+	@Override
+	public void closeKernelPipe() {
+		if(this.inputPipeFds != null) {
+			closeFds(this.inputPipeFds);
+			this.inputPipeFds = null;
+		}
+	}
+
+	@Override
+	public int getPid() {
+		return this.pid;
+	}
+
+	@Override
+	public int getProcessGroupId() {
+		return this.pgid;
+	}
+
+	@Override
+	public void waitTermination() {
+		byte[] info = new byte[nativeStructSize];
+		while(!this.checkTermination()) {
+			// wait without reaping. reaping is performed in checkTermination.
+			PosixLibraryWrapper.INSTANCE.waitid(P_PID, this.pid, info, WEXITED | WNOWAIT);
+		}
+	}
+
+	@Override
+	public synchronized int openPidfd() {
+		if(this.terminated) {	// pid may be reused
+			return -1;
+		}
+		return ProcessReaper.pidfdOpen(this.pid);
+	}
+
+	@Override
+	public synchronized boolean checkTermination() {
+		if(this.terminated) {
+			return true;
+		}
+		if(this.pgid > 0 && this.pgid == this.pid) {
+			return this.checkLeaderTermination();
+		}
+		int[] status = new int[1];
+		int ret = PosixLibraryWrapper.INSTANCE.waitpid(this.pid, status, WNOHANG);
+		if(ret == this.pid) {
+			this.exitStatus = decodeStatus(status[0]);
+			this.terminated = true;
+		}
+		else if(ret == -1) {	// already reaped
+			this.terminated = true;
+		}
+		return this.terminated;
+	}
+
+	/**
+	 * pid of group leader is also process group id. if leader is reaped during SIGTERM to SIGKILL escalation,
+	 * SIGKILL may reach other process group which reuses the id. so, check termination without reaping,
+	 * and reap it after escalation.
+	 * @return
+	 */
+	private boolean checkLeaderTermination() {
+		byte[] info = new byte[nativeStructSize];
+		int ret = PosixLibraryWrapper.INSTANCE.waitid(P_PID, this.pid, info, WEXITED | WNOHANG | WNOWAIT);
+		if(ret == -1) {	// already reaped
+			this.terminated = true;
+			return true;
+		}
+		ByteBuffer buf = ByteBuffer.wrap(info).order(ByteOrder.nativeOrder());
+		if(buf.getInt(siginfoPidOffset) != this.pid) {	// still running
+			return false;
+		}
+		int status = buf.getInt(siginfoStatusOffset);
+		this.exitStatus = buf.getInt(siginfoCodeOffset) == CLD_EXITED ? status : 0x80 + status;
+		this.terminated = true;
+		if(this.procGroup.tryReleaseLeader()) {
+			this.reap();
+		}
+		return true;
+	}
+
+	/**
+	 * reap group leader which has exited during escalation.
+	 */
+	synchronized void reapAsLeader() {
+		this.reap();
+		this.procGroup.notifyLeaderReaped();
+	}
+
+	private void reap() {
+		PosixLibraryWrapper.INSTANCE.waitpid(this.pid, new int[1], 0);
+	}
+
+	/**
+	 * same encoding as java.lang.Process.
+	 * @param status
+	 * @return
+	 * - if terminated by signal, return 128 + signal number.
+	 */
+	private static int decodeStatus(int status) {
+		int signal = status & 0x7f;
+		if(signal == 0) {
+			return (status >> 8) & 0xff;
+		}
+		return 0x80 + signal;
+	}
+
+	private static void closeFds(int[] fds) {
+		for(int fd : fds) {
+			if(fd != -1) {
+				PosixLibraryWrapper.INSTANCE.close(fd);
+			}
+		}
+	}
+
+	/**
+	 * close inherited file descriptors which are not close-on-exec.
+	 * @param fileActions
+	 */
+	private static void addCloseFrom(Pointer fileActions) {
+		if(!supportCloseFrom) {
+			return;
+		}
+		try {
+			PosixLibraryWrapper.INSTANCE.posix_spawn_file_actions_addclosefrom_np(fileActions, 3);
+		}
+		catch(UnsatisfiedLinkError e) {
+			supportCloseFrom = false;
+		}
+	}
+
+	/**
+	 * get current environment. reflect variables set by RuntimeContext#setenv.
+	 * @return
+	 */
+	private static Pointer getEnviron() {
+		return NativeLibrary.getInstance("c").getGlobalVariableAddress("environ").getPointer(0);
+	}
+}
@@ -16,6 +16,11 @@ import dshell.internal.lib.Utils;
 import dshell.lang.Task;
 
 public class TaskContext {
+	/**
+	 * if true, launch external command by posix_spawn instead of ProcessBuilder.
+	 */
+	private static boolean enablePosixSpawn = false;
+
 	private final List<AbstractProcessContext> procContexts;
 	private final TaskConfig config;
 
@@ -36,13 +41,29 @@ public class TaskContext {
 
 	public static AbstractProcessContext createProcessContext(String commandName) {
 		if(commandName.indexOf('/') != -1) {	// qualify name
-			return new ProcessContext(commandName);
+			return createExternalContext(commandName);
 		}
 		AbstractProcessContext context = RuntimeContext.getInstance().getBuiltinCommand(commandName);
 		if(context != null) {
 			return context;
 		}
-		return new ProcessContext(Utils.getCommandFromPath(commandName, true));	// get qualify name from path
+		return createExternalContext(Utils.getCommandFromPath(commandName, true));	// get qualify name from path
+	}
+
+	private static AbstractProcessContext createExternalContext(String commandPath) {
+		if(enablePosixSpawn && SpawnProcessContext.isSupported()) {
+			return new SpawnProcessContext(commandPath);
+		}
+		return new ProcessContext(commandPath);
+	}
+
+	/**
+	 * select process launch backend.
+	 * @param enable
+	 * - if true, use posix_spawn. otherwise, use ProcessBuilder.
+	 */
+	public static void setPosixSpawn(boolean enable) {
+		enablePosixSpawn = enable;
 	}
 
 	private Object execTask() {
@@ -55,7 +76,12 @@ public class TaskContext {
 		if(this.config.is(background)) {
 			return (this.config.isRetType(TaskType) && this.config.is(returnable)) ? task : null;
 		}
-		task.join();
+		try {
+			task.join();
+		}
+		finally {	// exit request has priority over command failure
+			RuntimeContext.getInstance().checkExitRequest();
+		}
 		if(this.config.is(returnable)) {
 			if(this.config.isRetType(IntType)) {
 				return new Long(task.getExitStatus());
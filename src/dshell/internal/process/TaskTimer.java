@@ -0,0 +1,58 @@
+package dshell.internal.process;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * process-wide timer for task timeout.
+ * all of timeouts share one daemon thread, so pending timeout does not require own thread.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class TaskTimer {
+	private final ScheduledThreadPoolExecutor scheduler;
+
+	private TaskTimer() {
+		this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "dshell-timer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// remove canceled timeout from queue immediately. most of tasks finish before deadline.
+		this.scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	private static class Holder {
+		private final static TaskTimer INSTANCE = new TaskTimer();
+	}
+
+	public static TaskTimer getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * schedule timeout action.
+	 * @param timeoutAction
+	 * - run on timer thread. must not block long time.
+	 * @param timeout
+	 * - millisecond.
+	 * @return
+	 * - if task finished before deadline, call cancel(false).
+	 */
+	public ScheduledFuture<?> schedule(Runnable timeoutAction, long timeout) {
+		return this.scheduler.schedule(timeoutAction, timeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * get number of pending timeouts.
+	 * @return
+	 */
+	public int getPendingCount() {
+		return this.scheduler.getQueue().size();
+	}
+}
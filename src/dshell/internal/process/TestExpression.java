@@ -0,0 +1,491 @@
+package dshell.internal.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import dshell.internal.lib.RuntimeContext;
+
+/**
+ * evaluator of test command expression. follow the rules of POSIX and coreutils.
+ * if argument size is less than 5, expression is decided by argument size.
+ * otherwise, parse by the following grammar.
+ *
+ * expr : and ('-o' and)*
+ * and  : term ('-a' term)*
+ * term : '!'* ( '(' expr ')' | left binary-op right | unary-op operand | string )
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class TestExpression {
+	// file type of st_mode
+	private final static int S_IFMT   = 0170000;
+	private final static int S_IFSOCK = 0140000;
+	private final static int S_IFBLK  = 0060000;
+	private final static int S_IFCHR  = 0020000;
+	private final static int S_IFIFO  = 0010000;
+	private final static int S_ISUID  = 04000;
+	private final static int S_ISGID  = 02000;
+	private final static int S_ISVTX  = 01000;
+
+	private final static String unaryOps = "abcdefgGhkLnOprsStuwxz";
+
+	private final List<String> args;
+	private final int argc;
+	private int pos;
+
+	/**
+	 *
+	 * @param args
+	 * - not contains command name.
+	 */
+	public TestExpression(List<String> args) {
+		this.args = args;
+		this.argc = args.size();
+		this.pos = 0;
+	}
+
+	/**
+	 *
+	 * @return
+	 * @throws IllegalArgumentException
+	 * - if expression has syntax error or invalid integer.
+	 */
+	public boolean evaluate() {
+		if(this.argc == 0) {
+			return false;
+		}
+		boolean value = this.posixTest(this.argc);
+		if(this.pos != this.argc) {
+			throw new IllegalArgumentException("extra argument '" + this.args.get(this.pos) + "'");
+		}
+		return value;
+	}
+
+	private String arg(int index) {
+		return this.args.get(index);
+	}
+
+	private void advance(boolean requireNext) {
+		this.pos++;
+		if(requireNext && this.pos >= this.argc) {
+			this.beyond();
+		}
+	}
+
+	private void beyond() {
+		throw new IllegalArgumentException("missing argument after '" + this.arg(this.argc - 1) + "'");
+	}
+
+	private boolean posixTest(int nargs) {
+		switch(nargs) {
+		case 1:
+			return this.oneArgument();
+		case 2:
+			return this.twoArguments();
+		case 3:
+			return this.threeArguments();
+		case 4:
+			if(this.arg(this.pos).equals("!")) {
+				this.advance(true);
+				return !this.threeArguments();
+			}
+			if(this.arg(this.pos).equals("(") && this.arg(this.pos + 3).equals(")")) {
+				this.advance(false);
+				boolean value = this.twoArguments();
+				this.advance(false);
+				return value;
+			}
+			return this.expr();
+		default:
+			return this.expr();
+		}
+	}
+
+	private boolean oneArgument() {
+		return !this.arg(this.pos++).isEmpty();
+	}
+
+	private boolean twoArguments() {
+		String op = this.arg(this.pos);
+		if(op.equals("!")) {
+			this.advance(false);
+			return !this.oneArgument();
+		}
+		if(isOperatorLike(op)) {
+			if(isUnaryOp(op)) {
+				return this.unaryOperator();
+			}
+			throw new IllegalArgumentException("'" + op + "': unary operator expected");
+		}
+		this.beyond();
+		return false;	// unreachable
+	}
+
+	private boolean threeArguments() {
+		if(isBinaryOp(this.arg(this.pos + 1))) {
+			return this.binaryOperator(false);
+		}
+		if(this.arg(this.pos).equals("!")) {
+			this.advance(true);
+			return !this.twoArguments();
+		}
+		if(this.arg(this.pos).equals("(") && this.arg(this.pos + 2).equals(")")) {
+			this.advance(false);
+			boolean value = this.oneArgument();
+			this.advance(false);
+			return value;
+		}
+		String op = this.arg(this.pos + 1);
+		if(op.equals("-a") || op.equals("-o")) {
+			return this.expr();
+		}
+		throw new IllegalArgumentException("'" + op + "': binary operator expected");
+	}
+
+	private boolean expr() {
+		if(this.pos >= this.argc) {
+			this.beyond();
+		}
+		boolean value = false;
+		while(true) {
+			value |= this.and();
+			if(!(this.pos < this.argc && this.arg(this.pos).equals("-o"))) {
+				return value;
+			}
+			this.advance(false);
+		}
+	}
+
+	private boolean and() {
+		boolean value = true;
+		while(true) {
+			value &= this.term();
+			if(!(this.pos < this.argc && this.arg(this.pos).equals("-a"))) {
+				return value;
+			}
+			this.advance(false);
+		}
+	}
+
+	private boolean term() {
+		if(this.pos >= this.argc) {
+			this.beyond();
+		}
+		boolean invert = false;
+		while(this.pos < this.argc && this.arg(this.pos).equals("!")) {
+			this.advance(true);
+			invert = !invert;
+		}
+		boolean value;
+		String current = this.arg(this.pos);
+		if(current.equals("(")) {
+			this.advance(true);
+			int nargs = 1;
+			for(; this.pos + nargs < this.argc && !this.arg(this.pos + nargs).equals(")"); nargs++) {
+				if(nargs == 4) {
+					nargs = this.argc - this.pos;
+					break;
+				}
+			}
+			value = this.posixTest(nargs);
+			if(this.pos >= this.argc) {
+				throw new IllegalArgumentException("')' expected");
+			}
+			if(!this.arg(this.pos).equals(")")) {
+				throw new IllegalArgumentException("')' expected, found '" + this.arg(this.pos) + "'");
+			}
+			this.advance(false);
+		}
+		else if(this.argc - this.pos >= 4 && current.equals("-l") && isBinaryOp(this.arg(this.pos + 2))) {
+			value = this.binaryOperator(true);
+		}
+		else if(this.argc - this.pos >= 3 && isBinaryOp(this.arg(this.pos + 1))) {
+			value = this.binaryOperator(false);
+		}
+		else if(isOperatorLike(current)) {
+			if(!isUnaryOp(current)) {
+				throw new IllegalArgumentException("'" + current + "': unary operator expected");
+			}
+			value = this.unaryOperator();
+		}
+		else {
+			value = !current.isEmpty();
+			this.advance(false);
+		}
+		return invert ^ value;
+	}
+
+	private static boolean isOperatorLike(String arg) {
+		return arg.length() == 2 && arg.charAt(0) == '-';
+	}
+
+	private static boolean isUnaryOp(String arg) {
+		return isOperatorLike(arg) && unaryOps.indexOf(arg.charAt(1)) != -1;
+	}
+
+	private static boolean isBinaryOp(String arg) {
+		switch(arg) {
+		case "=":
+		case "==":
+		case "!=":
+		case "-nt":
+		case "-ot":
+		case "-ef":
+		case "-eq":
+		case "-ne":
+		case "-lt":
+		case "-le":
+		case "-gt":
+		case "-ge":
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 *
+	 * @param leftIsLength
+	 * - if true, left operand is "-l STRING" and represents length of STRING.
+	 * @return
+	 */
+	private boolean binaryOperator(boolean leftIsLength) {
+		if(leftIsLength) {
+			this.advance(false);
+		}
+		int op = this.pos + 1;
+		this.pos += 3;
+		String left = this.arg(op - 1);
+		String opSymbol = this.arg(op);
+		String right = this.arg(op + 1);
+		boolean rightIsLength = false;
+		if(this.argc - op > 2 && right.equals("-l")) {	// "STRING -eq -l STRING"
+			rightIsLength = true;
+			right = this.arg(op + 2);
+			this.pos++;
+		}
+		switch(opSymbol) {
+		case "=":
+		case "==":
+			return left.equals(right);
+		case "!=":
+			return !left.equals(right);
+		case "-nt":
+		case "-ot": {
+			FileStatus leftStatus = FileStatus.stat(left, true);
+			FileStatus rightStatus = FileStatus.stat(right, true);
+			int compared;
+			if(leftStatus == null || rightStatus == null) {	// existing file is newer
+				compared = (leftStatus == null ? 0 : 1) - (rightStatus == null ? 0 : 1);
+			} else {
+				compared = leftStatus.compareModifiedTime(rightStatus);
+			}
+			return opSymbol.equals("-nt") ? compared > 0 : compared < 0;
+		}
+		case "-ef": {
+			FileStatus leftStatus = FileStatus.stat(left, true);
+			FileStatus rightStatus = FileStatus.stat(right, true);
+			return leftStatus != null && rightStatus != null && leftStatus.isSameFile(rightStatus);
+		}
+		default: {	// integer comparison
+			BigInteger leftValue = leftIsLength ? BigInteger.valueOf(left.length()) : toInteger(left);
+			BigInteger rightValue = rightIsLength ? BigInteger.valueOf(right.length()) : toInteger(right);
+			int compared = leftValue.compareTo(rightValue);
+			switch(opSymbol) {
+			case "-eq":
+				return compared == 0;
+			case "-ne":
+				return compared != 0;
+			case "-lt":
+				return compared < 0;
+			case "-le":
+				return compared <= 0;
+			case "-gt":
+				return compared > 0;
+			default:	// -ge
+				return compared >= 0;
+			}
+		}
+		}
+	}
+
+	/**
+	 * leading and trailing blanks are allowed.
+	 * @param value
+	 * @return
+	 */
+	private static BigInteger toInteger(String value) {
+		String trimmed = value.replaceAll("^[ \t]+|[ \t]+$", "");
+		if(!trimmed.matches("[-+]?[0-9]+")) {
+			throw new IllegalArgumentException("invalid integer '" + value + "'");
+		}
+		return new BigInteger(trimmed.startsWith("+") ? trimmed.substring(1) : trimmed);
+	}
+
+	private boolean unaryOperator() {
+		char op = this.arg(this.pos).charAt(1);
+		this.advance(true);
+		String operand = this.arg(this.pos++);
+		switch(op) {
+		case 'n':
+			return !operand.isEmpty();
+		case 'z':
+			return operand.isEmpty();
+		case 't':
+			return isTerminal(operand);
+		case 'h':
+		case 'L': {
+			FileStatus status = FileStatus.stat(operand, false);
+			return status != null && status.isSymbolicLink();
+		}
+		case 'r':
+			return !operand.isEmpty() && Files.isReadable(resolvePath(operand));
+		case 'w':
+			return !operand.isEmpty() && Files.isWritable(resolvePath(operand));
+		case 'x':
+			return !operand.isEmpty() && Files.isExecutable(resolvePath(operand));
+		}
+		FileStatus status = FileStatus.stat(operand, true);
+		if(status == null) {
+			return false;
+		}
+		switch(op) {
+		case 'a':
+		case 'e':
+			return true;
+		case 'b':
+			return status.isType(S_IFBLK);
+		case 'c':
+			return status.isType(S_IFCHR);
+		case 'd':
+			return status.isDirectory();
+		case 'f':
+			return status.isRegularFile();
+		case 'g':
+			return status.hasMode(S_ISGID);
+		case 'G':
+			return status.getGid() == PosixLibraryWrapper.INSTANCE.getegid();
+		case 'k':
+			return status.hasMode(S_ISVTX);
+		case 'O':
+			return status.getUid() == PosixLibraryWrapper.INSTANCE.geteuid();
+		case 'p':
+			return status.isType(S_IFIFO);
+		case 's':
+			return status.getSize() > 0;
+		case 'S':
+			return status.isType(S_IFSOCK);
+		case 'u':
+			return status.hasMode(S_ISUID);
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isTerminal(String operand) {
+		int fd;
+		try {
+			fd = toInteger(operand).intValue();
+		}
+		catch(IllegalArgumentException e) {
+			throw new IllegalArgumentException("invalid integer '" + operand + "'");
+		}
+		return PosixLibraryWrapper.INSTANCE.isatty(fd) == 1;
+	}
+
+	/**
+	 * relative path is resolved from current working directory of shell.
+	 * @param fileName
+	 * @return
+	 */
+	private static Path resolvePath(String fileName) {
+		File file = new File(fileName);
+		if(!file.isAbsolute()) {
+			file = new File(RuntimeContext.getInstance().getWorkingDirectory(), fileName);
+		}
+		return file.toPath();
+	}
+
+	/**
+	 * result of stat or lstat.
+	 */
+	private static class FileStatus {
+		private final Map<String, Object> attrs;
+
+		private FileStatus(Map<String, Object> attrs) {
+			this.attrs = attrs;
+		}
+
+		/**
+		 *
+		 * @param fileName
+		 * @param followLink
+		 * - if false, lstat.
+		 * @return
+		 * - if file does not exist, return null.
+		 */
+		private static FileStatus stat(String fileName, boolean followLink) {
+			if(fileName.isEmpty()) {
+				return null;
+			}
+			LinkOption[] options = followLink ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+			try {
+				return new FileStatus(Files.readAttributes(resolvePath(fileName), "unix:mode,uid,gid,size,dev,ino,lastModifiedTime", options));
+			}
+			catch(IOException | UnsupportedOperationException e) {
+				return null;
+			}
+		}
+
+		private int getMode() {
+			return (Integer) this.attrs.get("mode");
+		}
+
+		private boolean isType(int type) {
+			return (this.getMode() & S_IFMT) == type;
+		}
+
+		private boolean hasMode(int mode) {
+			return (this.getMode() & mode) != 0;
+		}
+
+		private boolean isDirectory() {
+			return this.isType(0040000);
+		}
+
+		private boolean isRegularFile() {
+			return this.isType(0100000);
+		}
+
+		private boolean isSymbolicLink() {
+			return this.isType(0120000);
+		}
+
+		private int getUid() {
+			return (Integer) this.attrs.get("uid");
+		}
+
+		private int getGid() {
+			return (Integer) this.attrs.get("gid");
+		}
+
+		private long getSize() {
+			return (Long) this.attrs.get("size");
+		}
+
+		private boolean isSameFile(FileStatus other) {
+			return this.attrs.get("dev").equals(other.attrs.get("dev")) && this.attrs.get("ino").equals(other.attrs.get("ino"));
+		}
+
+		private int compareModifiedTime(FileStatus other) {
+			return ((java.nio.file.attribute.FileTime) this.attrs.get("lastModifiedTime")).compareTo(
+					(java.nio.file.attribute.FileTime) other.attrs.get("lastModifiedTime"));
+		}
+	}
+}
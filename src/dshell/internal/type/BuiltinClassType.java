@@ -164,7 +164,7 @@ class BuiltinClassType extends ClassType {
 	/**
 	 * generate builtin type.
 	 * @param typeKind
-	 * - 0: BuiltinClassType, 1: StringType, 2: PrimitiveArrayType, otherwise: throw exception
+	 * - 0: BuiltinClassType, 1: StringType, 2: PrimitiveArrayType, 3: GenericBaseType, 4: PrimitiveMapType, otherwise: throw exception
 	 * @param pool
 	 * @param className
 	 * @param internalName
@@ -193,6 +193,9 @@ class BuiltinClassType extends ClassType {
 		case 3:
 			return new GenericBaseType(pool, className, internalName, superType, 
 				allowExtends, constructorElements, fieldElements, methodElements, optionalArg);
+		case 4:
+			return new PrimitiveMapType(pool, className, internalName, superType, 
+				allowExtends, constructorElements, fieldElements, methodElements);
 		default:
 			Utils.fatal(1, "unsupported type kind: " + typeKind);
 		}
@@ -301,3 +304,36 @@ class PrimitiveArrayType extends BuiltinClassType implements GenericType {
 		return this.elementTypeList;
 	}
 }
+
+class PrimitiveMapType extends BuiltinClassType implements GenericType {
+	private List<DSType> elementTypeList;
+
+	protected PrimitiveMapType(TypePool pool, String className,
+			String internalName, DSType superType, boolean allowExtends,
+			String[][] constructorElements, 
+			String[][] fieldElements,
+			String[][] methodElements) {
+		super(pool, createTypeName(className), internalName, superType, allowExtends,
+				constructorElements, fieldElements, methodElements);
+		this.elementTypeList = new ArrayList<>(1);
+		this.elementTypeList.add(this.resolveElementType(className));
+		this.elementTypeList = Collections.unmodifiableList(this.elementTypeList);
+	}
+
+	private static String createTypeName(String className) {
+		int index = className.indexOf("Map");
+		String elementTypeName = className.substring(0, index).toLowerCase();
+		return "Map<" + elementTypeName + ">";
+	}
+
+	private PrimitiveType resolveElementType(String className) {
+		int index = className.indexOf("Map");
+		String elementTypeName = className.substring(0, index).toLowerCase();
+		return this.pool.getPrimitiveType(elementTypeName);
+	}
+
+	@Override
+	public List<DSType> getElementTypeList() {
+		return this.elementTypeList;
+	}
+}
@@ -9,6 +9,7 @@ import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
 import org.objectweb.asm.commons.Method;
 
+import dshell.internal.codegen.FunctionCallSite;
 import dshell.internal.parser.TypeUtils;
 import dshell.internal.type.DSType.FunctionType;
 import dshell.internal.type.DSType.PrimitiveType;
@@ -319,6 +320,37 @@ public abstract class CalleeHandle {
 		}
 	}
 
+	/**
+	 * represent redefinable static function (interactive mode).
+	 * @author skgchxngsxyz-opensuse
+	 *
+	 */
+	public static class DynamicFunctionHandle extends StaticFunctionHandle {
+		/**
+		 * used for call site name.
+		 */
+		private final String funcName;
+
+		public DynamicFunctionHandle(String funcName, String calleeName, DSType ownerType, DSType returnType, List<DSType> paramTypeList) {
+			super(calleeName, ownerType, returnType, paramTypeList);
+			this.funcName = funcName;
+		}
+
+		public String getFuncName() {
+			return this.funcName;
+		}
+
+		/**
+		 * used for code generation.
+		 * generate invokedynamic instruction linked by FunctionCallSite.
+		 */
+		@Override
+		public void call(GeneratorAdapter adapter) {
+			this.initMethodDesc();
+			adapter.invokeDynamic(this.funcName, this.methodDesc.getDescriptor(), FunctionCallSite.bootstrapHandle);
+		}
+	}
+
 	/**
 	 * Represent operator.
 	 * @author skgchxngsxyz-osx
@@ -335,6 +367,10 @@ public abstract class CalleeHandle {
 			this.ownerName = ownerName;
 		}
 
+		public String getOwnerName() {
+			return this.ownerName;
+		}
+
 		@Override
 		protected void initMethodDesc() {
 			if(this.ownerTypeDesc == null || this.methodDesc == null) {
@@ -4,6 +4,7 @@ import java.util.Collections;
 import java.util.List;
 
 import dshell.internal.type.CalleeHandle.ConstructorHandle;
+import dshell.internal.type.CalleeHandle.DynamicFunctionHandle;
 import dshell.internal.type.CalleeHandle.FieldHandle;
 import dshell.internal.type.CalleeHandle.FunctionHandle;
 import dshell.internal.type.CalleeHandle.MethodHandle;
@@ -216,20 +217,42 @@ public abstract class DSType {
 		protected final StaticFieldHandle fieldHandle;
 		protected final StaticFunctionHandle funcHandle;
 
-		FuncHolderType(String typeName, String internalName, FunctionType funcType) {
+		/**
+		 * 
+		 * @param typeName
+		 * @param internalName
+		 * @param funcType
+		 * @param funcName
+		 * @param redefinable
+		 * - if true, function is called by invokedynamic and can be redefined.
+		 */
+		FuncHolderType(String typeName, String internalName, FunctionType funcType, String funcName, boolean redefinable) {
 			super(typeName, internalName, false);
 			this.fieldHandle = new StaticFieldHandle("funcField", this, funcType);
 			FunctionHandle handle = funcType.getHandle();
-			this.funcHandle = new StaticFunctionHandle("invokeDirect", this, handle.getReturnType(), handle.getParamTypeList());
+			if(redefinable) {
+				this.funcHandle = new DynamicFunctionHandle(funcName, "invokeDirect", this, handle.getReturnType(), handle.getParamTypeList());
+			} else {
+				this.funcHandle = new StaticFunctionHandle("invokeDirect", this, handle.getReturnType(), handle.getParamTypeList());
+			}
 		}
 
 		public StaticFieldHandle getFieldHandle() {
 			return this.fieldHandle;
 		}
 
+		/**
+		 * 
+		 * @return
+		 * - if redefinable, return DynamicFunctionHandle.
+		 */
 		public StaticFunctionHandle getFuncHandle() {
 			return this.funcHandle;
 		}
+
+		public boolean isRedefinable() {
+			return this.funcHandle instanceof DynamicFunctionHandle;
+		}
 	}
 
 	public static class BoxedPrimitiveType extends DSType {
@@ -136,6 +136,9 @@ public class TypePool {
 		this.setTypeAndThrowIfDefined(TypeInitializer.init_IntArray(this));
 		this.setTypeAndThrowIfDefined(TypeInitializer.init_FloatArray(this));
 		this.setTypeAndThrowIfDefined(TypeInitializer.init_BooleanArray(this));
+		this.setTypeAndThrowIfDefined(TypeInitializer.init_IntMap(this));
+		this.setTypeAndThrowIfDefined(TypeInitializer.init_FloatMap(this));
+		this.setTypeAndThrowIfDefined(TypeInitializer.init_BooleanMap(this));
 
 		this.setTypeAndThrowIfDefined(TypeInitializer.init_KeyNotFoundException(this));
 		this.setTypeAndThrowIfDefined(TypeInitializer.init_OutOfIndexException(this));
@@ -335,10 +338,18 @@ public class TypePool {
 		return (FunctionType) funcType;
 	}
 
-	public FuncHolderType createFuncHolderType(FunctionType funcType, String funcName) {
+	/**
+	 * 
+	 * @param funcType
+	 * @param funcName
+	 * @param redefinable
+	 * - if true, function call is linked by invokedynamic. used for interactive mode.
+	 * @return
+	 */
+	public FuncHolderType createFuncHolderType(FunctionType funcType, String funcName, boolean redefinable) {
 		String typeName = "FuncHolder" + ++funcNameSuffix + "of" + funcType.getTypeName();
 		String internalName = generatedFuncPackage + "FuncHolder_" + funcName + funcNameSuffix;
-		return new FuncHolderType(typeName, internalName, funcType);
+		return new FuncHolderType(typeName, internalName, funcType, funcName, redefinable);
 	}
 
 	// type name creator api.
@@ -5,6 +5,7 @@ import java.util.LinkedList;
 import dshell.annotation.Shared;
 import dshell.annotation.SharedClass;
 import dshell.internal.lib.RuntimeContext;
+import dshell.internal.lib.ShellExit;
 import dshell.internal.type.TypePool;
 
 /**
@@ -28,9 +29,12 @@ public class Exception extends RuntimeException {
 		if(t instanceof Exception) {
 			return (Exception) t;
 		}
+		if(t instanceof ShellExit) {	// not catch exit request
+			throw (ShellExit) t;
+		}
 		if(t instanceof NullPointerException) {
 			t.printStackTrace();
-			System.exit(1);
+			RuntimeContext.getInstance().abort(1);
 		}
 		return new NativeException(t);
 	}
@@ -31,11 +31,6 @@ public class GenericArray implements Cloneable {
 	 */
 	private int size;
 
-	/**
-	 * used for iterator op.
-	 */
-	private int iterCurrentIndex = 0;
-
 	public GenericArray(Object[] values) {
 		this.size = values.length;
 		this.values = new Object[this.size < defaultArraySize ? defaultArraySize : this.size];
@@ -55,6 +50,19 @@ public class GenericArray implements Cloneable {
 	private GenericArray(boolean enableAlloc) {
 	}
 
+	/**
+	 * create array which uses the given values as internal buffer.
+	 * @param values
+	 * - must not be shared with others.
+	 * @return
+	 */
+	public static GenericArray wrap(Object[] values) {
+		GenericArray array = new GenericArray(false);
+		array.values = values.length < defaultArraySize ? Arrays.copyOf(values, defaultArraySize) : values;
+		array.size = values.length;
+		return array;
+	}
+
 	private void throwIfIndexOutOfRange(long index) {
 		if(index < 0 || index >= this.size()) {
 			throw new OutOfIndexException("array size is " + this.size() + ", but index is " + index);
@@ -136,7 +144,7 @@ public class GenericArray implements Cloneable {
 	public Object remove(long index) {
 		Object value = this.get(index);
 		int i = (int) index;
-		System.arraycopy(this.values, i + 1, this.values, i, this.size - 1);
+		System.arraycopy(this.values, i + 1, this.values, i, this.size - i - 1);
 		this.size--;
 		return value;
 	}
@@ -178,8 +186,14 @@ public class GenericArray implements Cloneable {
 
 	@Shared
 	public String flat() {
-		StringBuilder sBuilder = new StringBuilder();
 		final int size = this.size;
+		switch(size) {
+		case 0:
+			return "";
+		case 1:
+			return String.valueOf(this.values[0]);
+		}
+		StringBuilder sBuilder = new StringBuilder(size * 8);
 		for(int i = 0; i < size; i++) {
 			if(i > 0) {
 				sBuilder.append(' ');
@@ -204,23 +218,12 @@ public class GenericArray implements Cloneable {
 		return sBuilder.toString();
 	}
 
-	@Shared
-	public void $iter$Reset() {
-		this.iterCurrentIndex = -1;
-	}
-
-	@Shared
-	@TypeAlias("@T")
-	public Object $iter$Next() {
-		return this.get(++this.iterCurrentIndex);
-	}
-
-	@Shared
-	public boolean $iter$HasNext() {
-		int nextIndex = this.iterCurrentIndex + 1;
-		if(nextIndex < this.size) {
-			return true;
-		}
-		return false;
+	/**
+	 * for for-in statement. generated code reads element of returned buffer in each iteration.
+	 * @return
+	 * - internal buffer. must not be modified.
+	 */
+	public Object[] getValues() {
+		return this.values;
 	}
 }
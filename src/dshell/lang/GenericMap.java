@@ -1,7 +1,6 @@
 package dshell.lang;
 
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
+import java.util.Arrays;
 
 import dshell.annotation.GenericClass;
 import dshell.annotation.MapOp;
@@ -14,95 +13,279 @@ import dshell.internal.lib.Utils;
 /**
  * Generic map for all of values.
  * Primitive types (long, double, boolean) are boxed.
+ * Entries are stored in dense parallel arrays (key, value, key hash) in insertion order
+ * and looked up by an open addressed index table.
+ * Removed entries are left as tombstones and compacted on rehash.
  * @author skgchxngsxyz-osx
  *
  */
 @SharedClass
 @GenericClass(values = {"@T"})
 public class GenericMap implements Cloneable {
-	private final static int defaultMapSize = 12;
+	private final static int defaultMapSize = 8;
 
-	private LinkedHashMap<String, Object> valueMap;
+	/**
+	 * default value of element type. used for clearing removed entry.
+	 */
+	private static Object defaultValue;
+
+	/**
+	 * open addressed table (linear probing). length is power of 2 and twice the entry capacity.
+	 * contains entry index + 1. 0 represents empty slot, -1 represents removed slot.
+	 */
+	private int[] indexTable;
+
+	/**
+	 * contains keys in insertion order. key of removed entry is null.
+	 */
+	private String[] keys;
+
+	/**
+	 * contains values in insertion order.
+	 */
+	private Object[] values;
+
+	/**
+	 * contains cached hash of keys.
+	 */
+	private int[] hashes;
+
+	/**
+	 * represents currently used entry size, including removed entries.
+	 */
+	private int usedSize;
+
+	/**
+	 * represents currently containing entry size.
+	 */
+	private int size;
 
 	public GenericMap(String[] keys, Object[] values) {
 		assert keys.length == values.length;
 		int size = keys.length;
-		this.valueMap = new LinkedHashMap<>();
+		int capacity = defaultMapSize;
+		while(capacity < size) {
+			capacity *= 2;
+		}
+		this.allocate(capacity);
 		for(int i = 0; i < size; i++) {
-			this.valueMap.put(keys[i], values[i]);
+			this.set(keys[i], values[i]);
 		}
 	}
 
 	@Shared
 	public GenericMap() {
-		this.valueMap = new LinkedHashMap<>();
+		this.allocate(defaultMapSize);
+	}
+
+	/**
+	 * called from clone
+	 * @param enableAlloc
+	 * - meaningless parameter.
+	 */
+	private GenericMap(boolean enableAlloc) {
+	}
+
+	private void allocate(int capacity) {
+		this.indexTable = new int[capacity * 2];
+		this.keys = new String[capacity];
+		this.values = new Object[capacity];
+		this.hashes = new int[capacity];
+		this.usedSize = 0;
+		this.size = 0;
 	}
 
-	private GenericMap(LinkedHashMap<String, Object> valueMap) {
-		this.valueMap = valueMap;
+	private static int hash(String key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
 	}
 
-	private static Object throwIfValueIsNull(String key, Object value) {
-		assert key != null;
-		if(value == null) {
-			throw new KeyNotFoundException("not found key: " + key);
+	/**
+	 *
+	 * @param key
+	 * @return
+	 * - index of index table. if not found, return -1.
+	 */
+	private int findSlot(String key, int hash) {
+		final int mask = this.indexTable.length - 1;
+		for(int i = hash & mask; ; i = (i + 1) & mask) {
+			int entry = this.indexTable[i];
+			if(entry == 0) {
+				return -1;
+			}
+			if(entry > 0 && this.hashes[entry - 1] == hash && key.equals(this.keys[entry - 1])) {
+				return i;
+			}
 		}
-		return value;
+	}
+
+	private int findSlot(String key) {
+		return this.findSlot(key, hash(key));
+	}
+
+	/**
+	 * put entry index to empty or removed slot. key must not be contained in index table.
+	 * @param hash
+	 * @param entryIndex
+	 */
+	private void putIndex(int hash, int entryIndex) {
+		final int mask = this.indexTable.length - 1;
+		int i = hash & mask;
+		while(this.indexTable[i] > 0) {
+			i = (i + 1) & mask;
+		}
+		this.indexTable[i] = entryIndex + 1;
+	}
+
+	/**
+	 * drop removed entries and rebuild index table from cached hashes.
+	 * if entries are more than half of capacity, expand capacity.
+	 * if entries are less than 1/8 of capacity, shrink capacity.
+	 */
+	private void rehash() {
+		int capacity = this.keys.length;
+		if(this.size >= capacity / 2) {
+			capacity *= 2;
+		} else {
+			while(capacity > defaultMapSize && this.size < capacity / 8) {
+				capacity /= 2;
+			}
+		}
+		String[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		int[] oldHashes = this.hashes;
+		int oldUsedSize = this.usedSize;
+		this.allocate(capacity);
+		for(int i = 0; i < oldUsedSize; i++) {
+			if(oldKeys[i] != null) {
+				this.keys[this.size] = oldKeys[i];
+				this.values[this.size] = oldValues[i];
+				this.hashes[this.size] = oldHashes[i];
+				this.putIndex(oldHashes[i], this.size++);
+			}
+		}
+		this.usedSize = this.size;
+	}
+
+	private KeyNotFoundException createException(String key) {
+		return new KeyNotFoundException("not found key: " + key);
 	}
 
 	@Shared
 	public long size() {
-		return this.valueMap.size();
+		return this.size;
 	}
 
 	@Shared @MapOp(value = MapOpType.Getter) @TypeAlias("@T")
 	public Object get(String key) {
-		return throwIfValueIsNull(key, this.valueMap.get(key));
+		int slot = this.findSlot(key);
+		if(slot == -1) {
+			throw this.createException(key);
+		}
+		return this.values[this.indexTable[slot] - 1];
 	}
 
 	@Shared @MapOp(value = MapOpType.Setter)
 	public void set(String key, @TypeAlias("@T") Object value) {
-		this.valueMap.put(key, value);
+		int hash = hash(key);
+		int slot = this.findSlot(key, hash);
+		if(slot != -1) {
+			this.values[this.indexTable[slot] - 1] = value;
+			return;
+		}
+		if(this.usedSize == this.keys.length) {
+			this.rehash();
+		}
+		int entryIndex = this.usedSize++;
+		this.keys[entryIndex] = key;
+		this.values[entryIndex] = value;
+		this.hashes[entryIndex] = hash;
+		this.putIndex(hash, entryIndex);
+		this.size++;
 	}
 
 	@Shared
 	public boolean hasKey(String key) {
-		return this.valueMap.containsKey(key);
+		return this.findSlot(key) != -1;
 	}
 
 	@Shared
 	public boolean hasValue(@TypeAlias("@T") Object value) {
-		return this.valueMap.containsValue(value);
+		for(int i = 0; i < this.usedSize; i++) {
+			if(this.keys[i] != null && Utils.equalsValue(value, this.values[i])) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	@Shared @TypeAlias("@T")
 	public Object remove(String key) {
-		return throwIfValueIsNull(key, this.valueMap.remove(key));
+		int slot = this.findSlot(key);
+		if(slot == -1) {
+			throw this.createException(key);
+		}
+		int entryIndex = this.indexTable[slot] - 1;
+		Object value = this.values[entryIndex];
+		this.indexTable[slot] = -1;
+		this.keys[entryIndex] = null;
+		this.values[entryIndex] = defaultValue;
+		this.size--;
+		// compact if more than half of used entries are tombstones.
+		if(this.usedSize - this.size > this.usedSize / 2 && this.usedSize > defaultMapSize) {
+			this.rehash();
+		}
+		return value;
 	}
 
 	@Shared
 	public boolean isEmpty() {
-		return this.valueMap.isEmpty();
+		return this.size == 0;
 	}
 
 	@Shared
 	public void clear() {
-		if(this.size() > defaultMapSize) {
-			this.valueMap = new LinkedHashMap<>();
-		} else {
-			this.valueMap.clear();
+		if(this.keys.length > defaultMapSize) {
+			this.allocate(defaultMapSize);
+			return;
 		}
+		Arrays.fill(this.indexTable, 0);
+		Arrays.fill(this.keys, 0, this.usedSize, null);
+		Arrays.fill(this.values, 0, this.usedSize, defaultValue);
+		this.usedSize = 0;
+		this.size = 0;
 	}
 
+	/**
+	 * returned array is mutable, so copy keys once and pass the copy to array without copying.
+	 */
 	@Shared @TypeAlias("Array<String>")
 	public GenericArray keys() {
-		return new GenericArray(this.valueMap.keySet().toArray());
+		String[] liveKeys;
+		if(this.usedSize == this.size) {
+			liveKeys = Arrays.copyOf(this.keys, this.size);
+		} else {
+			liveKeys = new String[this.size];
+			int count = 0;
+			for(int i = 0; i < this.usedSize; i++) {
+				if(this.keys[i] != null) {
+					liveKeys[count++] = this.keys[i];
+				}
+			}
+		}
+		return GenericArray.wrap(liveKeys);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Shared @TypeAlias("Map<@T>")
 	public GenericMap clone() {
-		return new GenericMap((LinkedHashMap<String, Object>) this.valueMap.clone());
+		GenericMap clonedMap = new GenericMap(false);
+		clonedMap.indexTable = this.indexTable.clone();
+		clonedMap.keys = this.keys.clone();
+		clonedMap.values = this.values.clone();
+		clonedMap.hashes = this.hashes.clone();
+		clonedMap.usedSize = this.usedSize;
+		clonedMap.size = this.size;
+		return clonedMap;
 	}
 
 	@Shared
@@ -111,13 +294,16 @@ public class GenericMap implements Cloneable {
 		StringBuilder sBuilder = new StringBuilder();
 		int count = 0;
 		sBuilder.append("{");
-		for(Entry<String, Object> entry : this.valueMap.entrySet()) {
+		for(int i = 0; i < this.usedSize; i++) {
+			if(this.keys[i] == null) {
+				continue;
+			}
 			if(count++ > 0) {
 				sBuilder.append(", ");
 			}
-			Utils.appendStringifiedValue(sBuilder, entry.getKey());
+			Utils.appendStringifiedValue(sBuilder, this.keys[i]);
 			sBuilder.append(" : ");
-			Utils.appendStringifiedValue(sBuilder, entry.getValue());
+			Utils.appendStringifiedValue(sBuilder, this.values[i]);
 		}
 		sBuilder.append("}");
 		return sBuilder.toString();
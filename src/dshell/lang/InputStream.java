@@ -1,6 +1,7 @@
 package dshell.lang;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
@@ -18,12 +19,14 @@ public class InputStream {
 	 * not null
 	 */
 	private final String streamName;
+	private final java.io.InputStream input;
 	private final BufferedReader reader;
 	private final boolean closeable;
 
 	private InputStream(java.io.InputStream sourceInput, String name, boolean closeable) {
 		this.streamName = name;
 		this.closeable = closeable;
+		this.input = sourceInput;
 		this.reader = new BufferedReader(new InputStreamReader(sourceInput));
 	}
 
@@ -62,4 +65,35 @@ public class InputStream {
 		}
 		return line == null ? "" : line;
 	}
+
+	/**
+	 * read raw bytes without decoding. used from builtin command.
+	 * must not be mixed with readLine, because line reader buffers input.
+	 * @param buffer
+	 * @return
+	 * - read size. if end of stream or reading failed, return -1.
+	 */
+	public int read(byte[] buffer) {
+		try {
+			return this.input.read(buffer, 0, buffer.length);
+		} catch(IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * used from builtin command (wc).
+	 * @return
+	 * - if source is regular file (redirected from file), return its size. otherwise, return -1.
+	 */
+	public long getRegularFileSize() {
+		if(!(this.input instanceof FileInputStream)) {
+			return -1;
+		}
+		try {
+			return ((FileInputStream) this.input).getChannel().size();
+		} catch(IOException e) {
+			return -1;
+		}
+	}
 }
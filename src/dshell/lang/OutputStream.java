@@ -15,12 +15,14 @@ import dshell.annotation.SharedClass;
 @SharedClass
 public class OutputStream {
 	private final String streamName;
+	private final java.io.OutputStream output;
 	private final BufferedWriter writer;
 	private final boolean closeable;
 
 	private OutputStream(java.io.OutputStream sourceOutput, String name, boolean closeable) {
 		this.streamName = name;
 		this.closeable = closeable;
+		this.output = sourceOutput;
 		this.writer = new BufferedWriter(new OutputStreamWriter(sourceOutput));
 	}
 
@@ -63,4 +65,21 @@ public class OutputStream {
 			System.err.println(e.getMessage());
 		}
 	}
+
+	/**
+	 * write raw bytes without encoding. used from builtin command.
+	 * @param data
+	 * @return
+	 * - if false, writing failed (ex. broken pipe). like SIGPIPE, error message is not printed.
+	 */
+	public boolean write(byte[] data) {
+		try {
+			this.writer.flush();
+			this.output.write(data);
+			this.output.flush();
+			return true;
+		} catch(IOException e) {
+			return false;
+		}
+	}
 }
@@ -7,6 +7,7 @@ import dshell.annotation.TypeAlias;
 import dshell.annotation.Wrapper;
 import dshell.annotation.ArrayOp.ArrayOpType;
 import dshell.annotation.WrapperClass;
+import dshell.internal.lib.PatternCache;
 
 /**
  * String api for D-Shell.
@@ -82,7 +83,7 @@ public final class StringWrapper {
 
 	@Shared @Wrapper
 	public static String replace(String recv, String regex, String replace) {
-		return recv.replaceAll(regex, replace);
+		return PatternCache.getInstance().getPattern(regex).matcher(recv).replaceAll(replace);
 	}
 
 	@ArrayOp(ArrayOpType.Getter)
@@ -109,7 +110,11 @@ public final class StringWrapper {
 
 	@Shared @Wrapper @TypeAlias("Array<String>")
 	public static GenericArray split(String recv, String regex) {
-		return new GenericArray(recv.split(regex));
+		// String#split does not compile single literal character.
+		if(regex.length() == 1 && ".$|()[{^?*+\\".indexOf(regex.charAt(0)) == -1) {
+			return new GenericArray(recv.split(regex));
+		}
+		return new GenericArray(PatternCache.getInstance().getPattern(regex).split(recv));
 	}
 
 	@Shared @Wrapper
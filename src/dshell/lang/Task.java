@@ -5,28 +5,35 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
 
 import dshell.annotation.Shared;
 import dshell.annotation.SharedClass;
-import dshell.internal.lib.Utils;
+import dshell.annotation.TypeAlias;
 import dshell.internal.process.AbstractProcessContext;
 import dshell.internal.process.PipeStreamHandler.EmptyErrorStreamHandler;
 import dshell.internal.process.PipeStreamHandler.ErrorStreamHandler;
 import dshell.internal.process.PipeStreamHandler.ErrorStreamHandlerImpl;
+import dshell.internal.process.ProcessGroup;
+import dshell.internal.process.ProcessReaper;
 import dshell.internal.process.ShellExceptionBuilder;
 import dshell.internal.process.TaskConfig;
+import dshell.internal.process.TaskTimer;
 import dshell.internal.process.PipeStreamHandler.EmptyOutputStreamHandler;
 import dshell.internal.process.PipeStreamHandler.OutputStreamHandlerImpl;
 import dshell.internal.process.PipeStreamHandler.OutputStreamHandler;
 import static dshell.internal.process.TaskConfig.Behavior.background;
 import static dshell.internal.process.TaskConfig.Behavior.printable;
 import static dshell.internal.process.TaskConfig.Behavior.throwable;
+import static dshell.internal.process.TaskConfig.Behavior.timeout;
 
 @SharedClass
 public class Task implements Serializable {
 	private static final long serialVersionUID = 7531968866962967914L;
 
-	transient private Thread stateMonitor;
+	transient private ProcessReaper.Watch reaperWatch;
+	transient private ScheduledFuture<?> timeoutFuture;
+	transient private volatile boolean timedOut = false;
 	transient private final List<AbstractProcessContext> procContexts;
 	transient private final TaskConfig config;
 	transient private OutputStreamHandler stdoutHandler;
@@ -43,10 +50,33 @@ public class Task implements Serializable {
 		this.config = option;
 		// start task
 		int size = this.procContexts.size();
-		this.procContexts.get(0).setStreamBehavior(this.config).start();
-		for(int i = 1; i < size; i++) {
-			this.procContexts.get(i).setStreamBehavior(this.config)
-									.start().pipe(this.procContexts.get(i - 1));
+		if(ProcessGroup.isRequired(this.config)) {
+			ProcessGroup.assign(this.procContexts);
+		}
+		boolean[] kernelPiped = new boolean[size];
+		for(int i = 0; i < size; i++) {
+			this.procContexts.get(i).setStreamBehavior(this.config);
+			if(i > 0) {
+				kernelPiped[i] = this.procContexts.get(i).connectByKernelPipe(this.procContexts.get(i - 1));
+			}
+		}
+		boolean started = false;
+		try {
+			this.procContexts.get(0).start();
+			for(int i = 1; i < size; i++) {
+				this.procContexts.get(i).start();
+				if(!kernelPiped[i]) {	// not connected by os pipe (builtin command, redirected or captured stage). copy stream in jvm.
+					this.procContexts.get(i).pipe(this.procContexts.get(i - 1));
+				}
+			}
+			started = true;
+		}
+		finally {
+			if(!started) {	// os pipe of following process is closed only when it starts.
+				for(AbstractProcessContext proc : this.procContexts) {
+					proc.closeKernelPipe();
+				}
+			}
 		}
 		// start message handler
 		// stdout
@@ -55,31 +85,27 @@ public class Task implements Serializable {
 		// stderr
 		this.stderrHandler = this.createStderrHandler();
 		this.stderrHandler.startHandler();
-		// start state monitor
+		// schedule timeout
+		if(option.is(timeout) && option.getTimeout() > 0) {
+			this.timeoutFuture = TaskTimer.getInstance().schedule(new Runnable() {
+				@Override public void run() {
+					timeoutTask();
+				}
+			}, option.getTimeout());
+		}
+		// watch termination of background task
 		if(!option.is(background)) {
 			return;
 		}
-		this.stateMonitor = new Thread() {
+		this.reaperWatch = ProcessReaper.getInstance().watch(this.procContexts, new Runnable() {
 			@Override public void run() {
-				if(timeoutIfEnable()) {
-					return;
-				}
-				while(true) {
-					if(checkTermination()) {
-						System.err.println("Terminated Task: " + getRepresentString());
-						// run exit handler
-						return;
-					}
-					try {
-						Thread.sleep(100); // sleep thread
-					} catch (InterruptedException e) {
-						System.err.println(e.getMessage());
-						Utils.fatal(1, "interrupt problem");
-					}
+				cancelTimeout();
+				if(!timedOut) {
+					System.err.println("Terminated Task: " + getRepresentString());
 				}
+				// run exit handler
 			}
-		};
-		this.stateMonitor.start();
+		});
 	}
 
 	private OutputStreamHandler createStdoutHandler() {	//FIXME: refactoring
@@ -109,16 +135,10 @@ public class Task implements Serializable {
 	private void joinAndSetException() {
 		this.terminated = true;
 		if(!config.is(background)) {
-			if(!this.timeoutIfEnable()) {
-				this.waitTermination();
-			}
+			this.waitTermination();
+			this.cancelTimeout();
 		} else {
-			try {
-				stateMonitor.join();
-			}
-			catch (InterruptedException e) {
-				throw new RuntimeException(e);
-			}
+			this.reaperWatch.await();
 		}
 		this.stdoutMessage = this.stdoutHandler.waitTermination();
 		this.stderrMessage = this.stderrHandler.waitTermination();
@@ -171,6 +191,22 @@ public class Task implements Serializable {
 		return this.exitStatusList.get(this.exitStatusList.size() - 1);
 	}
 
+	/**
+	 * get exit status of each process.
+	 * if process is terminated by signal, exit status is 128 + signal number.
+	 * @return
+	 */
+	@Shared @TypeAlias("Array<int>")
+	public IntArray getExitStatusList() {
+		this.join();
+		int size = this.exitStatusList.size();
+		long[] values = new long[size];
+		for(int i = 0; i < size; i++) {
+			values[i] = this.exitStatusList.get(i);
+		}
+		return new IntArray(values);
+	}
+
 	@Shared
 	@Override
 	public String toString() {
@@ -188,52 +224,57 @@ public class Task implements Serializable {
 		return sBuilder.toString();
 	}
 
-	private String getRepresentString() {
-		return this.toString();
+	/**
+	 * send SIGTERM to processes of task and send SIGKILL after grace period.
+	 * if task has own process group, signal also reaches grandchildren.
+	 * does not wait termination.
+	 */
+	@Shared
+	public void terminate() {
+		if(!this.terminated) {
+			ProcessGroup.terminate(this.procContexts);
+		}
 	}
 
-	private boolean timeoutIfEnable() {
-		long timeout = this.config.getTimeout();
-		if(timeout > 0) { // timeout
-			try {
-				Thread.sleep(timeout);	// ms
-				StringBuilder msgBuilder = new StringBuilder();
-				msgBuilder.append("Timeout Task: " + this.toString());
-				this.kill();
-				System.err.println(msgBuilder.toString());
-				// run exit handler
-				return true;
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-				Utils.fatal(1, "interrupt problem");
-			}
+	/**
+	 * check whether processes of task are still running. does not wait termination.
+	 * @return
+	 */
+	@Shared
+	public boolean isAlive() {
+		if(this.reaperWatch != null) {
+			return !this.reaperWatch.isFinished();
 		}
-		return false;
+		return !this.terminated;
 	}
 
-	private void kill() {
-		for(AbstractProcessContext proc : this.procContexts) {
-			proc.kill();
-		}
+	private String getRepresentString() {
+		return this.toString();
 	}
 
-	private void waitTermination() {
-		for(AbstractProcessContext proc : this.procContexts) {
-			proc.waitTermination();
-		}
+	/**
+	 * called from timer thread when deadline has passed.
+	 * send SIGTERM to processes which are still running, and SIGKILL after grace period.
+	 */
+	private void timeoutTask() {
+		this.timedOut = true;
+		ProcessGroup.terminate(this.procContexts);
+		System.err.println("Timeout Task: " + this.toString());
+		// run exit handler
 	}
 
 	/**
-	 * check termination of processes.
-	 * @return
-	 * - if all of processes have already terminated, return true.
+	 * cancel timeout if scheduled. if timeout action has already started, do nothing.
 	 */
-	private boolean checkTermination() {
+	private void cancelTimeout() {
+		if(this.timeoutFuture != null) {
+			this.timeoutFuture.cancel(false);
+		}
+	}
+
+	private void waitTermination() {
 		for(AbstractProcessContext proc : this.procContexts) {
-			if(!proc.checkTermination()) {
-				return false;
-			}
+			proc.waitTermination();
 		}
-		return true;
 	}
 }
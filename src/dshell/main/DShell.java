@@ -2,17 +2,22 @@ package dshell.main;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.List;
 
+import dshell.internal.codegen.ScriptJarWriter;
 import dshell.internal.console.AbstractConsole;
 import dshell.internal.console.DShellConsole;
 import dshell.internal.exe.EngineFactory;
 import dshell.internal.exe.ExecutionEngine;
 import dshell.internal.exe.ExecutionEngine.EngineConfig;
 import dshell.internal.exe.DShellEngineFactory;
+import dshell.internal.lib.ByteCodeRecorder;
 import dshell.internal.lib.RuntimeContext;
 import dshell.internal.lib.Utils;
+import dshell.internal.process.SpawnProcessContext;
 import dshell.main.ArgsParser.OptionListener;
 import static dshell.internal.lib.RuntimeContext.AppenderType;
 
@@ -31,12 +36,15 @@ public class DShell {
 		interactiveMode,
 		scriptingMode,
 		inputEvalMode,
+		daemonMode,
+		compileMode,
 	}
 
 	protected ExecutionMode mode;
 	private final boolean enablePseudoTerminal;
 	private final EngineConfig config;
 	private String specificArg = null;
+	private String outputName = null;
 	protected String[] scriptArgs;
 
 	public DShell(String[] args) {
@@ -102,6 +110,50 @@ public class DShell {
 				config.disableAssertion();
 			}
 		})
+		.addOption("--disable-cache", new OptionListener() {
+			@Override public void invoke(String arg) {
+				config.disableCache();
+			}
+		})
+		.addOption("--disable-optimization", new OptionListener() {
+			@Override public void invoke(String arg) {
+				config.disableOptimization();
+			}
+		})
+		.addOption("--posix-spawn", new OptionListener() {
+			@Override public void invoke(String arg) {
+				if(!SpawnProcessContext.isSupported()) {
+					System.err.println("dshell: posix_spawn backend is not supported on this os, use ProcessBuilder");
+					return;
+				}
+				config.enablePosixSpawn();
+			}
+		})
+		.addOption("--disable-builtin", true, new OptionListener() {
+			@Override public void invoke(String arg) {
+				for(String commandName : arg.split(",")) {
+					if(!RuntimeContext.getInstance().disableBuiltinCommand(commandName)) {
+						throw new IllegalArgumentException("not disableable builtin command: " + commandName);
+					}
+				}
+			}
+		})
+		.addOption("--daemon", new OptionListener() {
+			@Override public void invoke(String arg) {
+				mode = ExecutionMode.daemonMode;
+			}
+		})
+		.addOption("--compile", true, new OptionListener() {
+			@Override public void invoke(String arg) {
+				mode = ExecutionMode.compileMode;
+				specificArg = arg;
+			}
+		})
+		.addOption("-o", true, new OptionListener() {
+			@Override public void invoke(String arg) {
+				outputName = arg;
+			}
+		})
 		.addOption("--logging=file", true, new OptionListener() {
 			@Override public void invoke(String arg) {
 				RuntimeContext.getInstance().changeAppender(AppenderType.file, arg);
@@ -131,6 +183,9 @@ public class DShell {
 
 		try {
 			this.scriptArgs = parser.parse(args).getRestArgs();
+			if(this.mode == ExecutionMode.daemonMode || this.mode == ExecutionMode.compileMode) {
+				return;
+			}
 			if(!this.enablePseudoTerminal && !RuntimeContext.getInstance().isatty(0)) {
 				this.mode = ExecutionMode.inputEvalMode;
 			}
@@ -146,16 +201,21 @@ public class DShell {
 
 	public void execute() {
 		RuntimeContext.getInstance();
+		if(this.mode == ExecutionMode.daemonMode) {
+			new DShellDaemon(this.config).run();	// never return
+		}
 		EngineFactory factory = new DShellEngineFactory();
 		ExecutionEngine engine = factory.getEngine();
 		engine.setConfig(this.config);
 		switch(this.mode) {
 		case interactiveMode:
-			this.runInteractiveMode(engine, new DShellConsole());	// never return
+			this.runInteractiveMode(engine, new DShellConsole(engine));	// never return
 		case scriptingMode:
 			this.runScriptingMode(engine);	// never return
+		case compileMode:
+			this.runCompileMode(engine);	// never return
 		case inputEvalMode:
-			this.runInputEvalMode(engine);	// never return
+			this.runInputEvalMode(engine);
 		}
 	}
 
@@ -175,12 +235,41 @@ public class DShell {
 	}
 
 	protected void runScriptingMode(ExecutionEngine engine) {
+		System.exit(this.evalScript(engine) ? 0 : 1);
+	}
+
+	protected boolean evalScript(ExecutionEngine engine) {
 		engine.setArg(this.scriptArgs);
-		boolean status = engine.eval(this.scriptArgs[0]);
-		System.exit(status ? 0 : 1);
+		return engine.eval(this.scriptArgs[0]);
+	}
+
+	protected void runCompileMode(ExecutionEngine engine) {
+		String scriptName = this.specificArg;
+		String outputName = this.outputName;
+		if(outputName == null) {
+			outputName = new File(scriptName.endsWith(".ds") ?
+					scriptName.substring(0, scriptName.length() - 3) : scriptName).getName() + ".jar";
+		}
+		engine.setArg(new String[]{scriptName});
+		List<ByteCodeRecorder.Record> records = engine.compile(scriptName);
+		if(records == null) {
+			System.exit(1);
+		}
+		try {
+			new ScriptJarWriter(scriptName, records).write(outputName);
+		}
+		catch(IOException e) {
+			System.err.println("dshell: cannot write " + outputName + ": " + e.getMessage());
+			System.exit(1);
+		}
+		System.exit(0);
 	}
 
 	protected void runInputEvalMode(ExecutionEngine engine) {
+		this.evalInput(engine);
+	}
+
+	protected void evalInput(ExecutionEngine engine) {
 		String[] actualArgs = new String[this.scriptArgs.length + 1];
 		actualArgs[0] = this.specificArg == null ? "(stdin)" : "(command line)";
 		System.arraycopy(this.scriptArgs, 0, actualArgs, 1, this.scriptArgs.length);
@@ -193,6 +282,24 @@ public class DShell {
 		}
 	}
 
+	/**
+	 * evaluate script without terminating jvm. used by daemon.
+	 * @param engine
+	 * @return
+	 * - exit status. if interactive mode, return -1.
+	 */
+	int evalWithoutExit(ExecutionEngine engine) {
+		switch(this.mode) {
+		case scriptingMode:
+			return this.evalScript(engine) ? 0 : 1;
+		case inputEvalMode:
+			this.evalInput(engine);
+			return 0;
+		default:
+			return -1;
+		}
+	}
+
 	protected String readFromInput() {
 		BufferedInputStream stream = new BufferedInputStream(System.in);
 		ByteArrayOutputStream streamBuffer = new ByteArrayOutputStream();
@@ -220,6 +327,7 @@ public class DShell {
 	protected void showHelpAndExit(int status, PrintStream stream, ArgsParser parser) {
 		stream.println(shellInfo);
 		stream.println("Usage: dshell [option] ... [-c cmd | file] [arg] ...");
+		stream.println("       dshell --compile file [-o jar]");
 		parser.printHelp(stream);
 		System.exit(status);
 	}
@@ -0,0 +1,636 @@
+package dshell.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+import dshell.internal.exe.DShellEngineFactory;
+import dshell.internal.exe.ExecutionEngine;
+import dshell.internal.exe.ExecutionEngine.EngineConfig;
+import dshell.internal.lib.GlobalVariableTable;
+import dshell.internal.lib.RuntimeContext;
+import dshell.internal.lib.ShellExit;
+import dshell.internal.lib.Utils;
+import dshell.internal.process.SpawnProcessContext;
+
+/**
+ * persistent shell server. receive request from launcher (tools/launcher/dshell.c) via unix domain socket.
+ * daemon process only supervises worker processes (same jvm command line), which share the listening socket.
+ * each worker warms up, accepts connection and processes requests one by one in own process,
+ * because working directory, environmental variables and standard streams are process-wide.
+ * so requests are processed concurrently up to the number of workers.
+ * accepting worker sends "ready <pid>\n". if no worker accepts in time, launcher runs dshell by itself.
+ * worker is process group leader, and launcher forwards signal to the group.
+ * request format: "<body length>\0" (with standard input, output and error as SCM_RIGHTS),
+ * and body is "<argc>\0<arg>\0...<cwd>\0<envc>\0<key=value>\0..."
+ * response is "<exit status>\n" or "fallback\n" (launcher runs dshell by itself).
+ * socket is created in directory only accessible by current user,
+ * and connection from other user is rejected.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class DShellDaemon {
+	private final static int AF_UNIX = 1;
+	private final static int SOCK_STREAM = 1;
+	private final static int SOL_SOCKET = 1;
+	private final static int SCM_RIGHTS = 1;
+	private final static int SO_PEERCRED = 17;
+	private final static int MSG_CMSG_CLOEXEC = 0x40000000;
+	private final static int F_DUPFD_CLOEXEC = 1030;
+	private final static int F_SETFD = 2;
+	private final static int FD_CLOEXEC = 1;
+	private final static int sockAddrSize = 110;
+	private final static int backlog = 64;
+	private final static int recvBufferSize = 8192;
+	private final static int POLLIN = 1;
+	private final static int pollfdSize = 8;
+	private final static int WNOHANG = 1;
+	private final static int PR_SET_PDEATHSIG = 1;
+	private final static int SIGHUP = 1;
+	private final static int SIGINT = 2;
+	private final static int SIGTERM = 15;
+
+	/**
+	 * number of worker processes.
+	 */
+	private final static int workerSize = 4;
+
+	/**
+	 * if worker terminated within this time after start, wait this time before respawning it.
+	 */
+	private final static int respawnInterval = 1000;
+
+	/**
+	 * set to worker process. value is "<listening socket fd>,<daemon pid>".
+	 */
+	private final static String workerEnvName = "DSHELL_DAEMON_WORKER";
+
+	/**
+	 * warm up parser, code generator and process launch before accepting request.
+	 */
+	private final static String warmUpScript =
+			"function f($a : int) : int { return $a + 1; }\n" +
+			"var a = $f(1)\n" +
+			"var b = \"$(echo $a | cat)\"\n";
+
+	private final static Charset charset = Charset.defaultCharset();
+
+	private final EngineConfig config;
+	private final String socketPath;
+
+	/**
+	 * engine for next request. created after previous request has finished.
+	 */
+	private ExecutionEngine nextEngine;
+
+	/**
+	 * daemon's own standard input, output and error.
+	 */
+	private final int[] savedStdFds = new int[3];
+
+	public DShellDaemon(EngineConfig config) {
+		this.config = config;
+		// child process must see environmental variables of each request.
+		// ProcessBuilder uses snapshot of jvm startup environment, so use posix_spawn.
+		this.config.enablePosixSpawn();
+		this.socketPath = getSocketPath();
+	}
+
+	/**
+	 * get socket path. if DSHELL_SOCKET is set, use it.
+	 * otherwise, dshell.sock in socket directory.
+	 * @return
+	 */
+	public static String getSocketPath() {
+		String path = Utils.getEnv("DSHELL_SOCKET");
+		if(!path.equals("")) {
+			return path;
+		}
+		return getSocketDir() + "/dshell.sock";
+	}
+
+	/**
+	 * get socket directory. if XDG_RUNTIME_DIR is set, use it. otherwise /tmp/dshell-<uid>.
+	 * @return
+	 */
+	private static String getSocketDir() {
+		String dir = Utils.getEnv("XDG_RUNTIME_DIR");
+		if(!dir.equals("")) {
+			return dir;
+		}
+		return "/tmp/dshell-" + SocketLibraryWrapper.INSTANCE.getuid();
+	}
+
+	/**
+	 * create socket directory with mode 0700 if not exist.
+	 * if directory is not owned by current user or accessible by others, terminate daemon.
+	 * launcher also checks it before connecting.
+	 */
+	private static void prepareSocketDir() {
+		Path dir = Paths.get(getSocketDir());
+		Set<PosixFilePermission> perms = PosixFilePermissions.fromString("rwx------");
+		try {
+			if(!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+				Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(perms));
+			}
+			if(!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)
+					|| (int) Files.getAttribute(dir, "unix:uid", LinkOption.NOFOLLOW_LINKS) != SocketLibraryWrapper.INSTANCE.getuid()
+					|| !perms.containsAll(Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS))) {
+				Utils.fatal(1, "socket directory must be owned by current user and have mode 0700: " + dir);
+			}
+		}
+		catch(IOException e) {
+			Utils.fatal(1, "cannot create socket directory: " + dir + ", " + e.getMessage());
+		}
+	}
+
+	/**
+	 * check that peer of connected socket is current user.
+	 * @param fd
+	 * @return
+	 */
+	private static boolean isSameUser(int fd) {
+		int[] cred = new int[3];	// struct ucred {pid, uid, gid}
+		int[] len = new int[]{12};
+		return SocketLibraryWrapper.INSTANCE.getsockopt(fd, SOL_SOCKET, SO_PEERCRED, cred, len) == 0
+				&& cred[1] == SocketLibraryWrapper.INSTANCE.getuid();
+	}
+
+	public void run() {
+		if(Pointer.SIZE != 8 || !SpawnProcessContext.isSupported()) {
+			Utils.fatal(1, "daemon mode requires 64bit jvm on linux");
+		}
+		String worker = Utils.getEnv(workerEnvName);
+		if(worker.equals("")) {
+			this.supervise();
+		} else {
+			String[] values = worker.split(",");
+			this.work(Integer.parseInt(values[0]), Integer.parseInt(values[1]));
+		}
+	}
+
+	/**
+	 * main loop of daemon process. start workers and restart terminated worker.
+	 * socket is bound to temporary path and renamed after all workers have become ready.
+	 */
+	private void supervise() {
+		SocketLibraryWrapper lib = SocketLibraryWrapper.INSTANCE;
+		String tempPath = this.socketPath + "." + lib.getpid();
+		int serverFd = this.openServerSocket(tempPath);
+		String[] workerArgs = getCommandLine();
+		int[] workerPids = new int[workerSize];
+		long[] startTimes = new long[workerSize];
+		for(int i = 0; i < workerSize; i++) {
+			workerPids[i] = spawnWorker(workerArgs, serverFd);
+			startTimes[i] = System.currentTimeMillis();
+		}
+		if(!waitReady(tempPath) || lib.rename(tempPath, this.socketPath) == -1) {
+			lib.unlink(tempPath);
+			Utils.fatal(1, "cannot start daemon worker");
+		}
+		System.err.println("dshell: daemon listening on " + this.socketPath);
+		int[] status = new int[1];
+		while(true) {
+			int pid = lib.waitpid(-1, status, 0);
+			for(int i = 0; i < workerSize; i++) {
+				if(pid <= 0 || workerPids[i] != pid) {
+					continue;
+				}
+				long elapsed = System.currentTimeMillis() - startTimes[i];
+				if(elapsed < respawnInterval) {	// avoid busy loop if worker always fails
+					try {
+						Thread.sleep(respawnInterval - elapsed);
+					}
+					catch(InterruptedException e) {
+					}
+				}
+				workerPids[i] = spawnWorker(workerArgs, serverFd);
+				startTimes[i] = System.currentTimeMillis();
+			}
+		}
+	}
+
+	/**
+	 * get command line of current jvm. workers are started by the same command line.
+	 * @return
+	 */
+	private static String[] getCommandLine() {
+		try {
+			byte[] bytes = Files.readAllBytes(Paths.get("/proc/self/cmdline"));
+			return splitBody(bytes, 0, bytes.length).toArray(new String[0]);
+		}
+		catch(IOException e) {
+			Utils.fatal(1, "cannot read command line: " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * start worker process. worker inherits listening socket.
+	 * @param args
+	 * @param serverFd
+	 * @return
+	 * - pid of worker.
+	 */
+	private static int spawnWorker(String[] args, int serverFd) {
+		SocketLibraryWrapper lib = SocketLibraryWrapper.INSTANCE;
+		List<String> envList = new ArrayList<>();
+		for(Map.Entry<String, String> entry : System.getenv().entrySet()) {
+			if(!entry.getKey().equals(workerEnvName)) {
+				envList.add(entry.getKey() + "=" + entry.getValue());
+			}
+		}
+		envList.add(workerEnvName + "=" + serverFd + "," + lib.getpid());
+		int[] pid = new int[1];
+		int errno = lib.posix_spawnp(pid, args[0], null, null, args, envList.toArray(new String[0]));
+		if(errno != 0) {
+			Utils.fatal(1, "cannot start daemon worker: " + lib.strerror(errno));
+		}
+		return pid[0];
+	}
+
+	/**
+	 * wait until all workers have become ready.
+	 * connection is kept open until all greetings are received, so each connection is accepted by different worker.
+	 * @param path
+	 * @return
+	 * - if worker terminated before accepting connection, return false.
+	 */
+	private static boolean waitReady(String path) {
+		SocketLibraryWrapper lib = SocketLibraryWrapper.INSTANCE;
+		int[] fds = new int[workerSize];
+		Arrays.fill(fds, -1);
+		try {
+			for(int i = 0; i < workerSize; i++) {
+				fds[i] = lib.socket(AF_UNIX, SOCK_STREAM, 0);
+				if(fds[i] == -1 || lib.connect(fds[i], createSockAddr(path), sockAddrSize) == -1) {
+					return false;
+				}
+				ByteBuffer pollfd = ByteBuffer.allocate(pollfdSize).order(ByteOrder.nativeOrder());
+				pollfd.putInt(fds[i]).putShort((short) POLLIN);
+				while(lib.poll(pollfd.array(), 1, respawnInterval) <= 0) {
+					if(lib.waitpid(-1, new int[1], WNOHANG) > 0) {
+						return false;
+					}
+				}
+				if(lib.read(fds[i], new byte[64], 64) <= 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+		finally {
+			for(int fd : fds) {
+				if(fd != -1) {
+					lib.close(fd);
+				}
+			}
+		}
+	}
+
+	/**
+	 * main loop of worker process.
+	 * @param serverFd
+	 * - listening socket inherited from daemon.
+	 * @param daemonPid
+	 */
+	private void work(int serverFd, int daemonPid) {
+		SocketLibraryWrapper lib = SocketLibraryWrapper.INSTANCE;
+		// terminate with daemon. launcher sends signal to process group of worker.
+		lib.prctl(PR_SET_PDEATHSIG, SIGTERM);
+		if(lib.getppid() != daemonPid) {
+			System.exit(1);
+		}
+		lib.setpgid(0, 0);
+		// request is terminated with worker by forwarded signal, not by shutdown of jvm.
+		// it also resets signals ignored by daemon, which are inherited by processes of request.
+		for(int sig : new int[]{SIGHUP, SIGINT, SIGTERM}) {
+			lib.signal(sig, null);
+		}
+		lib.fcntl(serverFd, F_SETFD, FD_CLOEXEC);
+		for(int i = 0; i < 3; i++) {
+			this.savedStdFds[i] = lib.fcntl(i, F_DUPFD_CLOEXEC, 3);
+		}
+		this.warmUp();
+		this.nextEngine = this.createEngine();
+		byte[] greeting = ("ready " + lib.getpid() + "\n").getBytes(charset);
+		while(true) {
+			int clientFd = lib.accept(serverFd, null, null);
+			if(clientFd == -1) {
+				continue;
+			}
+			if(!isSameUser(clientFd) || lib.write(clientFd, greeting, greeting.length) != greeting.length) {
+				lib.close(clientFd);
+				continue;
+			}
+			try {
+				this.serve(clientFd);
+			}
+			catch(Throwable t) {
+				t.printStackTrace();
+			}
+			finally {
+				lib.close(clientFd);
+			}
+		}
+	}
+
+	private int openServerSocket(String path) {
+		SocketLibraryWrapper lib = SocketLibraryWrapper.INSTANCE;
+		if(Utils.getEnv("DSHELL_SOCKET").equals("")) {
+			prepareSocketDir();
+		}
+		int fd = lib.socket(AF_UNIX, SOCK_STREAM, 0);
+		if(fd == -1) {
+			Utils.fatal(1, "cannot create socket");
+		}
+		if(path.getBytes(charset).length >= sockAddrSize - 2) {
+			Utils.fatal(1, "too long socket path: " + path);
+		}
+		lib.unlink(path);
+		// create socket file with mode 0600. chmod after bind allows other users to connect meanwhile.
+		int oldMask = lib.umask(0177);
+		int bindResult = lib.bind(fd, createSockAddr(path), sockAddrSize);
+		lib.umask(oldMask);
+		if(bindResult == -1 || lib.listen(fd, backlog) == -1) {
+			Utils.fatal(1, "cannot listen: " + path);
+		}
+		return fd;
+	}
+
+	/**
+	 * 
+	 * @param path
+	 * @return
+	 * - struct sockaddr_un
+	 */
+	private static byte[] createSockAddr(String path) {
+		ByteBuffer addr = ByteBuffer.allocate(sockAddrSize).order(ByteOrder.nativeOrder());
+		addr.putShort((short) AF_UNIX);
+		addr.put(path.getBytes(charset));
+		return addr.array();
+	}
+
+	private ExecutionEngine createEngine() {
+		ExecutionEngine engine = new DShellEngineFactory().getEngine();
+		engine.setConfig(this.config);
+		return engine;
+	}
+
+	private void warmUp() {
+		ExecutionEngine engine = this.createEngine();
+		engine.setArg(new String[]{"(warm up)"});
+		engine.eval("(warm up)", warmUpScript);
+		this.resetGlobalState();
+	}
+
+	private void resetGlobalState() {
+		GlobalVariableTable.reset();
+	}
+
+	private void serve(int clientFd) {
+		Request request = this.receive(clientFd);
+		if(request == null) {
+			return;
+		}
+		String response;
+		try {
+			response = this.execute(request);
+		}
+		finally {
+			for(int fd : request.fds) {
+				SocketLibraryWrapper.INSTANCE.close(fd);
+			}
+		}
+		byte[] bytes = response.getBytes(charset);
+		SocketLibraryWrapper.INSTANCE.write(clientFd, bytes, bytes.length);
+		if(!response.startsWith("fallback")) {
+			// prepare engine for next request.
+			this.resetGlobalState();
+			this.nextEngine = this.createEngine();
+		}
+	}
+
+	/**
+	 * run request.
+	 * @param request
+	 * @return
+	 * - response string.
+	 */
+	private String execute(Request request) {
+		if(!canServe(request.args)) {
+			return "fallback\n";
+		}
+		SocketLibraryWrapper lib = SocketLibraryWrapper.INSTANCE;
+		RuntimeContext context = RuntimeContext.getInstance();
+		for(int i = 0; i < 3; i++) {
+			lib.dup2(request.fds[i], i);
+		}
+		System.setIn(new FileInputStream(FileDescriptor.in));
+		int status;
+		try {
+			context.resetEnv(request.env);
+			context.changeDirectory(request.cwd);
+			DShell shell = new DShell(request.args);
+			if(shell.mode == DShell.ExecutionMode.interactiveMode) {
+				return "fallback\n";
+			}
+			context.setDeferExit(true);
+			try {
+				status = shell.evalWithoutExit(this.nextEngine);
+			}
+			catch(ShellExit e) {
+				status = e.getStatus();
+			}
+		}
+		finally {
+			context.setDeferExit(false);
+			System.out.flush();
+			System.err.flush();
+			for(int i = 0; i < 3; i++) {
+				lib.dup2(this.savedStdFds[i], i);
+			}
+		}
+		return status + "\n";
+	}
+
+	/**
+	 * check options. daemon only supports script file, -c option and standard input.
+	 * other options may terminate jvm or change global configuration.
+	 * @param args
+	 * @return
+	 */
+	private static boolean canServe(String[] args) {
+		if(args.length == 0 || !args[0].startsWith("-")) {
+			return true;
+		}
+		if(args[0].equals("-c")) {
+			return args.length > 1 && !args[1].startsWith("-") && (args.length == 2 || !args[2].startsWith("-"));
+		}
+		return false;
+	}
+
+	/**
+	 * receive request.
+	 * @param clientFd
+	 * @return
+	 * - if invalid request, return null.
+	 */
+	private Request receive(int clientFd) {
+		SocketLibraryWrapper lib = SocketLibraryWrapper.INSTANCE;
+		// struct msghdr, struct iovec and control message for 3 fds (LP64 layout)
+		Memory data = new Memory(recvBufferSize);
+		Memory iov = new Memory(16);
+		iov.setPointer(0, data);
+		iov.setLong(8, recvBufferSize);
+		int controlSize = 32;	// CMSG_SPACE(sizeof(int) * 3)
+		Memory control = new Memory(controlSize);
+		control.clear();
+		Memory msg = new Memory(56);
+		msg.clear();
+		msg.setPointer(16, iov);
+		msg.setLong(24, 1);
+		msg.setPointer(32, control);
+		msg.setLong(40, controlSize);
+
+		int size = lib.recvmsg(clientFd, msg, MSG_CMSG_CLOEXEC);
+		if(size <= 0) {
+			return null;
+		}
+		int[] fds = new int[0];
+		if(control.getLong(0) > 16 && control.getInt(8) == SOL_SOCKET && control.getInt(12) == SCM_RIGHTS) {
+			fds = control.getIntArray(16, (int) ((control.getLong(0) - 16) / 4));
+		}
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		buffer.write(data.getByteArray(0, size), 0, size);
+
+		// read header and body
+		byte[] readBuf = new byte[recvBufferSize];
+		int bodySize = -1;
+		int bodyStart = -1;
+		while(true) {
+			byte[] bytes = buffer.toByteArray();
+			if(bodySize == -1) {
+				for(int i = 0; i < bytes.length; i++) {
+					if(bytes[i] == 0) {
+						bodySize = Integer.parseInt(new String(bytes, 0, i, charset));
+						bodyStart = i + 1;
+						break;
+					}
+				}
+			}
+			if(bodySize != -1 && bytes.length - bodyStart >= bodySize) {
+				try {
+					if(fds.length == 3) {
+						return new Request(fds, splitBody(bytes, bodyStart, bodySize));
+					}
+				}
+				catch(RuntimeException e) {	// broken request
+					if(RuntimeContext.getInstance().isDebugMode()) {
+						e.printStackTrace();
+					}
+				}
+				for(int fd : fds) {
+					lib.close(fd);
+				}
+				return null;
+			}
+			int readSize = lib.read(clientFd, readBuf, readBuf.length);
+			if(readSize <= 0) {
+				for(int fd : fds) {
+					lib.close(fd);
+				}
+				return null;
+			}
+			buffer.write(readBuf, 0, readSize);
+		}
+	}
+
+	private static List<String> splitBody(byte[] bytes, int start, int size) {
+		List<String> tokens = new ArrayList<>();
+		int tokenStart = start;
+		for(int i = start; i < start + size; i++) {
+			if(bytes[i] == 0) {
+				tokens.add(new String(bytes, tokenStart, i - tokenStart, charset));
+				tokenStart = i + 1;
+			}
+		}
+		return tokens;
+	}
+
+	private static class Request {
+		private final int[] fds;
+		private final String[] args;
+		private final String cwd;
+		private final Map<String, String> env;
+
+		private Request(int[] fds, List<String> tokens) {
+			this.fds = fds;
+			int index = 0;
+			int argc = Integer.parseInt(tokens.get(index++));
+			this.args = new String[argc];
+			for(int i = 0; i < argc; i++) {
+				this.args[i] = tokens.get(index++);
+			}
+			this.cwd = tokens.get(index++);
+			int envc = Integer.parseInt(tokens.get(index++));
+			this.env = new HashMap<>();
+			for(int i = 0; i < envc; i++) {
+				String entry = tokens.get(index++);
+				int eqIndex = entry.indexOf('=');
+				if(eqIndex > 0) {
+					this.env.put(entry.substring(0, eqIndex), entry.substring(eqIndex + 1));
+				}
+			}
+		}
+	}
+}
+
+interface SocketLibraryWrapper extends com.sun.jna.Library {
+	SocketLibraryWrapper INSTANCE = (SocketLibraryWrapper) com.sun.jna.Native.loadLibrary("c", SocketLibraryWrapper.class);
+
+	int socket(int domain, int type, int protocol);
+	int bind(int fd, byte[] addr, int len);
+	int connect(int fd, byte[] addr, int len);
+	int listen(int fd, int backlog);
+	int accept(int fd, Pointer addr, Pointer len);
+	int recvmsg(int fd, Pointer msg, int flags);
+	int read(int fd, byte[] buf, int count);
+	int write(int fd, byte[] buf, int count);
+	int close(int fd);
+	int dup2(int oldfd, int newfd);
+	int fcntl(int fd, int cmd, int arg);
+	int unlink(String path);
+	int umask(int mask);
+	int getsockopt(int fd, int level, int optname, int[] optval, int[] optlen);
+	int getuid();
+	int getpid();
+	int getppid();
+	int setpgid(int pid, int pgid);
+	int prctl(int option, long arg2);
+	Pointer signal(int signum, Pointer handler);
+	int rename(String oldpath, String newpath);
+	int poll(byte[] fds, int nfds, int timeout);
+	int waitpid(int pid, int[] status, int options);
+	int posix_spawnp(int[] pid, String file, Pointer fileActions, Pointer attr, String[] argv, String[] envp);
+	String strerror(int errnum);
+}
@@ -0,0 +1,126 @@
+package dshell.main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import dshell.internal.lib.GlobalVariableTable;
+import dshell.internal.lib.RuntimeContext;
+import dshell.internal.lib.Utils;
+import dshell.lang.GenericArray;
+import dshell.lang.InputStream;
+import dshell.lang.OutputStream;
+
+/**
+ * entry point of compiled script (dshell --compile).
+ * load top level classes from jar and invoke them in order of index.
+ * not depend on parser, type checker and code generator.
+ * @author skgchxngsxyz-opensuse
+ *
+ */
+public class ScriptRunner {
+	/**
+	 * jar entry name of script index.
+	 * each line is "script <script name>", "var <var name> <holder class name>" or "toplevel <class name>".
+	 */
+	public final static String indexEntryName = "META-INF/dshell/script.index";
+
+	private final ClassLoader classLoader;
+	private String scriptName = null;
+	private final List<String[]> varEntries = new ArrayList<>();
+	private final List<String> toplevelClassNames = new ArrayList<>();
+
+	private ScriptRunner(Class<?> mainClass) {
+		this.classLoader = mainClass.getClassLoader();
+		java.io.InputStream stream = this.classLoader.getResourceAsStream(indexEntryName);
+		if(stream == null) {
+			Utils.fatal(1, "not found script index: " + indexEntryName);
+		}
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] tokens = line.split(" ", 3);
+				if(tokens[0].equals("script")) {
+					this.scriptName = tokens[1];
+				}
+				else if(tokens[0].equals("var")) {
+					this.varEntries.add(tokens);
+				}
+				else if(tokens[0].equals("toplevel")) {
+					this.toplevelClassNames.add(tokens[1]);
+				}
+			}
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			Utils.fatal(1, "cannot read script index");
+		}
+	}
+
+	/**
+	 * register holder classes and initialize global variables defined by ExecutionEngine.
+	 * @param args
+	 */
+	private void initGlobalVar(String[] args) {
+		for(String[] entry : this.varEntries) {
+			try {
+				GlobalVariableTable.addEntry(entry[1], Class.forName(entry[2], false, this.classLoader));
+			}
+			catch(ClassNotFoundException e) {
+				Utils.fatal(1, "not found holder class: " + entry[2]);
+			}
+		}
+		GlobalVariableTable.setVar("STDIN", InputStream.createStdin());
+		GlobalVariableTable.setVar("STDOUT", OutputStream.createStdout());
+		GlobalVariableTable.setVar("STDERR", OutputStream.createStderr());
+
+		String[] scriptArgs = new String[args.length + 1];
+		scriptArgs[0] = this.scriptName;
+		System.arraycopy(args, 0, scriptArgs, 1, args.length);
+		GlobalVariableTable.setVar("$ARGS", new GenericArray(args));
+		GlobalVariableTable.setVar("ARGV", new GenericArray(scriptArgs));
+	}
+
+	/**
+	 * invoke top level classes.
+	 * @return
+	 * - return false, if exception has raised.
+	 */
+	private boolean invoke() {
+		for(String className : this.toplevelClassNames) {
+			try {
+				Class.forName(className, true, this.classLoader).getMethod("invoke").invoke(null);
+			}
+			catch(InvocationTargetException e) {
+				if(RuntimeContext.getInstance().isDebugMode()) {
+					e.getCause().printStackTrace();
+				} else {
+					Utils.printException(e);
+				}
+				return false;
+			}
+			catch(Throwable t) {
+				t.printStackTrace();
+				Utils.fatal(1, "invocation problem");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * called from generated Main class.
+	 * @param mainClass
+	 * - class loader of it must be able to load top level classes and script index.
+	 * @param args
+	 * - script arguments.
+	 */
+	public static void run(Class<?> mainClass, String[] args) {
+		RuntimeContext.getInstance();
+		ScriptRunner runner = new ScriptRunner(mainClass);
+		runner.initGlobalVar(args);
+		System.exit(runner.invoke() ? 0 : 1);
+	}
+}
@@ -0,0 +1,33 @@
+#!/bin/sh
+# compare loop of echo and test calls between builtin commands and external commands.
+# usage: builtin-loop.sh [count]
+# run from repository root after build.
+
+count=${1:-100000}
+
+jar=./dshell.jar
+script=`dirname $0`/builtin-loop.ds
+
+now_ms() {
+    echo $((`date +%s%N` / 1000000))
+}
+
+run() {    # option, count
+    start=`now_ms`
+    # script is read from stdin, so remaining arguments become $ARGV.
+    java -Xbootclasspath/a:${jar} dshell.main.DShell --disable-cache $1 $2 < ${script} || exit 1
+    end=`now_ms`
+    echo $((end - start))
+}
+
+echo "count: ${count}"
+printf "%-10s %10s %12s\n" "command" "time(ms)" "call/sec"
+for option in "" "--disable-builtin echo,test"; do
+    base=`run "${option}" 0` || exit 1
+    total=`run "${option}" ${count}` || exit 1
+    elapsed=$((total - base))
+    [ ${elapsed} -le 0 ] && elapsed=1
+    name=builtin
+    [ -n "${option}" ] && name=external
+    printf "%-10s %10d %12d\n" ${name} ${elapsed} $((count * 2 * 1000 / elapsed))
+done
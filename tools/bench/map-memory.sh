@@ -0,0 +1,22 @@
+#!/bin/sh
+# measure live heap bytes per entry of Map<String> and Map<int>, including key strings.
+# usage: map-memory.sh [N]
+# run from repository root after build. requires jcmd.
+
+size=${1:-1000000}
+
+jar=./dshell.jar
+script=`dirname $0`/map-memory.ds
+
+run() {    # mode, size
+    # script is read from stdin, so remaining arguments become $ARGV.
+    java -Xmx4g -Xbootclasspath/a:${jar} dshell.main.DShell --disable-cache $1 $2 < ${script} | awk '/Total/ { print $3 }'
+}
+
+base=`run string 0`
+echo "entries: ${size}"
+printf "%-12s %14s %12s\n" "map" "live(bytes)" "bytes/entry"
+for mode in String int; do
+    total=$((`run ${mode} ${size}` - base))
+    printf "%-12s %14d %12d\n" "Map<${mode}>" ${total} $((total / size))
+done
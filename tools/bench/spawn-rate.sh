@@ -0,0 +1,35 @@
+#!/bin/sh
+# compare spawn rate of process launch backends (ProcessBuilder, posix_spawn) at different heap size.
+# usage: spawn-rate.sh [count] [heap size ...]
+# run from repository root after build.
+
+count=${1:-2000}
+shift
+heaps=${@:-"256m 2g 8g"}
+
+jar=./dshell.jar
+script=`dirname $0`/spawn-rate.ds
+
+now_ms() {
+    echo $((`date +%s%N` / 1000000))
+}
+
+run() {    # heap, backend option, count
+    start=`now_ms`
+    # script is read from stdin, so remaining arguments become $ARGS.
+    java -Xms$1 -Xmx$1 -XX:+AlwaysPreTouch -Xbootclasspath/a:${jar} dshell.main.DShell $2 $3 < ${script} || exit 1
+    end=`now_ms`
+    echo $((end - start))
+}
+
+echo "count: ${count}"
+printf "%-8s %-14s %10s %12s\n" "heap" "backend" "time(ms)" "spawn/sec"
+for heap in ${heaps}; do
+    for backend in "" "--posix-spawn"; do
+        base=`run ${heap} "${backend}" 0`
+        total=`run ${heap} "${backend}" ${count}`
+        elapsed=$((total - base))
+        [ ${elapsed} -le 0 ] && elapsed=1
+        printf "%-8s %-14s %10d %12d\n" ${heap} ${backend:-ProcessBuilder} ${elapsed} $((count * 1000 / elapsed))
+    done
+done
@@ -7,20 +7,29 @@ import os
 gen_dir = './generated-array/dshell/lang'
 
 class SourceBuilder:
-	def __init__(self, namePrefix, typeName):
+	def __init__(self, namePrefix, typeName, elementTypeName, kind):
 		self.prefix = namePrefix
 		self.typeName = typeName
+		self.elementTypeName = elementTypeName
+		self.kind = kind
 		self.line_buf = []
 
 	def write(self):
-		f = open(gen_dir + '/' + self.prefix + 'Array.java', 'w')
+		f = open(gen_dir + '/' + self.prefix + self.kind + '.java', 'w')
 		f.write('// auto generated source file. do not edit me.\n')
 		for line in self.line_buf:
 			f.write(line)
 		f.close()
 
 	def append(self, line):
-		line = line.replace('Generic', self.prefix).replace('Object', self.typeName)
+		if self.kind == 'Array':
+			line = line.replace('Generic', self.prefix).replace('Object', self.typeName)
+		else:
+			# map template refers to GenericArray (return type of keys), so only replace whole words.
+			line = line.replace('@TypeAlias("' + self.kind + '<@T>")', '@TypeAlias("' + self.kind + '<' + self.elementTypeName + '>")')
+			line = re.sub(r'@TypeAlias\("@T"\)', '', line)
+			line = re.sub(r'\bGeneric' + self.kind + r'\b', self.prefix + self.kind, line)
+			line = re.sub(r'\bObject\b', self.typeName, line)
 		self.line_buf.append(line)
 
 
@@ -34,27 +43,32 @@ def main():
 	lines = f.readlines()
 	f.close()
 
+	# GenericArray.java or GenericMap.java
+	kind = 'Map' if os.path.basename(target_file).startswith('GenericMap') else 'Array'
+	anno_name = 'Primitive' + kind
+
 	if not os.path.exists(gen_dir):
 		os.makedirs(gen_dir)
-	int_array_builder = SourceBuilder('Int', 'long')
-	float_array_builder = SourceBuilder('Float', 'double')
-	bool_array_builder = SourceBuilder('Boolean', 'boolean')
+	int_builder = SourceBuilder('Int', 'long', 'int', kind)
+	float_builder = SourceBuilder('Float', 'double', 'float', kind)
+	bool_builder = SourceBuilder('Boolean', 'boolean', 'boolean', kind)
 	for line in lines:
 		if line.startswith('import') and line.find('GenericClass') != -1:
-			line = re.sub(r'GenericClass', 'PrimitiveArray', line)
+			line = re.sub(r'GenericClass', anno_name, line)
 		if line.find('GenericClass') != -1:
-			line = re.sub(r'GenericClass.+', 'PrimitiveArray', line)
-		if line.startswith('import') and line.find('TypeAlias') != -1:
-			continue
-
-		line = re.sub(r'@TypeAlias\(.+\)', '', line)
-		int_array_builder.append(line)
-		float_array_builder.append(line)
-		bool_array_builder.append(line)
-
-	int_array_builder.write()
-	float_array_builder.write()
-	bool_array_builder.write()
+			line = re.sub(r'GenericClass.+', anno_name, line)
+		if kind == 'Array':
+			if line.startswith('import') and line.find('TypeAlias') != -1:
+				continue
+			line = re.sub(r'@TypeAlias\(.+\)', '', line)
+
+		int_builder.append(line)
+		float_builder.append(line)
+		bool_builder.append(line)
+
+	int_builder.write()
+	float_builder.write()
+	bool_builder.write()
 
 if __name__ == '__main__':
 	main()
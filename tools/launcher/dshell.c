@@ -1,6 +1,16 @@
+#define _GNU_SOURCE	/* for struct ucred */
 #include <stdio.h>  /* for perror */
 #include <unistd.h> /* for execvp */
 #include <stdlib.h> /* for EXIT_FAILURE */
+#include <string.h>
+#include <limits.h>
+#include <signal.h>
+#include <poll.h>
+#include <sys/types.h>
+#include <sys/stat.h>
+#include <sys/socket.h>
+#include <sys/uio.h>
+#include <sys/un.h>
 
 #ifndef JAR_PATH
 #error JAR_PATH must be defined.
@@ -11,10 +21,277 @@
 #define DSHELL_JAR_FILE XSTR(JAR_PATH) "/dshell.jar"
 #define BOOT_CLASSPATH "-Xbootclasspath/a:" DSHELL_JAR_FILE
 
+/* returned by run_on_daemon, if daemon is not available. */
+#define DAEMON_FALLBACK -1
+
+/* if no daemon worker accepts connection in this time (all workers are busy), run dshell by itself. */
+#define WORKER_TIMEOUT_MS 200
+
+extern char **environ;
+
+/* pid of daemon worker running request. worker is process group leader. */
+static volatile pid_t worker_pid = 0;
+static volatile sig_atomic_t forwarded_signal = 0;
+
+typedef struct {
+	char *buf;
+	size_t size;
+	size_t capacity;
+} buffer_t;
+
+static int append(buffer_t *b, const char *str)
+{
+	size_t len = strlen(str) + 1;	/* include '\0' */
+	if(b->size + len > b->capacity) {
+		size_t newcap = (b->capacity + len) * 2;
+		char *newbuf = realloc(b->buf, newcap);
+		if(newbuf == NULL) {
+			return -1;
+		}
+		b->buf = newbuf;
+		b->capacity = newcap;
+	}
+	memcpy(b->buf + b->size, str, len);
+	b->size += len;
+	return 0;
+}
+
+static int append_int(buffer_t *b, int value)
+{
+	char str[32];
+	snprintf(str, sizeof(str), "%d", value);
+	return append(b, str);
+}
+
+static int write_all(int fd, const char *buf, size_t size)
+{
+	while(size > 0) {
+		ssize_t written = write(fd, buf, size);
+		if(written == -1) {
+			return -1;
+		}
+		buf += written;
+		size -= written;
+	}
+	return 0;
+}
+
+/* send header with standard input, output and error. */
+static int send_header(int sock, size_t body_size)
+{
+	char header[32];
+	int fds[3] = {0, 1, 2};
+	char control[CMSG_SPACE(sizeof(fds))];
+	struct iovec iov;
+	struct msghdr msg;
+	struct cmsghdr *cmsg;
+
+	snprintf(header, sizeof(header), "%zu", body_size);
+	iov.iov_base = header;
+	iov.iov_len = strlen(header) + 1;
+	memset(&msg, 0, sizeof(msg));
+	memset(control, 0, sizeof(control));
+	msg.msg_iov = &iov;
+	msg.msg_iovlen = 1;
+	msg.msg_control = control;
+	msg.msg_controllen = sizeof(control);
+	cmsg = CMSG_FIRSTHDR(&msg);
+	cmsg->cmsg_level = SOL_SOCKET;
+	cmsg->cmsg_type = SCM_RIGHTS;
+	cmsg->cmsg_len = CMSG_LEN(sizeof(fds));
+	memcpy(CMSG_DATA(cmsg), fds, sizeof(fds));
+	return sendmsg(sock, &msg, 0) == -1 ? -1 : 0;
+}
+
+/*
+ * check that socket directory is owned by current user and not accessible by others.
+ * otherwise, other user may create the socket and receive environment and standard fds.
+ */
+static int is_private_dir(const char *path)
+{
+	struct stat st;
+	return lstat(path, &st) == 0 && S_ISDIR(st.st_mode) && st.st_uid == getuid() && (st.st_mode & 077) == 0;
+}
+
+/*
+ * check that peer of connected socket is current user.
+ */
+static int is_same_user(int sock)
+{
+#ifdef SO_PEERCRED
+	struct ucred cred;
+	socklen_t len = sizeof(cred);
+	return getsockopt(sock, SOL_SOCKET, SO_PEERCRED, &cred, &len) == 0 && cred.uid == getuid();
+#else
+	uid_t uid;
+	gid_t gid;
+	return getpeereid(sock, &uid, &gid) == 0 && uid == getuid();
+#endif
+}
+
+/*
+ * wait greeting "ready <pid>\n" of daemon worker.
+ * return pid of worker, or -1 if timeout or invalid greeting.
+ */
+static pid_t wait_worker(int sock)
+{
+	struct pollfd pfd;
+	char greeting[32];
+	size_t size = 0;
+	int pid;
+
+	pfd.fd = sock;
+	pfd.events = POLLIN;
+	if(poll(&pfd, 1, WORKER_TIMEOUT_MS) != 1) {
+		return -1;
+	}
+	/* read one line. following bytes are response of request. */
+	while(size < sizeof(greeting) - 1 && read(sock, greeting + size, 1) == 1) {
+		if(greeting[size++] == '\n') {
+			greeting[size] = '\0';
+			return sscanf(greeting, "ready %d", &pid) == 1 && pid > 0 ? pid : -1;
+		}
+	}
+	return -1;
+}
+
+/* forward signal to process group of daemon worker (and processes of request). */
+static void forward_signal(int sig)
+{
+	forwarded_signal = sig;
+	if(kill(-worker_pid, sig) == -1) {
+		kill(worker_pid, sig);
+	}
+}
+
+/* ignored signal (e.g. SIGINT of background job) is kept ignored. */
+static void set_forward_handler(void)
+{
+	int sigs[] = {SIGINT, SIGTERM, SIGHUP};
+	struct sigaction act, oldact;
+	size_t i;
+
+	memset(&act, 0, sizeof(act));
+	act.sa_handler = forward_signal;
+	act.sa_flags = SA_RESTART;
+	sigemptyset(&act.sa_mask);
+	for(i = 0; i < sizeof(sigs) / sizeof(sigs[0]); i++) {
+		if(sigaction(sigs[i], NULL, &oldact) == 0 && oldact.sa_handler != SIG_IGN) {
+			sigaction(sigs[i], &act, NULL);
+		}
+	}
+}
+
+/*
+ * run dshell on daemon (dshell --daemon).
+ * return exit status, or DAEMON_FALLBACK if daemon is not available.
+ */
+static int run_on_daemon(int argc, char *argv[])
+{
+	struct sockaddr_un addr;
+	char dir[sizeof(addr.sun_path)];
+	char path[sizeof(addr.sun_path)];
+	const char *runtime_dir = getenv("XDG_RUNTIME_DIR");
+	char cwd[PATH_MAX];
+	char response[64];
+	const char *socket_path = getenv("DSHELL_SOCKET");
+	buffer_t body = {NULL, 0, 0};
+	size_t read_size = 0;
+	ssize_t size;
+	pid_t pid;
+	int i, envc, sock;
+
+	if(getenv("DSHELL_NO_DAEMON") != NULL) {
+		return DAEMON_FALLBACK;
+	}
+	if(socket_path == NULL || socket_path[0] == '\0') {
+		/* same as DShellDaemon.getSocketPath */
+		if(runtime_dir != NULL && runtime_dir[0] != '\0') {
+			snprintf(dir, sizeof(dir), "%s", runtime_dir);
+		} else {
+			snprintf(dir, sizeof(dir), "/tmp/dshell-%d", (int) getuid());
+		}
+		if(!is_private_dir(dir) || snprintf(path, sizeof(path), "%s/dshell.sock", dir) >= (int) sizeof(path)) {
+			return DAEMON_FALLBACK;
+		}
+		socket_path = path;
+	}
+	if(strlen(socket_path) >= sizeof(addr.sun_path) || getcwd(cwd, sizeof(cwd)) == NULL) {
+		return DAEMON_FALLBACK;
+	}
+	sock = socket(AF_UNIX, SOCK_STREAM, 0);
+	if(sock == -1) {
+		return DAEMON_FALLBACK;
+	}
+	memset(&addr, 0, sizeof(addr));
+	addr.sun_family = AF_UNIX;
+	strcpy(addr.sun_path, socket_path);
+	if(connect(sock, (struct sockaddr *) &addr, sizeof(addr)) == -1) {
+		close(sock);
+		return DAEMON_FALLBACK;
+	}
+	if(!is_same_user(sock)) {
+		fprintf(stderr, "dshell: ignore daemon socket of other user: %s\n", socket_path);
+		close(sock);
+		return DAEMON_FALLBACK;
+	}
+	pid = wait_worker(sock);
+	if(pid == -1) {	/* all workers are busy */
+		close(sock);
+		return DAEMON_FALLBACK;
+	}
+	worker_pid = pid;
+	set_forward_handler();
+
+	/* body: argc, args, cwd, envc, envs */
+	append_int(&body, argc - 1);
+	for(i = 1; i < argc; i++) {
+		append(&body, argv[i]);
+	}
+	append(&body, cwd);
+	for(envc = 0; environ[envc] != NULL; envc++);
+	append_int(&body, envc);
+	for(i = 0; i < envc; i++) {
+		append(&body, environ[i]);
+	}
+	if(body.buf == NULL || send_header(sock, body.size) == -1 || write_all(sock, body.buf, body.size) == -1) {
+		free(body.buf);
+		close(sock);
+		return DAEMON_FALLBACK;
+	}
+	free(body.buf);
+
+	/* wait for exit status */
+	while(read_size < sizeof(response) - 1
+			&& (size = read(sock, response + read_size, sizeof(response) - 1 - read_size)) > 0) {
+		read_size += size;
+	}
+	close(sock);
+	response[read_size] = '\0';
+	if(strncmp(response, "fallback", 8) == 0) {
+		return DAEMON_FALLBACK;
+	}
+	if(read_size == 0 && forwarded_signal != 0) {
+		/* worker was terminated by forwarded signal. terminate by the same signal. */
+		signal(forwarded_signal, SIG_DFL);
+		raise(forwarded_signal);
+		return 128 + forwarded_signal;
+	}
+	if(read_size == 0) {
+		fprintf(stderr, "dshell: daemon terminated unexpectedly\n");
+		return EXIT_FAILURE;
+	}
+	return atoi(response);
+}
+
 int main(int argc, char* argv[])
 {
 	int i, newargc = argc + 5;
 	char *newargv[newargc];
+	int status = run_on_daemon(argc, argv);
+	if(status != DAEMON_FALLBACK) {
+		return status;
+	}
 	newargv[0] = "java";
 	newargv[1] = BOOT_CLASSPATH;
 	newargv[2] = "-XX:+TieredCompilation";